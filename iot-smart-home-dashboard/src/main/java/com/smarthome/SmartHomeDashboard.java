@@ -1,5 +1,6 @@
 package com.smarthome;
 import com.smarthome.model.Customer;
+import com.smarthome.model.EnergyCube;
 import com.smarthome.model.Gadget;
 import com.smarthome.service.SmartHomeService;
 import com.smarthome.service.CalendarEventService;
@@ -7,6 +8,7 @@ import com.smarthome.service.AlertService;
 import com.smarthome.util.DynamoDBConfig;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -111,6 +113,12 @@ public class SmartHomeDashboard {
         System.out.println("Testing DynamoDB connection...");
         DynamoDBConfig.testConnection();
         System.out.println();
+        if (args.length > 0 && args[0].equals("--fleet-report")) {
+            smartHomeService.showFleetReport();
+            smartHomeService.getTimerService().shutdown();
+            DynamoDBConfig.shutdown();
+            return;
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\n[SYSTEM] Graceful shutdown initiated...");
             try {
@@ -640,9 +648,10 @@ public class SmartHomeDashboard {
             System.out.println("13. View & Manage Alerts");
             System.out.println("14. Check Alert Status");
             System.out.println("15. Alert Help & Information");
+            System.out.println("16. Create Compound Rule Alert");
             System.out.println();
             System.out.println("0. Return to Main Menu");
-            System.out.print("Choose an option (0-15): ");
+            System.out.print("Choose an option (0-16): ");
             try {
                 String inputLine = scanner.nextLine().trim();
                 if (inputLine.isEmpty()) {
@@ -669,11 +678,12 @@ public class SmartHomeDashboard {
                     case 13: viewAndManageAlerts(); break;
                     case 14: checkAlertStatus(); break;
                     case 15: showAlertHelp(); break;
+                    case 16: createRuleAlert(); break;
                     default:
-                        System.out.println("Invalid selection. Please enter a number from 0 to 15.");
+                        System.out.println("Invalid selection. Please enter a number from 0 to 16.");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Invalid format. Please enter a number from 0 to 15.");
+                System.out.println("Invalid format. Please enter a number from 0 to 16.");
             }
         }
     }
@@ -1355,9 +1365,14 @@ public class SmartHomeDashboard {
             return;
         }
         System.out.println("\nSelect a device to schedule timer:");
-        System.out.print("Choose device number: ");
+        System.out.print("Choose device number (or 'B' for a room/type bulk timer): ");
         try {
-            int choice = Integer.parseInt(scanner.nextLine().trim());
+            String selection = scanner.nextLine().trim();
+            if (selection.equalsIgnoreCase("B")) {
+                scheduleBulkDeviceTimer();
+                return;
+            }
+            int choice = Integer.parseInt(selection);
             if (choice >= 1 && choice <= gadgets.size()) {
                 Gadget selectedGadget = gadgets.get(choice - 1);
                 String deviceType = selectedGadget.getType();
@@ -1428,6 +1443,41 @@ public class SmartHomeDashboard {
             System.out.println("[ERROR] Failed to schedule timer. Please try again.");
         }
     }
+    private static void scheduleBulkDeviceTimer() {
+        System.out.println("\n=== Bulk Timer (Room / Device Type) ===");
+        System.out.println("Leave a field empty to match any value.");
+        System.out.print("Room name (e.g., Bedroom 2): ");
+        String roomName = scanner.nextLine().trim();
+        System.out.print("Device type (e.g., FAN, LIGHT): ");
+        String deviceType = scanner.nextLine().trim();
+        if (roomName.isEmpty() && deviceType.isEmpty()) {
+            System.out.println("[ERROR] Please enter a room name, a device type, or both.");
+            return;
+        }
+        System.out.println("\nChoose the desired state for the devices when timer executes:");
+        System.out.println("1. Turn ON");
+        System.out.println("2. Turn OFF");
+        System.out.print("Choose action (1-2): ");
+        String action;
+        try {
+            int actionChoice = Integer.parseInt(scanner.nextLine().trim());
+            if (actionChoice == 1) {
+                action = "ON";
+            } else if (actionChoice == 2) {
+                action = "OFF";
+            } else {
+                System.out.println("[ERROR] Invalid choice! Please choose 1 for ON or 2 for OFF.");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("[ERROR] Invalid input! Please enter 1 or 2.");
+            return;
+        }
+        System.out.print("Enter date and time (DD-MM-YYYY HH:MM): ");
+        String dateTime = getValidatedInput("Date Time");
+        if (dateTime == null) return;
+        smartHomeService.scheduleBulkTimer(deviceType, roomName, action, dateTime);
+    }
     private static void showScheduledTimers() {
         System.out.println("\n=== Scheduled Timers Management ===");
         List<Gadget> timersWithDevices = smartHomeService.getScheduledTimersWithDevices();
@@ -1536,9 +1586,13 @@ public class SmartHomeDashboard {
             System.out.println("2. View Upcoming Events");
             System.out.println("3. View Event Automation Details");
             System.out.println("4. Event Types Help");
+            System.out.println("5. View Past Events");
+            System.out.println("6. Import Events from .ics File");
+            System.out.println("7. Export Events to .ics File");
+            System.out.println("8. View Household Calendar");
             System.out.println();
             System.out.println("0. Return to Main Menu");
-            System.out.print("Choose an option (0-4): ");
+            System.out.print("Choose an option (0-8): ");
             try {
                 String inputLine = scanner.nextLine().trim();
                 if (inputLine.isEmpty()) {
@@ -1554,13 +1608,59 @@ public class SmartHomeDashboard {
                     case 2: showUpcomingEvents(); break;
                     case 3: showEventAutomationDetails(); break;
                     case 4: showEventTypesHelp(); break;
-                    default: System.out.println("Invalid option! Please choose between 0-4.");
+                    case 5: showPastEvents(); break;
+                    case 6: importCalendarEvents(); break;
+                    case 7: exportCalendarEvents(); break;
+                    case 8: smartHomeService.showHouseholdCalendar(); break;
+                    default: System.out.println("Invalid option! Please choose between 0-8.");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter a number between 0-4.");
+                System.out.println("Invalid input! Please enter a number between 0-8.");
             }
         }
     }
+    private static void importCalendarEvents() {
+        System.out.println("\n=== Import Calendar Events ===");
+        System.out.print("Enter path of the .ics file: ");
+        String filePath = getValidatedInput("File Path");
+        if (filePath == null) return;
+        smartHomeService.importCalendarEvents(filePath);
+    }
+    private static void exportCalendarEvents() {
+        System.out.println("\n=== Export Calendar Events ===");
+        System.out.print("Enter path for the .ics file: ");
+        String filePath = getValidatedInput("File Path");
+        if (filePath == null) return;
+        smartHomeService.exportCalendarEvents(filePath);
+    }
+    private static void showPastEvents() {
+        String pageToken = null;
+        int shown = 0;
+        while (true) {
+            CalendarEventService.EventPage page = smartHomeService.getPastEvents(pageToken, 10);
+            if (page == null) return;
+            if (page.getEvents().isEmpty() && shown == 0) {
+                System.out.println("\nNo past events found.");
+                return;
+            }
+            System.out.println("\n=== Past Calendar Events ===");
+            for (CalendarEventService.CalendarEvent event : page.getEvents()) {
+                shown++;
+                System.out.printf("%d. %s (%s) - %s to %s\n", shown, event.getTitle(), event.getEventType(),
+                                event.getStartTime().format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")),
+                                event.getEndTime().format(DateTimeFormatter.ofPattern("HH:mm")));
+            }
+            if (!page.hasNextPage()) {
+                System.out.println("\n[INFO] End of event history.");
+                return;
+            }
+            System.out.print("\nPress N for older events or Enter to return: ");
+            if (!scanner.nextLine().trim().equalsIgnoreCase("N")) {
+                return;
+            }
+            pageToken = page.getNextPageToken();
+        }
+    }
     private static void createCalendarEvent() {
         System.out.println("\n=== Create Calendar Event ===");
         System.out.println(smartHomeService.getCalendarService().getCalendarHelp());
@@ -1595,7 +1695,10 @@ public class SmartHomeDashboard {
                 System.out.println("Invalid input! Please enter a number between 1-" + eventTypes.size());
                 return;
             }
-            smartHomeService.createCalendarEvent(title, description, startDateTime, endDateTime, eventType);
+            System.out.print("Enter repeat rule (optional, e.g. FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10 - press Enter for none): ");
+            String recurrenceRule = scanner.nextLine().trim();
+            smartHomeService.createCalendarEvent(title, description, startDateTime, endDateTime, eventType,
+                                                 recurrenceRule.isEmpty() ? null : recurrenceRule);
         } catch (Exception e) {
             System.out.println("[ERROR] Failed to create calendar event. Please try again.");
         }
@@ -2551,9 +2654,10 @@ public class SmartHomeDashboard {
             System.out.println("1. System Health Report");
             System.out.println("2. Device Maintenance Schedule");
             System.out.println("3. Health Summary");
+            System.out.println("4. Scheduler Performance");
             System.out.println();
             System.out.println("0. Return to Main Menu");
-            System.out.print("Choose an option (0-3): ");
+            System.out.print("Choose an option (0-4): ");
             try {
                 String inputLine = scanner.nextLine().trim();
                 if (inputLine.isEmpty()) {
@@ -2574,11 +2678,14 @@ public class SmartHomeDashboard {
                     case 3:
                         showHealthSummary();
                         break;
+                    case 4:
+                        smartHomeService.showSchedulerMetrics();
+                        break;
                     default:
-                        System.out.println("Invalid option! Please choose between 0-3.");
+                        System.out.println("Invalid option! Please choose between 0-4.");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter a number between 0-3.");
+                System.out.println("Invalid input! Please enter a number between 0-4.");
             }
         }
     }
@@ -2598,9 +2705,10 @@ public class SmartHomeDashboard {
             System.out.println("3. Cost Analysis & Projections");
             System.out.println("4. Efficiency Recommendations");
             System.out.println("5. Peak Usage Times");
+            System.out.println("6. Off-Peak Run Planner");
             System.out.println();
             System.out.println("0. Return to Main Menu");
-            System.out.print("Choose an option (0-5): ");
+            System.out.print("Choose an option (0-6): ");
             try {
                 String inputLine = scanner.nextLine().trim();
                 if (inputLine.isEmpty()) {
@@ -2627,17 +2735,45 @@ public class SmartHomeDashboard {
                     case 5:
                         showPeakUsageTimes();
                         break;
+                    case 6:
+                        showOffPeakRunPlanner();
+                        break;
                     default:
-                        System.out.println("Invalid option! Please choose between 0-5.");
+                        System.out.println("Invalid option! Please choose between 0-6.");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Invalid input! Please enter a number between 0-5.");
+                System.out.println("Invalid input! Please enter a number between 0-6.");
             }
         }
     }
     private static void showEnergyAnalysis() {
         System.out.println("\n=== Energy Consumption Analysis ===");
         smartHomeService.showEnergyReport();
+        if (smartHomeService.isLoggedIn() && smartHomeService.viewGadgets() != null) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime from = now.toLocalDate().withDayOfMonth(1).minusMonths(11).atStartOfDay();
+            var series = smartHomeService.getEnergyService().getUsageSeries(smartHomeService.viewGadgets(), from, now, 12);
+            double[] monthly = series.getPoints().stream().mapToDouble(point -> point.getEnergyKWh()).toArray();
+            System.out.println("\n[LAST 12 MONTHS]: " + sparkline(monthly));
+            for (var point : series.getPoints()) {
+                if (point.getEnergyKWh() > 0) {
+                    System.out.printf("   %s: %.2f kWh, peak %.2f kW\n",
+                                    point.getStart().format(DateTimeFormatter.ofPattern("MMM yyyy")), point.getEnergyKWh(), point.getPeakKW());
+                }
+            }
+            var energyService = smartHomeService.getEnergyService();
+            var currentUser = smartHomeService.getCurrentUser();
+            var byRoom = energyService.queryUsage(currentUser, EnergyCube.Dimension.ROOM, now.minusDays(7), now, null, null);
+            if (!byRoom.isEmpty()) {
+                System.out.println("\n[LAST 7 DAYS BY ROOM]:");
+                byRoom.forEach((room, slice) -> System.out.printf("   %-15s %8.2f kWh  %6.1f h on  Rs.%.2f\n",
+                                                                 room, slice.getKWh(), slice.getOnMinutes() / 60.0, slice.getCostRupees()));
+                String topRoom = byRoom.keySet().iterator().next();
+                System.out.println("[" + topRoom.toUpperCase() + " BY DEVICE TYPE]:");
+                energyService.queryUsage(currentUser, EnergyCube.Dimension.TYPE, now.minusDays(7), now, topRoom, null)
+                        .forEach((type, slice) -> System.out.printf("   %-15s %8.2f kWh  Rs.%.2f\n", type, slice.getKWh(), slice.getCostRupees()));
+            }
+        }
         System.out.println("\n[INSIGHTS]:");
         System.out.println("- High consumption devices contribute most to your bill");
         System.out.println("- Consider scheduling high-power devices during off-peak hours");
@@ -2655,6 +2791,12 @@ public class SmartHomeDashboard {
             return;
         }
         System.out.println("\n[USAGE PATTERN ANALYSIS]:");
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime dayStart = now.truncatedTo(ChronoUnit.HOURS).minusHours(23);
+        var byHour = smartHomeService.getEnergyService().queryUsage(smartHomeService.getCurrentUser(), EnergyCube.Dimension.HOUR_OF_DAY,
+                                                                    now.minusDays(7), now, null, null);
+        System.out.println("[HOUSEHOLD BY HOUR OF DAY] (last 7 days, 00-23): "
+                         + sparkline(byHour.values().stream().mapToDouble(slice -> slice.getKWh()).toArray()));
         for (var device : devices) {
             double totalHours = device.getTotalUsageMinutes() / 60.0;
             String usageCategory;
@@ -2672,6 +2814,25 @@ public class SmartHomeDashboard {
             if (device.isOn()) {
                 System.out.printf("   [->] Currently running for %.1f hours\n", device.getCurrentSessionUsageHours());
             }
+            double[] lastDay = device.getEnergyCurveWh(dayStart, 60, 24);
+            int activeHours = 0;
+            int busiestHour = -1;
+            for (int i = 0; i < lastDay.length; i++) {
+                if (lastDay[i] > 0) {
+                    activeHours++;
+                    if (busiestHour < 0 || lastDay[i] > lastDay[busiestHour]) {
+                        busiestHour = i;
+                    }
+                }
+            }
+            if (busiestHour >= 0) {
+                System.out.printf("   [24h] %s  active %d of 24 hours, busiest %s (%.2f kWh)\n",
+                                sparkline(lastDay), activeHours,
+                                dayStart.plusHours(busiestHour).format(DateTimeFormatter.ofPattern("HH:00")),
+                                lastDay[busiestHour] / 1000.0);
+            } else {
+                System.out.println("   [24h] No usage recorded in the last 24 hours");
+            }
         }
         System.out.println("\n[RECOMMENDATIONS]:");
         System.out.println("- Set timers for heavy-use devices to optimize consumption");
@@ -2687,10 +2848,23 @@ public class SmartHomeDashboard {
             var energyService = smartHomeService.getEnergyService();
             var currentUser = smartHomeService.getCurrentUser();
             var report = energyService.generateEnergyReport(currentUser);
-            double monthlyProjection = report.getTotalCostRupees() * 4.33; 
-            double yearlyProjection = monthlyProjection * 12;
-            System.out.printf("[Monthly] Projection: Rs.%.2f\n", monthlyProjection);
-            System.out.printf("[Yearly] Projection: Rs.%.2f\n", yearlyProjection);
+            var projection = energyService.projectMonthlyBill(currentUser, LocalDateTime.now());
+            if (projection.isBasedOnHistory()) {
+                System.out.printf("[This month so far]: %.2f kWh, %d days to go\n",
+                                projection.getMonthToDateKWh(), projection.getDaysRemaining());
+                System.out.printf("[Monthly] Projection: Rs.%.2f (%.2f kWh), likely Rs.%.2f - Rs.%.2f\n",
+                                projection.getProjectedBill(), projection.getProjectedKWh(),
+                                projection.getLowBill(), projection.getHighBill());
+                System.out.printf("[Yearly] Projection: Rs.%.2f\n", projection.getYearlyBill());
+            } else {
+                System.out.println("[Monthly] Projection: not enough recorded usage yet - projections start after a full day of device history");
+            }
+            var bills = energyService.compareTariffs(report.getTotalEnergyKWh(),
+                                                     energyService.getHourOfDaySplit(currentUser.getGadgets(), report.getTotalEnergyKWh()));
+            if (bills.size() > 1) {
+                System.out.println("\n[TARIFF COMPARISON] (same usage, current tariff: " + energyService.getTariff().getName() + "):");
+                bills.forEach((name, bill) -> System.out.printf("   %-15s Rs.%.2f\n", name, bill));
+            }
             System.out.println("\n[SAVINGS OPPORTUNITIES]:");
             System.out.println("- Switching to energy-efficient devices could save 20-30%");
             System.out.println("- Using timers and scenes could reduce consumption by 15%");
@@ -2716,23 +2890,102 @@ public class SmartHomeDashboard {
     }
     private static void showPeakUsageTimes() {
         System.out.println("\n=== Peak Usage Time Analysis ===");
-        System.out.println("[*] Analyzing your device usage patterns...");
-        System.out.println("\n[TYPICAL PEAK USAGE PERIODS]:");
-        System.out.println("[Morning Peak] (6:00 - 10:00 AM):");
-        System.out.println("   - Geyser, Microwave, TV, Lights");
-        System.out.println("   - Average consumption: High");
-        System.out.println("\n[Evening Peak] (6:00 - 10:00 PM):");
-        System.out.println("   - AC, TV, Lights, Entertainment systems");
-        System.out.println("   - Average consumption: Very High");
-        System.out.println("\n[Night Period] (10:00 PM - 6:00 AM):");
-        System.out.println("   - Refrigerator, Security systems, Bedroom AC");
-        System.out.println("   - Average consumption: Low-Medium");
+        if (!smartHomeService.isLoggedIn()) {
+            System.out.println("Please login first!");
+            return;
+        }
+        var devices = smartHomeService.viewGadgets();
+        if (devices == null || devices.isEmpty()) {
+            System.out.println("No devices found for peak analysis.");
+            return;
+        }
+        System.out.println("[*] Analyzing your recorded device usage...");
+        var energyService = smartHomeService.getEnergyService();
+        int days = 7;
+        double[] profile = energyService.getHourOfDayProfile(devices, LocalDateTime.now(), days);
+        int[] peakHours = energyService.getPeakHours(profile, 3);
+        if (peakHours.length == 0) {
+            System.out.println("\nNo usage recorded yet. Peak hours appear once your devices have run for a while.");
+        } else {
+            double max = profile[peakHours[0]];
+            System.out.println("\n[AVERAGE USAGE BY HOUR] (last " + days + " days):");
+            for (int hour = 0; hour < 24; hour++) {
+                int width = (int) Math.round(profile[hour] / max * 30);
+                System.out.printf("%02d:00 | %-30s %.3f kWh\n", hour, "#".repeat(width), profile[hour]);
+            }
+            System.out.println("\n[YOUR PEAK HOURS]:");
+            for (int i = 0; i < peakHours.length; i++) {
+                int hour = peakHours[i];
+                System.out.printf("%d. %02d:00 - %02d:00  (%.3f kWh on average)\n", i + 1, hour, (hour + 1) % 24, profile[hour]);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now(Gadget.getClock());
+        var peak = energyService.analyzePeakDemand(devices, now.minusDays(30), now);
+        if (peak.getPeakKW() > 0) {
+            DateTimeFormatter format = DateTimeFormatter.ofPattern("dd MMM HH:mm");
+            System.out.printf("\n[PEAK DEMAND] (last 30 days): %.2f kW on %s - %s\n",
+                            peak.getPeakKW(), peak.getPeakStart().format(format), peak.getPeakEnd().format(DateTimeFormatter.ofPattern("HH:mm")));
+            for (var contributor : peak.getContributors()) {
+                Gadget device = contributor.getDevice();
+                System.out.printf("   %-12s %-14s %6.2f kW  (%.0f%%)\n",
+                                device.getType(), device.getRoomName(), contributor.getKW(), contributor.getSharePercent());
+            }
+            LocalDateTime dayStart = now.truncatedTo(ChronoUnit.HOURS).minusHours(23);
+            double[] hourlyPeaks = peak.getLoadCurve().maxLoadKW(dayStart.atZone(Gadget.getClock().getZone()).toInstant().toEpochMilli(), 3_600_000L, 24);
+            System.out.println("[HIGHEST LOAD, LAST 24 HOURS]: " + sparkline(hourlyPeaks));
+        }
         System.out.println("\n[LOAD BALANCING TIPS]:");
         System.out.println("- Schedule washing machine/dishwasher during off-peak hours");
         System.out.println("- Use timers to avoid simultaneous operation of high-power devices");
         System.out.println("- Consider battery storage for peak-hour backup");
         System.out.println("- Smart scenes can automatically manage peak load distribution");
     }
+    private static void showOffPeakRunPlanner() {
+        System.out.println("\n=== Off-Peak Run Planner ===");
+        if (!smartHomeService.isLoggedIn()) {
+            System.out.println("Please login first!");
+            return;
+        }
+        var plan = smartHomeService.planOffPeakRuns();
+        if (plan == null || (plan.getRuns().isEmpty() && plan.getUnscheduled().isEmpty())) {
+            System.out.println("No deferrable devices found (washing machine, geyser, vacuum).");
+            return;
+        }
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd MMM HH:mm");
+        System.out.printf("[PLAN] Household load kept under %.1f kW (expected peak %.2f kW)\n", plan.getCapKW(), plan.getPeakKW());
+        for (var run : plan.getRuns()) {
+            Gadget device = run.getDevice();
+            System.out.printf("   %-16s %-12s %s - %s   Rs. %+.2f\n", device.getType(), device.getRoomName(),
+                            run.getStart().format(format), run.getEnd().format(DateTimeFormatter.ofPattern("HH:mm")), run.getCost());
+        }
+        for (var run : plan.getUnscheduled()) {
+            System.out.printf("[WARNING] %s in %s cannot finish by %s under the load cap\n",
+                            run.getDevice().getType(), run.getDevice().getRoomName(), run.getDeadline().format(format));
+        }
+        System.out.printf("[INFO] Time-of-use savings versus starting now: Rs. %.2f\n", plan.getSavings());
+        if (plan.getRuns().isEmpty()) {
+            return;
+        }
+        System.out.print("Schedule these runs as timers? (y/n): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            int scheduled = smartHomeService.scheduleLoadShiftPlan(plan);
+            System.out.println("[SUCCESS] " + scheduled + " run(s) scheduled.");
+        }
+    }
+    // One character per value, scaled to the largest value
+    private static String sparkline(double[] values) {
+        String levels = " .:-=+*#";
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        StringBuilder line = new StringBuilder(values.length);
+        for (double value : values) {
+            int level = max > 0 && value > 0 ? 1 + (int) Math.round(value / max * (levels.length() - 2)) : 0;
+            line.append(levels.charAt(Math.min(level, levels.length() - 1)));
+        }
+        return "[" + line + "]";
+    }
     private static void showSettingsMenu() {
         while (true) {
             if (checkReturnToMainMenu()) return;
@@ -3288,10 +3541,13 @@ public class SmartHomeDashboard {
             String message = getValidatedInputWithNavigation("Alert Message");
             if (message == null || checkReturnToMainMenu()) return;
 
+            System.out.print("Enter repeat rule (optional, e.g. DAILY or FREQ=WEEKLY;BYDAY=MO,FR - press Enter for none): ");
+            String recurrencePattern = scanner.nextLine().trim();
+
             // Create the alert
             boolean success = smartHomeService.createTimeBasedAlert(
                 alertName, selectedDevice.getType(), selectedDevice.getRoomName(),
-                triggerTime, message);
+                triggerTime, message, recurrencePattern.isEmpty() ? null : recurrencePattern);
 
             if (success) {
                 System.out.println("\n[SUCCESS] Time-based alert created successfully!");
@@ -3405,6 +3661,36 @@ public class SmartHomeDashboard {
         }
     }
 
+    private static void createRuleAlert() {
+        System.out.println("\n=== Create Compound Rule Alert ===");
+        System.out.println("[Navigation] Enter '0' to return to Device Control Panel");
+        System.out.println("Example: AC in Master Bedroom ON for > 3h AND outside temp < 20");
+        System.out.println("Conditions: <device> in <room> ON/OFF [for > 2h], <device> in <room> energy > 5,");
+        System.out.println("            temp/humidity/aqi < 20, weather is Rainy, time between 22:00 and 06:00");
+        System.out.println("Combine with AND, OR, NOT and parentheses.");
+
+        try {
+            System.out.print("Enter alert name: ");
+            String alertName = getValidatedInputWithNavigation("Alert Name");
+            if (alertName == null || checkReturnToMainMenu()) return;
+
+            System.out.print("Enter rule: ");
+            String ruleText = getValidatedInputWithNavigation("Rule");
+            if (ruleText == null || checkReturnToMainMenu()) return;
+
+            System.out.print("Enter alert message: ");
+            String message = getValidatedInputWithNavigation("Alert Message");
+            if (message == null || checkReturnToMainMenu()) return;
+
+            if (smartHomeService.createRuleAlert(alertName, ruleText, message)) {
+                System.out.println("\n[SUCCESS] Rule alert created successfully!");
+                System.out.println("Alert will trigger whenever the rule becomes true.");
+            }
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed to create rule alert: " + e.getMessage());
+        }
+    }
+
     private static void viewAndManageAlerts() {
         while (true) {
             if (checkReturnToMainMenu()) return;
@@ -0,0 +1,141 @@
+package com.smarthome.model;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+// One triggered alert waiting in the outbox; it is deleted once every sink has accepted it
+@DynamoDbBean
+public class AlertNotificationRecord {
+    private String userEmail;
+    private String notificationId;
+    private String alertId;
+    private String alertName;
+    private String alertType;
+    private String deviceType;
+    private String roomName;
+    private String condition;
+    private String message;
+    private String reason;
+    private LocalDateTime triggeredAt;
+    private boolean autoDeleted;
+    private int attempts;
+    private long nextAttemptAt; // epoch millis; 0 means deliver now
+    private List<String> deliveredSinks;
+    public AlertNotificationRecord() {
+        this.deliveredSinks = new ArrayList<>();
+    }
+    // Trigger counts only grow, so alert id plus count names one trigger and makes re-recording it idempotent
+    public static String buildNotificationId(String alertId, int triggerCount) {
+        return alertId + "#" + triggerCount;
+    }
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("userEmail")
+    public String getUserEmail() {
+        return userEmail;
+    }
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+    @DynamoDbSortKey
+    @DynamoDbAttribute("notificationId")
+    public String getNotificationId() {
+        return notificationId;
+    }
+    public void setNotificationId(String notificationId) {
+        this.notificationId = notificationId;
+    }
+    @DynamoDbAttribute("alertId")
+    public String getAlertId() {
+        return alertId;
+    }
+    public void setAlertId(String alertId) {
+        this.alertId = alertId;
+    }
+    @DynamoDbAttribute("alertName")
+    public String getAlertName() {
+        return alertName;
+    }
+    public void setAlertName(String alertName) {
+        this.alertName = alertName;
+    }
+    @DynamoDbAttribute("alertType")
+    public String getAlertType() {
+        return alertType;
+    }
+    public void setAlertType(String alertType) {
+        this.alertType = alertType;
+    }
+    @DynamoDbAttribute("deviceType")
+    public String getDeviceType() {
+        return deviceType;
+    }
+    public void setDeviceType(String deviceType) {
+        this.deviceType = deviceType;
+    }
+    @DynamoDbAttribute("roomName")
+    public String getRoomName() {
+        return roomName;
+    }
+    public void setRoomName(String roomName) {
+        this.roomName = roomName;
+    }
+    @DynamoDbAttribute("condition")
+    public String getCondition() {
+        return condition;
+    }
+    public void setCondition(String condition) {
+        this.condition = condition;
+    }
+    @DynamoDbAttribute("message")
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    @DynamoDbAttribute("reason")
+    public String getReason() {
+        return reason;
+    }
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+    @DynamoDbAttribute("triggeredAt")
+    public LocalDateTime getTriggeredAt() {
+        return triggeredAt;
+    }
+    public void setTriggeredAt(LocalDateTime triggeredAt) {
+        this.triggeredAt = triggeredAt;
+    }
+    @DynamoDbAttribute("autoDeleted")
+    public boolean isAutoDeleted() {
+        return autoDeleted;
+    }
+    public void setAutoDeleted(boolean autoDeleted) {
+        this.autoDeleted = autoDeleted;
+    }
+    @DynamoDbAttribute("attempts")
+    public int getAttempts() {
+        return attempts;
+    }
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    @DynamoDbAttribute("nextAttemptAt")
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+    public void setNextAttemptAt(long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+    @DynamoDbAttribute("deliveredSinks")
+    public List<String> getDeliveredSinks() {
+        return deliveredSinks;
+    }
+    public void setDeliveredSinks(List<String> deliveredSinks) {
+        this.deliveredSinks = deliveredSinks != null ? deliveredSinks : new ArrayList<>();
+    }
+}
@@ -0,0 +1,165 @@
+package com.smarthome.model;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+import java.time.LocalDateTime;
+@DynamoDbBean
+public class AlertRecord {
+    private String userEmail;
+    private String alertId;
+    private String alertName;
+    private String alertType;
+    private String deviceType;
+    private String roomName;
+    private String condition;
+    private String message;
+    private boolean active;
+    private LocalDateTime createdTime;
+    private LocalDateTime lastTriggered;
+    private int triggerCount;
+    private boolean autoDeleteAfterTrigger;
+    private LocalDateTime triggerTime; // time-based alerts
+    private LocalDateTime nextTriggerTime;
+    private String recurrencePattern;
+    private double energyThreshold; // energy usage alerts
+    private String comparisonType;
+    private String ruleText; // compound rule alerts
+    public AlertRecord() {
+    }
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("userEmail")
+    public String getUserEmail() {
+        return userEmail;
+    }
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+    @DynamoDbSortKey
+    @DynamoDbAttribute("alertId")
+    public String getAlertId() {
+        return alertId;
+    }
+    public void setAlertId(String alertId) {
+        this.alertId = alertId;
+    }
+    @DynamoDbAttribute("alertName")
+    public String getAlertName() {
+        return alertName;
+    }
+    public void setAlertName(String alertName) {
+        this.alertName = alertName;
+    }
+    @DynamoDbAttribute("alertType")
+    public String getAlertType() {
+        return alertType;
+    }
+    public void setAlertType(String alertType) {
+        this.alertType = alertType;
+    }
+    @DynamoDbAttribute("deviceType")
+    public String getDeviceType() {
+        return deviceType;
+    }
+    public void setDeviceType(String deviceType) {
+        this.deviceType = deviceType;
+    }
+    @DynamoDbAttribute("roomName")
+    public String getRoomName() {
+        return roomName;
+    }
+    public void setRoomName(String roomName) {
+        this.roomName = roomName;
+    }
+    @DynamoDbAttribute("condition")
+    public String getCondition() {
+        return condition;
+    }
+    public void setCondition(String condition) {
+        this.condition = condition;
+    }
+    @DynamoDbAttribute("message")
+    public String getMessage() {
+        return message;
+    }
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    @DynamoDbAttribute("active")
+    public boolean isActive() {
+        return active;
+    }
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+    @DynamoDbAttribute("createdTime")
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+    @DynamoDbAttribute("lastTriggered")
+    public LocalDateTime getLastTriggered() {
+        return lastTriggered;
+    }
+    public void setLastTriggered(LocalDateTime lastTriggered) {
+        this.lastTriggered = lastTriggered;
+    }
+    @DynamoDbAttribute("triggerCount")
+    public int getTriggerCount() {
+        return triggerCount;
+    }
+    public void setTriggerCount(int triggerCount) {
+        this.triggerCount = triggerCount;
+    }
+    @DynamoDbAttribute("autoDeleteAfterTrigger")
+    public boolean isAutoDeleteAfterTrigger() {
+        return autoDeleteAfterTrigger;
+    }
+    public void setAutoDeleteAfterTrigger(boolean autoDeleteAfterTrigger) {
+        this.autoDeleteAfterTrigger = autoDeleteAfterTrigger;
+    }
+    @DynamoDbAttribute("triggerTime")
+    public LocalDateTime getTriggerTime() {
+        return triggerTime;
+    }
+    public void setTriggerTime(LocalDateTime triggerTime) {
+        this.triggerTime = triggerTime;
+    }
+    @DynamoDbAttribute("nextTriggerTime")
+    public LocalDateTime getNextTriggerTime() {
+        return nextTriggerTime;
+    }
+    public void setNextTriggerTime(LocalDateTime nextTriggerTime) {
+        this.nextTriggerTime = nextTriggerTime;
+    }
+    @DynamoDbAttribute("recurrencePattern")
+    public String getRecurrencePattern() {
+        return recurrencePattern;
+    }
+    public void setRecurrencePattern(String recurrencePattern) {
+        this.recurrencePattern = recurrencePattern;
+    }
+    @DynamoDbAttribute("energyThreshold")
+    public double getEnergyThreshold() {
+        return energyThreshold;
+    }
+    public void setEnergyThreshold(double energyThreshold) {
+        this.energyThreshold = energyThreshold;
+    }
+    @DynamoDbAttribute("comparisonType")
+    public String getComparisonType() {
+        return comparisonType;
+    }
+    public void setComparisonType(String comparisonType) {
+        this.comparisonType = comparisonType;
+    }
+    @DynamoDbAttribute("ruleText")
+    public String getRuleText() {
+        return ruleText;
+    }
+    public void setRuleText(String ruleText) {
+        this.ruleText = ruleText;
+    }
+}
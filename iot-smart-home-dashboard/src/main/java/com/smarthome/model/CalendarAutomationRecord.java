@@ -0,0 +1,46 @@
+package com.smarthome.model;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+@DynamoDbBean
+public class CalendarAutomationRecord {
+    private String deviceType;
+    private String roomName;
+    private String action;
+    private int minutesOffset;
+    public CalendarAutomationRecord() {
+    }
+    public CalendarAutomationRecord(String deviceType, String roomName, String action, int minutesOffset) {
+        this.deviceType = deviceType;
+        this.roomName = roomName;
+        this.action = action;
+        this.minutesOffset = minutesOffset;
+    }
+    @DynamoDbAttribute("deviceType")
+    public String getDeviceType() {
+        return deviceType;
+    }
+    public void setDeviceType(String deviceType) {
+        this.deviceType = deviceType;
+    }
+    @DynamoDbAttribute("roomName")
+    public String getRoomName() {
+        return roomName;
+    }
+    public void setRoomName(String roomName) {
+        this.roomName = roomName;
+    }
+    @DynamoDbAttribute("action")
+    public String getAction() {
+        return action;
+    }
+    public void setAction(String action) {
+        this.action = action;
+    }
+    @DynamoDbAttribute("minutesOffset")
+    public int getMinutesOffset() {
+        return minutesOffset;
+    }
+    public void setMinutesOffset(int minutesOffset) {
+        this.minutesOffset = minutesOffset;
+    }
+}
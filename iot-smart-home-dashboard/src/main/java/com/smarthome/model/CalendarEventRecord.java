@@ -0,0 +1,119 @@
+package com.smarthome.model;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+@DynamoDbBean
+public class CalendarEventRecord {
+    // Fixed-width timestamps keep lexicographic sort-key order equal to start-time order
+    public static final DateTimeFormatter SORT_KEY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    // Recurring series are stored once under this prefix; it sorts after every date key,
+    // so start-time range queries never see them
+    public static final String SERIES_KEY_PREFIX = "SERIES#";
+    private String userEmail;
+    private String eventKey;
+    private String eventId;
+    private String title;
+    private String description;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private String eventType;
+    private boolean recurring;
+    private String recurrencePattern;
+    private List<CalendarAutomationRecord> automationActions;
+    public CalendarEventRecord() {
+        this.automationActions = new ArrayList<>();
+    }
+    public static String sortKeyPrefix(LocalDateTime time) {
+        return time.format(SORT_KEY_FORMAT);
+    }
+    public static String buildEventKey(LocalDateTime startTime, String eventId) {
+        return sortKeyPrefix(startTime) + "#" + eventId;
+    }
+    public static String buildSeriesKey(LocalDateTime startTime, String eventId) {
+        return SERIES_KEY_PREFIX + buildEventKey(startTime, eventId);
+    }
+    @DynamoDbPartitionKey
+    @DynamoDbAttribute("userEmail")
+    public String getUserEmail() {
+        return userEmail;
+    }
+    public void setUserEmail(String userEmail) {
+        this.userEmail = userEmail;
+    }
+    @DynamoDbSortKey
+    @DynamoDbAttribute("eventKey")
+    public String getEventKey() {
+        return eventKey;
+    }
+    public void setEventKey(String eventKey) {
+        this.eventKey = eventKey;
+    }
+    @DynamoDbAttribute("eventId")
+    public String getEventId() {
+        return eventId;
+    }
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+    @DynamoDbAttribute("title")
+    public String getTitle() {
+        return title;
+    }
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    @DynamoDbAttribute("description")
+    public String getDescription() {
+        return description;
+    }
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    @DynamoDbAttribute("startTime")
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+    @DynamoDbAttribute("endTime")
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+    @DynamoDbAttribute("eventType")
+    public String getEventType() {
+        return eventType;
+    }
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+    @DynamoDbAttribute("recurring")
+    public boolean isRecurring() {
+        return recurring;
+    }
+    public void setRecurring(boolean recurring) {
+        this.recurring = recurring;
+    }
+    @DynamoDbAttribute("recurrencePattern")
+    public String getRecurrencePattern() {
+        return recurrencePattern;
+    }
+    public void setRecurrencePattern(String recurrencePattern) {
+        this.recurrencePattern = recurrencePattern;
+    }
+    @DynamoDbAttribute("automationActions")
+    public List<CalendarAutomationRecord> getAutomationActions() {
+        return automationActions;
+    }
+    public void setAutomationActions(List<CalendarAutomationRecord> automationActions) {
+        this.automationActions = automationActions != null ? automationActions : new ArrayList<>();
+    }
+}
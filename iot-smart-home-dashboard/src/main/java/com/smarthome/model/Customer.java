@@ -2,6 +2,7 @@ package com.smarthome.model;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +19,13 @@ public class Customer {
     private int failedLoginAttempts;
     private LocalDateTime accountLockedUntil;
     private LocalDateTime lastFailedLoginTime;
+    private GadgetIndex gadgetIndex;
+    private EnergyTotals energyTotals;
+    private EnergyCube energyCube;
+    // Deleted-device energy of deletedEnergyMonth over the first deletedEnergyRecordCount records
+    private String deletedEnergyMonth;
+    private int deletedEnergyRecordCount;
+    private double deletedEnergyKWh;
     public Customer() {
         this.gadgets = new ArrayList<>();
         this.groupMembers = new ArrayList<>();
@@ -65,6 +73,42 @@ public class Customer {
     }
     public void setGadgets(List<Gadget> gadgets) {
         this.gadgets = gadgets != null ? gadgets : new ArrayList<>();
+        this.gadgetIndex = null;
+        this.energyTotals = null;
+        this.energyCube = null;
+    }
+    @DynamoDbIgnore
+    public GadgetIndex getGadgetIndex() {
+        GadgetIndex index = gadgetIndex;
+        if (index == null || !index.isCurrentFor(gadgets)) {
+            index = new GadgetIndex(gadgets);
+            gadgetIndex = index;
+        }
+        return index;
+    }
+    public void invalidateGadgetIndex() {
+        this.gadgetIndex = null;
+        this.energyTotals = null;
+        this.energyCube = null;
+    }
+    @DynamoDbIgnore
+    public synchronized EnergyTotals getEnergyTotals() {
+        EnergyTotals totals = energyTotals;
+        if (totals == null || !totals.isCurrentFor(gadgets)) {
+            totals = new EnergyTotals(gadgets);
+            energyTotals = totals;
+        }
+        return totals;
+    }
+    // Rebuilt from the devices' hourly history whenever the device list changes or is invalidated
+    @DynamoDbIgnore
+    public synchronized EnergyCube getEnergyCube() {
+        EnergyCube cube = energyCube;
+        if (cube == null || !cube.isCurrentFor(gadgets)) {
+            cube = new EnergyCube(gadgets);
+            energyCube = cube;
+        }
+        return cube;
     }
     public void addGadget(Gadget gadget) {
         if (this.gadgets == null) {
@@ -75,17 +119,23 @@ public class Customer {
                               g.getRoomName().equalsIgnoreCase(gadget.getRoomName()));
         if (!exists) {
             this.gadgets.add(gadget);
+            this.gadgetIndex = null;
+            this.energyTotals = null;
+            this.energyCube = null;
         }
     }
     public Gadget findGadget(String type, String roomName) {
-        if (this.gadgets == null) {
+        if (this.gadgets == null || type == null || roomName == null) {
             return null;
         }
-        return this.gadgets.stream()
-                .filter(g -> g.getType().equalsIgnoreCase(type) && 
-                           g.getRoomName().equalsIgnoreCase(roomName))
-                .findFirst()
-                .orElse(null);
+        Gadget gadget = getGadgetIndex().find(type, roomName);
+        if (gadget != null && !GadgetIndex.deviceKey(gadget.getType(), gadget.getRoomName())
+                                          .equals(GadgetIndex.deviceKey(type, roomName))) {
+            // A gadget was renamed in place without invalidating the index
+            invalidateGadgetIndex();
+            gadget = getGadgetIndex().find(type, roomName);
+        }
+        return gadget;
     }
     public int getFailedLoginAttempts() {
         return failedLoginAttempts;
@@ -171,25 +221,38 @@ public class Customer {
         }
         return deletedDeviceEnergyRecords;
     }
-    public void setDeletedDeviceEnergyRecords(List<DeletedDeviceEnergyRecord> deletedDeviceEnergyRecords) {
+    public synchronized void setDeletedDeviceEnergyRecords(List<DeletedDeviceEnergyRecord> deletedDeviceEnergyRecords) {
         this.deletedDeviceEnergyRecords = deletedDeviceEnergyRecords;
+        this.deletedEnergyMonth = null;
     }
-    public void addDeletedDeviceRecord(DeletedDeviceEnergyRecord record) {
+    public synchronized void addDeletedDeviceRecord(DeletedDeviceEnergyRecord record) {
         if (deletedDeviceEnergyRecords == null) {
             deletedDeviceEnergyRecords = new ArrayList<>();
         }
         deletedDeviceEnergyRecords.add(record);
+        if (deletedEnergyRecordCount == deletedDeviceEnergyRecords.size() - 1) {
+            deletedEnergyRecordCount++;
+            if (record.getDeletionMonth() != null && record.getDeletionMonth().equals(deletedEnergyMonth)) {
+                deletedEnergyKWh += record.getDeletionMonthEnergyKWh();
+            }
+        }
     }
-    public double getTotalDeletedDeviceEnergyForCurrentMonth() {
+    public synchronized double getTotalDeletedDeviceEnergyForCurrentMonth() {
         if (deletedDeviceEnergyRecords == null || deletedDeviceEnergyRecords.isEmpty()) {
             return 0.0;
         }
         LocalDateTime now = LocalDateTime.now();
         String currentMonth = now.getYear() + "-" + String.format("%02d", now.getMonthValue());
-        return deletedDeviceEnergyRecords.stream()
-                .filter(record -> currentMonth.equals(record.getDeletionMonth()))
-                .mapToDouble(DeletedDeviceEnergyRecord::getTotalEnergyConsumedKWh)
-                .sum();
+        if (!currentMonth.equals(deletedEnergyMonth) || deletedEnergyRecordCount != deletedDeviceEnergyRecords.size()) {
+            // New month or records replaced wholesale: take a fresh snapshot, then keep it up to date on add
+            deletedEnergyKWh = deletedDeviceEnergyRecords.stream()
+                    .filter(record -> currentMonth.equals(record.getDeletionMonth()))
+                    .mapToDouble(DeletedDeviceEnergyRecord::getDeletionMonthEnergyKWh)
+                    .sum();
+            deletedEnergyMonth = currentMonth;
+            deletedEnergyRecordCount = deletedDeviceEnergyRecords.size();
+        }
+        return deletedEnergyKWh;
     }
     @DynamoDbAttribute("devicePermissions")
     public List<DevicePermission> getDevicePermissions() {
@@ -2,12 +2,15 @@ package com.smarthome.model;
 import java.time.LocalDateTime;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbAttribute;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
 @DynamoDbBean
 public class DeletedDeviceEnergyRecord {
     private String deviceType;
     private String roomName;
     private String deviceModel;
     private double totalEnergyConsumedKWh;
+    // Null on records written before monthly reports, which fall back to the lifetime total
+    private Double monthEnergyConsumedKWh;
     private long totalUsageMinutes;
     private LocalDateTime deletionTime;
     private LocalDateTime deviceCreationTime;
@@ -19,16 +22,12 @@ public class DeletedDeviceEnergyRecord {
         this.deviceType = device.getType();
         this.roomName = device.getRoomName();
         this.deviceModel = device.getModel();
-        this.totalEnergyConsumedKWh = device.getTotalEnergyConsumedKWh();
-        this.totalUsageMinutes = device.getTotalUsageMinutes();
+        // Includes the session still running when the device is deleted
+        this.totalEnergyConsumedKWh = device.getCurrentTotalEnergyConsumedKWh();
+        this.monthEnergyConsumedKWh = device.getCurrentMonthEnergyKWh();
+        this.totalUsageMinutes = device.getCurrentTotalUsageMinutes();
         this.deletionTime = LocalDateTime.now();
         this.powerRatingWatts = device.getPowerRatingWatts();
-        if (device.isOn() && device.getLastOnTime() != null) {
-            double currentSessionHours = device.getCurrentSessionUsageHours();
-            double currentSessionEnergy = (device.getPowerRatingWatts() / 1000.0) * currentSessionHours;
-            this.totalEnergyConsumedKWh += currentSessionEnergy;
-            this.totalUsageMinutes += (long)(currentSessionHours * 60);
-        }
         this.deletionMonth = deletionTime.getYear() + "-" +
                            String.format("%02d", deletionTime.getMonthValue());
     }
@@ -60,6 +59,18 @@ public class DeletedDeviceEnergyRecord {
     public void setTotalEnergyConsumedKWh(double totalEnergyConsumedKWh) {
         this.totalEnergyConsumedKWh = totalEnergyConsumedKWh;
     }
+    @DynamoDbAttribute("monthEnergyConsumedKWh")
+    public Double getMonthEnergyConsumedKWh() {
+        return monthEnergyConsumedKWh;
+    }
+    public void setMonthEnergyConsumedKWh(Double monthEnergyConsumedKWh) {
+        this.monthEnergyConsumedKWh = monthEnergyConsumedKWh;
+    }
+    // Energy that counts towards the deletion month's bill
+    @DynamoDbIgnore
+    public double getDeletionMonthEnergyKWh() {
+        return monthEnergyConsumedKWh != null ? monthEnergyConsumedKWh : totalEnergyConsumedKWh;
+    }
     @DynamoDbAttribute("totalUsageMinutes")
     public long getTotalUsageMinutes() {
         return totalUsageMinutes;
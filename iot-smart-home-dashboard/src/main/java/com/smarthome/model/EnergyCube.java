@@ -0,0 +1,198 @@
+package com.smarthome.model;
+import com.smarthome.util.EnergyHistory;
+import com.smarthome.util.EnergyRingBuffer;
+import com.smarthome.util.EnergyRollupRing;
+import com.smarthome.util.Tariff;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+public class EnergyCube {
+    // One customer's energy pre-aggregated by room x device type x local hour, for as many hours as the
+    // hourly rollups keep. It is filled once from the devices' hourly history and then follows every
+    // finished session, so analytics queries only add up cells. Running sessions are tracked like in
+    // EnergyTotals and counted up to the time of the query.
+    public enum Dimension {
+        ROOM, TYPE, HOUR_OF_DAY, DAY
+    }
+    public static final class Slice {
+        private double kWh;
+        private long onMinutes;
+        private double costRupees;
+        public double getKWh() {
+            return kWh;
+        }
+        public long getOnMinutes() {
+            return onMinutes;
+        }
+        // Slab cost shared out by kWh plus the time-of-use charges of the slice's own hours
+        public double getCostRupees() {
+            return costRupees;
+        }
+    }
+    private static final class Row {
+        private final String room;
+        private final String type;
+        private final EnergyRollupRing hours;
+        private Row(String room, String type, int capacity) {
+            this.room = room;
+            this.type = type;
+            this.hours = new EnergyRollupRing(capacity);
+        }
+    }
+    private static final class Session {
+        private final Row row;
+        private final long localStart;
+        private final double watts;
+        private Session(Row row, long localStart, double watts) {
+            this.row = row;
+            this.localStart = localStart;
+            this.watts = watts;
+        }
+    }
+    private static final String[] HOUR_KEYS = new String[24];
+    static {
+        for (int hour = 0; hour < 24; hour++) {
+            HOUR_KEYS[hour] = String.format("%02d", hour);
+        }
+    }
+    private final List<Gadget> source;
+    private final int trackedSize;
+    private final int capacityHours;
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+    private final Map<Gadget, Session> running = new IdentityHashMap<>();
+    public EnergyCube(List<Gadget> gadgets) {
+        this.source = gadgets;
+        this.trackedSize = gadgets != null ? gadgets.size() : 0;
+        this.capacityHours = EnergyHistory.configuredRetention(EnergyHistory.Resolution.HOUR);
+        if (gadgets == null) {
+            return;
+        }
+        long newestHour = Math.floorDiv(Gadget.localMillis(Gadget.getClock().millis()), 3_600_000L);
+        long fromHour = newestHour - capacityHours + 1;
+        double[] sums = new double[capacityHours];
+        double[] maxMinutes = new double[capacityHours];
+        long[] onMinutes = new long[capacityHours];
+        for (Gadget gadget : gadgets) {
+            Arrays.fill(sums, 0.0);
+            Arrays.fill(maxMinutes, 0.0);
+            Arrays.fill(onMinutes, 0L);
+            gadget.getUsageHistory().addInto(EnergyHistory.Resolution.HOUR, fromHour, sums, maxMinutes, onMinutes);
+            Row row = rowFor(gadget);
+            for (int i = 0; i < capacityHours; i++) {
+                if (sums[i] > 0 || onMinutes[i] > 0) {
+                    row.hours.add(fromHour + i, sums[i], maxMinutes[i], (int) onMinutes[i]);
+                }
+            }
+            gadget.attachEnergyCube(this);
+            update(gadget);
+        }
+    }
+    public boolean isCurrentFor(List<Gadget> gadgets) {
+        return source == gadgets && trackedSize == (gadgets != null ? gadgets.size() : 0);
+    }
+    private Row rowFor(Gadget gadget) {
+        String room = gadget.getRoomName() != null ? gadget.getRoomName() : "";
+        String type = gadget.getType() != null ? gadget.getType() : "";
+        return rows.computeIfAbsent(room + '\u0000' + type, key -> new Row(room, type, capacityHours));
+    }
+    synchronized void update(Gadget gadget) {
+        if (gadget.hasRunningSession()) {
+            running.put(gadget, new Session(rowFor(gadget), Gadget.localMillis(gadget.getLastOnEpochMillis()), gadget.getPowerRatingWatts()));
+        } else {
+            running.remove(gadget);
+        }
+    }
+    // A finished session of `durationMillis` at `watts` from local epoch millisecond `localStart`
+    synchronized void record(Gadget gadget, long localStart, long durationMillis, double watts) {
+        addSpan(rowFor(gadget).hours, localStart, localStart + durationMillis, watts, Long.MIN_VALUE, Long.MAX_VALUE, null);
+    }
+    // Adds the span's energy (Wh) and on-minutes hour by hour, either into a ring or, for a running
+    // session, into per-hour totals of [fromHour, toHour)
+    private static void addSpan(EnergyRollupRing ring, long start, long end, double watts, long fromHour, long toHour, double[][] into) {
+        for (long t = start; t < end; ) {
+            long hour = Math.floorDiv(t, 3_600_000L);
+            long hourEnd = Math.min(end, (hour + 1) * 3_600_000L);
+            double wattHours = watts * (hourEnd - t) / 3_600_000.0;
+            int minutesOn = (int) (Math.floorDiv(hourEnd - 1, 60_000L) - Math.floorDiv(t, 60_000L) + 1);
+            if (ring != null) {
+                ring.add(hour, wattHours, Math.min(watts / 60.0, wattHours), minutesOn);
+            } else if (hour >= fromHour && hour < toHour) {
+                into[0][(int) (hour - fromHour)] += wattHours;
+                into[1][(int) (hour - fromHour)] += minutesOn;
+            }
+            t = hourEnd;
+        }
+    }
+    public int getCapacityHours() {
+        return capacityHours;
+    }
+    // Rolls the cells of [from, to) up to `by`, keeping only the given room and type (null for all), so
+    // drilling down is the same query with one more filter. Rooms and types come back largest first,
+    // hours of the day and days in order.
+    public synchronized Map<String, Slice> rollUp(Dimension by, LocalDateTime from, LocalDateTime to, String room, String type, Tariff tariff) {
+        long fromHour = Math.floorDiv(EnergyRingBuffer.minuteOf(from), 60L);
+        long toHour = Math.max(fromHour, Math.floorDiv(EnergyRingBuffer.minuteOf(to) + 59, 60L));
+        int hours = (int) Math.min(toHour - fromHour, capacityHours);
+        fromHour = toHour - hours;
+        Map<Row, double[][]> runningByRow = new IdentityHashMap<>();
+        long now = Gadget.localMillis(Gadget.getClock().millis());
+        for (Session session : running.values()) {
+            double[][] totals = runningByRow.computeIfAbsent(session.row, row -> new double[2][hours]);
+            addSpan(null, session.localStart, now, session.watts, fromHour, toHour, totals);
+        }
+        Map<String, Slice> slices = new LinkedHashMap<>();
+        if (by == Dimension.HOUR_OF_DAY) {
+            for (String hour : HOUR_KEYS) {
+                slices.put(hour, new Slice());
+            }
+        }
+        double householdKWh = 0.0;
+        for (Row row : rows.values()) {
+            boolean selected = (room == null || row.room.equalsIgnoreCase(room)) && (type == null || row.type.equalsIgnoreCase(type));
+            double[][] live = runningByRow.get(row);
+            for (int i = 0; i < hours; i++) {
+                long hour = fromHour + i;
+                double kWh = (row.hours.getSum(hour) + (live != null ? live[0][i] : 0.0)) / 1000.0;
+                householdKWh += kWh;
+                long onMinutes = Math.min(60, row.hours.getOnMinutes(hour) + (live != null ? (long) live[1][i] : 0L));
+                if (!selected || (kWh == 0 && onMinutes == 0)) {
+                    continue;
+                }
+                Slice slice = slices.computeIfAbsent(keyOf(by, row, hour), key -> new Slice());
+                slice.kWh += kWh;
+                slice.onMinutes += onMinutes;
+                slice.costRupees += tariff != null ? kWh * tariff.getHourlyAdjustment((int) Math.floorMod(hour, 24L)) : 0.0;
+            }
+        }
+        double slabRate = tariff != null && householdKWh > 0 ? tariff.energyCost(householdKWh) / householdKWh : 0.0;
+        for (Slice slice : slices.values()) {
+            slice.costRupees += slice.kWh * slabRate;
+        }
+        if (by == Dimension.ROOM || by == Dimension.TYPE) {
+            return sorted(slices, (a, b) -> Double.compare(b.getValue().kWh, a.getValue().kWh));
+        }
+        return by == Dimension.DAY ? sorted(slices, Map.Entry.comparingByKey()) : slices;
+    }
+    private static Map<String, Slice> sorted(Map<String, Slice> slices, Comparator<Map.Entry<String, Slice>> order) {
+        List<Map.Entry<String, Slice>> entries = new ArrayList<>(slices.entrySet());
+        entries.sort(order);
+        Map<String, Slice> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, Slice> entry : entries) {
+            ordered.put(entry.getKey(), entry.getValue());
+        }
+        return ordered;
+    }
+    private static String keyOf(Dimension by, Row row, long hour) {
+        switch (by) {
+            case ROOM: return row.room;
+            case TYPE: return row.type;
+            case HOUR_OF_DAY: return HOUR_KEYS[(int) Math.floorMod(hour, 24L)];
+            default: return EnergyRingBuffer.timeOf(hour * 60).toLocalDate().toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.smarthome.model;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+public class EnergyTotals {
+    // Running energy aggregates for one customer's gadgets: the milliwatt-seconds of finished sessions
+    // plus the devices that are on right now. Gadgets report every status or energy change, so a report only
+    // has to price the running sessions instead of walking every device.
+    private static final class Session {
+        private final long start;
+        private final double powerWatts;
+        private Session(long start, double powerWatts) {
+            this.start = start;
+            this.powerWatts = powerWatts;
+        }
+    }
+    private final List<Gadget> source;
+    private final int trackedSize;
+    private static final double MILLIWATT_SECONDS_PER_KWH = 3.6e9;
+    private final Map<Gadget, Long> finishedByGadget = new IdentityHashMap<>();
+    private final Map<Gadget, Session> running = new IdentityHashMap<>();
+    private final Map<Gadget, Long> monthStartByGadget = new IdentityHashMap<>();
+    private long finishedMilliwattSeconds;
+    private long monthStartMilliwattSeconds;
+    // Epoch millis of the next month boundary after the gadgets were last rolled, so a report rolls them
+    // once per month and otherwise compares two longs
+    private volatile long nextRollMillis;
+    public EnergyTotals(List<Gadget> gadgets) {
+        this.source = gadgets;
+        this.trackedSize = gadgets != null ? gadgets.size() : 0;
+        if (gadgets != null) {
+            for (Gadget gadget : gadgets) {
+                gadget.attachEnergyTotals(this);
+                update(gadget);
+            }
+        }
+    }
+    public boolean isCurrentFor(List<Gadget> gadgets) {
+        return source == gadgets && trackedSize == (gadgets != null ? gadgets.size() : 0);
+    }
+    synchronized void update(Gadget gadget) {
+        long finished = gadget.getTotalEnergyMilliwattSeconds();
+        Long before = finishedByGadget.put(gadget, finished);
+        finishedMilliwattSeconds += finished - (before != null ? before : 0L);
+        long monthStart = gadget.getMonthStartMilliwattSeconds();
+        Long monthBefore = monthStartByGadget.put(gadget, monthStart);
+        monthStartMilliwattSeconds += monthStart - (monthBefore != null ? monthBefore : 0L);
+        if (gadget.hasRunningSession()) {
+            running.put(gadget, new Session(gadget.getLastOnEpochMillis(), gadget.getPowerRatingWatts()));
+        } else {
+            running.remove(gadget);
+        }
+    }
+    public synchronized double getFinishedKWh() {
+        return finishedMilliwattSeconds / MILLIWATT_SECONDS_PER_KWH;
+    }
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+    // Finished sessions plus every running session up to `nowMillis` (epoch milliseconds on Gadget's clock)
+    public synchronized double getTotalKWh(long nowMillis) {
+        long total = finishedMilliwattSeconds;
+        for (Session session : running.values()) {
+            total += sessionMilliwattSeconds(session, nowMillis);
+        }
+        return total / MILLIWATT_SECONDS_PER_KWH;
+    }
+    // Energy since the start of the month of `nowMillis`: the month-start snapshots are taken off the
+    // finished total, and running sessions count in full because a roll carries their earlier part
+    public double getMonthKWh(long nowMillis) {
+        if (nowMillis >= nextRollMillis) {
+            List<Gadget> gadgets;
+            synchronized (this) {
+                gadgets = new ArrayList<>(finishedByGadget.keySet());
+            }
+            // Outside the lock: a roll reports back through update()
+            for (Gadget gadget : gadgets) {
+                gadget.rollMonth(nowMillis);
+            }
+            nextRollMillis = Gadget.nextMonthStartMillis(nowMillis);
+        }
+        synchronized (this) {
+            long total = finishedMilliwattSeconds - monthStartMilliwattSeconds;
+            for (Session session : running.values()) {
+                total += sessionMilliwattSeconds(session, nowMillis);
+            }
+            return Math.max(0L, total) / MILLIWATT_SECONDS_PER_KWH;
+        }
+    }
+    public synchronized double getSessionKWh(Gadget gadget, long nowMillis) {
+        Session session = running.get(gadget);
+        return session != null ? sessionMilliwattSeconds(session, nowMillis) / MILLIWATT_SECONDS_PER_KWH : 0.0;
+    }
+    private static long sessionMilliwattSeconds(Session session, long nowMillis) {
+        return Math.round(session.powerWatts * Math.max(0L, nowMillis - session.start));
+    }
+}
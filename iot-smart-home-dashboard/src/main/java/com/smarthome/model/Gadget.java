@@ -1,7 +1,15 @@
 package com.smarthome.model;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
+import com.smarthome.util.AppConfig;
+import com.smarthome.util.EnergyHistory;
+import com.smarthome.util.EnergyRingBuffer;
+import com.smarthome.util.LoadCurve;
+import com.smarthome.util.SessionLog;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
 @DynamoDbBean
 public class Gadget {
     public enum GadgetType {
@@ -15,18 +23,37 @@ public class Gadget {
     private String roomName;
     private String status;
     private double powerRatingWatts;
-    private LocalDateTime lastOnTime;
-    private LocalDateTime lastOffTime;
-    private long totalUsageMinutes;
-    private double totalEnergyConsumedKWh;
+    // Times are epoch milliseconds from `clock`, energy is milliwatt-seconds (watts x milliseconds), so
+    // sessions of any length are counted exactly; minutes, hours and kWh are derived when read
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final double MILLIWATT_SECONDS_PER_KWH = 3.6e9;
+    private static final int DEFAULT_PERSISTED_CHARS = 16_384;
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    private volatile long lastOnMillis = NO_TIME;
+    private volatile long lastOffMillis = NO_TIME;
+    private long totalUsageMillis;
+    private long totalEnergyMilliwattSeconds;
+    // Local month ("yyyy-MM") the energy total was last rolled into, and the total when that month began
+    private String energyMonth;
+    private long monthStartMilliwattSeconds;
+    // Epoch millis of the next month boundary once the month has been checked, so reads before it skip the
+    // check without building any LocalDateTime
+    private volatile long nextMonthStartMillis;
     private LocalDateTime scheduledOnTime;
     private LocalDateTime scheduledOffTime;
     private boolean timerEnabled;
+    // Bumped whenever status or accumulated usage changes, so watchers can skip unchanged devices
+    private final AtomicLong changeVersion = new AtomicLong();
+    // Per-minute energy of finished sessions, created on first use and persisted as a compact block
+    private EnergyHistory usageHistory;
+    // Finished ON/OFF sessions, the input to household load curves
+    private SessionLog sessionLog;
+    // Running totals of the owning customer, told about every change to status, power or energy
+    private volatile EnergyTotals energyTotals;
+    private volatile EnergyCube energyCube;
     public Gadget() {
         this.status = GadgetStatus.OFF.name();
         this.powerRatingWatts = 0.0;
-        this.totalUsageMinutes = 0L;
-        this.totalEnergyConsumedKWh = 0.0;
         this.timerEnabled = false;
     }
     public Gadget(String type, String model, String roomName) {
@@ -35,9 +62,8 @@ public class Gadget {
         this.roomName = roomName;
         this.status = GadgetStatus.OFF.name();
         this.powerRatingWatts = getDefaultPowerRating(type);
-        this.totalUsageMinutes = 0L;
-        this.totalEnergyConsumedKWh = 0.0;
         this.timerEnabled = false;
+        this.energyMonth = monthOf(clock.millis());
     }
     public String getType() {
         return type;
@@ -65,23 +91,26 @@ public class Gadget {
     }
     public void setStatus(String status) {
         this.status = status;
+        changed();
     }
     public boolean isOn() {
         return GadgetStatus.ON.name().equals(this.status);
     }
     public void turnOn() {
         if (!isOn()) {
-            this.lastOnTime = LocalDateTime.now();
+            this.lastOnMillis = clock.millis();
             updateUsageAndEnergy();
         }
         this.status = GadgetStatus.ON.name();
+        changed();
     }
     public void turnOff() {
         if (isOn()) {
-            this.lastOffTime = LocalDateTime.now();
+            this.lastOffMillis = clock.millis();
             updateUsageAndEnergy();
         }
         this.status = GadgetStatus.OFF.name();
+        changed();
     }
     public void toggleStatus() {
         if (isOn()) {
@@ -91,14 +120,72 @@ public class Gadget {
         }
     }
     private void updateUsageAndEnergy() {
-        if (lastOnTime != null && isOn()) {
-            long minutesUsed = ChronoUnit.MINUTES.between(lastOnTime, LocalDateTime.now());
-            totalUsageMinutes += minutesUsed;
-            double hoursUsed = minutesUsed / 60.0;
-            double energyUsed = (powerRatingWatts / 1000.0) * hoursUsed;
-            totalEnergyConsumedKWh += energyUsed;
+        rollMonth(clock.millis());
+        long start = lastOnMillis;
+        if (start != NO_TIME && isOn()) {
+            long millisUsed = Math.max(0L, clock.millis() - start);
+            totalUsageMillis += millisUsed;
+            totalEnergyMilliwattSeconds += Math.round(powerRatingWatts * millisUsed);
+            getUsageHistory().recordSpan(localMillis(start), millisUsed, powerRatingWatts);
+            getSessionLog().add(start, start + millisUsed, powerRatingWatts);
+            EnergyCube cube = energyCube;
+            if (cube != null) {
+                cube.record(this, localMillis(start), millisUsed, powerRatingWatts);
+            }
         }
     }
+    public static Clock getClock() {
+        return clock;
+    }
+    // Tests and simulations can run devices on their own clock
+    public static void setClock(Clock newClock) {
+        clock = newClock != null ? newClock : Clock.systemDefaultZone();
+    }
+    // Epoch milliseconds shifted to local wall-clock time, the time base of EnergyHistory
+    static long localMillis(long epochMillis) {
+        return epochMillis + clock.getZone().getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+    }
+    private static String monthOf(long epochMillis) {
+        LocalDateTime time = toLocalDateTime(epochMillis);
+        return time.getYear() + "-" + String.format("%02d", time.getMonthValue());
+    }
+    static long nextMonthStartMillis(long epochMillis) {
+        return toEpochMillis(toLocalDateTime(epochMillis).toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay());
+    }
+    // Snapshots the energy total when a new month has started, counting the part of a running session
+    // before the month began as last month's. A device saved before months were tracked has no month and
+    // starts counting from now, so its earlier energy, running session included, is not billed to this month.
+    void rollMonth(long nowMillis) {
+        if (nowMillis < nextMonthStartMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (nowMillis < nextMonthStartMillis) {
+                return;
+            }
+            String month = monthOf(nowMillis);
+            long nextMonthStart = nextMonthStartMillis(nowMillis);
+            if (energyMonth != null && month.compareTo(energyMonth) <= 0) {
+                nextMonthStartMillis = nextMonthStart;
+                return;
+            }
+            long countFrom = energyMonth != null
+                    ? toEpochMillis(toLocalDateTime(nowMillis).toLocalDate().withDayOfMonth(1).atStartOfDay())
+                    : nowMillis;
+            long start = lastOnMillis;
+            long carried = isOn() && start != NO_TIME && start < countFrom ? Math.round(powerRatingWatts * (countFrom - start)) : 0L;
+            monthStartMilliwattSeconds = totalEnergyMilliwattSeconds + carried;
+            energyMonth = month;
+            nextMonthStartMillis = nextMonthStart;
+        }
+        notifyEnergyTotals();
+    }
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return epochMillis == NO_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), clock.getZone());
+    }
+    private static long toEpochMillis(LocalDateTime time) {
+        return time == null ? NO_TIME : time.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
     private static double getDefaultPowerRating(String deviceType) {
         switch (deviceType.toUpperCase()) {
             case "TV": return 150.0;
@@ -126,30 +213,69 @@ public class Gadget {
     }
     public void setPowerRatingWatts(double powerRatingWatts) {
         this.powerRatingWatts = powerRatingWatts;
+        notifyEnergyTotals();
     }
     public LocalDateTime getLastOnTime() {
-        return lastOnTime;
+        return toLocalDateTime(lastOnMillis);
     }
     public void setLastOnTime(LocalDateTime lastOnTime) {
-        this.lastOnTime = lastOnTime;
+        this.lastOnMillis = toEpochMillis(lastOnTime);
+        notifyEnergyTotals();
+    }
+    // NO_TIME (Long.MIN_VALUE) when the device has never been turned on
+    @DynamoDbIgnore
+    public long getLastOnEpochMillis() {
+        return lastOnMillis;
     }
     public LocalDateTime getLastOffTime() {
-        return lastOffTime;
+        return toLocalDateTime(lastOffMillis);
     }
     public void setLastOffTime(LocalDateTime lastOffTime) {
-        this.lastOffTime = lastOffTime;
+        this.lastOffMillis = toEpochMillis(lastOffTime);
     }
     public long getTotalUsageMinutes() {
-        return totalUsageMinutes;
+        return totalUsageMillis / 60_000;
     }
     public void setTotalUsageMinutes(long totalUsageMinutes) {
-        this.totalUsageMinutes = totalUsageMinutes;
+        // Keep the sub-minute remainder when the whole minutes are unchanged
+        if (totalUsageMinutes != this.totalUsageMillis / 60_000) {
+            this.totalUsageMillis = totalUsageMinutes * 60_000;
+        }
+        changed();
+    }
+    @DynamoDbIgnore
+    public long getTotalUsageMillis() {
+        return totalUsageMillis;
     }
     public double getTotalEnergyConsumedKWh() {
-        return totalEnergyConsumedKWh;
+        return totalEnergyMilliwattSeconds / MILLIWATT_SECONDS_PER_KWH;
     }
+    // Stored as a double, kWh round-trips to the same milliwatt-seconds for any realistic total
     public void setTotalEnergyConsumedKWh(double totalEnergyConsumedKWh) {
-        this.totalEnergyConsumedKWh = totalEnergyConsumedKWh;
+        this.totalEnergyMilliwattSeconds = Math.round(totalEnergyConsumedKWh * MILLIWATT_SECONDS_PER_KWH);
+        changed();
+    }
+    public String getEnergyMonth() {
+        return energyMonth;
+    }
+    public void setEnergyMonth(String energyMonth) {
+        this.energyMonth = energyMonth;
+        this.nextMonthStartMillis = 0L;
+    }
+    public double getMonthStartEnergyKWh() {
+        return monthStartMilliwattSeconds / MILLIWATT_SECONDS_PER_KWH;
+    }
+    public void setMonthStartEnergyKWh(double monthStartEnergyKWh) {
+        this.monthStartMilliwattSeconds = Math.round(monthStartEnergyKWh * MILLIWATT_SECONDS_PER_KWH);
+        notifyEnergyTotals();
+    }
+    @DynamoDbIgnore
+    public long getMonthStartMilliwattSeconds() {
+        return monthStartMilliwattSeconds;
+    }
+    @DynamoDbIgnore
+    public long getTotalEnergyMilliwattSeconds() {
+        return totalEnergyMilliwattSeconds;
     }
     public LocalDateTime getScheduledOnTime() {
         return scheduledOnTime;
@@ -169,34 +295,164 @@ public class Gadget {
     public void setTimerEnabled(boolean timerEnabled) {
         this.timerEnabled = timerEnabled;
     }
+    @DynamoDbIgnore
+    public long getChangeVersion() {
+        return changeVersion.get();
+    }
+    private void changed() {
+        changeVersion.incrementAndGet();
+        notifyEnergyTotals();
+    }
+    private void notifyEnergyTotals() {
+        EnergyTotals totals = energyTotals;
+        if (totals != null) {
+            totals.update(this);
+        }
+        EnergyCube cube = energyCube;
+        if (cube != null) {
+            cube.update(this);
+        }
+    }
+    void attachEnergyTotals(EnergyTotals totals) {
+        this.energyTotals = totals;
+    }
+    void attachEnergyCube(EnergyCube cube) {
+        this.energyCube = cube;
+    }
+    @DynamoDbIgnore
+    public synchronized EnergyHistory getUsageHistory() {
+        if (usageHistory == null) {
+            usageHistory = EnergyHistory.fromConfig();
+        }
+        return usageHistory;
+    }
+    // Devices are stored inside their owner's item, which DynamoDB caps at 400 KB, so the history blocks
+    // share energy.persist.max.chars per device and drop their oldest data to fit: a quarter for minute
+    // samples, half for rollups and a quarter for sessions. Memory keeps the full history until a reload.
+    private static int persistedChars() {
+        return Math.max(1024, AppConfig.getInt("energy.persist.max.chars", DEFAULT_PERSISTED_CHARS));
+    }
+    public synchronized String getUsageSamples() {
+        return usageHistory != null ? usageHistory.encodeMinutes(persistedChars() / 4) : null;
+    }
+    public synchronized void setUsageSamples(String usageSamples) {
+        try {
+            getUsageHistory().restoreMinutes(usageSamples);
+        } catch (RuntimeException e) {
+            System.err.println("Discarding unreadable usage samples for " + type + " in " + roomName + ": " + e.getMessage());
+            getUsageHistory().restoreMinutes(null);
+        }
+    }
+    public synchronized String getUsageRollups() {
+        return usageHistory != null ? usageHistory.encodeRollups(persistedChars() / 2) : null;
+    }
+    public synchronized void setUsageRollups(String usageRollups) {
+        try {
+            getUsageHistory().restoreRollups(usageRollups);
+        } catch (RuntimeException e) {
+            System.err.println("Discarding unreadable usage rollups for " + type + " in " + roomName + ": " + e.getMessage());
+        }
+    }
+    @DynamoDbIgnore
+    public synchronized SessionLog getSessionLog() {
+        if (sessionLog == null) {
+            sessionLog = new SessionLog(SessionLog.configuredCapacity());
+        }
+        return sessionLog;
+    }
+    public synchronized String getUsageSessions() {
+        return sessionLog != null ? sessionLog.encode(persistedChars() / 4) : null;
+    }
+    public synchronized void setUsageSessions(String usageSessions) {
+        try {
+            sessionLog = SessionLog.decode(usageSessions, SessionLog.configuredCapacity());
+        } catch (RuntimeException e) {
+            System.err.println("Discarding unreadable usage sessions for " + type + " in " + roomName + ": " + e.getMessage());
+            sessionLog = null;
+        }
+    }
+    // Adds this device's logged sessions and the one still running to a load curve
+    public void addSessionsTo(LoadCurve.Builder builder, int owner) {
+        getSessionLog().addTo(builder, owner);
+        long start = lastOnMillis;
+        if (isOn() && start != NO_TIME) {
+            builder.add(owner, start, start + getCurrentSessionMillis(), powerRatingWatts);
+        }
+    }
+    // Energy in Wh per bucket of `bucketMinutes` starting at `from`, including the session still running
+    public double[] getEnergyCurveWh(LocalDateTime from, int bucketMinutes, int buckets) {
+        double[] curve = new double[buckets];
+        long fromMinute = EnergyRingBuffer.minuteOf(from);
+        getUsageHistory().getMinutes().addBucketSums(fromMinute, bucketMinutes, curve);
+        long sessionStart = lastOnMillis;
+        if (isOn() && sessionStart != NO_TIME) {
+            long fromMillis = fromMinute * 60_000;
+            long start = Math.max(localMillis(sessionStart), fromMillis);
+            long end = Math.min(localMillis(sessionStart) + getCurrentSessionMillis(), fromMillis + (long) bucketMinutes * buckets * 60_000);
+            double wattHoursPerMilli = powerRatingWatts / 3_600_000.0;
+            while (start < end) {
+                int bucket = (int) ((start - fromMillis) / (bucketMinutes * 60_000L));
+                long bucketEnd = Math.min(end, fromMillis + (bucket + 1L) * bucketMinutes * 60_000);
+                curve[bucket] += (bucketEnd - start) * wattHoursPerMilli;
+                start = bucketEnd;
+            }
+        }
+        return curve;
+    }
+    // Adds this device's energy (Wh), busiest minute (Wh) and on-minutes for `sums.length` buckets of the
+    // resolution starting at fromBucket, including the session still running
+    public void addUsageInto(EnergyHistory.Resolution resolution, long fromBucket, double[] sums, double[] maxMinutes, long[] onMinutes) {
+        getUsageHistory().addInto(resolution, fromBucket, sums, maxMinutes, onMinutes);
+        long sessionStart = lastOnMillis;
+        if (!isOn() || sessionStart == NO_TIME) {
+            return;
+        }
+        long start = localMillis(sessionStart);
+        long end = start + getCurrentSessionMillis();
+        double wattHoursPerMilli = powerRatingWatts / 3_600_000.0;
+        for (int i = 0; i < sums.length; i++) {
+            long bucketStart = Math.max(start, resolution.startMinuteOf(fromBucket + i) * 60_000);
+            long bucketEnd = Math.min(end, resolution.startMinuteOf(fromBucket + i + 1) * 60_000);
+            if (bucketStart < bucketEnd) {
+                sums[i] += (bucketEnd - bucketStart) * wattHoursPerMilli;
+                maxMinutes[i] = Math.max(maxMinutes[i], Math.min(60_000, bucketEnd - bucketStart) * wattHoursPerMilli);
+                onMinutes[i] += Math.floorDiv(bucketEnd - 1, 60_000) - Math.floorDiv(bucketStart, 60_000) + 1;
+            }
+        }
+    }
     public String getUsageTimeFormatted() {
-        long hours = totalUsageMinutes / 60;
-        long minutes = totalUsageMinutes % 60;
-        return String.format("%dh %02dm", hours, minutes);
+        long totalMinutes = getTotalUsageMinutes();
+        return String.format("%dh %02dm", totalMinutes / 60, totalMinutes % 60);
+    }
+    @DynamoDbIgnore
+    public boolean hasRunningSession() {
+        return isOn() && lastOnMillis != NO_TIME;
+    }
+    @DynamoDbIgnore
+    public long getCurrentSessionMillis() {
+        long start = lastOnMillis;
+        return isOn() && start != NO_TIME ? Math.max(0L, clock.millis() - start) : 0L;
+    }
+    @DynamoDbIgnore
+    public long getCurrentSessionMilliwattSeconds() {
+        return Math.round(powerRatingWatts * getCurrentSessionMillis());
     }
     public double getCurrentSessionUsageHours() {
-        if (isOn() && lastOnTime != null) {
-            long currentMinutes = ChronoUnit.MINUTES.between(lastOnTime, LocalDateTime.now());
-            return currentMinutes / 60.0;
-        }
-        return 0.0;
+        return getCurrentSessionMillis() / 3_600_000.0;
     }
     public double getCurrentTotalEnergyConsumedKWh() {
-        double baseEnergy = totalEnergyConsumedKWh;
-        if (isOn() && lastOnTime != null) {
-            double currentSessionHours = getCurrentSessionUsageHours();
-            double currentSessionEnergy = (powerRatingWatts / 1000.0) * currentSessionHours;
-            baseEnergy += currentSessionEnergy;
-        }
-        return baseEnergy;
+        return (totalEnergyMilliwattSeconds + getCurrentSessionMilliwattSeconds()) / MILLIWATT_SECONDS_PER_KWH;
+    }
+    // This month's energy including the running session
+    @DynamoDbIgnore
+    public double getCurrentMonthEnergyKWh() {
+        rollMonth(clock.millis());
+        // Below zero while a session carried over from last month is running, until that session is added
+        long month = totalEnergyMilliwattSeconds - monthStartMilliwattSeconds + getCurrentSessionMilliwattSeconds();
+        return Math.max(0L, month) / MILLIWATT_SECONDS_PER_KWH;
     }
     public long getCurrentTotalUsageMinutes() {
-        long baseUsage = totalUsageMinutes;
-        if (isOn() && lastOnTime != null) {
-            long currentMinutes = ChronoUnit.MINUTES.between(lastOnTime, LocalDateTime.now());
-            baseUsage += currentMinutes;
-        }
-        return baseUsage;
+        return (totalUsageMillis + getCurrentSessionMillis()) / 60_000;
     }
     public String getCurrentUsageTimeFormatted() {
         long totalCurrentMinutes = getCurrentTotalUsageMinutes();
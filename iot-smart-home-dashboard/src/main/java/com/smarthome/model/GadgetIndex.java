@@ -0,0 +1,66 @@
+package com.smarthome.model;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+public class GadgetIndex {
+    private final List<Gadget> source;
+    private final int indexedSize;
+    private final Map<String, Gadget> byDeviceKey;
+    private final Map<String, List<Gadget>> byRoom;
+    private final Map<String, List<Gadget>> byType;
+    public GadgetIndex(List<Gadget> gadgets) {
+        this.source = gadgets;
+        this.indexedSize = gadgets != null ? gadgets.size() : 0;
+        this.byDeviceKey = new HashMap<>();
+        this.byRoom = new HashMap<>();
+        this.byType = new HashMap<>();
+        if (gadgets != null) {
+            for (Gadget gadget : gadgets) {
+                if (gadget.getType() == null || gadget.getRoomName() == null) {
+                    continue;
+                }
+                String type = normalize(gadget.getType());
+                String room = normalize(gadget.getRoomName());
+                byDeviceKey.putIfAbsent(deviceKey(type, room), gadget);
+                byRoom.computeIfAbsent(room, k -> new ArrayList<>()).add(gadget);
+                byType.computeIfAbsent(type, k -> new ArrayList<>()).add(gadget);
+            }
+        }
+    }
+    public static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+    public static String deviceKey(String deviceType, String roomName) {
+        return normalize(deviceType) + "|" + normalize(roomName);
+    }
+    public boolean isCurrentFor(List<Gadget> gadgets) {
+        return source == gadgets && indexedSize == (gadgets != null ? gadgets.size() : 0);
+    }
+    public Gadget find(String deviceType, String roomName) {
+        return byDeviceKey.get(deviceKey(deviceType, roomName));
+    }
+    public List<Gadget> findByRoom(String roomName) {
+        return Collections.unmodifiableList(byRoom.getOrDefault(normalize(roomName), Collections.emptyList()));
+    }
+    public List<Gadget> findByType(String deviceType) {
+        return Collections.unmodifiableList(byType.getOrDefault(normalize(deviceType), Collections.emptyList()));
+    }
+    public List<Gadget> select(String deviceType, String roomName) {
+        boolean anyType = deviceType == null || deviceType.trim().isEmpty();
+        boolean anyRoom = roomName == null || roomName.trim().isEmpty();
+        if (!anyType && !anyRoom) {
+            Gadget gadget = find(deviceType, roomName);
+            return gadget != null ? List.of(gadget) : Collections.emptyList();
+        }
+        if (!anyRoom) {
+            return findByRoom(roomName);
+        }
+        if (!anyType) {
+            return findByType(deviceType);
+        }
+        return source != null ? Collections.unmodifiableList(source) : Collections.emptyList();
+    }
+}
@@ -0,0 +1,351 @@
+package com.smarthome.service;
+
+import com.smarthome.model.AlertNotificationRecord;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drains the alert outbox to the registered sinks on a background thread. Delivery is at-least-once:
+// a notification leaves the outbox only after every sink has accepted it, and failed sinks are retried
+// with backoff. Sinks that already accepted a notification are not sent it again.
+public class AlertNotificationDispatcher {
+    private static final int BATCH_SIZE = 50;
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int DELIVERED_MEMORY = 10_000;
+    private static final long IDLE_WAIT_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 5 * 60 * 1000;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    public interface NotificationSink {
+        String getName();
+
+        // Throwing marks the whole batch as not delivered to this sink; it is retried later
+        void deliver(List<AlertNotificationRecord> batch) throws Exception;
+    }
+
+    public static class ConsoleSink implements NotificationSink {
+        @Override
+        public String getName() { return "console"; }
+
+        @Override
+        public void deliver(List<AlertNotificationRecord> batch) {
+            for (AlertNotificationRecord notification : batch) {
+                StringBuilder banner = new StringBuilder();
+                banner.append("\n").append("=".repeat(60)).append("\n");
+                banner.append("        DEVICE ALERT TRIGGERED!\n");
+                banner.append("=".repeat(60)).append("\n");
+                banner.append("Alert Name: ").append(notification.getAlertName()).append("\n");
+                banner.append("Device: ").append(notification.getDeviceType()).append(" in ").append(notification.getRoomName()).append("\n");
+                banner.append("Type: ").append(notification.getAlertType().replace("_", " ")).append("\n");
+                banner.append("Condition: ").append(notification.getCondition()).append("\n");
+                banner.append("Message: ").append(notification.getMessage()).append("\n");
+                banner.append("Triggered: ").append(notification.getTriggeredAt().format(TIME_FORMAT)).append("\n");
+                banner.append("Reason: ").append(notification.getReason()).append("\n");
+                banner.append("=".repeat(60)).append("\n");
+                if (notification.isAutoDeleted()) {
+                    banner.append("✅ Alert automatically deleted after triggering\n");
+                    banner.append("This was a one-time alert and has been automatically removed.\n");
+                } else {
+                    banner.append("(This alert is for notification only - no automatic actions will be taken)\n");
+                }
+                System.out.print(banner);
+            }
+        }
+    }
+
+    // Appends one tab-separated line per notification
+    public static class FileSink implements NotificationSink {
+        private final Path path;
+
+        public FileSink(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public String getName() { return "file:" + path; }
+
+        @Override
+        public void deliver(List<AlertNotificationRecord> batch) throws IOException {
+            List<String> lines = new ArrayList<>(batch.size());
+            for (AlertNotificationRecord notification : batch) {
+                lines.add(String.join("\t", notification.getTriggeredAt().format(TIME_FORMAT), notification.getNotificationId(),
+                                      notification.getUserEmail(), notification.getAlertType(), notification.getAlertName(),
+                                      notification.getDeviceType() + " in " + notification.getRoomName(),
+                                      notification.getReason().replace('\t', ' ').replace('\n', ' ')));
+            }
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(path, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    // Stands in for a local webhook receiver: keeps the JSON payloads it accepted and, like a real
+    // receiver, drops redeliveries by their idempotency key. Can be switched off to simulate an outage.
+    public static class WebhookStubSink implements NotificationSink {
+        private final List<String> payloads = new CopyOnWriteArrayList<>();
+        private final Set<String> receivedKeys = ConcurrentHashMap.newKeySet();
+        private volatile boolean available = true;
+
+        @Override
+        public String getName() { return "webhook"; }
+
+        public void setAvailable(boolean available) { this.available = available; }
+        public List<String> getPayloads() { return Collections.unmodifiableList(payloads); }
+
+        @Override
+        public void deliver(List<AlertNotificationRecord> batch) throws IOException {
+            if (!available) {
+                throw new IOException("Webhook endpoint unavailable");
+            }
+            for (AlertNotificationRecord notification : batch) {
+                if (receivedKeys.add(AlertStore.outboxKey(notification))) {
+                    payloads.add(toJson(notification));
+                }
+            }
+        }
+
+        private static String toJson(AlertNotificationRecord notification) {
+            return "{\"idempotencyKey\":\"" + escape(AlertStore.outboxKey(notification)) + "\"" +
+                   ",\"alertId\":\"" + escape(notification.getAlertId()) + "\"" +
+                   ",\"alertName\":\"" + escape(notification.getAlertName()) + "\"" +
+                   ",\"type\":\"" + escape(notification.getAlertType()) + "\"" +
+                   ",\"device\":\"" + escape(notification.getDeviceType() + " in " + notification.getRoomName()) + "\"" +
+                   ",\"message\":\"" + escape(notification.getMessage()) + "\"" +
+                   ",\"reason\":\"" + escape(notification.getReason()) + "\"" +
+                   ",\"triggeredAt\":\"" + notification.getTriggeredAt() + "\"}";
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            StringBuilder escaped = new StringBuilder(value.length());
+            for (char c : value.toCharArray()) {
+                switch (c) {
+                    case '"': escaped.append("\\\""); break;
+                    case '\\': escaped.append("\\\\"); break;
+                    case '\n': escaped.append("\\n"); break;
+                    case '\r': escaped.append("\\r"); break;
+                    case '\t': escaped.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            escaped.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            escaped.append(c);
+                        }
+                }
+            }
+            return escaped.toString();
+        }
+    }
+
+    private final AlertStore store;
+    private final long initialRetryDelayMillis;
+    private final List<NotificationSink> sinks = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<AlertNotificationRecord> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    // Outbox keys that are queued, being delivered or waiting for a retry
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    private final Object dispatchLock = new Object();
+    // Only touched while holding dispatchLock
+    private final PriorityQueue<AlertNotificationRecord> retries =
+        new PriorityQueue<>(Comparator.comparingLong(AlertNotificationRecord::getNextAttemptAt));
+    // Recently completed outbox keys, so duplicates of a delivered notification are dropped
+    private final Map<String, Boolean> recentlyDelivered = Collections.synchronizedMap(
+        new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > DELIVERED_MEMORY;
+            }
+        });
+    private volatile boolean recoveryNeeded = true;
+    private volatile Thread worker;
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedDeliveries = new AtomicLong();
+
+    public AlertNotificationDispatcher(AlertStore store, long initialRetryDelayMillis) {
+        this.store = store;
+        this.initialRetryDelayMillis = Math.max(1, initialRetryDelayMillis);
+    }
+
+    public void addSink(NotificationSink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(NotificationSink sink) {
+        sinks.remove(sink);
+    }
+
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::runLoop, "alert-notification-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    // Never blocks: when the in-memory queue is full the notification stays in the outbox and is
+    // picked up by the next recovery scan
+    public void submit(AlertNotificationRecord notification) {
+        String key = AlertStore.outboxKey(notification);
+        if (recentlyDelivered.containsKey(key) || !pendingKeys.add(key)) {
+            return;
+        }
+        if (!queue.offer(notification)) {
+            pendingKeys.remove(key);
+            recoveryNeeded = true;
+        }
+    }
+
+    // Re-reads undelivered notifications from the outbox on the next round, e.g. after a restart
+    public void requestRecovery() {
+        recoveryNeeded = true;
+    }
+
+    public int getPendingCount() { return pendingKeys.size(); }
+    public long getDeliveredCount() { return deliveredCount.get(); }
+    public long getFailedDeliveries() { return failedDeliveries.get(); }
+
+    // Waits until nothing is queued or waiting for a retry; returns false on timeout
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!pendingKeys.isEmpty() || recoveryNeeded) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    // Runs one delivery round on the calling thread; returns how many notifications left the outbox
+    public int dispatchPending() {
+        return dispatch(queue.poll());
+    }
+
+    private void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                AlertNotificationRecord first = queue.poll(millisUntilNextRetry(), TimeUnit.MILLISECONDS);
+                dispatch(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                System.err.println("Error dispatching alert notifications: " + e.getMessage());
+            }
+        }
+    }
+
+    private long millisUntilNextRetry() {
+        if (recoveryNeeded) {
+            return 0;
+        }
+        synchronized (dispatchLock) {
+            AlertNotificationRecord next = retries.peek();
+            if (next == null) {
+                return IDLE_WAIT_MILLIS;
+            }
+            return Math.max(0, Math.min(IDLE_WAIT_MILLIS, next.getNextAttemptAt() - System.currentTimeMillis()));
+        }
+    }
+
+    private int dispatch(AlertNotificationRecord first) {
+        synchronized (dispatchLock) {
+            if (recoveryNeeded) {
+                recover();
+            }
+            List<AlertNotificationRecord> batch = new ArrayList<>(BATCH_SIZE);
+            if (first != null) {
+                batch.add(first);
+            }
+            queue.drainTo(batch, BATCH_SIZE - batch.size());
+            long now = System.currentTimeMillis();
+            while (batch.size() < BATCH_SIZE && !retries.isEmpty() && retries.peek().getNextAttemptAt() <= now) {
+                batch.add(retries.poll());
+            }
+            return batch.isEmpty() ? 0 : deliver(batch, now);
+        }
+    }
+
+    private void recover() {
+        recoveryNeeded = false;
+        for (AlertNotificationRecord notification : store.findPendingNotifications(QUEUE_CAPACITY)) {
+            String key = AlertStore.outboxKey(notification);
+            if (!recentlyDelivered.containsKey(key) && pendingKeys.add(key)) {
+                retries.add(notification);
+            }
+        }
+    }
+
+    private int deliver(List<AlertNotificationRecord> batch, long now) {
+        List<String> sinkNames = new ArrayList<>();
+        for (NotificationSink sink : sinks) {
+            sinkNames.add(sink.getName());
+            List<AlertNotificationRecord> undelivered = new ArrayList<>();
+            for (AlertNotificationRecord notification : batch) {
+                if (!notification.getDeliveredSinks().contains(sink.getName())) {
+                    undelivered.add(notification);
+                }
+            }
+            if (undelivered.isEmpty()) {
+                continue;
+            }
+            try {
+                sink.deliver(undelivered);
+                for (AlertNotificationRecord notification : undelivered) {
+                    notification.getDeliveredSinks().add(sink.getName());
+                }
+            } catch (Exception e) {
+                failedDeliveries.addAndGet(undelivered.size());
+                System.err.println("[WARNING] Alert sink '" + sink.getName() + "' failed, will retry: " + e.getMessage());
+            }
+        }
+
+        int completed = 0;
+        for (AlertNotificationRecord notification : batch) {
+            String key = AlertStore.outboxKey(notification);
+            if (notification.getDeliveredSinks().containsAll(sinkNames)) {
+                store.deleteNotification(notification);
+                recentlyDelivered.put(key, Boolean.TRUE);
+                pendingKeys.remove(key);
+                deliveredCount.incrementAndGet();
+                completed++;
+            } else {
+                int attempts = notification.getAttempts() + 1;
+                notification.setAttempts(attempts);
+                long delay = Math.min(MAX_RETRY_DELAY_MILLIS, initialRetryDelayMillis << Math.min(attempts - 1, 20));
+                notification.setNextAttemptAt(now + delay);
+                // Remember which sinks already have it, so a restart only retries the failed ones
+                store.saveNotification(notification);
+                retries.add(notification);
+            }
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,179 @@
+package com.smarthome.service;
+
+import com.smarthome.util.AppConfig;
+import com.smarthome.util.LongLongHashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+// Decides whether an alert may fire and whether its notification may go out.
+//
+// Level conditions (energy thresholds, rules) are edge-triggered: an alert fires when its condition
+// turns true, and while it stays true a repeat is suppressed until the suppression window has passed.
+// Notifications are then limited by two token buckets, one per user and one per alert.
+//
+// All state is kept in primitive long->long maps keyed by 64-bit hashes of the user and alert ids.
+// Each bucket is one packed long, so absorbing an alert storm costs a few array reads per trigger.
+public class AlertRateLimiter {
+    // Bucket layout: high 44 bits are the last refill time (ms on the limiter clock), low 20 bits
+    // are the tokens in thousandths, which caps a burst at 1000 notifications
+    private static final int TOKEN_BITS = 20;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI_TOKENS_PER_TOKEN = 1000;
+    private static final int MAX_BURST = (int) (TOKEN_MASK / MILLI_TOKENS_PER_TOKEN);
+    // Condition layout: bit 0 is the last observed condition, the rest is the last fire time + 1
+    // (so 0 means the alert never fired)
+    private static final long CONDITION_TRUE = 1L;
+    private static final long USER_SALT = 0x5F3759DFL;
+
+    private final int userBurst;
+    private final int userRefillPerMinute;
+    private final int alertBurst;
+    private final int alertRefillPerMinute;
+    private final long suppressionWindowMillis;
+    private final LongSupplier clock;
+    private final LongLongHashMap userBuckets = new LongLongHashMap();
+    private final LongLongHashMap alertBuckets = new LongLongHashMap();
+    private final LongLongHashMap conditionStates = new LongLongHashMap();
+    private final LongLongHashMap suppressedSinceLastNotification = new LongLongHashMap();
+    private long suppressedTotal;
+
+    public AlertRateLimiter(int userBurst, int userRefillPerMinute, int alertBurst, int alertRefillPerMinute,
+                            long suppressionWindowMillis, LongSupplier clock) {
+        if (userBurst < 1 || alertBurst < 1 || userBurst > MAX_BURST || alertBurst > MAX_BURST) {
+            throw new IllegalArgumentException("Bursts must be between 1 and " + MAX_BURST);
+        }
+        this.userBurst = userBurst;
+        this.userRefillPerMinute = Math.max(0, userRefillPerMinute);
+        this.alertBurst = alertBurst;
+        this.alertRefillPerMinute = Math.max(0, alertRefillPerMinute);
+        this.suppressionWindowMillis = Math.max(0, suppressionWindowMillis);
+        this.clock = clock;
+    }
+
+    public static AlertRateLimiter fromConfig() {
+        long start = System.nanoTime();
+        return new AlertRateLimiter(
+            AppConfig.getInt("alerts.ratelimit.user.burst", 30),
+            AppConfig.getInt("alerts.ratelimit.user.per.minute", 30),
+            AppConfig.getInt("alerts.ratelimit.alert.burst", 3),
+            AppConfig.getInt("alerts.ratelimit.alert.per.minute", 1),
+            AppConfig.getLong("alerts.suppression.window.seconds", 1800) * 1000,
+            () -> (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Records the latest evaluation of a level condition; true means the alert should fire now
+    public synchronized boolean admitCondition(String userEmail, String alertId, boolean conditionMet) {
+        long key = alertKey(userEmail, alertId);
+        long previous = conditionStates.get(key, 0);
+        long lastFire = (previous >>> 1) - 1;
+        if (!conditionMet) {
+            if ((previous & CONDITION_TRUE) != 0) {
+                conditionStates.put(key, previous & ~CONDITION_TRUE);
+            }
+            return false;
+        }
+        long now = clock.getAsLong();
+        boolean risingEdge = (previous & CONDITION_TRUE) == 0;
+        if (!risingEdge && lastFire >= 0 && now - lastFire < suppressionWindowMillis) {
+            suppressedTotal++;
+            return false;
+        }
+        conditionStates.put(key, ((now + 1) << 1) | CONDITION_TRUE);
+        return true;
+    }
+
+    // Takes one token from both the user's and the alert's bucket, or neither
+    public synchronized boolean tryAcquire(String userEmail, String alertId) {
+        long now = clock.getAsLong();
+        long userKey = userKey(userEmail);
+        long alertKey = alertKey(userEmail, alertId);
+        long userBucket = refill(userBuckets.get(userKey, full(userBurst, now)), userBurst, userRefillPerMinute, now);
+        long alertBucket = refill(alertBuckets.get(alertKey, full(alertBurst, now)), alertBurst, alertRefillPerMinute, now);
+        if ((userBucket & TOKEN_MASK) < MILLI_TOKENS_PER_TOKEN || (alertBucket & TOKEN_MASK) < MILLI_TOKENS_PER_TOKEN) {
+            userBuckets.put(userKey, userBucket);
+            alertBuckets.put(alertKey, alertBucket);
+            suppressedSinceLastNotification.addTo(userKey, 1);
+            suppressedTotal++;
+            return false;
+        }
+        userBuckets.put(userKey, userBucket - MILLI_TOKENS_PER_TOKEN);
+        alertBuckets.put(alertKey, alertBucket - MILLI_TOKENS_PER_TOKEN);
+        return true;
+    }
+
+    // Returns how many of the user's notifications were dropped since the last one that went out, and resets it
+    public synchronized long takeSuppressedCount(String userEmail) {
+        long userKey = userKey(userEmail);
+        long count = suppressedSinceLastNotification.get(userKey, 0);
+        if (count > 0) {
+            suppressedSinceLastNotification.remove(userKey);
+        }
+        return count;
+    }
+
+    // The next true evaluation counts as a new edge, e.g. after the alert is re-activated
+    public synchronized void resetCondition(String userEmail, String alertId) {
+        conditionStates.remove(alertKey(userEmail, alertId));
+    }
+
+    public synchronized void forget(String userEmail, String alertId) {
+        long key = alertKey(userEmail, alertId);
+        conditionStates.remove(key);
+        alertBuckets.remove(key);
+    }
+
+    public synchronized long getSuppressedTotal() {
+        return suppressedTotal;
+    }
+
+    public synchronized int getTrackedAlertCount() {
+        return Math.max(conditionStates.size(), alertBuckets.size());
+    }
+
+    private static long full(int burst, long now) {
+        return (now << TOKEN_BITS) | (burst * MILLI_TOKENS_PER_TOKEN);
+    }
+
+    private static long refill(long bucket, int burst, int refillPerMinute, long now) {
+        long last = bucket >>> TOKEN_BITS;
+        long tokens = bucket & TOKEN_MASK;
+        long capacity = burst * MILLI_TOKENS_PER_TOKEN;
+        long elapsed = now - last;
+        if (elapsed <= 0 || tokens >= capacity) {
+            return (Math.max(now, last) << TOKEN_BITS) | Math.min(tokens, capacity);
+        }
+        // refillPerMinute tokens per 60000 ms is refillPerMinute / 60 milli-tokens per ms
+        long added = elapsed * refillPerMinute / 60;
+        if (added == 0) {
+            // Keep the old timestamp so sub-token progress accumulates across calls
+            return bucket;
+        }
+        return (now << TOKEN_BITS) | Math.min(capacity, tokens + added);
+    }
+
+    private static long userKey(String userEmail) {
+        return nonZero(hash64(userEmail) ^ USER_SALT);
+    }
+
+    private static long alertKey(String userEmail, String alertId) {
+        return nonZero(hash64(userEmail) * 31 + hash64(alertId));
+    }
+
+    // FNV-1a over UTF-8 with a final avalanche step; 64 bits make collisions between a home's
+    // alerts practically impossible, and a collision would only make two alerts share a bucket
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : (value != null ? value : "").getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long nonZero(long key) {
+        return key != 0 ? key : 1;
+    }
+}
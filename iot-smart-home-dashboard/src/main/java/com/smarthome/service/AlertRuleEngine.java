@@ -0,0 +1,606 @@
+package com.smarthome.service;
+
+import com.smarthome.model.Gadget;
+import com.smarthome.model.GadgetIndex;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Compiles alert rules such as "AC in Master Bedroom ON for > 3h AND outside temp < 20" into
+// predicate trees. Nodes are hash-consed per engine, so a sub-expression shared by many rules
+// exists once and is evaluated at most once per tick.
+//
+// Grammar (keywords are case-insensitive):
+//   expr      := term (OR term)*
+//   term      := factor (AND factor)*
+//   factor    := NOT factor | '(' expr ')' | condition
+//   condition := TYPE IN ROOM (ON | OFF) [FOR cmp duration]
+//              | TYPE IN ROOM (ENERGY | USAGE) cmp number [KWH]
+//              | [OUTSIDE] (TEMP | TEMPERATURE) cmp number
+//              | HUMIDITY cmp number | AQI cmp number
+//              | WEATHER IS word
+//              | TIME BETWEEN hh:mm AND hh:mm
+public class AlertRuleEngine {
+
+    public enum Comparison {
+        GREATER_THAN(">"), GREATER_OR_EQUAL(">="), LESS_THAN("<"), LESS_OR_EQUAL("<="), EQUALS("="), NOT_EQUALS("!=");
+
+        private final String symbol;
+
+        Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() { return symbol; }
+
+        public boolean test(double value, double threshold) {
+            switch (this) {
+                case GREATER_THAN: return value > threshold;
+                case GREATER_OR_EQUAL: return value >= threshold;
+                case LESS_THAN: return value < threshold;
+                case LESS_OR_EQUAL: return value <= threshold;
+                case EQUALS: return Math.abs(value - threshold) < 0.01;
+                default: return Math.abs(value - threshold) >= 0.01;
+            }
+        }
+
+        public static Comparison fromSymbol(String symbol) {
+            String normalized = "==".equals(symbol) ? "=" : symbol;
+            for (Comparison comparison : values()) {
+                if (comparison.symbol.equals(normalized)) {
+                    return comparison;
+                }
+            }
+            throw new IllegalArgumentException("Unknown comparison: " + symbol);
+        }
+
+        // Maps the legacy EnergyUsageAlert comparison names; returns null for anything else
+        public static Comparison fromType(String comparisonType) {
+            if (comparisonType == null) {
+                return null;
+            }
+            try {
+                return valueOf(comparisonType.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    // Everything a rule may look at during one tick
+    public static class Snapshot {
+        private final GadgetIndex devices;
+        private final WeatherService.WeatherData weather;
+        private final LocalDateTime now;
+
+        public Snapshot(GadgetIndex devices, WeatherService.WeatherData weather, LocalDateTime now) {
+            this.devices = devices;
+            this.weather = weather;
+            this.now = now;
+        }
+
+        public GadgetIndex getDevices() { return devices; }
+        public WeatherService.WeatherData getWeather() { return weather; }
+        public LocalDateTime getNow() { return now; }
+    }
+
+    public static class CompiledRule {
+        private final String source;
+        private final Node root;
+
+        private CompiledRule(String source, Node root) {
+            this.source = source;
+            this.root = root;
+        }
+
+        public String getSource() { return source; }
+        public String getCanonicalForm() { return root.key; }
+    }
+
+    private final Map<String, Node> internedNodes = new HashMap<>();
+    private final List<Node> nodesById = new ArrayList<>();
+    private long[] evaluatedTick = new long[16];
+    private boolean[] evaluatedValue = new boolean[16];
+    private long currentTick;
+    private Snapshot snapshot;
+
+    public synchronized CompiledRule compile(String source) {
+        if (source == null || source.trim().isEmpty()) {
+            throw new IllegalArgumentException("Rule is empty");
+        }
+        Parser parser = new Parser(tokenize(source));
+        Node root = parser.parseExpression();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "'");
+        }
+        return new CompiledRule(source.trim(), root);
+    }
+
+    public synchronized int getNodeCount() {
+        return nodesById.size();
+    }
+
+    // Starts a new evaluation pass; results cached during the previous tick are ignored from now on
+    public synchronized void beginTick(Snapshot snapshot) {
+        this.snapshot = snapshot;
+        currentTick++;
+    }
+
+    public synchronized boolean evaluate(CompiledRule rule) {
+        if (snapshot == null) {
+            throw new IllegalStateException("beginTick must be called before evaluating rules");
+        }
+        return rule.root.evaluate(this);
+    }
+
+    private boolean memoized(Node node) {
+        if (evaluatedTick[node.id] == currentTick) {
+            return evaluatedValue[node.id];
+        }
+        boolean value = node.compute(this);
+        evaluatedTick[node.id] = currentTick;
+        evaluatedValue[node.id] = value;
+        return value;
+    }
+
+    // Returns the existing node with the same canonical key, so equal sub-expressions are shared
+    private Node intern(Node node) {
+        Node existing = internedNodes.get(node.key);
+        if (existing != null) {
+            return existing;
+        }
+        node.id = nodesById.size();
+        nodesById.add(node);
+        internedNodes.put(node.key, node);
+        if (node.id >= evaluatedTick.length) {
+            evaluatedTick = Arrays.copyOf(evaluatedTick, evaluatedTick.length * 2);
+            evaluatedValue = Arrays.copyOf(evaluatedValue, evaluatedValue.length * 2);
+        }
+        return node;
+    }
+
+    private abstract static class Node {
+        private final String key;
+        private int id;
+
+        private Node(String key) {
+            this.key = key;
+        }
+
+        private boolean evaluate(AlertRuleEngine engine) {
+            return engine.memoized(this);
+        }
+
+        abstract boolean compute(AlertRuleEngine engine);
+    }
+
+    private static class AndNode extends Node {
+        private final Node[] children;
+
+        private AndNode(String key, Node[] children) {
+            super(key);
+            this.children = children;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            for (Node child : children) {
+                if (!child.evaluate(engine)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class OrNode extends Node {
+        private final Node[] children;
+
+        private OrNode(String key, Node[] children) {
+            super(key);
+            this.children = children;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            for (Node child : children) {
+                if (child.evaluate(engine)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class NotNode extends Node {
+        private final Node child;
+
+        private NotNode(Node child) {
+            super("NOT(" + child.key + ")");
+            this.child = child;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            return !child.evaluate(engine);
+        }
+    }
+
+    // Device is ON (or OFF), optionally for a compared number of seconds
+    private static class DeviceStateNode extends Node {
+        private final String deviceKey;
+        private final String deviceType;
+        private final String roomName;
+        private final boolean on;
+        private final Comparison comparison;
+        private final long seconds;
+
+        private DeviceStateNode(String deviceType, String roomName, boolean on, Comparison comparison, long seconds) {
+            super("STATE(" + GadgetIndex.deviceKey(deviceType, roomName) + "," + (on ? "ON" : "OFF")
+                  + (comparison != null ? "," + comparison.getSymbol() + seconds : "") + ")");
+            this.deviceKey = GadgetIndex.deviceKey(deviceType, roomName);
+            this.deviceType = deviceType;
+            this.roomName = roomName;
+            this.on = on;
+            this.comparison = comparison;
+            this.seconds = seconds;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            Gadget device = engine.snapshot.getDevices().find(deviceType, roomName);
+            if (device == null || device.isOn() != on) {
+                return false;
+            }
+            if (comparison == null) {
+                return true;
+            }
+            LocalDateTime since = on ? device.getLastOnTime() : device.getLastOffTime();
+            if (since == null) {
+                return false;
+            }
+            return comparison.test(Duration.between(since, engine.snapshot.getNow()).getSeconds(), seconds);
+        }
+    }
+
+    private static class DeviceEnergyNode extends Node {
+        private final String deviceType;
+        private final String roomName;
+        private final Comparison comparison;
+        private final double threshold;
+
+        private DeviceEnergyNode(String deviceType, String roomName, Comparison comparison, double threshold) {
+            super("ENERGY(" + GadgetIndex.deviceKey(deviceType, roomName) + "," + comparison.getSymbol() + threshold + ")");
+            this.deviceType = deviceType;
+            this.roomName = roomName;
+            this.comparison = comparison;
+            this.threshold = threshold;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            Gadget device = engine.snapshot.getDevices().find(deviceType, roomName);
+            return device != null && comparison.test(device.getCurrentTotalEnergyConsumedKWh(), threshold);
+        }
+    }
+
+    private enum WeatherMetric { TEMPERATURE, HUMIDITY, AQI }
+
+    // Weather conditions are false while no weather snapshot is available
+    private static class WeatherValueNode extends Node {
+        private final WeatherMetric metric;
+        private final Comparison comparison;
+        private final double threshold;
+
+        private WeatherValueNode(WeatherMetric metric, Comparison comparison, double threshold) {
+            super(metric + "(" + comparison.getSymbol() + threshold + ")");
+            this.metric = metric;
+            this.comparison = comparison;
+            this.threshold = threshold;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            WeatherService.WeatherData weather = engine.snapshot.getWeather();
+            if (weather == null) {
+                return false;
+            }
+            double value;
+            switch (metric) {
+                case TEMPERATURE: value = weather.getTemperatureCelsius(); break;
+                case HUMIDITY: value = weather.getHumidity(); break;
+                default: value = weather.getAirQualityIndex(); break;
+            }
+            return comparison.test(value, threshold);
+        }
+    }
+
+    private static class WeatherConditionNode extends Node {
+        private final String condition;
+
+        private WeatherConditionNode(String condition) {
+            super("WEATHER(" + condition.toLowerCase(Locale.ROOT) + ")");
+            this.condition = condition;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            WeatherService.WeatherData weather = engine.snapshot.getWeather();
+            return weather != null && condition.equalsIgnoreCase(weather.getCondition());
+        }
+    }
+
+    // Half-open time-of-day window; windows such as 22:00-06:00 wrap past midnight
+    private static class TimeWindowNode extends Node {
+        private final LocalTime from;
+        private final LocalTime to;
+
+        private TimeWindowNode(LocalTime from, LocalTime to) {
+            super("TIME(" + from + "-" + to + ")");
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean compute(AlertRuleEngine engine) {
+            LocalTime time = engine.snapshot.getNow().toLocalTime();
+            if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            }
+            return !time.isBefore(from) || time.isBefore(to);
+        }
+    }
+
+    private static final Pattern TOKEN = Pattern.compile(
+        "\\s*(?:(\\d{1,2}:\\d{2})|(\\d+(?:\\.\\d+)?)|(>=|<=|!=|==|>|<|=)|([()])|([A-Za-z_][A-Za-z0-9_]*))");
+
+    private static List<String> tokenize(String source) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(source);
+        int position = 0;
+        while (position < source.length()) {
+            if (source.substring(position).trim().isEmpty()) {
+                break;
+            }
+            if (!matcher.find(position) || matcher.start() != position) {
+                throw new IllegalArgumentException("Unexpected character at position " + (position + 1) + ": "
+                                                   + source.substring(position).trim().charAt(0));
+            }
+            for (int group = 1; group <= matcher.groupCount(); group++) {
+                if (matcher.group(group) != null) {
+                    tokens.add(matcher.group(group));
+                    break;
+                }
+            }
+            position = matcher.end();
+        }
+        return tokens;
+    }
+
+    private static final List<String> DEVICE_CONDITION_KEYWORDS = List.of("ON", "OFF", "ENERGY", "USAGE");
+
+    private class Parser {
+        private final List<String> tokens;
+        private int position;
+
+        private Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        private boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        private String peek() {
+            return atEnd() ? null : tokens.get(position);
+        }
+
+        private boolean peekKeyword(String keyword) {
+            return !atEnd() && tokens.get(position).equalsIgnoreCase(keyword);
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (peekKeyword(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private String next(String expected) {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Expected " + expected + " but the rule ended");
+            }
+            return tokens.get(position++);
+        }
+
+        private void expectKeyword(String keyword) {
+            String token = next(keyword);
+            if (!token.equalsIgnoreCase(keyword)) {
+                throw new IllegalArgumentException("Expected " + keyword + " but found '" + token + "'");
+            }
+        }
+
+        private Node parseExpression() {
+            List<Node> terms = new ArrayList<>();
+            terms.add(parseTerm());
+            while (acceptKeyword("OR")) {
+                terms.add(parseTerm());
+            }
+            return combine(false, terms);
+        }
+
+        private Node parseTerm() {
+            List<Node> factors = new ArrayList<>();
+            factors.add(parseFactor());
+            while (acceptKeyword("AND")) {
+                factors.add(parseFactor());
+            }
+            return combine(true, factors);
+        }
+
+        private Node parseFactor() {
+            if (acceptKeyword("NOT")) {
+                Node child = parseFactor();
+                // NOT NOT x is x
+                return child instanceof NotNode ? ((NotNode) child).child : intern(new NotNode(child));
+            }
+            if (acceptKeyword("(")) {
+                Node inner = parseExpression();
+                expectKeyword(")");
+                return inner;
+            }
+            return parseCondition();
+        }
+
+        private Node parseCondition() {
+            String first = next("a condition");
+            String keyword = first.toUpperCase(Locale.ROOT);
+            if (keyword.equals("OUTSIDE")) {
+                String metric = next("TEMP").toUpperCase(Locale.ROOT);
+                if (!metric.equals("TEMP") && !metric.equals("TEMPERATURE")) {
+                    throw new IllegalArgumentException("Expected TEMP after OUTSIDE but found '" + metric + "'");
+                }
+                keyword = "TEMP";
+            }
+            switch (keyword) {
+                case "TEMP":
+                case "TEMPERATURE":
+                    return intern(new WeatherValueNode(WeatherMetric.TEMPERATURE, parseComparison(), parseNumber()));
+                case "HUMIDITY":
+                    return intern(new WeatherValueNode(WeatherMetric.HUMIDITY, parseComparison(), parseNumber()));
+                case "AQI":
+                    return intern(new WeatherValueNode(WeatherMetric.AQI, parseComparison(), parseNumber()));
+                case "WEATHER":
+                    if (!acceptKeyword("IS")) {
+                        expectKeyword("=");
+                    }
+                    return intern(new WeatherConditionNode(next("a weather condition")));
+                case "TIME":
+                    expectKeyword("BETWEEN");
+                    LocalTime from = parseTime();
+                    expectKeyword("AND");
+                    return intern(new TimeWindowNode(from, parseTime()));
+                default:
+                    return parseDeviceCondition(first);
+            }
+        }
+
+        private Node parseDeviceCondition(String deviceType) {
+            if (!Character.isLetter(deviceType.charAt(0))) {
+                throw new IllegalArgumentException("Expected a device type but found '" + deviceType + "'");
+            }
+            expectKeyword("IN");
+            StringBuilder room = new StringBuilder();
+            while (!atEnd() && !DEVICE_CONDITION_KEYWORDS.contains(peek().toUpperCase(Locale.ROOT))) {
+                String word = next("a room name");
+                if (!Character.isLetterOrDigit(word.charAt(0))) {
+                    throw new IllegalArgumentException("Unexpected '" + word + "' in room name");
+                }
+                room.append(room.length() > 0 ? " " : "").append(word);
+            }
+            if (room.length() == 0) {
+                throw new IllegalArgumentException("Missing room name for " + deviceType);
+            }
+            String condition = next("ON, OFF or ENERGY").toUpperCase(Locale.ROOT);
+            if (condition.equals("ENERGY") || condition.equals("USAGE")) {
+                Comparison comparison = parseComparison();
+                double threshold = parseNumber();
+                acceptKeyword("KWH");
+                return intern(new DeviceEnergyNode(deviceType, room.toString(), comparison, threshold));
+            }
+            boolean on = condition.equals("ON");
+            if (!acceptKeyword("FOR")) {
+                return intern(new DeviceStateNode(deviceType, room.toString(), on, null, 0));
+            }
+            Comparison comparison = peek() != null && isComparison(peek()) ? parseComparison() : Comparison.GREATER_OR_EQUAL;
+            return intern(new DeviceStateNode(deviceType, room.toString(), on, comparison, parseDurationSeconds()));
+        }
+
+        private boolean isComparison(String token) {
+            return token.matches(">=|<=|!=|==|>|<|=");
+        }
+
+        private Comparison parseComparison() {
+            String token = next("a comparison");
+            if (!isComparison(token)) {
+                throw new IllegalArgumentException("Expected a comparison (>, <, =, ...) but found '" + token + "'");
+            }
+            return Comparison.fromSymbol(token);
+        }
+
+        private double parseNumber() {
+            String token = next("a number");
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number but found '" + token + "'");
+            }
+        }
+
+        private LocalTime parseTime() {
+            String token = next("a time (HH:MM)");
+            try {
+                String[] parts = token.split(":");
+                return LocalTime.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Expected a time (HH:MM) but found '" + token + "'");
+            }
+        }
+
+        private long parseDurationSeconds() {
+            double amount = parseNumber();
+            String unit = next("a duration unit (h, m, s, d)").toLowerCase(Locale.ROOT);
+            long unitSeconds;
+            switch (unit) {
+                case "s": case "sec": case "secs": case "second": case "seconds": unitSeconds = 1; break;
+                case "m": case "min": case "mins": case "minute": case "minutes": unitSeconds = 60; break;
+                case "h": case "hr": case "hrs": case "hour": case "hours": unitSeconds = 3600; break;
+                case "d": case "day": case "days": unitSeconds = 86400; break;
+                default: throw new IllegalArgumentException("Unknown duration unit '" + unit + "'");
+            }
+            return Math.round(amount * unitSeconds);
+        }
+
+        // Flattens nested AND/OR, drops duplicates and orders children by key, so commutative
+        // variants of the same expression intern to one node
+        private Node combine(boolean and, List<Node> operands) {
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            Map<String, Node> children = new LinkedHashMap<>();
+            for (Node operand : operands) {
+                Node[] nested = and && operand instanceof AndNode ? ((AndNode) operand).children
+                              : !and && operand instanceof OrNode ? ((OrNode) operand).children : null;
+                if (nested != null) {
+                    for (Node child : nested) {
+                        children.putIfAbsent(child.key, child);
+                    }
+                } else {
+                    children.putIfAbsent(operand.key, operand);
+                }
+            }
+            if (children.size() == 1) {
+                return children.values().iterator().next();
+            }
+            Node[] sorted = children.values().toArray(new Node[0]);
+            Arrays.sort(sorted, Comparator.comparing((Node node) -> node.key));
+            StringBuilder key = new StringBuilder(and ? "AND(" : "OR(");
+            for (int i = 0; i < sorted.length; i++) {
+                key.append(i > 0 ? "," : "").append(sorted[i].key);
+            }
+            key.append(')');
+            return intern(and ? new AndNode(key.toString(), sorted) : new OrNode(key.toString(), sorted));
+        }
+    }
+}
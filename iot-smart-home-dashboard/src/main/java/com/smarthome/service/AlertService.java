@@ -1,17 +1,78 @@
 package com.smarthome.service;
 
+import com.smarthome.model.AlertNotificationRecord;
+import com.smarthome.model.AlertRecord;
 import com.smarthome.model.Customer;
 import com.smarthome.model.Gadget;
+import com.smarthome.model.GadgetIndex;
+import com.smarthome.util.AppConfig;
+import com.smarthome.util.IdGenerator;
+import com.smarthome.util.RecurrenceRule;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class AlertService {
     private static AlertService instance;
+    private static final int LOCK_STRIPES = 64;
+    // Alerts per user, loaded from the store on first access. The lists are copy-on-write so the
+    // CLI can read them while the timer threads check alerts; everything else below is only
+    // touched under the user's lock stripe, so different users are checked and edited in parallel.
     private final Map<String, List<Alert>> userAlerts;
+    // Energy alerts per user, keyed by normalised (deviceType, roomName)
+    private final Map<String, Map<String, DeviceWatch>> energyWatches;
+    // Active time-based alerts per user, earliest next trigger first
+    private final Map<String, PriorityQueue<TimeBasedAlert>> timeAlertQueues;
+    // Compound rules per user, compiled into one engine so shared conditions are evaluated once per tick
+    private final Map<String, AlertRuleEngine> ruleEngines;
+    private final Map<String, List<RuleAlert>> ruleAlerts;
+    private final AlertStore alertStore;
+    private final AlertNotificationDispatcher notificationDispatcher;
+    private final AlertRateLimiter rateLimiter;
+    private final Object[] userLocks;
 
     private AlertService() {
-        this.userAlerts = new HashMap<>();
+        this.userAlerts = new ConcurrentHashMap<>();
+        this.energyWatches = new ConcurrentHashMap<>();
+        this.timeAlertQueues = new ConcurrentHashMap<>();
+        this.ruleEngines = new ConcurrentHashMap<>();
+        this.ruleAlerts = new ConcurrentHashMap<>();
+        this.userLocks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            userLocks[i] = new Object();
+        }
+        this.alertStore = new AlertStore();
+        this.notificationDispatcher = new AlertNotificationDispatcher(alertStore,
+            AppConfig.getLong("alerts.notification.retry.initial.millis", 1000));
+        notificationDispatcher.addSink(new AlertNotificationDispatcher.ConsoleSink());
+        String notificationFile = AppConfig.getString("alerts.notification.file", null);
+        if (notificationFile != null) {
+            notificationDispatcher.addSink(new AlertNotificationDispatcher.FileSink(Paths.get(notificationFile)));
+        }
+        if (Boolean.parseBoolean(AppConfig.getString("alerts.notification.webhook.stub", "false"))) {
+            notificationDispatcher.addSink(new AlertNotificationDispatcher.WebhookStubSink());
+        }
+        notificationDispatcher.start();
+        this.rateLimiter = AlertRateLimiter.fromConfig();
+    }
+
+    // The alerts on one device plus the device state they were last evaluated against
+    private static class DeviceWatch {
+        private final List<EnergyUsageAlert> alerts = new ArrayList<>();
+        private Gadget observedGadget;
+        private long observedVersion;
+
+        private boolean hasChanged(Gadget gadget) {
+            return gadget != observedGadget || gadget.getChangeVersion() != observedVersion;
+        }
+
+        private void observe(Gadget gadget) {
+            observedGadget = gadget;
+            observedVersion = gadget.getChangeVersion();
+        }
     }
 
     public static synchronized AlertService getInstance() {
@@ -29,11 +90,11 @@ public class AlertService {
         private AlertType alertType;
         private String condition;
         private String message;
-        private boolean isActive;
+        private volatile boolean isActive;
         private LocalDateTime createdTime;
-        private LocalDateTime lastTriggered;
-        private int triggerCount;
-        private boolean autoDeleteAfterTrigger;
+        private volatile LocalDateTime lastTriggered;
+        private volatile int triggerCount;
+        private volatile boolean autoDeleteAfterTrigger;
 
         public Alert(String alertId, String alertName, String deviceType, String roomName,
                     AlertType alertType, String condition, String message) {
@@ -71,11 +132,12 @@ public class AlertService {
     }
 
     public enum AlertType {
-        TIME_BASED, ENERGY_USAGE, DEVICE_STATUS
+        TIME_BASED, ENERGY_USAGE, DEVICE_STATUS, COMPOUND_RULE
     }
 
     public static class TimeBasedAlert extends Alert {
         private LocalDateTime triggerTime;
+        private volatile LocalDateTime nextTriggerTime;
         private boolean isRecurring;
         private String recurrencePattern;
 
@@ -84,10 +146,12 @@ public class AlertService {
             super(alertId, alertName, deviceType, roomName, AlertType.TIME_BASED,
                   "Trigger at " + triggerTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")), message);
             this.triggerTime = triggerTime;
+            this.nextTriggerTime = triggerTime;
             this.isRecurring = false;
         }
 
         public LocalDateTime getTriggerTime() { return triggerTime; }
+        public LocalDateTime getNextTriggerTime() { return nextTriggerTime; }
         public boolean isRecurring() { return isRecurring; }
         public String getRecurrencePattern() { return recurrencePattern; }
         public void setRecurring(boolean recurring) { this.isRecurring = recurring; }
@@ -97,6 +161,7 @@ public class AlertService {
     public static class EnergyUsageAlert extends Alert {
         private double energyThreshold;
         private String comparisonType; // "GREATER_THAN", "LESS_THAN", "EQUALS"
+        private final AlertRuleEngine.Comparison comparison;
 
         public EnergyUsageAlert(String alertId, String alertName, String deviceType, String roomName,
                                double energyThreshold, String comparisonType, String message) {
@@ -104,88 +169,196 @@ public class AlertService {
                   "Energy " + comparisonType.toLowerCase().replace("_", " ") + " " + energyThreshold + " kWh", message);
             this.energyThreshold = energyThreshold;
             this.comparisonType = comparisonType;
+            this.comparison = AlertRuleEngine.Comparison.fromType(comparisonType);
         }
 
         public double getEnergyThreshold() { return energyThreshold; }
         public String getComparisonType() { return comparisonType; }
+        public AlertRuleEngine.Comparison getComparison() { return comparison; }
+    }
+
+    public static class RuleAlert extends Alert {
+        private final AlertRuleEngine.CompiledRule rule;
+
+        public RuleAlert(String alertId, String alertName, AlertRuleEngine.CompiledRule rule, String message) {
+            super(alertId, alertName, "Rule", "Home", AlertType.COMPOUND_RULE, rule.getSource(), message);
+            this.rule = rule;
+            // Rules stay armed after firing; they fire again once the condition clears and recurs
+            setAutoDeleteAfterTrigger(false);
+        }
+
+        public AlertRuleEngine.CompiledRule getRule() { return rule; }
     }
 
     public boolean createTimeBasedAlert(String userEmail, String alertName, String deviceType,
                                        String roomName, LocalDateTime triggerTime, String message) {
-        try {
-            String alertId = generateAlertId();
-            TimeBasedAlert alert = new TimeBasedAlert(alertId, alertName, deviceType, roomName, triggerTime, message);
+        return createTimeBasedAlert(userEmail, alertName, deviceType, roomName, triggerTime, message, null);
+    }
 
-            userAlerts.computeIfAbsent(userEmail, k -> new ArrayList<>()).add(alert);
+    public boolean createTimeBasedAlert(String userEmail, String alertName, String deviceType, String roomName,
+                                       LocalDateTime triggerTime, String message, String recurrencePattern) {
+        synchronized (lockFor(userEmail)) {
+            try {
+                String alertId = generateAlertId();
+                TimeBasedAlert alert = new TimeBasedAlert(alertId, alertName, deviceType, roomName, triggerTime, message);
+
+                if (recurrencePattern != null && !recurrencePattern.trim().isEmpty()) {
+                    RecurrenceRule rule;
+                    try {
+                        rule = parseRecurrence(recurrencePattern);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("[ERROR] Invalid repeat rule: " + e.getMessage());
+                        return false;
+                    }
+                    alert.setRecurring(true);
+                    alert.setRecurrencePattern(rule.toString());
+                    // A repeating reminder has to survive its first trigger
+                    alert.setAutoDeleteAfterTrigger(false);
+                }
 
-            System.out.println("[SUCCESS] Time-based alert created: " + alertName);
-            System.out.println("  Device: " + deviceType + " in " + roomName);
-            System.out.println("  Trigger: " + triggerTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
-            return true;
-        } catch (Exception e) {
-            System.out.println("[ERROR] Failed to create time-based alert: " + e.getMessage());
-            return false;
+                alertsFor(userEmail).add(alert);
+                timeAlertQueue(userEmail).add(alert);
+                persist(userEmail, alert);
+
+                System.out.println("[SUCCESS] Time-based alert created: " + alertName);
+                System.out.println("  Device: " + deviceType + " in " + roomName);
+                System.out.println("  Trigger: " + triggerTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
+                if (alert.isRecurring()) {
+                    System.out.println("  Repeats: " + parseRecurrence(alert.getRecurrencePattern()).describe());
+                }
+                return true;
+            } catch (Exception e) {
+                System.out.println("[ERROR] Failed to create time-based alert: " + e.getMessage());
+                return false;
+            }
         }
     }
 
     public boolean createEnergyUsageAlert(String userEmail, String alertName, String deviceType,
                                          String roomName, double energyThreshold, String comparisonType, String message) {
-        try {
-            String alertId = generateAlertId();
-            EnergyUsageAlert alert = new EnergyUsageAlert(alertId, alertName, deviceType, roomName,
-                                                         energyThreshold, comparisonType, message);
+        synchronized (lockFor(userEmail)) {
+            try {
+                String alertId = generateAlertId();
+                EnergyUsageAlert alert = new EnergyUsageAlert(alertId, alertName, deviceType, roomName,
+                                                             energyThreshold, comparisonType, message);
+
+                alertsFor(userEmail).add(alert);
+                watchEnergyAlert(userEmail, alert);
+                persist(userEmail, alert);
+
+                System.out.println("[SUCCESS] Energy usage alert created: " + alertName);
+                System.out.println("  Device: " + deviceType + " in " + roomName);
+                System.out.println("  Condition: Energy " + comparisonType.toLowerCase().replace("_", " ") + " " + energyThreshold + " kWh");
+                return true;
+            } catch (Exception e) {
+                System.out.println("[ERROR] Failed to create energy usage alert: " + e.getMessage());
+                return false;
+            }
+        }
+    }
 
-            userAlerts.computeIfAbsent(userEmail, k -> new ArrayList<>()).add(alert);
+    public boolean createRuleAlert(String userEmail, String alertName, String ruleText, String message) {
+        synchronized (lockFor(userEmail)) {
+            List<Alert> alerts = alertsFor(userEmail);
+            AlertRuleEngine engine = ruleEngines.computeIfAbsent(userEmail, k -> new AlertRuleEngine());
+            AlertRuleEngine.CompiledRule rule;
+            try {
+                rule = engine.compile(ruleText);
+            } catch (IllegalArgumentException e) {
+                System.out.println("[ERROR] Invalid rule: " + e.getMessage());
+                return false;
+            }
+            RuleAlert alert = new RuleAlert(generateAlertId(), alertName, rule, message);
+            alerts.add(alert);
+            ruleAlerts.computeIfAbsent(userEmail, k -> new ArrayList<>()).add(alert);
+            persist(userEmail, alert);
 
-            System.out.println("[SUCCESS] Energy usage alert created: " + alertName);
-            System.out.println("  Device: " + deviceType + " in " + roomName);
-            System.out.println("  Condition: Energy " + comparisonType.toLowerCase().replace("_", " ") + " " + energyThreshold + " kWh");
+            System.out.println("[SUCCESS] Rule alert created: " + alertName);
+            System.out.println("  Rule: " + rule.getSource());
             return true;
-        } catch (Exception e) {
-            System.out.println("[ERROR] Failed to create energy usage alert: " + e.getMessage());
-            return false;
         }
     }
 
+    // A snapshot: alerts deleted by a concurrent check stay in the returned list
     public List<Alert> getUserAlerts(String userEmail) {
-        return userAlerts.getOrDefault(userEmail, new ArrayList<>());
+        return new ArrayList<>(alertsFor(userEmail));
     }
 
     public List<Alert> getActiveAlerts(String userEmail) {
-        List<Alert> alerts = userAlerts.get(userEmail);
-        if (alerts == null) return new ArrayList<>();
-
-        return alerts.stream()
+        return alertsFor(userEmail).stream()
                 .filter(Alert::isActive)
                 .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
     }
 
     public boolean deleteAlert(String userEmail, String alertId) {
-        List<Alert> alerts = userAlerts.get(userEmail);
-        if (alerts == null) return false;
-
-        boolean removed = alerts.removeIf(alert -> alert.getAlertId().equals(alertId));
-        if (removed) {
-            System.out.println("[SUCCESS] Alert deleted successfully");
-            if (alerts.isEmpty()) {
-                userAlerts.remove(userEmail);
+        synchronized (lockFor(userEmail)) {
+            boolean removed = removeAlert(userEmail, alertId) != null;
+            if (removed) {
+                alertStore.deleteAlert(userEmail, alertId);
+                System.out.println("[SUCCESS] Alert deleted successfully");
             }
+            return removed;
         }
-        return removed;
     }
 
-    public boolean toggleAlert(String userEmail, String alertId) {
-        List<Alert> alerts = userAlerts.get(userEmail);
-        if (alerts == null) return false;
-
+    // Drops the alert from memory and from every index; the caller holds the user's lock and updates the store
+    private Alert removeAlert(String userEmail, String alertId) {
+        List<Alert> alerts = alertsFor(userEmail);
+        Alert target = null;
         for (Alert alert : alerts) {
             if (alert.getAlertId().equals(alertId)) {
-                alert.setActive(!alert.isActive());
-                System.out.println("[SUCCESS] Alert " + (alert.isActive() ? "activated" : "deactivated"));
-                return true;
+                target = alert;
+                break;
+            }
+        }
+        if (target != null && alerts.remove(target)) {
+            rateLimiter.forget(userEmail, alertId);
+            if (target instanceof EnergyUsageAlert) {
+                unwatchEnergyAlert(userEmail, (EnergyUsageAlert) target);
+            } else if (target instanceof TimeBasedAlert) {
+                unscheduleTimeAlert(userEmail, (TimeBasedAlert) target);
+            } else if (target instanceof RuleAlert) {
+                List<RuleAlert> rules = ruleAlerts.get(userEmail);
+                if (rules != null && rules.remove(target) && rules.isEmpty()) {
+                    ruleAlerts.remove(userEmail);
+                    ruleEngines.remove(userEmail);
+                }
             }
+            return target;
+        }
+        return null;
+    }
+
+    public boolean toggleAlert(String userEmail, String alertId) {
+        synchronized (lockFor(userEmail)) {
+            for (Alert alert : alertsFor(userEmail)) {
+                if (alert.getAlertId().equals(alertId)) {
+                    alert.setActive(!alert.isActive());
+                    if (alert instanceof EnergyUsageAlert && alert.isActive()) {
+                        // Re-activated alerts are evaluated on the next check even if the device is unchanged
+                        DeviceWatch watch = findWatch(userEmail, alert);
+                        if (watch != null) {
+                            watch.observedGadget = null;
+                        }
+                    }
+                    if (alert.isActive()) {
+                        // A re-activated alert fires if its condition already holds
+                        rateLimiter.resetCondition(userEmail, alertId);
+                    }
+                    if (alert instanceof TimeBasedAlert) {
+                        TimeBasedAlert timeAlert = (TimeBasedAlert) alert;
+                        unscheduleTimeAlert(userEmail, timeAlert);
+                        if (alert.isActive() && timeAlert.getNextTriggerTime() != null) {
+                            timeAlertQueue(userEmail).add(timeAlert);
+                        }
+                    }
+                    persist(userEmail, alert);
+                    System.out.println("[SUCCESS] Alert " + (alert.isActive() ? "activated" : "deactivated"));
+                    return true;
+                }
+            }
+            return false;
         }
-        return false;
     }
 
     public void displayUserAlerts(String userEmail) {
@@ -234,55 +407,103 @@ public class AlertService {
         System.out.println("+----+-------------------------+---------------+-------------------+--------+-------+");
     }
 
+    // Idle ticks only peek at the earliest entry; due alerts are polled and recurring ones re-queued
     public void checkTimeBasedAlerts(String userEmail, LocalDateTime currentTime) {
-        List<Alert> alerts = getActiveAlerts(userEmail);
+        synchronized (lockFor(userEmail)) {
+            alertsFor(userEmail);
+            PriorityQueue<TimeBasedAlert> queue = timeAlertQueues.get(userEmail);
+            while (queue != null && !queue.isEmpty() && !queue.peek().getNextTriggerTime().isAfter(currentTime)) {
+                TimeBasedAlert timeAlert = queue.poll();
+                if (!timeAlert.isActive()) {
+                    continue;
+                }
+                LocalDateTime next = timeAlert.isRecurring() ? nextOccurrence(timeAlert, currentTime) : null;
+                timeAlert.nextTriggerTime = next;
+                if (next != null) {
+                    queue.add(timeAlert);
+                } else {
+                    timeAlert.setActive(false);
+                }
 
-        for (Alert alert : alerts) {
-            if (alert instanceof TimeBasedAlert) {
-                TimeBasedAlert timeAlert = (TimeBasedAlert) alert;
+                triggerAlert(timeAlert, "Time-based alert triggered at " +
+                            currentTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")), userEmail);
+                queue = timeAlertQueues.get(userEmail);
+            }
+        }
+    }
 
-                if (currentTime.isAfter(timeAlert.getTriggerTime()) || currentTime.isEqual(timeAlert.getTriggerTime())) {
-                    if (timeAlert.getLastTriggered() == null ||
-                        timeAlert.getLastTriggered().isBefore(timeAlert.getTriggerTime())) {
+    // Occurrences missed while nothing was checking are skipped rather than fired in a burst
+    private LocalDateTime nextOccurrence(TimeBasedAlert alert, LocalDateTime after) {
+        try {
+            return parseRecurrence(alert.getRecurrencePattern()).nextAfter(alert.getTriggerTime(), after);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid repeat rule on alert " + alert.getAlertName() + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-                        triggerAlert(alert, "Time-based alert triggered at " +
-                                    currentTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")), userEmail);
+    // Accepts a full rule or a bare frequency such as "DAILY"
+    private static RecurrenceRule parseRecurrence(String pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("Repeat rule is empty");
+        }
+        String rule = pattern.trim();
+        return RecurrenceRule.parse(rule.contains("=") ? rule : "FREQ=" + rule.toUpperCase());
+    }
 
-                        if (!timeAlert.isRecurring()) {
-                            alert.setActive(false);
-                        }
-                    }
-                }
-            }
+    private PriorityQueue<TimeBasedAlert> timeAlertQueue(String userEmail) {
+        return timeAlertQueues.computeIfAbsent(userEmail, k -> new PriorityQueue<>(
+                Comparator.comparing(TimeBasedAlert::getNextTriggerTime).thenComparing(Alert::getAlertId)));
+    }
+
+    private void unscheduleTimeAlert(String userEmail, TimeBasedAlert alert) {
+        PriorityQueue<TimeBasedAlert> queue = timeAlertQueues.get(userEmail);
+        if (queue != null && queue.remove(alert) && queue.isEmpty()) {
+            timeAlertQueues.remove(userEmail);
         }
     }
 
+    // Only devices whose state or accumulated energy changed since the last check are evaluated
     public void checkEnergyUsageAlerts(String userEmail, Customer customer) {
-        List<Alert> alerts = getActiveAlerts(userEmail);
+        checkEnergyUsageAlerts(userEmail, customer, false);
+    }
 
-        for (Alert alert : alerts) {
-            if (alert instanceof EnergyUsageAlert) {
-                EnergyUsageAlert energyAlert = (EnergyUsageAlert) alert;
-
-                Gadget device = customer.findGadget(alert.getDeviceType(), alert.getRoomName());
-                if (device != null) {
-                    double currentEnergy = device.getTotalEnergyConsumedKWh();
-                    boolean shouldTrigger = false;
-
-                    switch (energyAlert.getComparisonType()) {
-                        case "GREATER_THAN":
-                            shouldTrigger = currentEnergy > energyAlert.getEnergyThreshold();
-                            break;
-                        case "LESS_THAN":
-                            shouldTrigger = currentEnergy < energyAlert.getEnergyThreshold();
-                            break;
-                        case "EQUALS":
-                            shouldTrigger = Math.abs(currentEnergy - energyAlert.getEnergyThreshold()) < 0.01;
-                            break;
-                    }
+    public void checkAllEnergyUsageAlerts(String userEmail, Customer customer) {
+        checkEnergyUsageAlerts(userEmail, customer, true);
+    }
 
-                    if (shouldTrigger) {
-                        triggerAlert(alert, String.format("Energy usage alert: %s has consumed %.2f kWh (threshold: %.2f kWh)",
+    private void checkEnergyUsageAlerts(String userEmail, Customer customer, boolean evaluateAll) {
+        synchronized (lockFor(userEmail)) {
+            alertsFor(userEmail);
+            Map<String, DeviceWatch> watches = energyWatches.get(userEmail);
+            if (watches == null || customer == null) {
+                return;
+            }
+            GadgetIndex gadgetIndex = customer.getGadgetIndex();
+            List<DeviceWatch> changed = new ArrayList<>();
+            List<Gadget> changedDevices = new ArrayList<>();
+            for (DeviceWatch watch : watches.values()) {
+                EnergyUsageAlert first = watch.alerts.isEmpty() ? null : watch.alerts.get(0);
+                Gadget device = first != null ? gadgetIndex.find(first.getDeviceType(), first.getRoomName()) : null;
+                if (device != null && (evaluateAll || watch.hasChanged(device))) {
+                    watch.observe(device);
+                    changed.add(watch);
+                    changedDevices.add(device);
+                }
+            }
+            // Triggering may auto-delete alerts, so the watches are only walked after collecting the changes
+            for (int i = 0; i < changed.size(); i++) {
+                DeviceWatch watch = changed.get(i);
+                Gadget device = changedDevices.get(i);
+                double currentEnergy = device.getTotalEnergyConsumedKWh();
+                for (EnergyUsageAlert energyAlert : new ArrayList<>(watch.alerts)) {
+                    if (!energyAlert.isActive()) {
+                        continue;
+                    }
+                    AlertRuleEngine.Comparison comparison = energyAlert.getComparison();
+                    boolean conditionMet = comparison != null && comparison.test(currentEnergy, energyAlert.getEnergyThreshold());
+                    if (rateLimiter.admitCondition(userEmail, energyAlert.getAlertId(), conditionMet)) {
+                        triggerAlert(energyAlert, String.format("Energy usage alert: %s has consumed %.2f kWh (threshold: %.2f kWh)",
                                     device.getType() + " in " + device.getRoomName(),
                                     currentEnergy,
                                     energyAlert.getEnergyThreshold()), userEmail);
@@ -292,41 +513,244 @@ public class AlertService {
         }
     }
 
+    public void checkRuleAlerts(String userEmail, Customer customer, LocalDateTime now) {
+        WeatherService weatherService = WeatherService.getInstance();
+        // Simulated weather changes on every read, so rules only see weather the user entered
+        WeatherService.WeatherData weather = weatherService.hasUserWeatherData() ? weatherService.getCurrentWeather() : null;
+        checkRuleAlerts(userEmail, customer, now, weather);
+    }
+
+    // Every rule is evaluated against one snapshot; like energy alerts, a rule fires when it becomes true
+    public void checkRuleAlerts(String userEmail, Customer customer, LocalDateTime now, WeatherService.WeatherData weather) {
+        synchronized (lockFor(userEmail)) {
+            alertsFor(userEmail);
+            List<RuleAlert> rules = ruleAlerts.get(userEmail);
+            AlertRuleEngine engine = ruleEngines.get(userEmail);
+            if (rules == null || engine == null || customer == null) {
+                return;
+            }
+            engine.beginTick(new AlertRuleEngine.Snapshot(customer.getGadgetIndex(), weather, now));
+            List<RuleAlert> fired = new ArrayList<>();
+            for (RuleAlert ruleAlert : rules) {
+                if (!ruleAlert.isActive()) {
+                    continue;
+                }
+                if (rateLimiter.admitCondition(userEmail, ruleAlert.getAlertId(), engine.evaluate(ruleAlert.getRule()))) {
+                    fired.add(ruleAlert);
+                }
+            }
+            for (RuleAlert ruleAlert : fired) {
+                triggerAlert(ruleAlert, "Rule matched: " + ruleAlert.getRule().getSource(), userEmail);
+            }
+        }
+    }
+
+    private void watchEnergyAlert(String userEmail, EnergyUsageAlert alert) {
+        DeviceWatch watch = energyWatches.computeIfAbsent(userEmail, k -> new HashMap<>())
+                .computeIfAbsent(GadgetIndex.deviceKey(alert.getDeviceType(), alert.getRoomName()), k -> new DeviceWatch());
+        watch.alerts.add(alert);
+        // New alerts are evaluated once against the current state
+        watch.observedGadget = null;
+    }
+
+    private void unwatchEnergyAlert(String userEmail, EnergyUsageAlert alert) {
+        Map<String, DeviceWatch> watches = energyWatches.get(userEmail);
+        if (watches == null) {
+            return;
+        }
+        String deviceKey = GadgetIndex.deviceKey(alert.getDeviceType(), alert.getRoomName());
+        DeviceWatch watch = watches.get(deviceKey);
+        if (watch != null && watch.alerts.remove(alert) && watch.alerts.isEmpty()) {
+            watches.remove(deviceKey);
+            if (watches.isEmpty()) {
+                energyWatches.remove(userEmail);
+            }
+        }
+    }
+
+    private DeviceWatch findWatch(String userEmail, Alert alert) {
+        Map<String, DeviceWatch> watches = energyWatches.get(userEmail);
+        return watches != null ? watches.get(GadgetIndex.deviceKey(alert.getDeviceType(), alert.getRoomName())) : null;
+    }
+
+    // Evaluation only records the trigger; the dispatcher fans it out to the sinks on its own thread
     private void triggerAlert(Alert alert, String triggerReason, String userEmail) {
-        alert.setLastTriggered(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        alert.setLastTriggered(now);
         alert.incrementTriggerCount();
 
-        System.out.println("\n" + "=".repeat(60));
-        System.out.println("        DEVICE ALERT TRIGGERED!");
-        System.out.println("=".repeat(60));
-        System.out.println("Alert Name: " + alert.getAlertName());
-        System.out.println("Device: " + alert.getDeviceType() + " in " + alert.getRoomName());
-        System.out.println("Type: " + alert.getAlertType().toString().replace("_", " "));
-        System.out.println("Condition: " + alert.getCondition());
-        System.out.println("Message: " + alert.getMessage());
-        System.out.println("Triggered: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
-        System.out.println("Reason: " + triggerReason);
-        System.out.println("=".repeat(60));
-
-        // Auto-delete alert if configured to do so
-        if (alert.isAutoDeleteAfterTrigger()) {
-            boolean deleted = deleteAlert(userEmail, alert.getAlertId());
-            if (deleted) {
-                System.out.println("✅ Alert automatically deleted after triggering");
-            } else {
-                System.out.println("⚠️ Alert triggered but auto-deletion failed");
+        // Rate-limited triggers still update the alert; only the notification is dropped. One-shot alerts
+        // are deleted as they fire, so they always notify or the user would never hear of them.
+        boolean autoDelete = alert.isAutoDeleteAfterTrigger();
+        if (!autoDelete && !rateLimiter.tryAcquire(userEmail, alert.getAlertId())) {
+            persist(userEmail, alert);
+            return;
+        }
+        if (autoDelete) {
+            removeAlert(userEmail, alert.getAlertId());
+        }
+        long suppressed = rateLimiter.takeSuppressedCount(userEmail);
+        if (suppressed > 0) {
+            triggerReason += " (" + suppressed + " earlier notification" + (suppressed == 1 ? " was" : "s were")
+                           + " rate-limited)";
+        }
+        AlertNotificationRecord notification = new AlertNotificationRecord();
+        notification.setUserEmail(userEmail);
+        notification.setNotificationId(AlertNotificationRecord.buildNotificationId(alert.getAlertId(), alert.getTriggerCount()));
+        notification.setAlertId(alert.getAlertId());
+        notification.setAlertName(alert.getAlertName());
+        notification.setAlertType(alert.getAlertType().name());
+        notification.setDeviceType(alert.getDeviceType());
+        notification.setRoomName(alert.getRoomName());
+        notification.setCondition(alert.getCondition());
+        notification.setMessage(alert.getMessage());
+        notification.setReason(triggerReason);
+        notification.setTriggeredAt(now);
+        notification.setAutoDeleted(autoDelete);
+
+        // The alert's new state and its outbox entry are written together
+        if (!alertStore.recordTrigger(toRecord(userEmail, alert), autoDelete, notification)) {
+            System.out.println("[WARNING] Alert '" + alert.getAlertName() + "' triggered but could not be saved");
+        }
+        notificationDispatcher.submit(notification);
+    }
+
+    // Rebuilds the user's alerts and their indexes from the store on first access
+    private List<Alert> alertsFor(String userEmail) {
+        List<Alert> alerts = userAlerts.get(userEmail);
+        if (alerts != null) {
+            return alerts;
+        }
+        synchronized (lockFor(userEmail)) {
+            alerts = userAlerts.get(userEmail);
+            if (alerts != null) {
+                return alerts;
             }
-            System.out.println("=".repeat(60));
-            System.out.println("This was a one-time alert and has been automatically removed.");
-        } else {
-            System.out.println("What would you like to do about this alert?");
-            System.out.println("(This alert is for notification only - no automatic actions will be taken)");
+            List<AlertRecord> records = alertStore.findAlerts(userEmail);
+            records.sort(Comparator.comparing(AlertRecord::getCreatedTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+                                   .thenComparing(AlertRecord::getAlertId));
+            List<Alert> loaded = new ArrayList<>();
+            for (AlertRecord record : records) {
+                Alert alert = fromRecord(userEmail, record);
+                if (alert == null) {
+                    continue;
+                }
+                loaded.add(alert);
+                if (alert instanceof EnergyUsageAlert) {
+                    watchEnergyAlert(userEmail, (EnergyUsageAlert) alert);
+                } else if (alert instanceof TimeBasedAlert) {
+                    TimeBasedAlert timeAlert = (TimeBasedAlert) alert;
+                    if (timeAlert.isActive() && timeAlert.getNextTriggerTime() != null) {
+                        timeAlertQueue(userEmail).add(timeAlert);
+                    }
+                } else if (alert instanceof RuleAlert) {
+                    ruleAlerts.computeIfAbsent(userEmail, k -> new ArrayList<>()).add((RuleAlert) alert);
+                }
+            }
+            // Published last, so a reader that finds the list also finds the indexes built for it
+            alerts = new CopyOnWriteArrayList<>(loaded);
+            userAlerts.put(userEmail, alerts);
+            return alerts;
         }
-        System.out.print("\nPress Enter to continue or enter your choice: ");
+    }
+
+    private Object lockFor(String userEmail) {
+        return userLocks[Math.floorMod(userEmail.hashCode(), LOCK_STRIPES)];
+    }
+
+    // Drops the cached alerts of the user; the next access reads them back from the store
+    public void reloadAlerts(String userEmail) {
+        synchronized (lockFor(userEmail)) {
+            userAlerts.remove(userEmail);
+            energyWatches.remove(userEmail);
+            timeAlertQueues.remove(userEmail);
+            ruleAlerts.remove(userEmail);
+            ruleEngines.remove(userEmail);
+        }
+    }
+
+    private void persist(String userEmail, Alert alert) {
+        if (!alertStore.saveAlert(toRecord(userEmail, alert))) {
+            System.out.println("[WARNING] Alert '" + alert.getAlertName() + "' could not be saved");
+        }
+    }
+
+    private AlertRecord toRecord(String userEmail, Alert alert) {
+        AlertRecord record = new AlertRecord();
+        record.setUserEmail(userEmail);
+        record.setAlertId(alert.getAlertId());
+        record.setAlertName(alert.getAlertName());
+        record.setAlertType(alert.getAlertType().name());
+        record.setDeviceType(alert.getDeviceType());
+        record.setRoomName(alert.getRoomName());
+        record.setCondition(alert.getCondition());
+        record.setMessage(alert.getMessage());
+        record.setActive(alert.isActive());
+        record.setCreatedTime(alert.getCreatedTime());
+        record.setLastTriggered(alert.getLastTriggered());
+        record.setTriggerCount(alert.getTriggerCount());
+        record.setAutoDeleteAfterTrigger(alert.isAutoDeleteAfterTrigger());
+        if (alert instanceof TimeBasedAlert) {
+            TimeBasedAlert timeAlert = (TimeBasedAlert) alert;
+            record.setTriggerTime(timeAlert.getTriggerTime());
+            record.setNextTriggerTime(timeAlert.getNextTriggerTime());
+            record.setRecurrencePattern(timeAlert.isRecurring() ? timeAlert.getRecurrencePattern() : null);
+        } else if (alert instanceof EnergyUsageAlert) {
+            EnergyUsageAlert energyAlert = (EnergyUsageAlert) alert;
+            record.setEnergyThreshold(energyAlert.getEnergyThreshold());
+            record.setComparisonType(energyAlert.getComparisonType());
+        } else if (alert instanceof RuleAlert) {
+            record.setRuleText(((RuleAlert) alert).getRule().getSource());
+        }
+        return record;
+    }
+
+    private Alert fromRecord(String userEmail, AlertRecord record) {
+        Alert alert;
+        try {
+            switch (AlertType.valueOf(record.getAlertType())) {
+                case TIME_BASED:
+                    TimeBasedAlert timeAlert = new TimeBasedAlert(record.getAlertId(), record.getAlertName(), record.getDeviceType(),
+                                                                  record.getRoomName(), record.getTriggerTime(), record.getMessage());
+                    timeAlert.nextTriggerTime = record.getNextTriggerTime();
+                    timeAlert.setRecurring(record.getRecurrencePattern() != null);
+                    timeAlert.setRecurrencePattern(record.getRecurrencePattern());
+                    alert = timeAlert;
+                    break;
+                case ENERGY_USAGE:
+                    alert = new EnergyUsageAlert(record.getAlertId(), record.getAlertName(), record.getDeviceType(), record.getRoomName(),
+                                                 record.getEnergyThreshold(), record.getComparisonType(), record.getMessage());
+                    break;
+                case COMPOUND_RULE:
+                    AlertRuleEngine engine = ruleEngines.computeIfAbsent(userEmail, k -> new AlertRuleEngine());
+                    alert = new RuleAlert(record.getAlertId(), record.getAlertName(), engine.compile(record.getRuleText()),
+                                          record.getMessage());
+                    break;
+                default:
+                    return null;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Skipping unreadable alert " + record.getAlertId() + ": " + e.getMessage());
+            return null;
+        }
+        alert.isActive = record.isActive();
+        alert.createdTime = record.getCreatedTime() != null ? record.getCreatedTime() : alert.createdTime;
+        alert.lastTriggered = record.getLastTriggered();
+        alert.triggerCount = record.getTriggerCount();
+        alert.autoDeleteAfterTrigger = record.isAutoDeleteAfterTrigger();
+        return alert;
+    }
+
+    public AlertNotificationDispatcher getNotificationDispatcher() {
+        return notificationDispatcher;
+    }
+
+    public AlertRateLimiter getRateLimiter() {
+        return rateLimiter;
     }
 
     private String generateAlertId() {
-        return "ALERT_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 1000);
+        return IdGenerator.getInstance().nextIdString("ALERT_");
     }
 
     public String getAlertHelp() {
@@ -339,14 +763,22 @@ public class AlertService {
         help.append("   - Example: Remind to turn off AC at 11 PM\n");
         help.append("   - Format: DD-MM-YYYY HH:MM\n\n");
         help.append("2. Energy Usage Alerts:\n");
-        help.append("   - Trigger when energy consumption meets threshold\n");
+        help.append("   - Trigger when energy consumption starts meeting the threshold\n");
         help.append("   - Example: Alert when TV uses more than 5 kWh\n");
         help.append("   - Comparison types: Greater than, Less than, Equals\n\n");
+        help.append("3. Compound Rule Alerts:\n");
+        help.append("   - Combine conditions with AND, OR, NOT and parentheses\n");
+        help.append("   - Example: AC in Master Bedroom ON for > 3h AND outside temp < 20\n");
+        help.append("   - Conditions: <device> in <room> ON/OFF [for > 2h], <device> in <room> energy > 5,\n");
+        help.append("     temp/humidity/aqi < 20, weather is Rainy, time between 22:00 and 06:00\n");
+        help.append("   - Fires when the rule becomes true, and again after it clears\n\n");
         help.append("IMPORTANT NOTES:\n");
         help.append("- Alerts are notifications only\n");
         help.append("- No automatic device actions are taken\n");
         help.append("- You decide what action to take when alerted\n");
         help.append("- Alerts can be activated/deactivated anytime\n");
+        help.append("- While a condition stays true, repeats are suppressed for a while\n");
+        help.append("- Bursts of notifications are rate-limited per user and per alert\n");
         return help.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package com.smarthome.service;
+import com.smarthome.model.AlertNotificationRecord;
+import com.smarthome.model.AlertRecord;
+import com.smarthome.util.DynamoDBConfig;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.TransactWriteItemsEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+public class AlertStore {
+    private static final String ALERT_TABLE_NAME = "alerts";
+    private static final String OUTBOX_TABLE_NAME = "alert_outbox";
+    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbTable<AlertRecord> alertTable;
+    private final DynamoDbTable<AlertNotificationRecord> outboxTable;
+    private final boolean isDemoMode;
+    private final Map<String, Map<String, AlertRecord>> demoAlerts;
+    private final Map<String, AlertNotificationRecord> demoOutbox;
+    public AlertStore() {
+        this.enhancedClient = DynamoDBConfig.getEnhancedClient();
+        if (enhancedClient != null) {
+            this.alertTable = enhancedClient.table(ALERT_TABLE_NAME, TableSchema.fromBean(AlertRecord.class));
+            this.outboxTable = enhancedClient.table(OUTBOX_TABLE_NAME, TableSchema.fromBean(AlertNotificationRecord.class));
+            this.isDemoMode = false;
+            this.demoAlerts = null;
+            this.demoOutbox = null;
+            createTableIfNotExists(alertTable, ALERT_TABLE_NAME);
+            createTableIfNotExists(outboxTable, OUTBOX_TABLE_NAME);
+        } else {
+            this.alertTable = null;
+            this.outboxTable = null;
+            this.isDemoMode = true;
+            this.demoAlerts = new ConcurrentHashMap<>();
+            this.demoOutbox = new ConcurrentHashMap<>();
+        }
+    }
+    private void createTableIfNotExists(DynamoDbTable<?> table, String tableName) {
+        try {
+            table.describeTable();
+            System.out.println("[INFO] DynamoDB table '" + tableName + "' already exists");
+        } catch (ResourceNotFoundException e) {
+            System.out.println("[INFO] Creating DynamoDB table '" + tableName + "'...");
+            table.createTable();
+            System.out.println(" Successfully created '" + tableName + "' table in DynamoDB");
+        } catch (Exception e) {
+            System.err.println(" Error checking/creating table: " + e.getMessage());
+            throw e;
+        }
+    }
+    public static String outboxKey(AlertNotificationRecord notification) {
+        return notification.getUserEmail() + "|" + notification.getNotificationId();
+    }
+    public boolean saveAlert(AlertRecord record) {
+        try {
+            if (isDemoMode) {
+                synchronized (this) {
+                    demoAlerts.computeIfAbsent(record.getUserEmail(), k -> new ConcurrentHashMap<>())
+                              .put(record.getAlertId(), record);
+                }
+            } else {
+                alertTable.putItem(record);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving alert: " + e.getMessage());
+            return false;
+        }
+    }
+    public boolean deleteAlert(String userEmail, String alertId) {
+        try {
+            if (isDemoMode) {
+                synchronized (this) {
+                    Map<String, AlertRecord> alerts = demoAlerts.get(userEmail);
+                    return alerts != null && alerts.remove(alertId) != null;
+                }
+            }
+            return alertTable.deleteItem(Key.builder().partitionValue(userEmail).sortValue(alertId).build()) != null;
+        } catch (Exception e) {
+            System.err.println("Error deleting alert: " + e.getMessage());
+            return false;
+        }
+    }
+    public List<AlertRecord> findAlerts(String userEmail) {
+        try {
+            if (isDemoMode) {
+                Map<String, AlertRecord> alerts = demoAlerts.get(userEmail);
+                return alerts != null ? new ArrayList<>(alerts.values()) : new ArrayList<>();
+            }
+            QueryConditional condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(userEmail).build());
+            List<AlertRecord> records = new ArrayList<>();
+            alertTable.query(condition).items().forEach(records::add);
+            return records;
+        } catch (Exception e) {
+            System.err.println("Error loading alerts: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    // Writes the alert's post-trigger state (or removes an auto-deleted alert) and its outbox entry
+    // in one transaction, so a notification is never recorded without the state change or vice versa
+    public boolean recordTrigger(AlertRecord alertState, boolean deleteAlert, AlertNotificationRecord notification) {
+        try {
+            if (isDemoMode) {
+                synchronized (this) {
+                    if (deleteAlert) {
+                        deleteAlert(alertState.getUserEmail(), alertState.getAlertId());
+                    } else {
+                        saveAlert(alertState);
+                    }
+                    demoOutbox.put(outboxKey(notification), notification);
+                }
+                return true;
+            }
+            TransactWriteItemsEnhancedRequest.Builder request = TransactWriteItemsEnhancedRequest.builder();
+            if (deleteAlert) {
+                request.addDeleteItem(alertTable, Key.builder().partitionValue(alertState.getUserEmail())
+                                                     .sortValue(alertState.getAlertId()).build());
+            } else {
+                request.addPutItem(alertTable, alertState);
+            }
+            request.addPutItem(outboxTable, notification);
+            enhancedClient.transactWriteItems(request.build());
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error recording alert trigger: " + e.getMessage());
+            return false;
+        }
+    }
+    public boolean saveNotification(AlertNotificationRecord notification) {
+        try {
+            if (isDemoMode) {
+                demoOutbox.put(outboxKey(notification), notification);
+            } else {
+                outboxTable.putItem(notification);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving alert notification: " + e.getMessage());
+            return false;
+        }
+    }
+    public boolean deleteNotification(AlertNotificationRecord notification) {
+        try {
+            if (isDemoMode) {
+                return demoOutbox.remove(outboxKey(notification)) != null;
+            }
+            Key key = Key.builder().partitionValue(notification.getUserEmail())
+                                   .sortValue(notification.getNotificationId()).build();
+            return outboxTable.deleteItem(key) != null;
+        } catch (Exception e) {
+            System.err.println("Error deleting alert notification: " + e.getMessage());
+            return false;
+        }
+    }
+    // Delivered notifications are deleted, so the outbox only holds undelivered ones and a scan stays small
+    public List<AlertNotificationRecord> findPendingNotifications(int limit) {
+        List<AlertNotificationRecord> pending = new ArrayList<>();
+        try {
+            Iterable<AlertNotificationRecord> records = isDemoMode ? demoOutbox.values() : outboxTable.scan().items();
+            for (AlertNotificationRecord record : records) {
+                if (pending.size() >= limit) break;
+                pending.add(record);
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading pending alert notifications: " + e.getMessage());
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,109 @@
+package com.smarthome.service;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+class CalendarAutomationScheduler {
+    // Actions that became due while nothing was scheduled (e.g. just after startup) still fire
+    // within this grace period, matching the old one-minute tick tolerance.
+    private static final long GRACE_SECONDS = 60;
+    private final ScheduledExecutorService executor;
+    private final Map<String, ScheduledFuture<?>> pendingJobs;
+    private final Map<String, List<String>> jobKeysByEvent;
+    private final Map<String, LocalDateTime> firedJobs;
+    private volatile CalendarEventService.AutomationHandler handler;
+    CalendarAutomationScheduler() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "calendar-automation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingJobs = new ConcurrentHashMap<>();
+        this.jobKeysByEvent = new ConcurrentHashMap<>();
+        this.firedJobs = new ConcurrentHashMap<>();
+    }
+    void setHandler(CalendarEventService.AutomationHandler handler) {
+        this.handler = handler;
+    }
+    CalendarEventService.AutomationHandler getHandler() {
+        return handler;
+    }
+    static String jobKey(CalendarEventService.CalendarEvent event, int actionIndex, LocalDateTime executionTime) {
+        return event.getEventId() + "#" + actionIndex + "#" + executionTime;
+    }
+    // Registers one job per automation action; keys already pending or fired are left alone
+    synchronized int schedule(String userEmail, CalendarEventService.CalendarEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        List<CalendarEventService.AutomationAction> actions = event.getAutomationActions();
+        int scheduled = 0;
+        for (int i = 0; i < actions.size(); i++) {
+            CalendarEventService.AutomationAction action = actions.get(i);
+            LocalDateTime executionTime = event.getStartTime().plusMinutes(action.getMinutesOffset());
+            String key = jobKey(event, i, executionTime);
+            if (pendingJobs.containsKey(key) || firedJobs.containsKey(key)) {
+                continue;
+            }
+            long delayMillis = Duration.between(now, executionTime).toMillis();
+            if (delayMillis < -TimeUnit.SECONDS.toMillis(GRACE_SECONDS)) {
+                continue;
+            }
+            ScheduledFuture<?> future = executor.schedule(() -> fire(key, userEmail, event, action, executionTime),
+                                                          Math.max(0L, delayMillis), TimeUnit.MILLISECONDS);
+            pendingJobs.put(key, future);
+            jobKeysByEvent.computeIfAbsent(event.getSeriesId(), k -> new ArrayList<>()).add(key);
+            scheduled++;
+        }
+        return scheduled;
+    }
+    synchronized int cancel(CalendarEventService.CalendarEvent event) {
+        List<String> keys = jobKeysByEvent.remove(event.getSeriesId());
+        if (keys == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (String key : keys) {
+            ScheduledFuture<?> future = pendingJobs.remove(key);
+            if (future != null && future.cancel(false)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+    int getPendingJobCount() {
+        return pendingJobs.size();
+    }
+    // Fired keys only need to outlive the window in which the same job could be scheduled again
+    void pruneFiredBefore(LocalDateTime cutoff) {
+        firedJobs.values().removeIf(executionTime -> executionTime.isBefore(cutoff));
+    }
+    private void fire(String key, String userEmail, CalendarEventService.CalendarEvent event,
+                      CalendarEventService.AutomationAction action, LocalDateTime executionTime) {
+        synchronized (this) {
+            if (pendingJobs.remove(key) == null || firedJobs.putIfAbsent(key, executionTime) != null) {
+                return;
+            }
+            List<String> keys = jobKeysByEvent.get(event.getSeriesId());
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    jobKeysByEvent.remove(event.getSeriesId());
+                }
+            }
+        }
+        CalendarEventService.AutomationHandler currentHandler = handler;
+        if (currentHandler == null) {
+            return;
+        }
+        try {
+            currentHandler.execute(userEmail, event, action, executionTime);
+        } catch (Exception e) {
+            System.err.println("Error executing calendar automation: " + e.getMessage());
+        }
+    }
+}
@@ -1,15 +1,60 @@
 package com.smarthome.service;
+import com.smarthome.model.CalendarAutomationRecord;
+import com.smarthome.model.CalendarEventRecord;
+import com.smarthome.model.GadgetIndex;
+import com.smarthome.util.AppConfig;
+import com.smarthome.util.ICalendarReader;
+import com.smarthome.util.ICalendarWriter;
+import com.smarthome.util.IdGenerator;
+import com.smarthome.util.RecurrenceRule;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 public class CalendarEventService {
     private static CalendarEventService instance;
-    private final Map<String, List<CalendarEvent>> userEvents;
+    private static final int UPCOMING_EVENTS_LIMIT = 10;
+    private static final int MAX_CACHED_USERS = 64;
+    // The automation window reaches this far back so actions scheduled after an event's start still fire
+    private static final long WINDOW_LOOKBACK_HOURS = 2;
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final String ICS_PRODUCT_ID = "-//Smart Home Dashboard//Calendar//EN";
+    private final CalendarEventStore eventStore;
+    private final CalendarAutomationScheduler automationScheduler;
+    private final Map<String, EventWindow> windowCache;
+    // Bumped on every change to a user's events, so a window loaded before the change is never cached
+    private final Map<String, Long> windowGenerations;
+    private final long windowHours;
+    private final long maxEventHours;
     private CalendarEventService() {
-        this.userEvents = new HashMap<>();
+        this.eventStore = new CalendarEventStore();
+        this.automationScheduler = new CalendarAutomationScheduler();
+        this.windowCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EventWindow> eldest) {
+                return size() > MAX_CACHED_USERS;
+            }
+        });
+        this.windowGenerations = new ConcurrentHashMap<>();
+        this.windowHours = AppConfig.getLong("calendar.cache.window.hours", 24);
+        this.maxEventHours = AppConfig.getLong("calendar.max.event.hours", 24);
     }
     public static synchronized CalendarEventService getInstance() {
         if (instance == null) {
@@ -17,6 +62,15 @@ public class CalendarEventService {
         }
         return instance;
     }
+    public interface AutomationHandler {
+        void execute(String userEmail, CalendarEvent event, AutomationAction action, LocalDateTime executionTime);
+    }
+    public void setAutomationHandler(AutomationHandler handler) {
+        automationScheduler.setHandler(handler);
+    }
+    public AutomationHandler getAutomationHandler() {
+        return automationScheduler.getHandler();
+    }
     public static class CalendarEvent {
         private String eventId;
         private String title;
@@ -27,6 +81,7 @@ public class CalendarEventService {
         private List<AutomationAction> automationActions;
         private boolean isRecurring;
         private String recurrencePattern;
+        private String seriesId;
         public CalendarEvent(String eventId, String title, String description, 
                            LocalDateTime startTime, LocalDateTime endTime, String eventType) {
             this.eventId = eventId;
@@ -35,7 +90,8 @@ public class CalendarEventService {
             this.startTime = startTime;
             this.endTime = endTime;
             this.eventType = eventType;
-            this.automationActions = new ArrayList<>();
+            // Copy-on-write: the automation threads iterate the actions while the CLI may add one
+            this.automationActions = new CopyOnWriteArrayList<>();
             this.isRecurring = false;
         }
         public String getEventId() { return eventId; }
@@ -47,6 +103,11 @@ public class CalendarEventService {
         public List<AutomationAction> getAutomationActions() { return automationActions; }
         public boolean isRecurring() { return isRecurring; }
         public String getRecurrencePattern() { return recurrencePattern; }
+        public String getSeriesId() { return seriesId != null ? seriesId : eventId; }
+        public boolean isOccurrence() { return seriesId != null; }
+        public RecurrenceRule getRecurrenceRule() {
+            return isRecurring && recurrencePattern != null ? RecurrenceRule.parse(recurrencePattern) : null;
+        }
         public void setRecurring(boolean recurring) { this.isRecurring = recurring; }
         public void setRecurrencePattern(String recurrencePattern) { this.recurrencePattern = recurrencePattern; }
         public void addAutomationAction(AutomationAction action) {
@@ -71,14 +132,37 @@ public class CalendarEventService {
     }
     public boolean createEvent(String userEmail, String title, String description, 
                              LocalDateTime startTime, LocalDateTime endTime, String eventType) {
+        return createEvent(userEmail, title, description, startTime, endTime, eventType, null);
+    }
+    public boolean createEvent(String userEmail, String title, String description,
+                             LocalDateTime startTime, LocalDateTime endTime, String eventType, String recurrenceRule) {
         try {
-            String eventId = generateEventId(userEmail, startTime);
+            String eventId = generateEventId();
             CalendarEvent event = new CalendarEvent(eventId, title, description, startTime, endTime, eventType);
-            userEvents.computeIfAbsent(userEmail, k -> new ArrayList<>()).add(event);
+            if (recurrenceRule != null && !recurrenceRule.trim().isEmpty()) {
+                RecurrenceRule rule;
+                try {
+                    rule = RecurrenceRule.parse(recurrenceRule);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("[ERROR] Invalid repeat rule: " + e.getMessage());
+                    return false;
+                }
+                event.setRecurring(true);
+                event.setRecurrencePattern(rule.toString());
+            }
             addDefaultAutomationForEventType(event, eventType);
+            List<CalendarEvent> conflicts = findConflictingEvents(userEmail, startTime, endTime);
+            if (!saveEvent(userEmail, event)) {
+                System.out.println("[ERROR] Failed to save calendar event: " + title);
+                return false;
+            }
             System.out.println("[SUCCESS] Calendar event created: " + title);
             System.out.println("Event Date: " + startTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")) + 
                              " to " + endTime.format(DateTimeFormatter.ofPattern("HH:mm")));
+            if (event.isRecurring()) {
+                System.out.println("Repeats: " + event.getRecurrenceRule().describe());
+            }
+            printConflicts(conflicts);
             return true;
         } catch (Exception e) {
             System.out.println("[ERROR] Failed to create calendar event: " + e.getMessage());
@@ -131,14 +215,294 @@ public class CalendarEventService {
                 break;
         }
     }
+    private void printConflicts(List<CalendarEvent> conflicts) {
+        if (conflicts.isEmpty()) {
+            return;
+        }
+        System.out.println("[WARNING] This event overlaps with " + conflicts.size() + " existing event(s):");
+        for (CalendarEvent conflict : conflicts) {
+            System.out.println("   - " + conflict.getTitle() + " (" +
+                             conflict.getStartTime().format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")) + " to " +
+                             conflict.getEndTime().format(DateTimeFormatter.ofPattern("HH:mm")) + ")");
+        }
+    }
+    // Interval tree over the events starting in [from, to] for one user, loaded with a single range query
+    private static class EventWindow {
+        private final EventIntervalTree events;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private boolean automationsScheduled;
+        private EventWindow(EventIntervalTree events, LocalDateTime from, LocalDateTime to) {
+            this.events = events;
+            this.from = from;
+            this.to = to;
+        }
+        private boolean covers(LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+            return !rangeStart.isBefore(from) && !rangeEnd.isAfter(to);
+        }
+    }
+    private EventWindow windowFor(String userEmail, LocalDateTime time) {
+        EventWindow window = windowCache.get(userEmail);
+        if (window == null || !window.covers(time.minusHours(WINDOW_LOOKBACK_HOURS), time.plusHours(1))) {
+            long generation = windowGenerations.getOrDefault(userEmail, 0L);
+            LocalDateTime from = time.minusHours(WINDOW_LOOKBACK_HOURS);
+            LocalDateTime to = time.plusHours(windowHours);
+            EventIntervalTree events = new EventIntervalTree();
+            for (CalendarEventRecord record : eventStore.findStartingBetween(userEmail, from, to)) {
+                events.insert(fromRecord(record));
+            }
+            for (CalendarEvent series : loadSeries(userEmail)) {
+                for (CalendarEvent occurrence : expand(series, from, to)) {
+                    events.insert(occurrence);
+                }
+            }
+            window = new EventWindow(events, from, to);
+            synchronized (windowCache) {
+                if (windowGenerations.getOrDefault(userEmail, 0L) == generation) {
+                    windowCache.put(userEmail, window);
+                }
+            }
+        }
+        return window;
+    }
+    private void invalidateWindow(String userEmail) {
+        windowGenerations.merge(userEmail, 1L, Long::sum);
+        windowCache.remove(userEmail);
+    }
+    private boolean saveEvent(String userEmail, CalendarEvent event) {
+        boolean saved = eventStore.save(toRecord(userEmail, event));
+        invalidateWindow(userEmail);
+        if (saved) {
+            scheduleAutomations(userEmail, event);
+        }
+        return saved;
+    }
+    private void scheduleAutomations(String userEmail, CalendarEvent event) {
+        if (event.isRecurring()) {
+            LocalDateTime now = LocalDateTime.now();
+            for (CalendarEvent occurrence : expand(event, now.minusHours(WINDOW_LOOKBACK_HOURS), now.plusHours(windowHours))) {
+                automationScheduler.schedule(userEmail, occurrence);
+            }
+        } else {
+            automationScheduler.schedule(userEmail, event);
+        }
+    }
+    private boolean removeEvent(String userEmail, CalendarEvent event) {
+        automationScheduler.cancel(event);
+        boolean removed = eventStore.delete(userEmail, recordKey(event));
+        invalidateWindow(userEmail);
+        return removed;
+    }
+    private static String recordKey(CalendarEvent event) {
+        return event.isRecurring()
+            ? CalendarEventRecord.buildSeriesKey(event.getStartTime(), event.getEventId())
+            : CalendarEventRecord.buildEventKey(event.getStartTime(), event.getEventId());
+    }
+    private List<CalendarEvent> loadSeries(String userEmail) {
+        List<CalendarEvent> series = new ArrayList<>();
+        for (CalendarEventRecord record : eventStore.findSeries(userEmail)) {
+            CalendarEvent event = fromRecord(record);
+            try {
+                event.getRecurrenceRule();
+                series.add(event);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping recurring event with invalid rule: " + record.getTitle());
+            }
+        }
+        return series;
+    }
+    // Occurrences starting in [from, to]; only the occurrences inside the window are ever materialised
+    private List<CalendarEvent> expand(CalendarEvent series, LocalDateTime from, LocalDateTime to) {
+        List<CalendarEvent> occurrences = new ArrayList<>();
+        for (LocalDateTime start : series.getRecurrenceRule().between(series.getStartTime(), from, to)) {
+            occurrences.add(occurrenceOf(series, start));
+        }
+        return occurrences;
+    }
+    private CalendarEvent occurrenceOf(CalendarEvent series, LocalDateTime start) {
+        LocalDateTime end = start.plus(java.time.Duration.between(series.getStartTime(), series.getEndTime()));
+        CalendarEvent occurrence = new CalendarEvent(series.getEventId() + "@" + start.format(DateTimeFormatter.ofPattern("yyyyMMddHHmm")),
+                                                     series.getTitle(), series.getDescription(), start, end, series.getEventType());
+        occurrence.setRecurring(true);
+        occurrence.setRecurrencePattern(series.getRecurrencePattern());
+        occurrence.seriesId = series.getEventId();
+        for (AutomationAction action : series.getAutomationActions()) {
+            occurrence.addAutomationAction(action);
+        }
+        return occurrence;
+    }
+    // Registers exact-time jobs for every event in the user's current window. Called from the
+    // timer tick so persisted events get scheduled after a restart and as the window rolls forward;
+    // job keys make repeated registration a no-op.
+    public int scheduleUpcomingAutomations(String userEmail, LocalDateTime now) {
+        EventWindow window = windowFor(userEmail, now);
+        synchronized (window) {
+            if (window.automationsScheduled) {
+                return 0;
+            }
+            window.automationsScheduled = true;
+        }
+        int scheduled = 0;
+        for (CalendarEvent event : window.events.all()) {
+            scheduled += automationScheduler.schedule(userEmail, event);
+        }
+        automationScheduler.pruneFiredBefore(window.from.minusHours(1));
+        return scheduled;
+    }
+    public int getPendingAutomationCount() {
+        return automationScheduler.getPendingJobCount();
+    }
+    private CalendarEventRecord toRecord(String userEmail, CalendarEvent event) {
+        CalendarEventRecord record = new CalendarEventRecord();
+        record.setUserEmail(userEmail);
+        record.setEventKey(recordKey(event));
+        record.setEventId(event.getEventId());
+        record.setTitle(event.getTitle());
+        record.setDescription(event.getDescription());
+        record.setStartTime(event.getStartTime());
+        record.setEndTime(event.getEndTime());
+        record.setEventType(event.getEventType());
+        record.setRecurring(event.isRecurring());
+        record.setRecurrencePattern(event.getRecurrencePattern());
+        List<CalendarAutomationRecord> actions = new ArrayList<>();
+        for (AutomationAction action : event.getAutomationActions()) {
+            actions.add(new CalendarAutomationRecord(action.getDeviceType(), action.getRoomName(),
+                                                     action.getAction(), action.getMinutesOffset()));
+        }
+        record.setAutomationActions(actions);
+        return record;
+    }
+    private CalendarEvent fromRecord(CalendarEventRecord record) {
+        CalendarEvent event = new CalendarEvent(record.getEventId(), record.getTitle(),
+                                                record.getDescription() != null ? record.getDescription() : "",
+                                                record.getStartTime(), record.getEndTime(), record.getEventType());
+        event.setRecurring(record.isRecurring());
+        event.setRecurrencePattern(record.getRecurrencePattern());
+        for (CalendarAutomationRecord action : record.getAutomationActions()) {
+            event.addAutomationAction(new AutomationAction(action.getDeviceType(), action.getRoomName(),
+                                                           action.getAction(), action.getMinutesOffset()));
+        }
+        return event;
+    }
+    private List<CalendarEvent> fromRecords(List<CalendarEventRecord> records) {
+        List<CalendarEvent> events = new ArrayList<>(records.size());
+        for (CalendarEventRecord record : records) {
+            events.add(fromRecord(record));
+        }
+        return events;
+    }
+    private CalendarEvent findEventByTitle(String userEmail, String eventTitle) {
+        for (CalendarEventRecord record : eventStore.findAll(userEmail)) {
+            if (record.getTitle().equalsIgnoreCase(eventTitle)) {
+                return fromRecord(record);
+            }
+        }
+        return null;
+    }
     public List<CalendarEvent> getUpcomingEvents(String userEmail) {
-        List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
-        LocalDateTime now = LocalDateTime.now();
-        return events.stream()
-            .filter(event -> event.getStartTime().isAfter(now))
-            .sorted((e1, e2) -> e1.getStartTime().compareTo(e2.getStartTime()))
-            .limit(10)
-            .toList();
+        List<CalendarEvent> upcoming = new ArrayList<>();
+        new UpcomingCursor(userEmail, LocalDateTime.now(), UPCOMING_EVENTS_LIMIT).forEachRemaining(upcoming::add);
+        return upcoming;
+    }
+    private static class SeriesCursor {
+        private final int index;
+        private final CalendarEvent series;
+        private LocalDateTime next;
+        private SeriesCursor(int index, CalendarEvent series) {
+            this.index = index;
+            this.series = series;
+        }
+        private boolean advance(LocalDateTime after) {
+            next = series.getRecurrenceRule().nextAfter(series.getStartTime(), after);
+            return next != null;
+        }
+    }
+    // One user's events after `now` in start order, at most `limit` of them: the one-off events come from a
+    // single query bounded by `limit`, and each series works out its next occurrence only once the previous
+    // one has been taken. On equal starts one-off events come first, then series in the order they were read.
+    private final class UpcomingCursor implements Iterator<CalendarEvent> {
+        private final Iterator<CalendarEventRecord> stored;
+        private final PriorityQueue<SeriesCursor> series = new PriorityQueue<>(
+            Comparator.comparing((SeriesCursor cursor) -> cursor.next).thenComparingInt(cursor -> cursor.index));
+        private CalendarEvent nextStored;
+        private int remaining;
+        private UpcomingCursor(String userEmail, LocalDateTime now, int limit) {
+            this.remaining = limit;
+            this.stored = eventStore.findUpcoming(userEmail, now, limit).iterator();
+            this.nextStored = stored.hasNext() ? fromRecord(stored.next()) : null;
+            List<CalendarEvent> seriesList = loadSeries(userEmail);
+            for (int i = 0; i < seriesList.size(); i++) {
+                SeriesCursor cursor = new SeriesCursor(i, seriesList.get(i));
+                if (cursor.advance(now)) {
+                    series.add(cursor);
+                }
+            }
+        }
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 && (nextStored != null || !series.isEmpty());
+        }
+        @Override
+        public CalendarEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            SeriesCursor cursor = series.peek();
+            if (nextStored != null && (cursor == null || !cursor.next.isBefore(nextStored.getStartTime()))) {
+                CalendarEvent event = nextStored;
+                nextStored = stored.hasNext() ? fromRecord(stored.next()) : null;
+                return event;
+            }
+            series.poll();
+            CalendarEvent occurrence = occurrenceOf(cursor.series, cursor.next);
+            if (cursor.advance(cursor.next)) {
+                series.add(cursor);
+            }
+            return occurrence;
+        }
+    }
+    public List<CalendarEvent> getActiveEvents(String userEmail, LocalDateTime time) {
+        return findConflictingEvents(userEmail, time, time.plusNanos(1));
+    }
+    public List<CalendarEvent> getEventsStartingWithin(String userEmail, LocalDateTime from, int minutes) {
+        LocalDateTime to = from.plusMinutes(minutes);
+        EventWindow window = windowFor(userEmail, LocalDateTime.now());
+        if (window.covers(from, to)) {
+            return window.events.startingBetween(from, to);
+        }
+        return loadBetween(userEmail, from, to).startingBetween(from, to);
+    }
+    public List<CalendarEvent> findConflictingEvents(String userEmail, LocalDateTime startTime, LocalDateTime endTime) {
+        // Only the start time is a sort key, so look back by the longest supported event length
+        return loadBetween(userEmail, startTime.minusHours(maxEventHours), endTime).overlapping(startTime, endTime);
+    }
+    private EventIntervalTree loadBetween(String userEmail, LocalDateTime from, LocalDateTime to) {
+        EventIntervalTree events = new EventIntervalTree();
+        for (CalendarEventRecord record : eventStore.findStartingBetween(userEmail, from, to)) {
+            events.insert(fromRecord(record));
+        }
+        for (CalendarEvent series : loadSeries(userEmail)) {
+            for (CalendarEvent occurrence : expand(series, from, to)) {
+                events.insert(occurrence);
+            }
+        }
+        return events;
+    }
+    public static class EventPage {
+        private final List<CalendarEvent> events;
+        private final String nextPageToken;
+        private EventPage(List<CalendarEvent> events, String nextPageToken) {
+            this.events = events;
+            this.nextPageToken = nextPageToken;
+        }
+        public List<CalendarEvent> getEvents() { return events; }
+        public String getNextPageToken() { return nextPageToken; }
+        public boolean hasNextPage() { return nextPageToken != null; }
+    }
+    public EventPage getPastEvents(String userEmail, String pageToken, int pageSize) {
+        CalendarEventStore.RecordPage page = eventStore.findHistoryPage(userEmail, LocalDateTime.now(), pageToken, pageSize);
+        return new EventPage(fromRecords(page.getRecords()), page.getNextPageToken());
     }
 
     public void displayUpcomingEvents(String userEmail) {
@@ -157,18 +521,165 @@ public class CalendarEventService {
             if (!event.getAutomationActions().isEmpty()) {
                 System.out.printf("   [AUTO] %d automation actions configured\n", event.getAutomationActions().size());
             }
+            if (event.isRecurring()) {
+                System.out.printf("   [REPEAT] %s\n", event.getRecurrenceRule().describe());
+            }
             if (!event.getDescription().isEmpty()) {
                 System.out.printf("   [INFO] %s\n", event.getDescription());
             }
             System.out.println();
         }
     }
+    public static class HouseholdEvent {
+        private final String ownerEmail;
+        private final CalendarEvent event;
+        private HouseholdEvent(String ownerEmail, CalendarEvent event) {
+            this.ownerEmail = ownerEmail;
+            this.event = event;
+        }
+        public String getOwnerEmail() { return ownerEmail; }
+        public CalendarEvent getEvent() { return event; }
+    }
+    public static class AutomationConflict {
+        private final HouseholdEvent first;
+        private final AutomationAction firstAction;
+        private final HouseholdEvent second;
+        private final AutomationAction secondAction;
+        private AutomationConflict(HouseholdEvent first, AutomationAction firstAction,
+                                   HouseholdEvent second, AutomationAction secondAction) {
+            this.first = first;
+            this.firstAction = firstAction;
+            this.second = second;
+            this.secondAction = secondAction;
+        }
+        public HouseholdEvent getFirst() { return first; }
+        public AutomationAction getFirstAction() { return firstAction; }
+        public HouseholdEvent getSecond() { return second; }
+        public AutomationAction getSecondAction() { return secondAction; }
+        public String getDeviceType() { return firstAction.getDeviceType(); }
+        public String getRoomName() { return firstAction.getRoomName(); }
+    }
+    public static class HouseholdCalendar {
+        private final List<HouseholdEvent> events;
+        private final List<AutomationConflict> conflicts;
+        private HouseholdCalendar(List<HouseholdEvent> events, List<AutomationConflict> conflicts) {
+            this.events = events;
+            this.conflicts = conflicts;
+        }
+        public List<HouseholdEvent> getEvents() { return events; }
+        public List<AutomationConflict> getConflicts() { return conflicts; }
+    }
+    private static class MemberCursor {
+        private final int memberIndex;
+        private final String memberEmail;
+        private final Iterator<CalendarEvent> remaining;
+        private CalendarEvent head;
+        private MemberCursor(int memberIndex, String memberEmail, Iterator<CalendarEvent> remaining) {
+            this.memberIndex = memberIndex;
+            this.memberEmail = memberEmail;
+            this.remaining = remaining;
+            this.head = remaining.next();
+        }
+        private boolean advance() {
+            head = remaining.hasNext() ? remaining.next() : null;
+            return head != null;
+        }
+    }
+    private static class ScheduledAction {
+        private final HouseholdEvent owner;
+        private final AutomationAction action;
+        private ScheduledAction(HouseholdEvent owner, AutomationAction action) {
+            this.owner = owner;
+            this.action = action;
+        }
+    }
+    // Every member's upcoming events come from a cursor ordered by start and bounded by `limit`, since no
+    // member can have more than that in the merged list, so a heap holding one cursor per member yields the
+    // merged order in O(n log k). Conflicts are found in the same pass: the ON/OFF actions of
+    // the merged events are indexed by device and by the minute they run, and two events conflict when
+    // they switch the same device opposite ways in the same minute.
+    public HouseholdCalendar getHouseholdCalendar(List<String> memberEmails, int limit) {
+        PriorityQueue<MemberCursor> cursors = new PriorityQueue<>(
+            Comparator.comparing((MemberCursor cursor) -> cursor.head.getStartTime()).thenComparingInt(cursor -> cursor.memberIndex));
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < memberEmails.size(); i++) {
+            UpcomingCursor upcoming = new UpcomingCursor(memberEmails.get(i), now, limit);
+            if (upcoming.hasNext()) {
+                cursors.add(new MemberCursor(i, memberEmails.get(i), upcoming));
+            }
+        }
+        List<HouseholdEvent> merged = new ArrayList<>();
+        List<AutomationConflict> conflicts = new ArrayList<>();
+        Map<String, Map<LocalDateTime, List<ScheduledAction>>> actionsByDevice = new HashMap<>();
+        while (!cursors.isEmpty() && merged.size() < limit) {
+            MemberCursor cursor = cursors.poll();
+            HouseholdEvent current = new HouseholdEvent(cursor.memberEmail, cursor.head);
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+            merged.add(current);
+            detectConflicts(current, actionsByDevice, conflicts);
+        }
+        return new HouseholdCalendar(merged, conflicts);
+    }
+    private void detectConflicts(HouseholdEvent current, Map<String, Map<LocalDateTime, List<ScheduledAction>>> actionsByDevice,
+                                 List<AutomationConflict> conflicts) {
+        CalendarEvent event = current.getEvent();
+        Set<String> reported = new HashSet<>();
+        for (AutomationAction action : event.getAutomationActions()) {
+            if (!isSwitchAction(action)) {
+                continue;
+            }
+            String deviceKey = GadgetIndex.deviceKey(action.getDeviceType(), action.getRoomName());
+            LocalDateTime minute = event.getStartTime().plusMinutes(action.getMinutesOffset()).truncatedTo(ChronoUnit.MINUTES);
+            List<ScheduledAction> sameMinute = actionsByDevice.computeIfAbsent(deviceKey, k -> new HashMap<>())
+                                                              .computeIfAbsent(minute, k -> new ArrayList<>());
+            for (ScheduledAction other : sameMinute) {
+                // One conflict per pair of events and device is enough to flag it
+                if (other.owner != current && !other.action.getAction().equalsIgnoreCase(action.getAction())
+                        && reported.add(deviceKey + "|" + other.owner.getEvent().getEventId())) {
+                    conflicts.add(new AutomationConflict(other.owner, other.action, current, action));
+                }
+            }
+            sameMinute.add(new ScheduledAction(current, action));
+        }
+    }
+    private static boolean isSwitchAction(AutomationAction action) {
+        return "ON".equalsIgnoreCase(action.getAction()) || "OFF".equalsIgnoreCase(action.getAction());
+    }
+    public void displayHouseholdCalendar(List<String> memberEmails, int limit) {
+        System.out.println("\n=== Household Calendar ===");
+        HouseholdCalendar calendar = getHouseholdCalendar(memberEmails, limit);
+        if (calendar.getEvents().isEmpty()) {
+            System.out.println("No upcoming events scheduled for the household.");
+            return;
+        }
+        for (int i = 0; i < calendar.getEvents().size(); i++) {
+            HouseholdEvent householdEvent = calendar.getEvents().get(i);
+            CalendarEvent event = householdEvent.getEvent();
+            System.out.printf("%d. %s (%s) - %s\n", (i + 1), event.getTitle(), event.getEventType(), householdEvent.getOwnerEmail());
+            System.out.printf("   [DATE] %s - %s\n",
+                            event.getStartTime().format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")),
+                            event.getEndTime().format(DateTimeFormatter.ofPattern("HH:mm")));
+        }
+        if (calendar.getConflicts().isEmpty()) {
+            System.out.println("\n[INFO] No conflicting automations found.");
+            return;
+        }
+        System.out.println("\n[WARNING] " + calendar.getConflicts().size() + " conflicting automation(s) found:");
+        for (AutomationConflict conflict : calendar.getConflicts()) {
+            System.out.printf("   - %s in %s: '%s' turns it %s at %s, '%s' turns it %s at %s\n",
+                            conflict.getDeviceType(), conflict.getRoomName(),
+                            conflict.getFirst().getEvent().getTitle(), conflict.getFirstAction().getAction(),
+                            conflict.getFirst().getEvent().getStartTime().plusMinutes(conflict.getFirstAction().getMinutesOffset())
+                                .format(DateTimeFormatter.ofPattern("dd-MM HH:mm")),
+                            conflict.getSecond().getEvent().getTitle(), conflict.getSecondAction().getAction(),
+                            conflict.getSecond().getEvent().getStartTime().plusMinutes(conflict.getSecondAction().getMinutesOffset())
+                                .format(DateTimeFormatter.ofPattern("dd-MM HH:mm")));
+        }
+    }
     public void displayEventAutomation(String userEmail, String eventTitle) {
-        List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
-        CalendarEvent event = events.stream()
-            .filter(e -> e.getTitle().equalsIgnoreCase(eventTitle))
-            .findFirst()
-            .orElse(null);
+        CalendarEvent event = findEventByTitle(userEmail, eventTitle);
         if (event == null) {
             System.out.println("[ERROR] Event not found: " + eventTitle);
             return;
@@ -197,38 +708,49 @@ public class CalendarEventService {
                       "Departure", "Leaving", "Custom");
     }
     public CalendarEvent getEventByTitle(String userEmail, String eventTitle) {
-        List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
-        return events.stream()
-            .filter(e -> e.getTitle().equalsIgnoreCase(eventTitle))
-            .findFirst()
-            .orElse(null);
+        return findEventByTitle(userEmail, eventTitle);
     }
 
     public boolean editEvent(String userEmail, String originalTitle, String newTitle, String newDescription,
                            LocalDateTime newStartTime, LocalDateTime newEndTime, String newEventType) {
         try {
-            List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
-            CalendarEvent eventToEdit = events.stream()
-                .filter(e -> e.getTitle().equalsIgnoreCase(originalTitle))
-                .findFirst()
-                .orElse(null);
+            CalendarEvent eventToEdit = findEventByTitle(userEmail, originalTitle);
 
             if (eventToEdit == null) {
                 System.out.println("[ERROR] Event not found: " + originalTitle);
                 return false;
             }
 
-            events.remove(eventToEdit);
-
-            String eventId = generateEventId(userEmail, newStartTime);
-            CalendarEvent updatedEvent = new CalendarEvent(eventId, newTitle, newDescription, newStartTime, newEndTime, newEventType);
-            events.add(updatedEvent);
+            if (newStartTime == null || newEndTime == null || !newEndTime.isAfter(newStartTime)) {
+                System.out.println("[ERROR] Event must end after it starts");
+                return false;
+            }
 
+            // The new version keeps the event's id and replaces the original only once it is saved
+            CalendarEvent updatedEvent = new CalendarEvent(eventToEdit.getEventId(), newTitle, newDescription, newStartTime, newEndTime, newEventType);
+            updatedEvent.setRecurring(eventToEdit.isRecurring());
+            updatedEvent.setRecurrencePattern(eventToEdit.getRecurrencePattern());
             addDefaultAutomationForEventType(updatedEvent, newEventType);
+            List<CalendarEvent> conflicts = findConflictingEvents(userEmail, newStartTime, newEndTime);
+            conflicts.removeIf(conflict -> conflict.getSeriesId().equals(eventToEdit.getEventId()));
+            automationScheduler.cancel(eventToEdit);
+            if (!saveEvent(userEmail, updatedEvent)) {
+                scheduleAutomations(userEmail, eventToEdit);
+                System.out.println("[ERROR] Failed to save updated event: " + newTitle);
+                return false;
+            }
+            String originalKey = recordKey(eventToEdit);
+            if (!originalKey.equals(recordKey(updatedEvent))) {
+                if (!eventStore.delete(userEmail, originalKey)) {
+                    System.out.println("[WARNING] The previous version of the event could not be removed");
+                }
+                invalidateWindow(userEmail);
+            }
 
             System.out.println("[SUCCESS] Event updated: " + newTitle);
             System.out.println("Event Date: " + newStartTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")) +
                              " to " + newEndTime.format(DateTimeFormatter.ofPattern("HH:mm")));
+            printConflicts(conflicts);
             return true;
         } catch (Exception e) {
             System.out.println("[ERROR] Failed to edit event: " + e.getMessage());
@@ -238,18 +760,14 @@ public class CalendarEventService {
 
     public boolean deleteEvent(String userEmail, String eventTitle) {
         try {
-            List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
-            CalendarEvent eventToDelete = events.stream()
-                .filter(event -> event.getTitle().equalsIgnoreCase(eventTitle))
-                .findFirst()
-                .orElse(null);
+            CalendarEvent eventToDelete = findEventByTitle(userEmail, eventTitle);
 
             if (eventToDelete == null) {
                 System.out.println("[ERROR] Event not found: " + eventTitle);
                 return false;
             }
 
-            boolean removed = events.removeIf(event -> event.getTitle().equalsIgnoreCase(eventTitle));
+            boolean removed = removeEvent(userEmail, eventToDelete);
             if (removed) {
                 System.out.println("[SUCCESS] Event deleted: " + eventTitle);
 
@@ -277,11 +795,7 @@ public class CalendarEventService {
     }
 
     public List<AutomationAction> getEventAutomationActions(String userEmail, String eventTitle) {
-        List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
-        CalendarEvent event = events.stream()
-            .filter(e -> e.getTitle().equalsIgnoreCase(eventTitle))
-            .findFirst()
-            .orElse(null);
+        CalendarEvent event = findEventByTitle(userEmail, eventTitle);
 
         if (event != null) {
             return new ArrayList<>(event.getAutomationActions());
@@ -289,9 +803,16 @@ public class CalendarEventService {
         return new ArrayList<>();
     }
     public List<CalendarEvent> getEventsForAutomation(String userEmail, LocalDateTime checkTime) {
-        List<CalendarEvent> events = userEvents.getOrDefault(userEmail, new ArrayList<>());
+        EventWindow window = windowFor(userEmail, checkTime);
+        // Only events whose start lies within the widest action offsets of the check
+        // time can trigger, so the tree narrows the scan to that start window.
+        LocalDateTime from = checkTime.minusMinutes(window.events.getMaxActionOffset() + 2L);
+        LocalDateTime to = checkTime.plusMinutes(2L - window.events.getMinActionOffset());
+        List<CalendarEvent> candidates = window.covers(from, to)
+            ? window.events.startingBetween(from, to)
+            : fromRecords(eventStore.findStartingBetween(userEmail, from, to));
         List<CalendarEvent> triggeredEvents = new ArrayList<>();
-        for (CalendarEvent event : events) {
+        for (CalendarEvent event : candidates) {
             for (AutomationAction action : event.getAutomationActions()) {
                 LocalDateTime triggerTime = event.getStartTime().plusMinutes(action.getMinutesOffset());
                 if (Math.abs(java.time.Duration.between(checkTime, triggerTime).toMinutes()) <= 1) {
@@ -302,8 +823,141 @@ public class CalendarEventService {
         }
         return triggeredEvents;
     }
-    private String generateEventId(String userEmail, LocalDateTime startTime) {
-        return userEmail.split("@")[0] + "_" + startTime.format(DateTimeFormatter.ofPattern("yyyyMMddHHmm"));
+    private String generateEventId() {
+        return IdGenerator.getInstance().nextIdString("EVT_");
+    }
+    public static class ImportResult {
+        private final int imported;
+        private final int skipped;
+        private ImportResult(int imported, int skipped) {
+            this.imported = imported;
+            this.skipped = skipped;
+        }
+        public int getImported() { return imported; }
+        public int getSkipped() { return skipped; }
+    }
+    // Streams VEVENTs from an .ics source and stores them in batches. Events keep their UID as event id,
+    // so importing the same file twice overwrites instead of duplicating.
+    public ImportResult importEvents(String userEmail, Reader source) throws IOException {
+        ICalendarReader reader = new ICalendarReader(source);
+        List<CalendarEventRecord> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        int imported = 0;
+        int skipped = 0;
+        ICalendarReader.VEvent vevent;
+        while ((vevent = reader.nextEvent()) != null) {
+            CalendarEvent event;
+            try {
+                event = fromVEvent(userEmail, vevent);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping event at line " + vevent.getStartLine() + ": " + e.getMessage());
+                event = null;
+            }
+            if (event == null) {
+                skipped++;
+                continue;
+            }
+            batch.add(toRecord(userEmail, event));
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                int saved = eventStore.saveAll(batch);
+                imported += saved;
+                skipped += batch.size() - saved;
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            int saved = eventStore.saveAll(batch);
+            imported += saved;
+            skipped += batch.size() - saved;
+        }
+        invalidateWindow(userEmail);
+        if (imported > 0) {
+            scheduleUpcomingAutomations(userEmail, LocalDateTime.now());
+        }
+        return new ImportResult(imported, skipped);
+    }
+    private CalendarEvent fromVEvent(String userEmail, ICalendarReader.VEvent vevent) {
+        ICalendarReader.Property startProperty = vevent.getProperty("DTSTART");
+        if (startProperty == null || "CANCELLED".equalsIgnoreCase(vevent.getText("STATUS"))) {
+            return null;
+        }
+        LocalDateTime startTime = ICalendarReader.parseDateTime(startProperty);
+        ICalendarReader.Property endProperty = vevent.getProperty("DTEND");
+        ICalendarReader.Property durationProperty = vevent.getProperty("DURATION");
+        LocalDateTime endTime;
+        if (endProperty != null) {
+            endTime = ICalendarReader.parseDateTime(endProperty);
+        } else if (durationProperty != null) {
+            endTime = startTime.plus(ICalendarReader.parseDuration(durationProperty.getValue()));
+        } else {
+            endTime = ICalendarReader.isDateValue(startProperty) ? startTime.plusDays(1) : startTime;
+        }
+        if (endTime.isBefore(startTime)) {
+            throw new IllegalArgumentException("event ends before it starts");
+        }
+        String title = vevent.getText("SUMMARY");
+        if (title == null || title.trim().isEmpty()) {
+            title = "Untitled Event";
+        }
+        String description = vevent.getText("DESCRIPTION");
+        String uid = vevent.getText("UID");
+        String eventId = uid != null && !uid.trim().isEmpty()
+            ? uid.trim().replaceAll("[^A-Za-z0-9@._-]", "_")
+            : generateEventId();
+        String eventType = mapCategoriesToEventType(vevent.getProperty("CATEGORIES"));
+        CalendarEvent event = new CalendarEvent(eventId, title.trim(), description != null ? description : "",
+                                                startTime, endTime, eventType);
+        ICalendarReader.Property rrule = vevent.getProperty("RRULE");
+        if (rrule != null) {
+            event.setRecurring(true);
+            event.setRecurrencePattern(RecurrenceRule.parse(rrule.getValue()).toString());
+        }
+        addDefaultAutomationForEventType(event, eventType);
+        return event;
+    }
+    // The first category naming a known event type wins; anything else becomes a Custom event
+    private String mapCategoriesToEventType(ICalendarReader.Property categories) {
+        if (categories != null) {
+            for (String category : categories.getValue().split("(?<!\\\\),")) {
+                String name = ICalendarReader.unescapeText(category).trim();
+                for (String eventType : getEventTypes()) {
+                    if (eventType.equalsIgnoreCase(name)) {
+                        return eventType;
+                    }
+                }
+            }
+        }
+        return "Custom";
+    }
+    // Writes every event of the user, one-off and recurring, as a single VCALENDAR
+    public int exportEvents(String userEmail, Writer target) throws IOException {
+        ICalendarWriter writer = new ICalendarWriter(target);
+        String stamp = LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss")) + "Z";
+        writer.begin("VCALENDAR");
+        writer.property("VERSION", "2.0");
+        writer.property("PRODID", ICS_PRODUCT_ID);
+        int exported = 0;
+        for (CalendarEventRecord record : eventStore.iterateAll(userEmail)) {
+            writer.begin("VEVENT");
+            writer.text("UID", record.getEventId());
+            writer.property("DTSTAMP", stamp);
+            writer.dateTime("DTSTART", record.getStartTime());
+            writer.dateTime("DTEND", record.getEndTime());
+            writer.text("SUMMARY", record.getTitle());
+            if (record.getDescription() != null && !record.getDescription().isEmpty()) {
+                writer.text("DESCRIPTION", record.getDescription());
+            }
+            if (record.getEventType() != null) {
+                writer.text("CATEGORIES", record.getEventType());
+            }
+            if (record.isRecurring() && record.getRecurrencePattern() != null) {
+                writer.property("RRULE", record.getRecurrencePattern());
+            }
+            writer.end("VEVENT");
+            exported++;
+        }
+        writer.end("VCALENDAR");
+        writer.flush();
+        return exported;
     }
     public String getCalendarHelp() {
         StringBuilder help = new StringBuilder();
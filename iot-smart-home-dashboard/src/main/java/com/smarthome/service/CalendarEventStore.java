@@ -0,0 +1,250 @@
+package com.smarthome.service;
+import com.smarthome.model.CalendarEventRecord;
+import com.smarthome.util.DynamoDBConfig;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+public class CalendarEventStore {
+    private static final String TABLE_NAME = "calendar_events";
+    // Sorts after any "#eventId" suffix, so "<time>" + KEY_MAX bounds every event at that second
+    private static final String KEY_MAX = "#\uffff";
+    private static final String DATE_KEY_MAX = "9999-12-31T23:59:59" + KEY_MAX;
+    // DynamoDB accepts at most 25 puts per BatchWriteItem call
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    private static final int MAX_BATCH_WRITE_ATTEMPTS = 5;
+    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbTable<CalendarEventRecord> eventTable;
+    private final boolean isDemoMode;
+    private final Map<String, ConcurrentSkipListMap<String, CalendarEventRecord>> demoEvents;
+    public CalendarEventStore() {
+        this.enhancedClient = DynamoDBConfig.getEnhancedClient();
+        if (enhancedClient != null) {
+            this.eventTable = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(CalendarEventRecord.class));
+            this.isDemoMode = false;
+            this.demoEvents = null;
+            createTableIfNotExists();
+        } else {
+            this.eventTable = null;
+            this.isDemoMode = true;
+            this.demoEvents = new ConcurrentHashMap<>();
+        }
+    }
+    private void createTableIfNotExists() {
+        if (!isDemoMode) {
+            try {
+                eventTable.describeTable();
+                System.out.println("[INFO] DynamoDB table '" + TABLE_NAME + "' already exists");
+            } catch (ResourceNotFoundException e) {
+                System.out.println("[INFO] Creating DynamoDB table '" + TABLE_NAME + "'...");
+                eventTable.createTable();
+                System.out.println(" Successfully created '" + TABLE_NAME + "' table in DynamoDB");
+            } catch (Exception e) {
+                System.err.println(" Error checking/creating table: " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+    public static class RecordPage {
+        private final List<CalendarEventRecord> records;
+        private final String nextPageToken;
+        public RecordPage(List<CalendarEventRecord> records, String nextPageToken) {
+            this.records = records;
+            this.nextPageToken = nextPageToken;
+        }
+        public List<CalendarEventRecord> getRecords() { return records; }
+        public String getNextPageToken() { return nextPageToken; }
+        public boolean hasNextPage() { return nextPageToken != null; }
+    }
+    public boolean save(CalendarEventRecord record) {
+        try {
+            if (isDemoMode) {
+                demoEvents.computeIfAbsent(record.getUserEmail(), k -> new ConcurrentSkipListMap<>())
+                          .put(record.getEventKey(), record);
+            } else {
+                eventTable.putItem(record);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error saving calendar event: " + e.getMessage());
+            return false;
+        }
+    }
+    // Writes the records in batches of 25, retrying unprocessed items; returns how many were stored
+    public int saveAll(List<CalendarEventRecord> records) {
+        if (isDemoMode) {
+            int saved = 0;
+            for (CalendarEventRecord record : records) {
+                if (save(record)) {
+                    saved++;
+                }
+            }
+            return saved;
+        }
+        int saved = 0;
+        for (int from = 0; from < records.size(); from += MAX_BATCH_WRITE_ITEMS) {
+            List<CalendarEventRecord> pending = records.subList(from, Math.min(records.size(), from + MAX_BATCH_WRITE_ITEMS));
+            try {
+                for (int attempt = 0; attempt < MAX_BATCH_WRITE_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                    if (attempt > 0) {
+                        Thread.sleep(50L << attempt);
+                    }
+                    WriteBatch.Builder<CalendarEventRecord> batch = WriteBatch.builder(CalendarEventRecord.class)
+                        .mappedTableResource(eventTable);
+                    for (CalendarEventRecord record : pending) {
+                        batch.addPutItem(record);
+                    }
+                    BatchWriteResult result = enhancedClient.batchWriteItem(
+                        BatchWriteItemEnhancedRequest.builder().writeBatches(batch.build()).build());
+                    List<CalendarEventRecord> unprocessed = result.unprocessedPutItemsForTable(eventTable);
+                    saved += pending.size() - unprocessed.size();
+                    pending = unprocessed;
+                }
+                if (!pending.isEmpty()) {
+                    System.err.println("Error saving calendar events: " + pending.size() + " items were not processed");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return saved;
+            } catch (Exception e) {
+                System.err.println("Error saving calendar events: " + e.getMessage());
+            }
+        }
+        return saved;
+    }
+    public boolean delete(String userEmail, String eventKey) {
+        try {
+            if (isDemoMode) {
+                NavigableMap<String, CalendarEventRecord> events = demoEvents.get(userEmail);
+                return events != null && events.remove(eventKey) != null;
+            }
+            Key key = Key.builder().partitionValue(userEmail).sortValue(eventKey).build();
+            return eventTable.deleteItem(key) != null;
+        } catch (Exception e) {
+            System.err.println("Error deleting calendar event: " + e.getMessage());
+            return false;
+        }
+    }
+    // Events starting strictly after the given time, earliest first
+    public List<CalendarEventRecord> findUpcoming(String userEmail, LocalDateTime after, int limit) {
+        String fromKey = CalendarEventRecord.sortKeyPrefix(after) + KEY_MAX;
+        try {
+            if (isDemoMode) {
+                return take(demoEventsFor(userEmail).subMap(fromKey, false, DATE_KEY_MAX, true).values(), limit);
+            }
+            QueryConditional condition = QueryConditional.sortBetween(key(userEmail, fromKey), key(userEmail, DATE_KEY_MAX));
+            return queryItems(condition, true, limit);
+        } catch (Exception e) {
+            System.err.println("Error querying upcoming events: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    // Events with from <= start <= to, earliest first
+    public List<CalendarEventRecord> findStartingBetween(String userEmail, LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) {
+            return new ArrayList<>();
+        }
+        String fromKey = CalendarEventRecord.sortKeyPrefix(from);
+        String toKey = CalendarEventRecord.sortKeyPrefix(to) + KEY_MAX;
+        List<CalendarEventRecord> records;
+        try {
+            if (isDemoMode) {
+                records = new ArrayList<>(demoEventsFor(userEmail).subMap(fromKey, true, toKey, true).values());
+            } else {
+                records = queryItems(QueryConditional.sortBetween(key(userEmail, fromKey), key(userEmail, toKey)),
+                                     true, Integer.MAX_VALUE);
+            }
+        } catch (Exception e) {
+            System.err.println("Error querying calendar events: " + e.getMessage());
+            return new ArrayList<>();
+        }
+        records.removeIf(record -> record.getStartTime().isBefore(from) || record.getStartTime().isAfter(to));
+        return records;
+    }
+    // Events starting before the given time, newest first; pass the previous page's token to continue
+    public RecordPage findHistoryPage(String userEmail, LocalDateTime before, String pageToken, int pageSize) {
+        String beforeKey = pageToken != null ? pageToken : CalendarEventRecord.sortKeyPrefix(before);
+        List<CalendarEventRecord> records;
+        try {
+            if (isDemoMode) {
+                records = take(demoEventsFor(userEmail).headMap(beforeKey, false).descendingMap().values(), pageSize);
+            } else {
+                records = queryItems(QueryConditional.sortLessThan(key(userEmail, beforeKey)), false, pageSize);
+            }
+        } catch (Exception e) {
+            System.err.println("Error querying event history: " + e.getMessage());
+            records = new ArrayList<>();
+        }
+        String nextToken = records.size() == pageSize ? records.get(records.size() - 1).getEventKey() : null;
+        return new RecordPage(records, nextToken);
+    }
+    public List<CalendarEventRecord> findSeries(String userEmail) {
+        String prefix = CalendarEventRecord.SERIES_KEY_PREFIX;
+        try {
+            if (isDemoMode) {
+                return new ArrayList<>(demoEventsFor(userEmail).subMap(prefix, true, prefix + "\uffff", true).values());
+            }
+            return queryItems(QueryConditional.sortBeginsWith(key(userEmail, prefix)), true, Integer.MAX_VALUE);
+        } catch (Exception e) {
+            System.err.println("Error loading recurring events: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    public List<CalendarEventRecord> findAll(String userEmail) {
+        try {
+            if (isDemoMode) {
+                return new ArrayList<>(demoEventsFor(userEmail).values());
+            }
+            QueryConditional condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(userEmail).build());
+            return queryItems(condition, true, Integer.MAX_VALUE);
+        } catch (Exception e) {
+            System.err.println("Error loading calendar events: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    // Lazily pages through every event of the user in sort-key order without loading them all at once
+    public Iterable<CalendarEventRecord> iterateAll(String userEmail) {
+        if (isDemoMode) {
+            return demoEventsFor(userEmail).values();
+        }
+        QueryConditional condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(userEmail).build());
+        return eventTable.query(QueryEnhancedRequest.builder().queryConditional(condition).build()).items();
+    }
+    private NavigableMap<String, CalendarEventRecord> demoEventsFor(String userEmail) {
+        NavigableMap<String, CalendarEventRecord> events = demoEvents.get(userEmail);
+        return events != null ? events : new ConcurrentSkipListMap<>();
+    }
+    private Key key(String userEmail, String eventKey) {
+        return Key.builder().partitionValue(userEmail).sortValue(eventKey).build();
+    }
+    private List<CalendarEventRecord> queryItems(QueryConditional condition, boolean ascending, int limit) {
+        QueryEnhancedRequest.Builder request = QueryEnhancedRequest.builder()
+            .queryConditional(condition)
+            .scanIndexForward(ascending);
+        if (limit != Integer.MAX_VALUE) {
+            request.limit(limit);
+        }
+        return take(eventTable.query(request.build()).items(), limit);
+    }
+    private static List<CalendarEventRecord> take(Iterable<CalendarEventRecord> records, int limit) {
+        List<CalendarEventRecord> result = new ArrayList<>();
+        for (CalendarEventRecord record : records) {
+            if (result.size() >= limit) break;
+            result.add(record);
+        }
+        return result;
+    }
+}
@@ -1,11 +1,13 @@
 package com.smarthome.service;
 import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
 import com.smarthome.util.DynamoDBConfig;
 import org.mindrot.jbcrypt.BCrypt;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -13,6 +15,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 public class CustomerService {
     private final DynamoDbTable<Customer> customerTable;
     private final boolean isDemoMode;
@@ -123,7 +126,7 @@ public class CustomerService {
                 customer = customerTable.getItem(key);
             }
             if (customer != null && customer.getGadgets() != null) {
-                for (com.smarthome.model.Gadget gadget : customer.getGadgets()) {
+                for (Gadget gadget : customer.getGadgets()) {
                     gadget.ensurePowerRating();
                 }
             }
@@ -133,6 +136,38 @@ public class CustomerService {
             return null;
         }
     }
+    // Hands every customer of one segment of the table to `action`, one at a time, so segments can be read
+    // in parallel without loading the whole table. Demo customers are split by email hash.
+    public boolean scanSegment(int segment, int totalSegments, Consumer<Customer> action) {
+        if (totalSegments < 1 || segment < 0 || segment >= totalSegments) {
+            throw new IllegalArgumentException("Segment " + segment + " of " + totalSegments);
+        }
+        try {
+            Iterable<Customer> customers;
+            if (isDemoMode) {
+                customers = () -> demoCustomers.values().stream()
+                        .filter(customer -> Math.floorMod(customer.getEmail().hashCode(), totalSegments) == segment)
+                        .iterator();
+            } else {
+                customers = customerTable.scan(ScanEnhancedRequest.builder()
+                        .segment(segment)
+                        .totalSegments(totalSegments)
+                        .build()).items();
+            }
+            for (Customer customer : customers) {
+                if (customer.getGadgets() != null) {
+                    for (Gadget gadget : customer.getGadgets()) {
+                        gadget.ensurePowerRating();
+                    }
+                }
+                action.accept(customer);
+            }
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error scanning customers (segment " + segment + " of " + totalSegments + "): " + e.getMessage());
+            return false;
+        }
+    }
     public boolean updateCustomer(Customer customer) {
         try {
             if (isDemoMode) {
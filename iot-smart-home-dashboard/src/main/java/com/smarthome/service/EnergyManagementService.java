@@ -2,9 +2,33 @@ package com.smarthome.service;
 import com.smarthome.model.Customer;
 import com.smarthome.model.Gadget;
 import com.smarthome.model.DeletedDeviceEnergyRecord;
+import com.smarthome.model.EnergyCube;
+import com.smarthome.model.EnergyTotals;
+import com.smarthome.util.AppConfig;
+import com.smarthome.util.DailyUsageForecast;
+import com.smarthome.util.EnergyHistory;
+import com.smarthome.util.EnergyHistory.Resolution;
+import com.smarthome.util.EnergyRingBuffer;
+import com.smarthome.util.FleetAggregate;
+import com.smarthome.util.LoadCurve;
+import com.smarthome.util.LoadShiftOptimizer;
+import com.smarthome.util.Tariff;
+import com.smarthome.util.TariffRegistry;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 public class EnergyManagementService {
     public static class EnergyReport {
         private double totalEnergyKWh;
@@ -22,39 +46,554 @@ public class EnergyManagementService {
         public String getReportPeriod() { return reportPeriod; }
         public List<Gadget> getDevices() { return devices; }
     }
-    public EnergyReport generateEnergyReport(Customer customer) {
-        List<Gadget> devices = customer.getGadgets();
-        double totalEnergyKWh = 0.0;
-        for (Gadget device : devices) {
-            double currentSessionEnergy = 0.0;
-            if (device.isOn() && device.getLastOnTime() != null) {
-                double currentSessionHours = device.getCurrentSessionUsageHours();
-                currentSessionEnergy = (device.getPowerRatingWatts() / 1000.0) * currentSessionHours;
+    public static class UsagePoint {
+        private LocalDateTime start;
+        private double energyKWh;
+        private double peakKW;
+        private long onMinutes;
+        public UsagePoint(LocalDateTime start, double energyKWh, double peakKW, long onMinutes) {
+            this.start = start;
+            this.energyKWh = energyKWh;
+            this.peakKW = peakKW;
+            this.onMinutes = onMinutes;
+        }
+        public LocalDateTime getStart() { return start; }
+        public double getEnergyKWh() { return energyKWh; }
+        // Sum of each device's busiest minute, so an upper bound on the household's peak demand
+        public double getPeakKW() { return peakKW; }
+        public long getOnMinutes() { return onMinutes; }
+    }
+    public static class UsageSeries {
+        private Resolution resolution;
+        private List<UsagePoint> points;
+        public UsageSeries(Resolution resolution, List<UsagePoint> points) {
+            this.resolution = resolution;
+            this.points = points;
+        }
+        public Resolution getResolution() { return resolution; }
+        public List<UsagePoint> getPoints() { return points; }
+    }
+    public static class BillProjection {
+        private double monthToDateKWh;
+        private double projectedKWh;
+        private double lowKWh;
+        private double highKWh;
+        private double projectedBill;
+        private double lowBill;
+        private double highBill;
+        private double yearlyBill;
+        private int daysRemaining;
+        private boolean basedOnHistory;
+        public BillProjection(double monthToDateKWh, double projectedKWh, double lowKWh, double highKWh,
+                              double projectedBill, double lowBill, double highBill, double yearlyBill,
+                              int daysRemaining, boolean basedOnHistory) {
+            this.monthToDateKWh = monthToDateKWh;
+            this.projectedKWh = projectedKWh;
+            this.lowKWh = lowKWh;
+            this.highKWh = highKWh;
+            this.projectedBill = projectedBill;
+            this.lowBill = lowBill;
+            this.highBill = highBill;
+            this.yearlyBill = yearlyBill;
+            this.daysRemaining = daysRemaining;
+            this.basedOnHistory = basedOnHistory;
+        }
+        public double getMonthToDateKWh() { return monthToDateKWh; }
+        public double getProjectedKWh() { return projectedKWh; }
+        public double getLowKWh() { return lowKWh; }
+        public double getHighKWh() { return highKWh; }
+        public double getProjectedBill() { return projectedBill; }
+        public double getLowBill() { return lowBill; }
+        public double getHighBill() { return highBill; }
+        public double getYearlyBill() { return yearlyBill; }
+        public int getDaysRemaining() { return daysRemaining; }
+        // False when no device has a completed day of recorded usage yet
+        public boolean isBasedOnHistory() { return basedOnHistory; }
+    }
+    public static class PeakContributor {
+        private Gadget device;
+        private double kW;
+        private double sharePercent;
+        public PeakContributor(Gadget device, double kW, double sharePercent) {
+            this.device = device;
+            this.kW = kW;
+            this.sharePercent = sharePercent;
+        }
+        public Gadget getDevice() { return device; }
+        public double getKW() { return kW; }
+        public double getSharePercent() { return sharePercent; }
+    }
+    public static class PeakDemand {
+        private LoadCurve loadCurve;
+        private double peakKW;
+        private LocalDateTime peakStart;
+        private LocalDateTime peakEnd;
+        private List<PeakContributor> contributors;
+        public PeakDemand(LoadCurve loadCurve, double peakKW, LocalDateTime peakStart, LocalDateTime peakEnd, List<PeakContributor> contributors) {
+            this.loadCurve = loadCurve;
+            this.peakKW = peakKW;
+            this.peakStart = peakStart;
+            this.peakEnd = peakEnd;
+            this.contributors = contributors;
+        }
+        public LoadCurve getLoadCurve() { return loadCurve; }
+        public double getPeakKW() { return peakKW; }
+        public LocalDateTime getPeakStart() { return peakStart; }
+        public LocalDateTime getPeakEnd() { return peakEnd; }
+        // Devices drawing power at the start of the peak, largest first
+        public List<PeakContributor> getContributors() { return contributors; }
+    }
+    public static class DeferrableRun {
+        private Gadget device;
+        private int durationMinutes;
+        private LocalDateTime deadline;
+        public DeferrableRun(Gadget device, int durationMinutes, LocalDateTime deadline) {
+            this.device = device;
+            this.durationMinutes = durationMinutes;
+            this.deadline = deadline;
+        }
+        public Gadget getDevice() { return device; }
+        public int getDurationMinutes() { return durationMinutes; }
+        // The run has to be finished by then
+        public LocalDateTime getDeadline() { return deadline; }
+    }
+    public static class PlannedRun {
+        private Gadget device;
+        private LocalDateTime start;
+        private LocalDateTime end;
+        private double cost;
+        private double costIfStartedNow;
+        public PlannedRun(Gadget device, LocalDateTime start, LocalDateTime end, double cost, double costIfStartedNow) {
+            this.device = device;
+            this.start = start;
+            this.end = end;
+            this.cost = cost;
+            this.costIfStartedNow = costIfStartedNow;
+        }
+        public Gadget getDevice() { return device; }
+        public LocalDateTime getStart() { return start; }
+        public LocalDateTime getEnd() { return end; }
+        // Time-of-use surcharge (or rebate, when negative) for the run; slab charges do not depend on timing
+        public double getCost() { return cost; }
+        public double getCostIfStartedNow() { return costIfStartedNow; }
+    }
+    public static class LoadShiftPlan {
+        private List<PlannedRun> runs;
+        private List<DeferrableRun> unscheduled;
+        private double capKW;
+        private double peakKW;
+        public LoadShiftPlan(List<PlannedRun> runs, List<DeferrableRun> unscheduled, double capKW, double peakKW) {
+            this.runs = runs;
+            this.unscheduled = unscheduled;
+            this.capKW = capKW;
+            this.peakKW = peakKW;
+        }
+        public List<PlannedRun> getRuns() { return runs; }
+        // Runs that cannot finish by their deadline without going over the cap
+        public List<DeferrableRun> getUnscheduled() { return unscheduled; }
+        public double getCapKW() { return capKW; }
+        // Highest expected household load with the planned runs
+        public double getPeakKW() { return peakKW; }
+        public double getTotalCost() { return runs.stream().mapToDouble(PlannedRun::getCost).sum(); }
+        public double getSavings() { return runs.stream().mapToDouble(run -> run.getCostIfStartedNow() - run.getCost()).sum(); }
+    }
+    public static class FleetReport {
+        private FleetAggregate aggregate;
+        private int segments;
+        private int failedSegments;
+        private long elapsedMillis;
+        public FleetReport(FleetAggregate aggregate, int segments, int failedSegments, long elapsedMillis) {
+            this.aggregate = aggregate;
+            this.segments = segments;
+            this.failedSegments = failedSegments;
+            this.elapsedMillis = elapsedMillis;
+        }
+        public FleetAggregate getAggregate() { return aggregate; }
+        public long getCustomerCount() { return aggregate.getCustomerCount(); }
+        public double getTotalEnergyKWh() { return aggregate.getTotalKWh(); }
+        public double getTotalCostRupees() { return aggregate.getTotalCostRupees(); }
+        public List<FleetAggregate.TopConsumer> getTopConsumers() { return aggregate.getTopConsumers(); }
+        public Map<String, Double> getKWhByType() { return aggregate.getKWhByType(); }
+        public int getSegments() { return segments; }
+        // Segments whose read failed; none of their customers are in the totals, even those read before the failure
+        public int getFailedSegments() { return failedSegments; }
+        public long getElapsedMillis() { return elapsedMillis; }
+    }
+    // Reads a range of segments: a single segment is streamed into its own aggregate, larger ranges are
+    // split in two and the halves merged, so idle workers steal the remaining segments. A segment that fails
+    // part way is dropped whole, so the totals never hold part of one. Tasks only live inside the pool and
+    // are never serialized.
+    @SuppressWarnings("serial")
+    private final class FleetSegmentTask extends RecursiveTask<FleetAggregate> {
+        private final CustomerService customers;
+        private final int from;
+        private final int to;
+        private final int totalSegments;
+        private final double[] costBands;
+        private final int topN;
+        private final AtomicInteger failed;
+        private FleetSegmentTask(CustomerService customers, int from, int to, int totalSegments, double[] costBands, int topN, AtomicInteger failed) {
+            this.customers = customers;
+            this.from = from;
+            this.to = to;
+            this.totalSegments = totalSegments;
+            this.costBands = costBands;
+            this.topN = topN;
+            this.failed = failed;
+        }
+        @Override
+        protected FleetAggregate compute() {
+            if (to - from == 1) {
+                FleetAggregate aggregate = new FleetAggregate(costBands, topN);
+                if (!customers.scanSegment(from, totalSegments, customer -> addToFleet(aggregate, customer))) {
+                    failed.incrementAndGet();
+                    return new FleetAggregate(costBands, topN);
+                }
+                return aggregate;
             }
-            totalEnergyKWh += device.getTotalEnergyConsumedKWh() + currentSessionEnergy;
+            int middle = (from + to) >>> 1;
+            FleetSegmentTask left = new FleetSegmentTask(customers, from, middle, totalSegments, costBands, topN, failed);
+            left.fork();
+            FleetAggregate right = new FleetSegmentTask(customers, middle, to, totalSegments, costBands, topN, failed).compute();
+            return left.join().merge(right);
         }
+    }
+    private static final String DEFAULT_DEFERRABLE = "WASHING_MACHINE:90,GEYSER:45,ROBO_VAC_MOP:60,VACUUM:60";
+    private static final String DEFAULT_FLEET_COST_BANDS = "500,1000,2000,5000,10000";
+    // Two-sided 90% band
+    private static final double PROJECTION_BAND_Z = 1.645;
+    private final Tariff tariff;
+    public EnergyManagementService() {
+        this(TariffRegistry.getInstance().getActive());
+    }
+    public EnergyManagementService(Tariff tariff) {
+        this.tariff = tariff;
+    }
+    public Tariff getTariff() {
+        return tariff;
+    }
+    public EnergyReport generateEnergyReport(Customer customer) {
+        List<Gadget> devices = customer.getGadgets();
+        // Finished sessions are kept up to date on every ON/OFF, so only running devices are priced here;
+        // each device's total at the start of the month is taken off, so the report covers this month only
+        double totalEnergyKWh = customer.getEnergyTotals().getMonthKWh(Gadget.getClock().millis());
         double deletedDeviceEnergy = customer.getTotalDeletedDeviceEnergyForCurrentMonth();
         totalEnergyKWh += deletedDeviceEnergy;
-        double totalCost = calculateSlabBasedCost(totalEnergyKWh);
+        double totalCost = tariff.bill(totalEnergyKWh, tariff.isTimeOfUse() ? getHourOfDaySplit(devices, totalEnergyKWh) : null);
         String reportPeriod = "Monthly Report - " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMMM yyyy"));
         return new EnergyReport(totalEnergyKWh, totalCost, reportPeriod, devices);
     }
+    // kWh per hour for the last `hours` hours, oldest first; the last entry is the current hour so far
+    public double[] getHourlyEnergyCurve(Customer customer, LocalDateTime now, int hours) {
+        LocalDateTime from = now.truncatedTo(ChronoUnit.HOURS).minusHours(hours - 1);
+        return energyOf(getUsageSeries(customer.getGadgets(), from, from.plusHours(hours), Resolution.HOUR));
+    }
+    // Average kWh used in each hour of the day over the last `days` days, indexed by hour (0-23)
+    public double[] getHourOfDayProfile(List<Gadget> devices, LocalDateTime now, int days) {
+        LocalDateTime from = now.truncatedTo(ChronoUnit.DAYS).minusDays(days - 1);
+        double[] hourly = energyOf(getUsageSeries(devices, from, from.plusDays(days), Resolution.HOUR));
+        double[] profile = new double[24];
+        for (int i = 0; i < hourly.length; i++) {
+            profile[i % 24] += hourly[i] / days;
+        }
+        return profile;
+    }
+    // Usage over [from, to) at the finest resolution that fits in maxPoints and is still retained for
+    // `from`, so a day reads hours and a year reads days rather than half a million minutes
+    public UsageSeries getUsageSeries(List<Gadget> devices, LocalDateTime from, LocalDateTime to, int maxPoints) {
+        return getUsageSeries(devices, from, to, chooseResolution(from, to, maxPoints, LocalDateTime.now()));
+    }
+    public Resolution chooseResolution(LocalDateTime from, LocalDateTime to, int maxPoints, LocalDateTime now) {
+        long fromMinute = EnergyRingBuffer.minuteOf(from);
+        long toMinute = EnergyRingBuffer.minuteOf(to);
+        long nowMinute = EnergyRingBuffer.minuteOf(now);
+        for (Resolution resolution : Resolution.values()) {
+            long points = resolution.bucketOf(toMinute - 1) - resolution.bucketOf(fromMinute) + 1;
+            long retained = resolution.bucketOf(nowMinute) - resolution.bucketOf(fromMinute) + 1;
+            if (points <= maxPoints && retained <= EnergyHistory.configuredRetention(resolution)) {
+                return resolution;
+            }
+        }
+        return Resolution.MONTH;
+    }
+    public UsageSeries getUsageSeries(List<Gadget> devices, LocalDateTime from, LocalDateTime to, Resolution resolution) {
+        long fromBucket = resolution.bucketOf(EnergyRingBuffer.minuteOf(from));
+        long toBucket = resolution.bucketOf(EnergyRingBuffer.minuteOf(to) - 1);
+        int count = (int) Math.max(0, toBucket - fromBucket + 1);
+        double[] sums = new double[count];
+        double[] maxMinutes = new double[count];
+        long[] onMinutes = new long[count];
+        for (Gadget device : devices) {
+            device.addUsageInto(resolution, fromBucket, sums, maxMinutes, onMinutes);
+        }
+        List<UsagePoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = EnergyRingBuffer.timeOf(resolution.startMinuteOf(fromBucket + i));
+            points.add(new UsagePoint(start, sums[i] / 1000.0, maxMinutes[i] * 60 / 1000.0, onMinutes[i]));
+        }
+        return new UsageSeries(resolution, points);
+    }
+    private static double[] energyOf(UsageSeries series) {
+        return series.getPoints().stream().mapToDouble(UsagePoint::getEnergyKWh).toArray();
+    }
+    // Household load curve over [from, to) from every device's logged ON/OFF sessions and the ones still
+    // running, with the highest simultaneous demand and what each device drew at that moment
+    public PeakDemand analyzePeakDemand(List<Gadget> devices, LocalDateTime from, LocalDateTime to) {
+        ZoneId zone = Gadget.getClock().getZone();
+        LoadCurve.Builder builder = new LoadCurve.Builder(from.atZone(zone).toInstant().toEpochMilli(),
+                                                          to.atZone(zone).toInstant().toEpochMilli(), devices.size());
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).addSessionsTo(builder, i);
+        }
+        LoadCurve curve = builder.build();
+        double peakKW = curve.getPeakKW();
+        List<PeakContributor> contributors = new ArrayList<>();
+        for (int i = 0; i < devices.size(); i++) {
+            double kW = curve.getPeakWatts(i) / 1000.0;
+            if (kW > 0) {
+                contributors.add(new PeakContributor(devices.get(i), kW, kW / peakKW * 100));
+            }
+        }
+        contributors.sort((a, b) -> Double.compare(b.getKW(), a.getKW()));
+        return new PeakDemand(curve, peakKW, toLocalDateTime(curve.getPeakStart(), zone),
+                              toLocalDateTime(curve.getPeakEnd(), zone), contributors);
+    }
+    private static LocalDateTime toLocalDateTime(long epochMillis, ZoneId zone) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    }
+    // One run per device whose type is listed in loadshift.deferrable ("TYPE:minutes,..."), due within
+    // loadshift.deadline.hours of now
+    public List<DeferrableRun> getDeferrableRuns(List<Gadget> devices, LocalDateTime now) {
+        Map<String, Integer> durations = new LinkedHashMap<>();
+        for (String part : AppConfig.getString("loadshift.deferrable", DEFAULT_DEFERRABLE).split(",")) {
+            String[] fields = part.trim().split(":");
+            try {
+                durations.put(fields[0].trim().toUpperCase(), Integer.parseInt(fields[1].trim()));
+            } catch (RuntimeException e) {
+                System.err.println("Ignoring invalid loadshift.deferrable entry '" + part.trim() + "'");
+            }
+        }
+        LocalDateTime deadline = now.plusHours(AppConfig.getInt("loadshift.deadline.hours", 24));
+        List<DeferrableRun> runs = new ArrayList<>();
+        for (Gadget device : devices) {
+            Integer minutes = device.getType() != null ? durations.get(device.getType().toUpperCase()) : null;
+            if (minutes != null && minutes > 0) {
+                runs.add(new DeferrableRun(device, minutes, deadline));
+            }
+        }
+        return runs;
+    }
+    public LoadShiftPlan planLoadShift(List<Gadget> devices, List<DeferrableRun> runs, LocalDateTime now) {
+        return planLoadShift(devices, runs, now, AppConfig.getDouble("loadshift.cap.kw", 5.0));
+    }
+    // Cheapest start for each deferrable run under the tariff's time-of-use windows, keeping the expected
+    // household load (the other devices' average for the hour over the last week) plus the runs under capKW.
+    // Runs start on the loadshift.slot.minutes grid, at least loadshift.margin.minutes from now so they can
+    // still become timers after the plan has been reviewed.
+    public LoadShiftPlan planLoadShift(List<Gadget> devices, List<DeferrableRun> runs, LocalDateTime now, double capKW) {
+        int slotMinutes = Math.max(1, AppConfig.getInt("loadshift.slot.minutes", 15));
+        int marginMinutes = Math.max(1, AppConfig.getInt("loadshift.margin.minutes", 2));
+        LocalDateTime earliestStart = now.plusMinutes(marginMinutes);
+        LocalDateTime first = earliestStart.truncatedTo(ChronoUnit.MINUTES);
+        if (first.isBefore(earliestStart)) {
+            first = first.plusMinutes(1);
+        }
+        long firstMinute = EnergyRingBuffer.minuteOf(first);
+        first = first.plusMinutes(Math.floorMod(-firstMinute, (long) slotMinutes));
+        LocalDateTime horizon = first;
+        for (DeferrableRun run : runs) {
+            horizon = run.getDeadline().isAfter(horizon) ? run.getDeadline() : horizon;
+        }
+        int slots = (int) Math.min(7L * 24 * 60 / slotMinutes, ChronoUnit.MINUTES.between(first, horizon) / slotMinutes);
+        List<Gadget> others = new ArrayList<>(devices);
+        runs.forEach(run -> others.remove(run.getDevice()));
+        double[] hourProfile = getHourOfDayProfile(others, now, 7);
+        double[] rates = new double[slots];
+        double[] baseKW = new double[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            int hour = first.plusMinutes((long) slot * slotMinutes).getHour();
+            rates[slot] = tariff.getHourlyAdjustment(hour);
+            baseKW[slot] = hourProfile[hour];
+        }
+        LoadShiftOptimizer optimizer = new LoadShiftOptimizer(rates, baseKW, capKW, slotMinutes / 60.0);
+        double[] kW = new double[runs.size()];
+        int[] length = new int[runs.size()];
+        int[] earliest = new int[runs.size()];
+        int[] deadline = new int[runs.size()];
+        for (int i = 0; i < runs.size(); i++) {
+            DeferrableRun run = runs.get(i);
+            kW[i] = run.getDevice().getPowerRatingWatts() / 1000.0;
+            length[i] = (run.getDurationMinutes() + slotMinutes - 1) / slotMinutes;
+            deadline[i] = (int) Math.min(slots, Math.max(0, ChronoUnit.MINUTES.between(first, run.getDeadline()) / slotMinutes));
+        }
+        int[] starts = optimizer.optimize(kW, length, earliest, deadline);
+        List<PlannedRun> planned = new ArrayList<>();
+        List<DeferrableRun> unscheduled = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            if (starts[i] < 0) {
+                unscheduled.add(runs.get(i));
+                continue;
+            }
+            LocalDateTime start = first.plusMinutes((long) starts[i] * slotMinutes);
+            double costNow = length[i] <= slots ? optimizer.runCost(kW[i], 0, length[i]) : 0.0;
+            planned.add(new PlannedRun(runs.get(i).getDevice(), start, start.plusMinutes(runs.get(i).getDurationMinutes()),
+                                       optimizer.runCost(kW[i], starts[i], length[i]), costNow));
+        }
+        planned.sort((a, b) -> a.getStart().compareTo(b.getStart()));
+        double peakKW = Arrays.stream(optimizer.getLoadKW()).max().orElse(0.0);
+        return new LoadShiftPlan(planned, unscheduled, capKW, peakKW);
+    }
+    // Energy and bills of every customer, read as fleet.segments segments (0 for four per core) on
+    // fleet.parallelism workers (0 for one per core) and merged; only the customers being read are in memory
+    public FleetReport generateFleetReport(CustomerService customers) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int segments = AppConfig.getInt("fleet.segments", 0);
+        int parallelism = AppConfig.getInt("fleet.parallelism", 0);
+        return generateFleetReport(customers, segments > 0 ? segments : 4 * cores, parallelism > 0 ? parallelism : cores);
+    }
+    public FleetReport generateFleetReport(CustomerService customers, int segments, int parallelism) {
+        if (segments < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Segments and parallelism must be at least 1");
+        }
+        double[] costBands = parseCostBands(AppConfig.getString("fleet.cost.bands", DEFAULT_FLEET_COST_BANDS));
+        int topN = Math.max(0, AppConfig.getInt("fleet.top.consumers", 10));
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            FleetAggregate aggregate = pool.invoke(new FleetSegmentTask(customers, 0, segments, segments, costBands, topN, failed));
+            return new FleetReport(aggregate, segments, failed.get(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    private void addToFleet(FleetAggregate aggregate, Customer customer) {
+        EnergyReport report = generateEnergyReport(customer);
+        for (Gadget device : report.getDevices()) {
+            aggregate.addDevice(device.getType(), device.getCurrentMonthEnergyKWh());
+        }
+        aggregate.addCustomer(customer.getEmail(), report.getTotalEnergyKWh(), report.getTotalCostRupees(), report.getDevices().size());
+    }
+    private static double[] parseCostBands(String value) {
+        try {
+            double[] bands = Arrays.stream(value.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray();
+            new FleetAggregate(bands, 0);
+            return bands;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalid fleet.cost.bands '" + value + "'");
+            return Arrays.stream(DEFAULT_FLEET_COST_BANDS.split(",")).mapToDouble(Double::parseDouble).toArray();
+        }
+    }
+    // kWh, on-minutes and cost over [from, to) rolled up to `by` from the customer's pre-aggregated cube;
+    // room and type narrow the query (null for all)
+    public Map<String, EnergyCube.Slice> queryUsage(Customer customer, EnergyCube.Dimension by, LocalDateTime from, LocalDateTime to,
+                                                    String room, String type) {
+        return customer.getEnergyCube().rollUp(by, from, to, room, type, tariff);
+    }
+    // Hours of the day ordered by the energy used in them, highest first; hours with no usage are left out
+    public int[] getPeakHours(double[] hourOfDayProfile, int limit) {
+        return IntStream.range(0, hourOfDayProfile.length)
+                .filter(hour -> hourOfDayProfile[hour] > 0)
+                .boxed()
+                .sorted((a, b) -> Double.compare(hourOfDayProfile[b], hourOfDayProfile[a]))
+                .limit(limit)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+    // Slab cost of the units under the active tariff, without fixed or time-of-use charges
     public double calculateSlabBasedCost(double totalKWh) {
-        double totalCost = 0.0;
-        if (totalKWh <= 30) {
-            totalCost = totalKWh * 1.90;
-        } else if (totalKWh <= 75) {
-            totalCost = 30 * 1.90 + (totalKWh - 30) * 3.0;
-        } else if (totalKWh <= 125) {
-            totalCost = 30 * 1.90 + 45 * 3.0 + (totalKWh - 75) * 4.50;
-        } else if (totalKWh <= 225) {
-            totalCost = 30 * 1.90 + 45 * 3.0 + 50 * 4.50 + (totalKWh - 125) * 6.0;
-        } else if (totalKWh <= 400) {
-            totalCost = 30 * 1.90 + 45 * 3.0 + 50 * 4.50 + 100 * 6.0 + (totalKWh - 225) * 8.75;
-        } else {
-            totalCost = 30 * 1.90 + 45 * 3.0 + 50 * 4.50 + 100 * 6.0 + 175 * 8.75 + (totalKWh - 400) * 9.75;
+        return Tariff.round(tariff.energyCost(totalKWh));
+    }
+    // Bills for many consumptions at once (customers or what-if scenarios), index for index
+    public double[] calculateBills(double[] totalKWh) {
+        double[] bills = new double[totalKWh.length];
+        tariff.billAll(totalKWh, bills);
+        return bills;
+    }
+    // What the same usage would cost under every configured tariff
+    public Map<String, Double> compareTariffs(double totalKWh, double[] kWhByHourOfDay) {
+        Map<String, Double> bills = new LinkedHashMap<>();
+        for (Tariff candidate : TariffRegistry.getInstance().getAll()) {
+            bills.put(candidate.getName(), candidate.bill(totalKWh, kWhByHourOfDay));
         }
-        return Math.round(totalCost * 100.0) / 100.0;
+        return bills;
+    }
+    // Month-end bill from the usage recorded so far this month plus each device's smoothed weekday and
+    // weekend daily usage for the rest of it; the band assumes days vary independently
+    public BillProjection projectMonthlyBill(Customer customer, LocalDateTime now) {
+        List<Gadget> devices = customer.getGadgets();
+        LocalDate monthStart = now.toLocalDate().withDayOfMonth(1);
+        long firstDay = Resolution.DAY.bucketOf(EnergyRingBuffer.minuteOf(monthStart.atStartOfDay()));
+        long endDay = firstDay + monthStart.lengthOfMonth();
+        long today = Resolution.DAY.bucketOf(EnergyRingBuffer.minuteOf(now));
+        int elapsedDays = (int) (today - firstDay + 1);
+        double[] dailyWh = new double[elapsedDays];
+        double restOfToday = 1.0 - now.toLocalTime().toSecondOfDay() / 86_400.0;
+        double expectedWh = 0.0;
+        double varianceWh = 0.0;
+        double weekWh = 0.0;
+        boolean basedOnHistory = false;
+        for (Gadget device : devices) {
+            device.addUsageInto(Resolution.DAY, firstDay, dailyWh, new double[elapsedDays], new long[elapsedDays]);
+            DailyUsageForecast forecast = device.getUsageHistory().getForecast(today);
+            if (!forecast.hasObservations()) {
+                continue;
+            }
+            basedOnHistory = true;
+            expectedWh += forecast.expectedWh(today) * restOfToday;
+            varianceWh += forecast.varianceWh(today) * restOfToday;
+            for (long day = today + 1; day < endDay; day++) {
+                expectedWh += forecast.expectedWh(day);
+                varianceWh += forecast.varianceWh(day);
+            }
+            for (long day = today + 1; day <= today + 7; day++) {
+                weekWh += forecast.expectedWh(day);
+            }
+        }
+        double monthToDateKWh = customer.getTotalDeletedDeviceEnergyForCurrentMonth();
+        for (double wh : dailyWh) {
+            monthToDateKWh += wh / 1000.0;
+        }
+        double remainingKWh = expectedWh / 1000.0;
+        double bandKWh = PROJECTION_BAND_Z * Math.sqrt(varianceWh) / 1000.0;
+        double projectedKWh = monthToDateKWh + remainingKWh;
+        double lowKWh = monthToDateKWh + Math.max(0.0, remainingKWh - bandKWh);
+        double highKWh = projectedKWh + bandKWh;
+        double monthlyAverageKWh = weekWh / 1000.0 / 7 * 365 / 12;
+        double[] shares = tariff.isTimeOfUse() ? getHourOfDaySplit(devices, 1.0) : null;
+        return new BillProjection(monthToDateKWh, projectedKWh, lowKWh, highKWh,
+                                  tariff.bill(projectedKWh, scaled(shares, projectedKWh)),
+                                  tariff.bill(lowKWh, scaled(shares, lowKWh)),
+                                  tariff.bill(highKWh, scaled(shares, highKWh)),
+                                  Tariff.round(12 * tariff.bill(monthlyAverageKWh, scaled(shares, monthlyAverageKWh))),
+                                  (int) (endDay - today - 1), basedOnHistory);
+    }
+    private static double[] scaled(double[] shares, double kWh) {
+        if (shares == null) {
+            return null;
+        }
+        double[] split = new double[shares.length];
+        for (int i = 0; i < shares.length; i++) {
+            split[i] = shares[i] * kWh;
+        }
+        return split;
+    }
+    // Splits totalKWh across the hours of the day in the proportions recorded over the last 30 days;
+    // null when nothing has been recorded
+    public double[] getHourOfDaySplit(List<Gadget> devices, double totalKWh) {
+        double[] profile = getHourOfDayProfile(devices, LocalDateTime.now(), 30);
+        double recorded = 0.0;
+        for (double kWh : profile) {
+            recorded += kWh;
+        }
+        if (recorded <= 0) {
+            return null;
+        }
+        double[] split = new double[24];
+        for (int hour = 0; hour < 24; hour++) {
+            split[hour] = totalKWh * profile[hour] / recorded;
+        }
+        return split;
     }
     public String getSlabBreakdown(double totalKWh) {
         StringBuilder breakdown = new StringBuilder();
@@ -62,53 +601,33 @@ public class EnergyManagementService {
         breakdown.append("+---------------+----------+----------+----------+\n");
         breakdown.append(String.format("| %-13s | %-8s | %-8s | %-8s |\n", "Slab Range", "Units", "Rate/Unit", "Cost"));
         breakdown.append("+---------------+----------+----------+----------+\n");
-        double remainingKWh = totalKWh;
         double totalCost = 0.0;
-        if (remainingKWh > 0) {
-            double slab1 = Math.min(remainingKWh, 30);
-            double cost1 = slab1 * 1.90;
-            totalCost += cost1;
-            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", "0-30 kWh", slab1, 1.90, cost1));
-            remainingKWh -= slab1;
-        }
-        if (remainingKWh > 0) {
-            double slab2 = Math.min(remainingKWh, 45);
-            double cost2 = slab2 * 3.0;
-            totalCost += cost2;
-            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", "31-75 kWh", slab2, 3.0, cost2));
-            remainingKWh -= slab2;
-        }
-        if (remainingKWh > 0) {
-            double slab3 = Math.min(remainingKWh, 50);
-            double cost3 = slab3 * 4.50;
-            totalCost += cost3;
-            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", "76-125 kWh", slab3, 4.50, cost3));
-            remainingKWh -= slab3;
-        }
-        if (remainingKWh > 0) {
-            double slab4 = Math.min(remainingKWh, 100);
-            double cost4 = slab4 * 6.0;
-            totalCost += cost4;
-            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", "126-225 kWh", slab4, 6.0, cost4));
-            remainingKWh -= slab4;
-        }
-        if (remainingKWh > 0) {
-            double slab5 = Math.min(remainingKWh, 175);
-            double cost5 = slab5 * 8.75;
-            totalCost += cost5;
-            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", "226-400 kWh", slab5, 8.75, cost5));
-            remainingKWh -= slab5;
-        }
-        if (remainingKWh > 0) {
-            double cost6 = remainingKWh * 9.75;
-            totalCost += cost6;
-            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", "400+ kWh", remainingKWh, 9.75, cost6));
+        for (int slab = 0; slab < tariff.getSlabCount() && totalKWh > tariff.lowerBound(slab); slab++) {
+            double units = tariff.unitsInSlab(totalKWh, slab);
+            double cost = units * tariff.getRate(slab);
+            totalCost += cost;
+            breakdown.append(String.format("| %-13s | %8.2f | %8.2f | %8.2f |\n", slabLabel(slab), units, tariff.getRate(slab), cost));
+        }
+        if (tariff.getFixedCharge() > 0) {
+            totalCost += tariff.getFixedCharge();
+            breakdown.append(String.format("| %-13s | %8s | %8s | %8.2f |\n", "Fixed charge", "-", "-", tariff.getFixedCharge()));
         }
         breakdown.append("+---------------+----------+----------+----------+\n");
         breakdown.append(String.format("| %-13s | %8.2f | %-8s | %8.2f |\n", "TOTAL", totalKWh, "-", totalCost));
         breakdown.append("+---------------+----------+----------+----------+\n");
         return breakdown.toString();
     }
+    private String slabLabel(int slab) {
+        double lower = tariff.lowerBound(slab);
+        double upper = tariff.upperBound(slab);
+        if (Double.isInfinite(upper)) {
+            return formatUnits(lower) + "+ kWh";
+        }
+        return (slab == 0 ? "0" : formatUnits(lower == Math.rint(lower) ? lower + 1 : lower)) + "-" + formatUnits(upper) + " kWh";
+    }
+    private static String formatUnits(double kWh) {
+        return kWh == Math.rint(kWh) ? String.valueOf((long) kWh) : String.valueOf(kWh);
+    }
     public void displayDeviceEnergyUsage(Customer customer) {
         List<Gadget> devices = customer.getGadgets();
         System.out.println("\n=== Device Energy Usage Details ===");
@@ -116,13 +635,10 @@ public class EnergyManagementService {
         System.out.printf("| %-23s | %-7s | %-7s | %-11s | %-11s | %-11s |\n",
                          "Device", "Power", "Status", "Usage Time", "Energy(kWh)", "Cost(Rs.)");
         System.out.println("+-------------------------+---------+---------+-------------+-------------+-------------+");
+        EnergyTotals totals = customer.getEnergyTotals();
+        long now = Gadget.getClock().millis();
         for (Gadget device : devices) {
-            double totalEnergy = device.getTotalEnergyConsumedKWh();
-            if (device.isOn() && device.getLastOnTime() != null) {
-                double currentSessionHours = device.getCurrentSessionUsageHours();
-                double currentSessionEnergy = (device.getPowerRatingWatts() / 1000.0) * currentSessionHours;
-                totalEnergy += currentSessionEnergy;
-            }
+            double totalEnergy = device.getTotalEnergyConsumedKWh() + totals.getSessionKWh(device, now);
             double deviceCost = calculateSlabBasedCost(totalEnergy);
             String status = device.isOn() ? "RUNNING" : "OFF";
             String deviceName = String.format("%s %s (%s)", device.getType(), device.getModel(), device.getRoomName());
@@ -136,7 +652,7 @@ public class EnergyManagementService {
                              device.getCurrentUsageTimeFormatted(),
                              totalEnergy,
                              deviceCost);
-            if (device.isOn() && device.getLastOnTime() != null) {
+            if (device.hasRunningSession()) {
                 System.out.printf("| %-23s | %-7s | %-7s | %-11s | %-11s | %-11s |\n",
                                  "  Current Session:", "", "", String.format("%.2fh", device.getCurrentSessionUsageHours()), "", "");
             }
@@ -178,12 +694,44 @@ public class EnergyManagementService {
                                  deviceName,
                                  record.getPowerRatingWatts(),
                                  record.getFormattedUsageTime(),
-                                 record.getTotalEnergyConsumedKWh(),
+                                 record.getDeletionMonthEnergyKWh(),
                                  deletionDate);
             }
             System.out.println("+-------------------------+---------+-------------+-------------+----------------------+");
         }
     }
+    public void displayFleetReport(FleetReport report) {
+        System.out.println("\n=== Fleet Energy Report ===");
+        System.out.printf("Customers: %d | Devices: %d | Segments: %d | Time: %d ms\n",
+                         report.getCustomerCount(), report.getAggregate().getDeviceCount(), report.getSegments(), report.getElapsedMillis());
+        if (report.getFailedSegments() > 0) {
+            System.out.println("[WARNING] " + report.getFailedSegments() + " segment(s) could not be read; totals are incomplete");
+        }
+        FleetAggregate aggregate = report.getAggregate();
+        System.out.printf("Total Energy: %.2f kWh | Total Bills: Rs.%.2f\n", report.getTotalEnergyKWh(), report.getTotalCostRupees());
+        System.out.printf("Bill per customer: min Rs.%.2f | median Rs.%.2f | avg Rs.%.2f | p90 Rs.%.2f | max Rs.%.2f\n",
+                         aggregate.getMinCostRupees(), aggregate.getCostPercentile(0.5), aggregate.getAverageCostRupees(),
+                         aggregate.getCostPercentile(0.9), aggregate.getMaxCostRupees());
+        System.out.println("\n--- Bill Distribution ---");
+        double[] bands = aggregate.getCostBands();
+        long[] counts = aggregate.getBandCounts();
+        for (int band = 0; band < counts.length; band++) {
+            String label = band == 0 ? String.format("up to Rs.%.0f", bands[0])
+                         : band < bands.length ? String.format("Rs.%.0f - %.0f", bands[band - 1], bands[band])
+                         : String.format("over Rs.%.0f", bands[bands.length - 1]);
+            System.out.printf("%-20s %8d\n", label, counts[band]);
+        }
+        System.out.println("\n--- Top Consumers ---");
+        int rank = 1;
+        for (FleetAggregate.TopConsumer consumer : report.getTopConsumers()) {
+            System.out.printf("%2d. %-30s %10.2f kWh  Rs.%10.2f  (%d devices)\n",
+                             rank++, consumer.getEmail(), consumer.getKWh(), consumer.getCostRupees(), consumer.getDevices());
+        }
+        System.out.println("\n--- Energy by Device Type ---");
+        for (Map.Entry<String, Double> type : report.getKWhByType().entrySet()) {
+            System.out.printf("%-20s %10.2f kWh  (%d devices)\n", type.getKey(), type.getValue(), aggregate.getDeviceCount(type.getKey()));
+        }
+    }
     public String getEnergyEfficiencyTips(double totalKWh) {
         StringBuilder tips = new StringBuilder();
         tips.append("\n=== Energy Efficiency Tips ===\n");
@@ -201,6 +749,7 @@ public class EnergyManagementService {
             tips.append("- Keep up the good work with energy-conscious usage\n");
         }
         tips.append("- Peak hours (6-10 PM): Avoid using high-power devices\n");
+        tips.append("- Use the Off-Peak Run Planner to schedule washing machine, geyser and vacuum runs as timers\n");
         tips.append("- Use our Calendar Events to schedule energy-intensive operations\n");
         return tips.toString();
     }
@@ -0,0 +1,224 @@
+package com.smarthome.service;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+class EventIntervalTree {
+    // AVL tree ordered by (start, insertion sequence); every node carries the
+    // latest end time in its subtree so overlap queries can prune whole branches.
+    private Node root;
+    private long nextSequence;
+    private final Map<CalendarEventService.CalendarEvent, Long> sequences;
+    private int minActionOffset;
+    private int maxActionOffset;
+    EventIntervalTree() {
+        this.sequences = new IdentityHashMap<>();
+    }
+    private static class Node {
+        private final CalendarEventService.CalendarEvent event;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long sequence;
+        private LocalDateTime maxEnd;
+        private int height;
+        private Node left;
+        private Node right;
+        private Node(CalendarEventService.CalendarEvent event, long sequence) {
+            this.event = event;
+            this.start = event.getStartTime();
+            this.end = event.getEndTime().isBefore(start) ? start : event.getEndTime();
+            this.sequence = sequence;
+            this.maxEnd = end;
+            this.height = 1;
+        }
+    }
+    synchronized void insert(CalendarEventService.CalendarEvent event) {
+        if (sequences.containsKey(event)) {
+            return;
+        }
+        long sequence = nextSequence++;
+        sequences.put(event, sequence);
+        root = insert(root, new Node(event, sequence));
+        for (CalendarEventService.AutomationAction action : event.getAutomationActions()) {
+            minActionOffset = Math.min(minActionOffset, action.getMinutesOffset());
+            maxActionOffset = Math.max(maxActionOffset, action.getMinutesOffset());
+        }
+    }
+    synchronized boolean remove(CalendarEventService.CalendarEvent event) {
+        Long sequence = sequences.remove(event);
+        if (sequence == null) {
+            return false;
+        }
+        root = remove(root, event.getStartTime(), sequence);
+        return true;
+    }
+    synchronized int size() {
+        return sequences.size();
+    }
+    synchronized int getMinActionOffset() {
+        return minActionOffset;
+    }
+    synchronized int getMaxActionOffset() {
+        return maxActionOffset;
+    }
+    synchronized List<CalendarEventService.CalendarEvent> all() {
+        List<CalendarEventService.CalendarEvent> result = new ArrayList<>(sequences.size());
+        collectAll(root, result);
+        return result;
+    }
+    synchronized CalendarEventService.CalendarEvent findFirst(Predicate<CalendarEventService.CalendarEvent> predicate) {
+        return findFirst(root, predicate);
+    }
+    // Events with start strictly after the given time, in start order
+    synchronized List<CalendarEventService.CalendarEvent> startingAfter(LocalDateTime time, int limit) {
+        List<CalendarEventService.CalendarEvent> result = new ArrayList<>();
+        collectStartingAfter(root, time, limit, result);
+        return result;
+    }
+    // Events with from <= start <= to, in start order
+    synchronized List<CalendarEventService.CalendarEvent> startingBetween(LocalDateTime from, LocalDateTime to) {
+        List<CalendarEventService.CalendarEvent> result = new ArrayList<>();
+        collectStartingBetween(root, from, to, result);
+        return result;
+    }
+    // Events whose [start, end) interval intersects [from, to), in start order
+    synchronized List<CalendarEventService.CalendarEvent> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<CalendarEventService.CalendarEvent> result = new ArrayList<>();
+        collectOverlapping(root, from, to, result);
+        return result;
+    }
+    // Events covering the instant: start <= time < end
+    synchronized List<CalendarEventService.CalendarEvent> activeAt(LocalDateTime time) {
+        List<CalendarEventService.CalendarEvent> result = new ArrayList<>();
+        collectOverlapping(root, time, time.plusNanos(1), result);
+        return result;
+    }
+    private void collectAll(Node node, List<CalendarEventService.CalendarEvent> result) {
+        if (node == null) return;
+        collectAll(node.left, result);
+        result.add(node.event);
+        collectAll(node.right, result);
+    }
+    private CalendarEventService.CalendarEvent findFirst(Node node, Predicate<CalendarEventService.CalendarEvent> predicate) {
+        if (node == null) return null;
+        CalendarEventService.CalendarEvent found = findFirst(node.left, predicate);
+        if (found != null) return found;
+        if (predicate.test(node.event)) return node.event;
+        return findFirst(node.right, predicate);
+    }
+    private void collectStartingAfter(Node node, LocalDateTime time, int limit, List<CalendarEventService.CalendarEvent> result) {
+        if (node == null || result.size() >= limit) return;
+        if (node.start.isAfter(time)) {
+            collectStartingAfter(node.left, time, limit, result);
+            if (result.size() >= limit) return;
+            result.add(node.event);
+        }
+        collectStartingAfter(node.right, time, limit, result);
+    }
+    private void collectStartingBetween(Node node, LocalDateTime from, LocalDateTime to, List<CalendarEventService.CalendarEvent> result) {
+        if (node == null) return;
+        boolean afterFrom = !node.start.isBefore(from);
+        boolean beforeTo = !node.start.isAfter(to);
+        if (afterFrom) {
+            collectStartingBetween(node.left, from, to, result);
+        }
+        if (afterFrom && beforeTo) {
+            result.add(node.event);
+        }
+        if (beforeTo) {
+            collectStartingBetween(node.right, from, to, result);
+        }
+    }
+    private void collectOverlapping(Node node, LocalDateTime from, LocalDateTime to, List<CalendarEventService.CalendarEvent> result) {
+        if (node == null || !node.maxEnd.isAfter(from)) return;
+        collectOverlapping(node.left, from, to, result);
+        if (!node.start.isBefore(to)) return;
+        if (node.end.isAfter(from)) {
+            result.add(node.event);
+        }
+        collectOverlapping(node.right, from, to, result);
+    }
+    private static int compare(LocalDateTime start, long sequence, Node node) {
+        int byStart = start.compareTo(node.start);
+        return byStart != 0 ? byStart : Long.compare(sequence, node.sequence);
+    }
+    private Node insert(Node node, Node added) {
+        if (node == null) return added;
+        if (compare(added.start, added.sequence, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+    private Node remove(Node node, LocalDateTime start, long sequence) {
+        if (node == null) return null;
+        int cmp = compare(start, sequence, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, sequence);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, sequence);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+    private Node removeMin(Node node) {
+        if (node.left == null) return node.right;
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) maxEnd = node.left.maxEnd;
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) maxEnd = node.right.maxEnd;
+        node.maxEnd = maxEnd;
+    }
+    private Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
@@ -0,0 +1,150 @@
+package com.smarthome.service;
+import com.smarthome.util.LatencyHistogram;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+public class SchedulerMetricsService {
+    private static SchedulerMetricsService instance;
+    private final Map<FiringType, FiringStats> stats;
+    private final long startedAtNanos;
+    private SchedulerMetricsService() {
+        this.stats = new EnumMap<>(FiringType.class);
+        for (FiringType type : FiringType.values()) {
+            stats.put(type, new FiringStats());
+        }
+        this.startedAtNanos = System.nanoTime();
+    }
+    public static synchronized SchedulerMetricsService getInstance() {
+        if (instance == null) {
+            instance = new SchedulerMetricsService();
+        }
+        return instance;
+    }
+    public enum FiringType {
+        DEVICE_TIMER("Device Timers"),
+        CALENDAR_AUTOMATION("Calendar Automations"),
+        ALERT_CHECK("Alert Checks");
+        private final String displayName;
+        FiringType(String displayName) {
+            this.displayName = displayName;
+        }
+        public String getDisplayName() { return displayName; }
+    }
+    private static class FiringStats {
+        private final LatencyHistogram lagMicros = new LatencyHistogram();
+        private final LatencyHistogram durationMicros = new LatencyHistogram();
+        private final LongAdder firings = new LongAdder();
+    }
+    public void recordFiring(FiringType type, long lagMillis, long durationNanos) {
+        FiringStats firingStats = stats.get(type);
+        firingStats.lagMicros.record(TimeUnit.MILLISECONDS.toMicros(Math.max(0L, lagMillis)));
+        firingStats.durationMicros.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+        firingStats.firings.increment();
+    }
+    public long getFiringCount(FiringType type) {
+        return stats.get(type).firings.sum();
+    }
+    public LatencyHistogram.Snapshot getLagSnapshot(FiringType type) {
+        return stats.get(type).lagMicros.snapshot();
+    }
+    public LatencyHistogram.Snapshot getDurationSnapshot(FiringType type) {
+        return stats.get(type).durationMicros.snapshot();
+    }
+    public double getFiringsPerMinute(FiringType type) {
+        double elapsedMinutes = (System.nanoTime() - startedAtNanos) / 60_000_000_000.0;
+        return elapsedMinutes <= 0 ? 0.0 : getFiringCount(type) / elapsedMinutes;
+    }
+    public void reset() {
+        for (FiringStats firingStats : stats.values()) {
+            firingStats.lagMicros.reset();
+            firingStats.durationMicros.reset();
+            firingStats.firings.reset();
+        }
+    }
+    public void displaySchedulerMetrics() {
+        System.out.println("\n=== Scheduler Performance ===");
+        System.out.println("+----------------------+--------+----------+----------+----------+----------+----------+");
+        System.out.printf("| %-20s | %-6s | %-8s | %-8s | %-8s | %-8s | %-8s |\n",
+                         "Firing Type", "Metric", "Count", "p50", "p99", "p999", "Max");
+        System.out.println("+----------------------+--------+----------+----------+----------+----------+----------+");
+        for (FiringType type : FiringType.values()) {
+            printMetricRow(type.getDisplayName(), "Lag", getLagSnapshot(type));
+            printMetricRow("", "Run", getDurationSnapshot(type));
+        }
+        System.out.println("+----------------------+--------+----------+----------+----------+----------+----------+");
+        System.out.println("\n[FIRING RATES]:");
+        for (FiringType type : FiringType.values()) {
+            System.out.printf("- %s: %d total, %.2f per minute\n",
+                            type.getDisplayName(), getFiringCount(type), getFiringsPerMinute(type));
+        }
+    }
+    private void printMetricRow(String label, String metric, LatencyHistogram.Snapshot snapshot) {
+        System.out.printf("| %-20s | %-6s | %8d | %8s | %8s | %8s | %8s |\n",
+                         label, metric, snapshot.getCount(),
+                         formatMicros(snapshot.getValueAtPercentile(50.0)),
+                         formatMicros(snapshot.getValueAtPercentile(99.0)),
+                         formatMicros(snapshot.getValueAtPercentile(99.9)),
+                         formatMicros(snapshot.getMax()));
+    }
+    private String formatMicros(long micros) {
+        if (micros >= 60_000_000L) {
+            return String.format("%.1fm", micros / 60_000_000.0);
+        } else if (micros >= 1_000_000L) {
+            return String.format("%.2fs", micros / 1_000_000.0);
+        } else if (micros >= 1_000L) {
+            return String.format("%.1fms", micros / 1_000.0);
+        }
+        return micros + "us";
+    }
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"timestamp\": \"").append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append("\",\n");
+        json.append("  \"uptimeSeconds\": ").append(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAtNanos)).append(",\n");
+        json.append("  \"firings\": {\n");
+        FiringType[] types = FiringType.values();
+        for (int i = 0; i < types.length; i++) {
+            FiringType type = types[i];
+            json.append("    \"").append(type.name()).append("\": {\n");
+            json.append("      \"count\": ").append(getFiringCount(type)).append(",\n");
+            json.append("      \"ratePerMinute\": ").append(String.format("%.4f", getFiringsPerMinute(type))).append(",\n");
+            json.append("      \"lagMicros\": ").append(snapshotJson(getLagSnapshot(type))).append(",\n");
+            json.append("      \"durationMicros\": ").append(snapshotJson(getDurationSnapshot(type))).append("\n");
+            json.append("    }").append(i < types.length - 1 ? "," : "").append("\n");
+        }
+        json.append("  }\n");
+        json.append("}\n");
+        return json.toString();
+    }
+    private String snapshotJson(LatencyHistogram.Snapshot snapshot) {
+        return String.format("{\"count\": %d, \"mean\": %.1f, \"p50\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}",
+                            snapshot.getCount(), snapshot.getMean(),
+                            snapshot.getValueAtPercentile(50.0),
+                            snapshot.getValueAtPercentile(99.0),
+                            snapshot.getValueAtPercentile(99.9),
+                            snapshot.getMax());
+    }
+    public boolean dumpToFile(Path path) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.writeString(tempFile, toJson(), StandardCharsets.UTF_8);
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing scheduler metrics: " + e.getMessage());
+            return false;
+        }
+    }
+}
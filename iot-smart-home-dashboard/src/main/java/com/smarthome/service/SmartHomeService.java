@@ -3,14 +3,23 @@ import com.smarthome.model.Customer;
 import com.smarthome.model.Gadget;
 import com.smarthome.model.DeletedDeviceEnergyRecord;
 import com.smarthome.util.SessionManager;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 public class SmartHomeService {
+    private static final int HOUSEHOLD_CALENDAR_LIMIT = 20;
     private final CustomerService customerService;
     private final GadgetService gadgetService;
     private final SessionManager sessionManager;
@@ -416,6 +425,10 @@ public class SmartHomeService {
         System.out.println(energyService.getSlabBreakdown(report.getTotalEnergyKWh()));
         System.out.println(energyService.getEnergyEfficiencyTips(report.getTotalEnergyKWh()));
     }
+    // Operator report over every customer; it reads the whole table, so it is not tied to a login
+    public void showFleetReport() {
+        energyService.displayFleetReport(energyService.generateFleetReport(customerService));
+    }
     public boolean scheduleDeviceTimer(String deviceType, String roomName, String action, String dateTime) {
         if (!sessionManager.isLoggedIn()) {
             System.out.println("[ERROR] Please login first!");
@@ -430,6 +443,68 @@ public class SmartHomeService {
             return false;
         }
     }
+    public int scheduleBulkTimer(String deviceType, String roomName, String action, String dateTime) {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return 0;
+        }
+        LocalDateTime scheduledTime;
+        try {
+            scheduledTime = timerService.parseDateTime(dateTime);
+        } catch (Exception e) {
+            System.out.println("[ERROR] Invalid date format! " + timerService.getTimerHelp());
+            return 0;
+        }
+        Customer currentUser = sessionManager.getCurrentUser();
+        Map<Customer, List<Gadget>> targetsByOwner = new LinkedHashMap<>();
+        List<Gadget> ownTargets = currentUser.getGadgetIndex().select(deviceType, roomName);
+        if (!ownTargets.isEmpty()) {
+            targetsByOwner.put(currentUser, new ArrayList<>(ownTargets));
+        }
+        if (currentUser.isPartOfGroup()) {
+            for (String memberEmail : currentUser.getGroupMembers()) {
+                if (memberEmail.equals(currentUser.getEmail())) continue;
+                Customer member = customerService.findCustomerByEmail(memberEmail);
+                if (member == null || member.getGadgets() == null) continue;
+                List<Gadget> memberTargets = new ArrayList<>();
+                for (Gadget gadget : member.getGadgetIndex().select(deviceType, roomName)) {
+                    if (member.hasDevicePermission(currentUser.getEmail(), gadget.getType(), gadget.getRoomName())) {
+                        memberTargets.add(gadget);
+                    }
+                }
+                if (!memberTargets.isEmpty()) {
+                    targetsByOwner.put(member, memberTargets);
+                }
+            }
+        }
+        int scheduled = timerService.scheduleBulkTimer(targetsByOwner, action, scheduledTime);
+        if (scheduled > 0) {
+            sessionManager.updateCurrentUser(currentUser);
+        }
+        return scheduled;
+    }
+    public EnergyManagementService.LoadShiftPlan planOffPeakRuns() {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return null;
+        }
+        Customer currentUser = sessionManager.getCurrentUser();
+        LocalDateTime now = LocalDateTime.now();
+        List<Gadget> devices = currentUser.getGadgets();
+        return energyService.planLoadShift(devices, energyService.getDeferrableRuns(devices, now), now);
+    }
+    public int scheduleLoadShiftPlan(EnergyManagementService.LoadShiftPlan plan) {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return 0;
+        }
+        Customer currentUser = sessionManager.getCurrentUser();
+        int scheduled = timerService.scheduleLoadShiftPlan(currentUser, plan);
+        if (scheduled > 0) {
+            sessionManager.updateCurrentUser(currentUser);
+        }
+        return scheduled;
+    }
     public void showScheduledTimers() {
         if (!sessionManager.isLoggedIn()) {
             System.out.println("[ERROR] Please login first!");
@@ -462,6 +537,10 @@ public class SmartHomeService {
         return timerService.cancelTimer(currentUser, deviceType, roomName, action);
     }
     public boolean createCalendarEvent(String title, String description, String startDateTime, String endDateTime, String eventType) {
+        return createCalendarEvent(title, description, startDateTime, endDateTime, eventType, null);
+    }
+    public boolean createCalendarEvent(String title, String description, String startDateTime, String endDateTime,
+                                       String eventType, String recurrenceRule) {
         if (!sessionManager.isLoggedIn()) {
             System.out.println("[ERROR] Please login first!");
             return false;
@@ -470,7 +549,7 @@ public class SmartHomeService {
             Customer currentUser = sessionManager.getCurrentUser();
             LocalDateTime startTime = timerService.parseDateTime(startDateTime);
             LocalDateTime endTime = timerService.parseDateTime(endDateTime);
-            return calendarService.createEvent(currentUser.getEmail(), title, description, startTime, endTime, eventType);
+            return calendarService.createEvent(currentUser.getEmail(), title, description, startTime, endTime, eventType, recurrenceRule);
         } catch (Exception e) {
             System.out.println("[ERROR] Invalid date format! Use DD-MM-YYYY HH:MM");
             return false;
@@ -493,6 +572,33 @@ public class SmartHomeService {
         calendarService.displayEventAutomation(currentUser.getEmail(), eventTitle);
     }
 
+    public void showHouseholdCalendar() {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return;
+        }
+        calendarService.displayHouseholdCalendar(getHouseholdMemberEmails(), HOUSEHOLD_CALENDAR_LIMIT);
+    }
+
+    public CalendarEventService.HouseholdCalendar getHouseholdCalendar() {
+        if (!sessionManager.isLoggedIn()) {
+            return null;
+        }
+        return calendarService.getHouseholdCalendar(getHouseholdMemberEmails(), HOUSEHOLD_CALENDAR_LIMIT);
+    }
+
+    private List<String> getHouseholdMemberEmails() {
+        Customer currentUser = sessionManager.getCurrentUser();
+        List<String> memberEmails = new ArrayList<>();
+        memberEmails.add(currentUser.getEmail());
+        for (String memberEmail : currentUser.getGroupMembers()) {
+            if (!memberEmails.contains(memberEmail)) {
+                memberEmails.add(memberEmail);
+            }
+        }
+        return memberEmails;
+    }
+
     public List<CalendarEventService.CalendarEvent> getUpcomingEvents() {
         if (!sessionManager.isLoggedIn()) {
             return new ArrayList<>();
@@ -501,6 +607,55 @@ public class SmartHomeService {
         return calendarService.getUpcomingEvents(currentUser.getEmail());
     }
 
+    public CalendarEventService.EventPage getPastEvents(String pageToken, int pageSize) {
+        if (!sessionManager.isLoggedIn()) {
+            return null;
+        }
+        Customer currentUser = sessionManager.getCurrentUser();
+        return calendarService.getPastEvents(currentUser.getEmail(), pageToken, pageSize);
+    }
+
+    public boolean importCalendarEvents(String filePath) {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return false;
+        }
+        Path path = Paths.get(filePath);
+        if (!Files.isReadable(path)) {
+            System.out.println("[ERROR] Cannot read calendar file: " + filePath);
+            return false;
+        }
+        long startNanos = System.nanoTime();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            CalendarEventService.ImportResult result =
+                calendarService.importEvents(sessionManager.getCurrentUser().getEmail(), reader);
+            System.out.printf("[SUCCESS] Imported %d calendar events in %d ms\n", result.getImported(),
+                              (System.nanoTime() - startNanos) / 1_000_000);
+            if (result.getSkipped() > 0) {
+                System.out.println("[WARNING] Skipped " + result.getSkipped() + " events that could not be imported");
+            }
+            return result.getImported() > 0;
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed to import calendar file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean exportCalendarEvents(String filePath) {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return false;
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            int exported = calendarService.exportEvents(sessionManager.getCurrentUser().getEmail(), writer);
+            System.out.println("[SUCCESS] Exported " + exported + " calendar events to " + filePath);
+            return true;
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed to export calendar file: " + e.getMessage());
+            return false;
+        }
+    }
+
     public boolean deleteCalendarEvent(String eventTitle) {
         if (!sessionManager.isLoggedIn()) {
             System.out.println("[ERROR] Please login first!");
@@ -596,6 +751,7 @@ public class SmartHomeService {
             }
             device.ensurePowerRating();
             device.setRoomName(newRoom);
+            currentUser.invalidateGadgetIndex();
             boolean updated = customerService.updateCustomer(currentUser);
             if (updated) {
                 sessionManager.updateCurrentUser(currentUser);
@@ -679,7 +835,7 @@ public class SmartHomeService {
                 return false;
             }
             if (device.getTotalEnergyConsumedKWh() > 0 ||
-                (device.isOn() && device.getLastOnTime() != null && device.getCurrentSessionUsageHours() > 0)) {
+                (device.hasRunningSession() && device.getCurrentSessionUsageHours() > 0)) {
                 DeletedDeviceEnergyRecord energyRecord = new DeletedDeviceEnergyRecord(device);
                 currentUser.addDeletedDeviceRecord(energyRecord);
                 System.out.println("[INFO] Preserving energy history: " + String.format("%.3f kWh", energyRecord.getTotalEnergyConsumedKWh()));
@@ -688,6 +844,7 @@ public class SmartHomeService {
             currentUser.getGadgets().removeIf(gadget ->
                 gadget.getType().equalsIgnoreCase(deviceType) &&
                 gadget.getRoomName().equalsIgnoreCase(roomName));
+            currentUser.invalidateGadgetIndex();
             boolean updated = customerService.updateCustomer(currentUser);
             if (updated) {
                 sessionManager.updateCurrentUser(currentUser);
@@ -822,6 +979,9 @@ public class SmartHomeService {
         Customer currentUser = sessionManager.getCurrentUser();
         deviceHealthService.displayMaintenanceSchedule(currentUser);
     }
+    public void showSchedulerMetrics() {
+        timerService.getMetricsService().displaySchedulerMetrics();
+    }
     public String getSystemHealthSummary() {
         if (!sessionManager.isLoggedIn()) {
             return "Not logged in";
@@ -991,7 +1151,7 @@ public class SmartHomeService {
             usageWidth = Math.max(usageWidth, usageTime.length());
             String energyStr = String.format("%.3f", gadget.getCurrentTotalEnergyConsumedKWh());
             energyWidth = Math.max(energyWidth, energyStr.length());
-            if (gadget.isOn() && gadget.getLastOnTime() != null) {
+            if (gadget.hasRunningSession()) {
                 deviceWidth = Math.max(deviceWidth, "  Current Session:".length());
                 String sessionTime = String.format("%.1fh", gadget.getCurrentSessionUsageHours());
                 usageWidth = Math.max(usageWidth, sessionTime.length());
@@ -1047,7 +1207,7 @@ public class SmartHomeService {
         for (int i = 0; i < allGadgets.size(); i++) {
             Gadget gadget = allGadgets.get(i);
             displayDeviceRow(gadget, i + 1, formats.rowFormat);
-            if (gadget.isOn() && gadget.getLastOnTime() != null) {
+            if (gadget.hasRunningSession()) {
                 String sessionTime = String.format("%.1fh", gadget.getCurrentSessionUsageHours());
                 System.out.printf(formats.emptyRowFormat + "\n", "", "  Current Session:", "", "", sessionTime, "");
             }
@@ -1363,6 +1523,11 @@ public class SmartHomeService {
     // Alert Management Methods
     public boolean createTimeBasedAlert(String alertName, String deviceType, String roomName,
                                        LocalDateTime triggerTime, String message) {
+        return createTimeBasedAlert(alertName, deviceType, roomName, triggerTime, message, null);
+    }
+
+    public boolean createTimeBasedAlert(String alertName, String deviceType, String roomName,
+                                       LocalDateTime triggerTime, String message, String recurrencePattern) {
         if (!sessionManager.isLoggedIn()) {
             System.out.println("[ERROR] Please login first!");
             return false;
@@ -1383,7 +1548,8 @@ public class SmartHomeService {
             return false;
         }
 
-        return alertService.createTimeBasedAlert(currentUser.getEmail(), alertName, deviceType, roomName, triggerTime, message);
+        return alertService.createTimeBasedAlert(currentUser.getEmail(), alertName, deviceType, roomName,
+                                                 triggerTime, message, recurrencePattern);
     }
 
     public boolean createEnergyUsageAlert(String alertName, String deviceType, String roomName,
@@ -1412,6 +1578,14 @@ public class SmartHomeService {
                                                   energyThreshold, comparisonType, message);
     }
 
+    public boolean createRuleAlert(String alertName, String ruleText, String message) {
+        if (!sessionManager.isLoggedIn()) {
+            System.out.println("[ERROR] Please login first!");
+            return false;
+        }
+        return alertService.createRuleAlert(sessionManager.getCurrentUser().getEmail(), alertName, ruleText, message);
+    }
+
     public void displayUserAlerts() {
         if (!sessionManager.isLoggedIn()) {
             System.out.println("[ERROR] Please login first!");
@@ -1463,7 +1637,10 @@ public class SmartHomeService {
         alertService.checkTimeBasedAlerts(currentUser.getEmail(), now);
 
         // Check energy usage alerts
-        alertService.checkEnergyUsageAlerts(currentUser.getEmail(), currentUser);
+        alertService.checkAllEnergyUsageAlerts(currentUser.getEmail(), currentUser);
+
+        // Check compound rule alerts
+        alertService.checkRuleAlerts(currentUser.getEmail(), currentUser, now);
     }
 
     public String getAlertHelp() {
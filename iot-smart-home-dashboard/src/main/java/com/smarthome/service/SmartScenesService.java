@@ -4,13 +4,17 @@ import com.smarthome.model.Gadget;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 public class SmartScenesService {
     private static SmartScenesService instance;
     private final Map<String, List<SceneAction>> predefinedScenes;
+    // Stored scene lists are immutable and replaced whole, so a scene that is executing keeps the
+    // actions it started with while the user edits it; edits to one scene are applied atomically
     private final Map<String, Map<String, List<SceneAction>>> userCustomScenes;
     private SmartScenesService() {
         this.predefinedScenes = new HashMap<>();
-        this.userCustomScenes = new HashMap<>();
+        this.userCustomScenes = new ConcurrentHashMap<>();
         initializePredefinedScenes();
     }
     public static synchronized SmartScenesService getInstance() {
@@ -253,8 +257,7 @@ public class SmartScenesService {
     }
     public boolean createCustomScene(String userEmail, String sceneName, List<SceneAction> actions) {
         try {
-            userCustomScenes.computeIfAbsent(userEmail, k -> new HashMap<>())
-                           .put(sceneName.toUpperCase(), actions);
+            userScenes(userEmail).put(sceneName.toUpperCase(), List.copyOf(actions));
             return true;
         } catch (Exception e) {
             return false;
@@ -280,8 +283,9 @@ public class SmartScenesService {
     public List<SceneAction> getSceneActions(String userEmail, String sceneName) {
         String sceneKey = sceneName.toUpperCase();
         Map<String, List<SceneAction>> userScenes = userCustomScenes.get(userEmail);
-        if (userScenes != null && userScenes.containsKey(sceneKey)) {
-            return new ArrayList<>(userScenes.get(sceneKey));
+        List<SceneAction> customActions = userScenes != null ? userScenes.get(sceneKey) : null;
+        if (customActions != null) {
+            return new ArrayList<>(customActions);
         }
         List<SceneAction> predefinedActions = predefinedScenes.get(sceneKey);
         if (predefinedActions != null) {
@@ -292,53 +296,62 @@ public class SmartScenesService {
     public boolean editScene(String userEmail, String sceneName, List<SceneAction> newActions) {
         try {
             String sceneKey = sceneName.toUpperCase();
-            userCustomScenes.computeIfAbsent(userEmail, k -> new HashMap<>())
-                           .put(sceneKey, new ArrayList<>(newActions));
+            userScenes(userEmail).put(sceneKey, List.copyOf(newActions));
             return true;
         } catch (Exception e) {
             return false;
         }
     }
     public boolean addDeviceToScene(String userEmail, String sceneName, SceneAction newAction) {
-        List<SceneAction> actions = getSceneActions(userEmail, sceneName);
-        if (actions == null) {
-            return false;
-        }
-        boolean deviceExists = actions.stream()
-                .anyMatch(action -> action.getDeviceType().equals(newAction.getDeviceType()) &&
-                                  action.getRoomName().equals(newAction.getRoomName()));
-        if (deviceExists) {
-            return false;
-        }
-        actions.add(newAction);
-        return editScene(userEmail, sceneName, actions);
+        return updateScene(userEmail, sceneName, actions -> {
+            boolean deviceExists = actions.stream()
+                    .anyMatch(action -> action.getDeviceType().equals(newAction.getDeviceType()) &&
+                                      action.getRoomName().equals(newAction.getRoomName()));
+            if (deviceExists) {
+                return null;
+            }
+            actions.add(newAction);
+            return actions;
+        });
     }
     public boolean removeDeviceFromScene(String userEmail, String sceneName, String deviceType, String roomName) {
-        List<SceneAction> actions = getSceneActions(userEmail, sceneName);
-        if (actions == null) {
-            return false;
-        }
-        boolean removed = actions.removeIf(action ->
-            action.getDeviceType().equals(deviceType) && action.getRoomName().equals(roomName));
-        if (removed) {
-            return editScene(userEmail, sceneName, actions);
-        }
-        return false;
+        return updateScene(userEmail, sceneName, actions -> actions.removeIf(action ->
+            action.getDeviceType().equals(deviceType) && action.getRoomName().equals(roomName)) ? actions : null);
     }
     public boolean changeDeviceAction(String userEmail, String sceneName, String deviceType, String roomName, String newAction) {
-        List<SceneAction> actions = getSceneActions(userEmail, sceneName);
-        if (actions == null) {
-            return false;
-        }
-        for (SceneAction action : actions) {
-            if (action.getDeviceType().equals(deviceType) && action.getRoomName().equals(roomName)) {
-                action.setAction(newAction);
-                String newDescription = generateActionDescription(deviceType, roomName, newAction);
-                action.setDescription(newDescription);
-                return editScene(userEmail, sceneName, actions);
+        return updateScene(userEmail, sceneName, actions -> {
+            for (int i = 0; i < actions.size(); i++) {
+                SceneAction action = actions.get(i);
+                if (action.getDeviceType().equals(deviceType) && action.getRoomName().equals(roomName)) {
+                    // Replaced rather than modified, since the old action may be shared with a predefined scene
+                    actions.set(i, new SceneAction(deviceType, roomName, newAction,
+                                                   generateActionDescription(deviceType, roomName, newAction)));
+                    return actions;
+                }
             }
-        }
-        return false;
+            return null;
+        });
+    }
+    // Applies an edit to the user's copy of a scene as one atomic step; the edit returns null to leave it unchanged
+    private boolean updateScene(String userEmail, String sceneName, UnaryOperator<List<SceneAction>> edit) {
+        String sceneKey = sceneName.toUpperCase();
+        boolean[] updated = new boolean[1];
+        userScenes(userEmail).compute(sceneKey, (key, current) -> {
+            List<SceneAction> base = current != null ? current : predefinedScenes.get(key);
+            if (base == null) {
+                return null;
+            }
+            List<SceneAction> edited = edit.apply(new ArrayList<>(base));
+            if (edited == null) {
+                return current;
+            }
+            updated[0] = true;
+            return List.copyOf(edited);
+        });
+        return updated[0];
+    }
+    private Map<String, List<SceneAction>> userScenes(String userEmail) {
+        return userCustomScenes.computeIfAbsent(userEmail, k -> new ConcurrentHashMap<>());
     }
     private String generateActionDescription(String deviceType, String roomName, String action) {
         String verb = action.equalsIgnoreCase("ON") ? "Turn on" : "Turn off";
@@ -381,9 +394,6 @@ public class SmartScenesService {
         Map<String, List<SceneAction>> userScenes = userCustomScenes.get(userEmail);
         if (userScenes != null) {
             userScenes.remove(sceneKey);
-            if (userScenes.isEmpty()) {
-                userCustomScenes.remove(userEmail);
-            }
         }
         return true;
     }
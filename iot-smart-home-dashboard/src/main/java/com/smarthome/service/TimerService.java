@@ -1,13 +1,21 @@
 package com.smarthome.service;
 import com.smarthome.model.Customer;
 import com.smarthome.model.Gadget;
+import com.smarthome.util.AppConfig;
 import com.smarthome.util.SessionManager;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -16,13 +24,20 @@ public class TimerService {
     private final CustomerService customerService;
     private final CalendarEventService calendarEventService;
     private final AlertService alertService;
+    private final SchedulerMetricsService metricsService;
+    private final Set<String> timerOwnerEmails;
+    private static final long MONITOR_PERIOD_SECONDS = 10;
     private static TimerService instance;
     private TimerService(CustomerService customerService) {
         this.scheduler = Executors.newScheduledThreadPool(5);
         this.customerService = customerService;
         this.calendarEventService = CalendarEventService.getInstance();
         this.alertService = AlertService.getInstance();
+        this.metricsService = SchedulerMetricsService.getInstance();
+        this.timerOwnerEmails = ConcurrentHashMap.newKeySet();
+        this.calendarEventService.setAutomationHandler(this::runCalendarEventAutomation);
         startTimerMonitoring();
+        startMetricsDump();
     }
     public static synchronized TimerService getInstance(CustomerService customerService) {
         if (instance == null) {
@@ -80,6 +95,7 @@ public class TimerService {
             device.setTimerEnabled(true);
             boolean updated = customerService.updateCustomer(customer);
             if (updated) {
+                watchTimerOwner(customer);
                 System.out.println("[SUCCESS] Timer scheduled for " + device.getType() + " " + device.getModel() + 
                                  " in " + device.getRoomName() + " to turn " + action.toUpperCase() + 
                                  " at " + scheduledTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
@@ -93,6 +109,113 @@ public class TimerService {
             return false;
         }
     }
+    public int scheduleBulkTimer(Map<Customer, List<Gadget>> targetsByOwner, String action, LocalDateTime scheduledTime) {
+        try {
+            if (targetsByOwner == null || targetsByOwner.values().stream().allMatch(List::isEmpty)) {
+                System.out.println("[ERROR] No devices matched the bulk timer selection!");
+                return 0;
+            }
+            if (!action.equalsIgnoreCase("ON") && !action.equalsIgnoreCase("OFF")) {
+                System.out.println("[ERROR] Invalid action! Use 'ON' or 'OFF'");
+                return 0;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            if (scheduledTime.isBefore(now.plusMinutes(1))) {
+                System.out.printf("[ERROR] Timer must be scheduled at least 1 minute in the future!\n");
+                System.out.printf("Minimum allowed time: %s\n", now.plusMinutes(1).format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
+                return 0;
+            }
+            int scheduledCount = 0;
+            for (Map.Entry<Customer, List<Gadget>> entry : targetsByOwner.entrySet()) {
+                Customer owner = entry.getKey();
+                List<Gadget> targets = entry.getValue();
+                if (targets.isEmpty()) continue;
+                List<LocalDateTime> previousTimes = new ArrayList<>(targets.size());
+                List<Boolean> previousEnabled = new ArrayList<>(targets.size());
+                for (Gadget device : targets) {
+                    previousEnabled.add(device.isTimerEnabled());
+                    if (action.equalsIgnoreCase("ON")) {
+                        previousTimes.add(device.getScheduledOnTime());
+                        device.setScheduledOnTime(scheduledTime);
+                    } else {
+                        previousTimes.add(device.getScheduledOffTime());
+                        device.setScheduledOffTime(scheduledTime);
+                    }
+                    device.setTimerEnabled(true);
+                }
+                // One write per owner regardless of how many of their devices were selected
+                if (customerService.updateCustomer(owner)) {
+                    watchTimerOwner(owner);
+                    scheduledCount += targets.size();
+                } else {
+                    // The tick reads these devices in memory, so a timer that was not saved must not stay set
+                    for (int i = 0; i < targets.size(); i++) {
+                        Gadget device = targets.get(i);
+                        if (action.equalsIgnoreCase("ON")) {
+                            device.setScheduledOnTime(previousTimes.get(i));
+                        } else {
+                            device.setScheduledOffTime(previousTimes.get(i));
+                        }
+                        device.setTimerEnabled(previousEnabled.get(i));
+                    }
+                    System.out.println("[ERROR] Failed to save bulk timer schedule for " + owner.getEmail());
+                }
+            }
+            if (scheduledCount > 0) {
+                System.out.println("[SUCCESS] Bulk timer scheduled for " + scheduledCount + " device(s) to turn " +
+                                 action.toUpperCase() + " at " + scheduledTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
+            }
+            return scheduledCount;
+        } catch (Exception e) {
+            System.out.println("[ERROR] Error scheduling bulk timer: " + e.getMessage());
+            return 0;
+        }
+    }
+    // Turns a load-shift plan into timers: one bulk ON timer per distinct start and one bulk OFF timer per
+    // distinct end. Runs whose start has come too close while the plan was reviewed are moved to the first
+    // minute a timer still accepts, keeping their length, and a run only gets its OFF timer once its ON timer
+    // is set. Returns how many runs got both timers.
+    public int scheduleLoadShiftPlan(Customer owner, EnergyManagementService.LoadShiftPlan plan) {
+        if (plan == null || plan.getRuns().isEmpty()) {
+            System.out.println("[INFO] No runs in the plan to schedule.");
+            return 0;
+        }
+        // Whole minutes at least half a minute past the one-minute minimum of scheduleBulkTimer
+        LocalDateTime earliest = LocalDateTime.now().plusSeconds(90).truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        Map<LocalDateTime, List<Gadget>> starts = new TreeMap<>();
+        Map<Gadget, LocalDateTime> endByDevice = new LinkedHashMap<>();
+        for (EnergyManagementService.PlannedRun run : plan.getRuns()) {
+            LocalDateTime start = run.getStart();
+            LocalDateTime end = run.getEnd();
+            if (start.isBefore(earliest)) {
+                end = end.plusMinutes(ChronoUnit.MINUTES.between(start, earliest));
+                start = earliest;
+                System.out.println("[INFO] " + run.getDevice().getType() + " " + run.getDevice().getModel() +
+                                 " moved to " + start.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")) +
+                                 " as its planned start has passed");
+            }
+            starts.computeIfAbsent(start, time -> new ArrayList<>()).add(run.getDevice());
+            endByDevice.put(run.getDevice(), end);
+        }
+        Map<LocalDateTime, List<Gadget>> ends = new TreeMap<>();
+        for (Map.Entry<LocalDateTime, List<Gadget>> entry : starts.entrySet()) {
+            if (scheduleBulkTimer(Map.of(owner, entry.getValue()), "ON", entry.getKey()) > 0) {
+                for (Gadget device : entry.getValue()) {
+                    ends.computeIfAbsent(endByDevice.get(device), time -> new ArrayList<>()).add(device);
+                }
+            }
+        }
+        int scheduled = 0;
+        for (Map.Entry<LocalDateTime, List<Gadget>> entry : ends.entrySet()) {
+            scheduled += scheduleBulkTimer(Map.of(owner, entry.getValue()), "OFF", entry.getKey());
+        }
+        return scheduled;
+    }
+    private void watchTimerOwner(Customer owner) {
+        if (owner.getEmail() != null) {
+            timerOwnerEmails.add(owner.getEmail());
+        }
+    }
     public void displayScheduledTimers(Customer customer) {
         forceTimerCheck();
         System.out.println("\n=== Scheduled Timers ===");
@@ -197,20 +320,33 @@ public class TimerService {
         }
     }
     private void startTimerMonitoring() {
-            scheduler.scheduleAtFixedRate(() -> {
+        final long firstTickNanos = System.nanoTime();
+        final long periodNanos = TimeUnit.SECONDS.toNanos(MONITOR_PERIOD_SECONDS);
+        scheduler.scheduleAtFixedRate(() -> {
             try {
-                checkAndExecuteScheduledTasks();
+                long ticksElapsed = (System.nanoTime() - firstTickNanos) / periodNanos;
+                checkAndExecuteScheduledTasks(firstTickNanos + ticksElapsed * periodNanos);
             } catch (Exception e) {
                 System.err.println("Error in timer monitoring: " + e.getMessage());
             }
-        }, 0, 10, TimeUnit.SECONDS);
+        }, 0, MONITOR_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+    private void startMetricsDump() {
+        long intervalSeconds = AppConfig.getLong("metrics.dump.interval.seconds", 60);
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        Path dumpPath = Paths.get(AppConfig.getString("metrics.dump.path", "scheduler-metrics.json"));
+        scheduler.scheduleAtFixedRate(() -> metricsService.dumpToFile(dumpPath),
+                                      intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
     }
-    private void checkAndExecuteScheduledTasks() {
+    private void checkAndExecuteScheduledTasks(long tickScheduledNanos) {
         LocalDateTime now = LocalDateTime.now();
         try {
             List<Customer> allCustomers = getAllCustomersWithTimers();
             for (Customer customer : allCustomers) {
                 boolean customerUpdated = false;
+                List<TimerFiring> firings = new ArrayList<>();
                 for (Gadget device : customer.getGadgets()) {
                     if (!device.isTimerEnabled()) continue;
                     if (device.getScheduledOnTime() != null) {
@@ -218,20 +354,18 @@ public class TimerService {
                         if (now.isAfter(scheduledOnTime) || now.isEqual(scheduledOnTime)) {
                             long minutesSinceScheduled = ChronoUnit.MINUTES.between(scheduledOnTime, now);
                             if (minutesSinceScheduled <= 10) {
+                                long handlerStart = System.nanoTime();
                                 String previousStatus = device.getStatus();
                                 device.turnOn();
-                                String newStatus = device.getStatus();
+                                firings.add(new TimerFiring(device, "ON", scheduledOnTime, previousStatus, device.getStatus()));
                                 device.setScheduledOnTime(null);
                                 customerUpdated = true;
                                 if (device.getScheduledOffTime() == null) {
                                     device.setTimerEnabled(false);
                                 }
-                                System.out.println("\n[TIMER EXECUTED] " + device.getType() + " " + device.getModel() +
-                                                 " in " + device.getRoomName() + " turned ON automatically");
-                                System.out.println("  Scheduled: " + scheduledOnTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
-                                System.out.println("  Executed: " + now.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
-                                System.out.println("  Status: " + previousStatus + " -> " + newStatus);
-                                System.out.print("\nPress Enter to continue or enter your choice: ");
+                                metricsService.recordFiring(SchedulerMetricsService.FiringType.DEVICE_TIMER,
+                                                            ChronoUnit.MILLIS.between(scheduledOnTime, now),
+                                                            System.nanoTime() - handlerStart);
                             } else {
                                 device.setScheduledOnTime(null);
                                 customerUpdated = true;
@@ -248,20 +382,18 @@ public class TimerService {
                         if (now.isAfter(scheduledOffTime) || now.isEqual(scheduledOffTime)) {
                             long minutesSinceScheduled = ChronoUnit.MINUTES.between(scheduledOffTime, now);
                             if (minutesSinceScheduled <= 10) {
+                                long handlerStart = System.nanoTime();
                                 String previousStatus = device.getStatus();
                                 device.turnOff();
-                                String newStatus = device.getStatus();
+                                firings.add(new TimerFiring(device, "OFF", scheduledOffTime, previousStatus, device.getStatus()));
                                 device.setScheduledOffTime(null);
                                 customerUpdated = true;
                                 if (device.getScheduledOnTime() == null) {
                                     device.setTimerEnabled(false);
                                 }
-                                System.out.println("\n[TIMER EXECUTED] " + device.getType() + " " + device.getModel() +
-                                                 " in " + device.getRoomName() + " turned OFF automatically");
-                                System.out.println("  Scheduled: " + scheduledOffTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
-                                System.out.println("  Executed: " + now.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
-                                System.out.println("  Status: " + previousStatus + " -> " + newStatus);
-                                System.out.print("\nPress Enter to continue or enter your choice: ");
+                                metricsService.recordFiring(SchedulerMetricsService.FiringType.DEVICE_TIMER,
+                                                            ChronoUnit.MILLIS.between(scheduledOffTime, now),
+                                                            System.nanoTime() - handlerStart);
                             } else {
                                 device.setScheduledOffTime(null);
                                 customerUpdated = true;
@@ -274,19 +406,27 @@ public class TimerService {
                         }
                     }
                 }
+                reportTimerFirings(firings, now);
                 if (customerUpdated) {
                     boolean saveSuccess = customerService.updateCustomer(customer);
                     if (!saveSuccess) {
                         System.err.println("[ERROR] Failed to save device state changes after timer execution");
                     }
                 }
+                if (!hasPendingTimers(customer)) {
+                    timerOwnerEmails.remove(customer.getEmail());
+                }
             }
 
             // Check and execute calendar event automation
             checkAndExecuteCalendarEventAutomation(now);
 
             // Check and execute alert monitoring
+            long alertCheckStart = System.nanoTime();
             checkAndExecuteAlerts(now);
+            metricsService.recordFiring(SchedulerMetricsService.FiringType.ALERT_CHECK,
+                                        TimeUnit.NANOSECONDS.toMillis(alertCheckStart - tickScheduledNanos),
+                                        System.nanoTime() - alertCheckStart);
 
         } catch (Exception e) {
             System.err.println("Error checking scheduled tasks: " + e.getMessage());
@@ -300,8 +440,70 @@ public class TimerService {
         if (currentUser != null) {
             customers.add(currentUser);
         }
+        // Owners touched by bulk or group scheduling may not be the logged-in user
+        for (String ownerEmail : timerOwnerEmails) {
+            if (currentUser != null && ownerEmail.equals(currentUser.getEmail())) continue;
+            Customer owner = customerService.findCustomerByEmail(ownerEmail);
+            if (owner != null) {
+                customers.add(owner);
+            } else {
+                timerOwnerEmails.remove(ownerEmail);
+            }
+        }
         return customers;
     }
+    private boolean hasPendingTimers(Customer customer) {
+        if (customer.getGadgets() == null) return false;
+        for (Gadget device : customer.getGadgets()) {
+            if (device.isTimerEnabled() &&
+                (device.getScheduledOnTime() != null || device.getScheduledOffTime() != null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    private void reportTimerFirings(List<TimerFiring> firings, LocalDateTime now) {
+        if (firings.isEmpty()) {
+            return;
+        }
+        if (firings.size() == 1) {
+            TimerFiring firing = firings.get(0);
+            Gadget device = firing.device;
+            System.out.println("\n[TIMER EXECUTED] " + device.getType() + " " + device.getModel() +
+                             " in " + device.getRoomName() + " turned " + firing.action + " automatically");
+            System.out.println("  Scheduled: " + firing.scheduledTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
+            System.out.println("  Executed: " + now.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
+            System.out.println("  Status: " + firing.previousStatus + " -> " + firing.newStatus);
+        } else {
+            Map<String, Integer> countsByAction = new LinkedHashMap<>();
+            for (TimerFiring firing : firings) {
+                countsByAction.merge(firing.action, 1, Integer::sum);
+            }
+            System.out.println("\n[BULK TIMER EXECUTED] " + firings.size() + " devices switched automatically " + countsByAction);
+            for (TimerFiring firing : firings) {
+                Gadget device = firing.device;
+                System.out.println("  - " + device.getType() + " " + device.getModel() + " in " + device.getRoomName() +
+                                 ": " + firing.previousStatus + " -> " + firing.newStatus +
+                                 " (scheduled " + firing.scheduledTime.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")) + ")");
+            }
+            System.out.println("  Executed: " + now.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss")));
+        }
+        System.out.print("\nPress Enter to continue or enter your choice: ");
+    }
+    private static class TimerFiring {
+        private final Gadget device;
+        private final String action;
+        private final LocalDateTime scheduledTime;
+        private final String previousStatus;
+        private final String newStatus;
+        private TimerFiring(Gadget device, String action, LocalDateTime scheduledTime, String previousStatus, String newStatus) {
+            this.device = device;
+            this.action = action;
+            this.scheduledTime = scheduledTime;
+            this.previousStatus = previousStatus;
+            this.newStatus = newStatus;
+        }
+    }
     public LocalDateTime parseDateTime(String dateTimeStr) throws DateTimeParseException {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
         return LocalDateTime.parse(dateTimeStr, formatter);
@@ -324,11 +526,14 @@ public class TimerService {
     }
     public void forceTimerCheck() {
         try {
-            checkAndExecuteScheduledTasks();
+            checkAndExecuteScheduledTasks(System.nanoTime());
         } catch (Exception e) {
             System.err.println("Error during forced timer check: " + e.getMessage());
         }
     }
+    public SchedulerMetricsService getMetricsService() {
+        return metricsService;
+    }
     public void shutdown() {
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdown();
@@ -352,30 +557,30 @@ public class TimerService {
                 return; // No user logged in
             }
 
-            // Get all upcoming events
-            List<CalendarEventService.CalendarEvent> upcomingEvents =
-                calendarEventService.getUpcomingEvents(currentUser.getEmail());
-
-            for (CalendarEventService.CalendarEvent event : upcomingEvents) {
-                List<CalendarEventService.AutomationAction> actions = event.getAutomationActions();
-
-                for (CalendarEventService.AutomationAction action : actions) {
-                    // Calculate when this automation should execute
-                    LocalDateTime executionTime = event.getStartTime().plusMinutes(action.getMinutesOffset());
-
-                    // Check if it's time to execute this automation (within 1 minute window)
-                    long minutesDiff = ChronoUnit.MINUTES.between(executionTime, now);
-                    if (Math.abs(minutesDiff) <= 1) {
-                        // Execute the automation action
-                        executeCalendarEventAutomation(currentUser, action, event.getTitle());
-                    }
-                }
-            }
+            // Automations fire from their own exact-time jobs; the tick only makes sure the
+            // user's upcoming window has been registered
+            calendarEventService.scheduleUpcomingAutomations(currentUser.getEmail(), now);
         } catch (Exception e) {
             System.err.println("Error checking calendar event automation: " + e.getMessage());
         }
     }
 
+    private void runCalendarEventAutomation(String userEmail, CalendarEventService.CalendarEvent event,
+                                            CalendarEventService.AutomationAction action, LocalDateTime executionTime) {
+        Customer currentUser = SessionManager.getInstance().getCurrentUser();
+        Customer owner = currentUser != null && userEmail.equalsIgnoreCase(currentUser.getEmail())
+            ? currentUser
+            : customerService.findCustomerByEmail(userEmail);
+        if (owner == null) {
+            return;
+        }
+        long handlerStart = System.nanoTime();
+        executeCalendarEventAutomation(owner, action, event.getTitle());
+        metricsService.recordFiring(SchedulerMetricsService.FiringType.CALENDAR_AUTOMATION,
+                                    ChronoUnit.MILLIS.between(executionTime, LocalDateTime.now()),
+                                    System.nanoTime() - handlerStart);
+    }
+
     private void executeCalendarEventAutomation(Customer customer, CalendarEventService.AutomationAction action, String eventTitle) {
         try {
             // Find the device to control
@@ -440,6 +645,9 @@ public class TimerService {
             // Check energy usage alerts
             alertService.checkEnergyUsageAlerts(userEmail, currentUser);
 
+            // Check compound rule alerts
+            alertService.checkRuleAlerts(userEmail, currentUser, now);
+
         } catch (Exception e) {
             System.err.println("Error checking alerts: " + e.getMessage());
         }
@@ -0,0 +1,52 @@
+package com.smarthome.util;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+public class AppConfig {
+    private static final Properties properties = new Properties();
+    static {
+        try (InputStream input = AppConfig.class.getClassLoader()
+                .getResourceAsStream("application.properties")) {
+            if (input != null) {
+                properties.load(input);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading properties: " + e.getMessage());
+        }
+    }
+    private AppConfig() {}
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + " (using " + defaultValue + ")");
+            return defaultValue;
+        }
+    }
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + " (using " + defaultValue + ")");
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.smarthome.util;
+public class DailyUsageForecast {
+    // Exponentially smoothed daily energy (Wh) with its smoothed variance, kept separately for weekdays
+    // and weekends. Each completed day is folded in once, so the fit never rereads old samples.
+    private static final int WEEKDAY = 0;
+    private static final int WEEKEND = 1;
+    private final double smoothing;
+    private final double[] level = new double[2];
+    private final double[] variance = new double[2];
+    private final int[] observations = new int[2];
+    public DailyUsageForecast(double smoothing) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("Smoothing must be in (0, 1]");
+        }
+        this.smoothing = smoothing;
+    }
+    public DailyUsageForecast(DailyUsageForecast other) {
+        this.smoothing = other.smoothing;
+        System.arraycopy(other.level, 0, level, 0, 2);
+        System.arraycopy(other.variance, 0, variance, 0, 2);
+        System.arraycopy(other.observations, 0, observations, 0, 2);
+    }
+    public static double configuredSmoothing() {
+        return Math.min(1.0, Math.max(0.01, AppConfig.getDouble("energy.forecast.smoothing", 0.3)));
+    }
+    // Days are local epoch days, as in EnergyHistory; day 0 (1 Jan 1970) was a Thursday
+    public static boolean isWeekend(long day) {
+        return Math.floorMod(day + 3, 7) >= 5;
+    }
+    public void observe(long day, double wattHours) {
+        int kind = isWeekend(day) ? WEEKEND : WEEKDAY;
+        if (observations[kind] == 0) {
+            level[kind] = wattHours;
+            variance[kind] = 0.0;
+        } else {
+            double difference = wattHours - level[kind];
+            double step = smoothing * difference;
+            level[kind] += step;
+            variance[kind] = (1 - smoothing) * (variance[kind] + difference * step);
+        }
+        observations[kind]++;
+    }
+    public boolean hasObservations() {
+        return observations[WEEKDAY] + observations[WEEKEND] > 0;
+    }
+    // Until a weekend (or weekday) has been seen, the other kind of day stands in for it
+    public double expectedWh(long day) {
+        return level[kindFor(day)];
+    }
+    // With a single day seen there is no spread yet, so assume a standard deviation of half the level
+    public double varianceWh(long day) {
+        int kind = kindFor(day);
+        return observations[kind] < 2 ? Math.max(variance[kind], level[kind] * level[kind] / 4) : variance[kind];
+    }
+    private int kindFor(long day) {
+        int kind = isWeekend(day) ? WEEKEND : WEEKDAY;
+        return observations[kind] > 0 ? kind : 1 - kind;
+    }
+}
@@ -0,0 +1,249 @@
+package com.smarthome.util;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+public class EnergyHistory {
+    // A device's energy at four resolutions. Minute samples are kept briefly; as each minute is
+    // recorded it is also rolled up into its hour, day and month, which are kept for longer
+    // (energy.rollup.* settings). Rolling up on write keeps every level exact without re-reading
+    // minutes that have already fallen out of the minute buffer.
+    public enum Resolution {
+        MINUTE, HOUR, DAY, MONTH;
+        public long bucketOf(long minute) {
+            switch (this) {
+                case MINUTE: return minute;
+                case HOUR: return Math.floorDiv(minute, 60);
+                case DAY: return Math.floorDiv(minute, 1440);
+                default:
+                    LocalDateTime time = EnergyRingBuffer.timeOf(minute);
+                    return time.getYear() * 12L + time.getMonthValue() - 1;
+            }
+        }
+        public long startMinuteOf(long bucket) {
+            switch (this) {
+                case MINUTE: return bucket;
+                case HOUR: return bucket * 60;
+                case DAY: return bucket * 1440;
+                default:
+                    LocalDate firstDay = LocalDate.of((int) Math.floorDiv(bucket, 12), Math.floorMod(bucket, 12) + 1, 1);
+                    return EnergyRingBuffer.minuteOf(firstDay.atStartOfDay());
+            }
+        }
+        // Typical bucket length, used to estimate how many points a range needs
+        public long approximateMinutes() {
+            switch (this) {
+                case MINUTE: return 1;
+                case HOUR: return 60;
+                case DAY: return 1440;
+                default: return 43_830;
+            }
+        }
+    }
+    private static final byte ROLLUP_BLOCK_VERSION = 1;
+    private static final long NO_DAY = Long.MIN_VALUE;
+    // Days further back than this no longer move an exponentially smoothed fit
+    private static final int FORECAST_DAYS = 56;
+    private final int hourCapacity;
+    private final int dayCapacity;
+    private final int monthCapacity;
+    private EnergyRingBuffer minutes;
+    private EnergyRollupRing hours;
+    private EnergyRollupRing days;
+    private EnergyRollupRing months;
+    private DailyUsageForecast forecast;
+    // The first day not yet folded into the forecast
+    private long nextForecastDay = NO_DAY;
+    public EnergyHistory(int minuteCapacity, int hourCapacity, int dayCapacity, int monthCapacity) {
+        this.hourCapacity = hourCapacity;
+        this.dayCapacity = dayCapacity;
+        this.monthCapacity = monthCapacity;
+        this.minutes = new EnergyRingBuffer(minuteCapacity);
+        clearRollups();
+        this.forecast = new DailyUsageForecast(DailyUsageForecast.configuredSmoothing());
+    }
+    public static EnergyHistory fromConfig() {
+        return new EnergyHistory(configuredRetention(Resolution.MINUTE), configuredRetention(Resolution.HOUR),
+                                 configuredRetention(Resolution.DAY), configuredRetention(Resolution.MONTH));
+    }
+    // Buckets of the resolution kept per device
+    public static int configuredRetention(Resolution resolution) {
+        switch (resolution) {
+            case MINUTE: return EnergyRingBuffer.configuredCapacity();
+            case HOUR: return Math.max(1, AppConfig.getInt("energy.rollup.hourly.days", 90)) * 24;
+            case DAY: return Math.max(1, AppConfig.getInt("energy.rollup.daily.days", 730));
+            default: return Math.max(1, AppConfig.getInt("energy.rollup.monthly.months", 120));
+        }
+    }
+    private void clearRollups() {
+        hours = new EnergyRollupRing(hourCapacity);
+        days = new EnergyRollupRing(dayCapacity);
+        months = new EnergyRollupRing(monthCapacity);
+    }
+    public synchronized EnergyRingBuffer getMinutes() {
+        return minutes;
+    }
+    public synchronized boolean isEmpty() {
+        return minutes.isEmpty() && hours.isEmpty();
+    }
+    // How many buckets of the resolution are retained
+    public int getRetention(Resolution resolution) {
+        switch (resolution) {
+            case MINUTE: return minutes.getCapacityMinutes();
+            case HOUR: return hourCapacity;
+            case DAY: return dayCapacity;
+            default: return monthCapacity;
+        }
+    }
+    public synchronized void record(long fromMinute, long count, double wattHoursPerMinute) {
+        if (count <= 0 || wattHoursPerMinute == 0) {
+            return;
+        }
+        for (long minute = fromMinute; minute < fromMinute + count; minute++) {
+            recordMinute(minute, wattHoursPerMinute);
+        }
+        recorded(fromMinute, fromMinute + count - 1);
+    }
+    // A session of `durationMillis` at `watts` starting at local epoch millisecond `fromMillis`; the
+    // partial first and last minutes get their share of the energy instead of being dropped
+    public synchronized void recordSpan(long fromMillis, long durationMillis, double watts) {
+        if (durationMillis <= 0 || watts == 0) {
+            return;
+        }
+        long end = fromMillis + durationMillis;
+        for (long t = fromMillis; t < end; ) {
+            long minute = Math.floorDiv(t, 60_000L);
+            long minuteEnd = Math.min(end, (minute + 1) * 60_000);
+            recordMinute(minute, watts * (minuteEnd - t) / 3_600_000.0);
+            t = minuteEnd;
+        }
+        recorded(Math.floorDiv(fromMillis, 60_000L), Math.floorDiv(end - 1, 60_000L));
+    }
+    private void recordMinute(long minute, double wattHours) {
+        double before = minutes.get(minute);
+        minutes.add(minute, wattHours);
+        double after = before + wattHours;
+        int turnedOn = before == 0 && after > 0 ? 1 : 0;
+        hours.add(Resolution.HOUR.bucketOf(minute), wattHours, after, turnedOn);
+        days.add(Resolution.DAY.bucketOf(minute), wattHours, after, turnedOn);
+        months.add(Resolution.MONTH.bucketOf(minute), wattHours, after, turnedOn);
+    }
+    private void recorded(long firstMinute, long lastMinute) {
+        if (nextForecastDay == NO_DAY) {
+            nextForecastDay = Resolution.DAY.bucketOf(firstMinute);
+        }
+        foldDaysBefore(Resolution.DAY.bucketOf(lastMinute));
+    }
+    // Folds every completed day before `day` into the forecast; idle days count as zero
+    private void foldDaysBefore(long day) {
+        if (nextForecastDay == NO_DAY || day <= nextForecastDay) {
+            return;
+        }
+        nextForecastDay = Math.max(nextForecastDay, day - FORECAST_DAYS);
+        for (; nextForecastDay < day; nextForecastDay++) {
+            forecast.observe(nextForecastDay, days.getSum(nextForecastDay));
+        }
+    }
+    // The daily fit as of `today` (a local epoch day), with the days since the last sample folded in
+    public synchronized DailyUsageForecast getForecast(long today) {
+        foldDaysBefore(today);
+        return new DailyUsageForecast(forecast);
+    }
+    // Adds the energy (Wh), largest minute (Wh) and on-minutes of `sums.length` buckets starting at
+    // fromBucket into the arrays, so several devices can share them
+    public synchronized void addInto(Resolution resolution, long fromBucket, double[] sums, double[] maxMinutes, long[] onMinutes) {
+        if (resolution == Resolution.MINUTE) {
+            for (int i = 0; i < sums.length; i++) {
+                double value = minutes.get(fromBucket + i);
+                sums[i] += value;
+                maxMinutes[i] = Math.max(maxMinutes[i], value);
+                onMinutes[i] += value > 0 ? 1 : 0;
+            }
+            return;
+        }
+        EnergyRollupRing ring = resolution == Resolution.HOUR ? hours : resolution == Resolution.DAY ? days : months;
+        for (int i = 0; i < sums.length; i++) {
+            long bucket = fromBucket + i;
+            sums[i] += ring.getSum(bucket);
+            maxMinutes[i] = Math.max(maxMinutes[i], ring.getMaxMinute(bucket));
+            onMinutes[i] += ring.getOnMinutes(bucket);
+        }
+    }
+    public synchronized String encodeMinutes() {
+        return minutes.isEmpty() ? null : minutes.encode();
+    }
+    public synchronized String encodeMinutes(int maxChars) {
+        return minutes.isEmpty() ? null : minutes.encode(maxChars);
+    }
+    public synchronized void restoreMinutes(String block) {
+        minutes = EnergyRingBuffer.decode(block, minutes.getCapacityMinutes());
+    }
+    // Block of the hour, day and month rings in EnergyRingBuffer's run-length layout
+    public synchronized String encodeRollups() {
+        return hours.isEmpty() ? null : encodeRollups(hourCapacity, dayCapacity, monthCapacity);
+    }
+    // Trimmed to maxChars by dropping the oldest hours first, then the oldest days, then the oldest months;
+    // the newest bucket of each is always kept
+    public synchronized String encodeRollups(int maxChars) {
+        if (hours.isEmpty()) {
+            return null;
+        }
+        String block = encodeRollups(hourCapacity, dayCapacity, monthCapacity);
+        if (block.length() > maxChars) {
+            int keptHours = EnergyRingBuffer.largestFitting(hourCapacity, maxChars, count -> encodeRollups(count, dayCapacity, monthCapacity));
+            block = encodeRollups(keptHours, dayCapacity, monthCapacity);
+        }
+        if (block.length() > maxChars) {
+            int keptDays = EnergyRingBuffer.largestFitting(dayCapacity, maxChars, count -> encodeRollups(1, count, monthCapacity));
+            block = encodeRollups(1, keptDays, monthCapacity);
+        }
+        if (block.length() > maxChars) {
+            int keptMonths = EnergyRingBuffer.largestFitting(monthCapacity, maxChars, count -> encodeRollups(1, 1, count));
+            block = encodeRollups(1, 1, keptMonths);
+        }
+        return block;
+    }
+    private String encodeRollups(int keptHours, int keptDays, int keptMonths) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ROLLUP_BLOCK_VERSION);
+        hours.writeTo(out, keptHours);
+        days.writeTo(out, keptDays);
+        months.writeTo(out, keptMonths);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+    public synchronized void restoreRollups(String block) {
+        clearRollups();
+        forecast = new DailyUsageForecast(DailyUsageForecast.configuredSmoothing());
+        nextForecastDay = NO_DAY;
+        if (block == null || block.isEmpty()) {
+            return;
+        }
+        restoreRollupBlock(block);
+        // Refit from the restored days, starting at the first one with any usage
+        if (!days.isEmpty()) {
+            long newest = days.getNewestBucket();
+            for (long day = newest - Math.min(days.getCapacity(), FORECAST_DAYS) + 1; day <= newest; day++) {
+                if (days.getSum(day) > 0) {
+                    nextForecastDay = day;
+                    foldDaysBefore(newest);
+                    break;
+                }
+            }
+        }
+    }
+    private void restoreRollupBlock(String block) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Base64.getDecoder().decode(block));
+            if (in.get() != ROLLUP_BLOCK_VERSION) {
+                throw new IllegalArgumentException("Unsupported rollup block version");
+            }
+            hours.readFrom(in);
+            days.readFrom(in);
+            months.readFrom(in);
+        } catch (RuntimeException e) {
+            clearRollups();
+            throw e instanceof IllegalArgumentException ? e : new IllegalArgumentException("Corrupt rollup block", e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.smarthome.util;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.function.IntFunction;
+public class EnergyRingBuffer {
+    // Energy per minute in watt-hours for the most recent `capacity` minutes. Slot i holds the minute
+    // m with m % capacity == i, so recording and reading are array accesses with no allocation.
+    // Minutes are "local epoch minutes" (local wall-clock time read as UTC), so hour and day buckets
+    // line up with the household's own clock.
+    private static final int DEFAULT_CAPACITY_MINUTES = 2880;
+    private static final byte BLOCK_VERSION = 1;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private final float[] wattHours;
+    private long newestMinute = EMPTY;
+    public EnergyRingBuffer(int capacityMinutes) {
+        if (capacityMinutes < 1) {
+            throw new IllegalArgumentException("Capacity must be at least one minute");
+        }
+        this.wattHours = new float[capacityMinutes];
+    }
+    public static int configuredCapacity() {
+        return Math.max(60, AppConfig.getInt("energy.series.minutes", DEFAULT_CAPACITY_MINUTES));
+    }
+    public static long minuteOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+    public static LocalDateTime timeOf(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+    public int getCapacityMinutes() {
+        return wattHours.length;
+    }
+    public synchronized long getNewestMinute() {
+        return newestMinute;
+    }
+    public synchronized boolean isEmpty() {
+        return newestMinute == EMPTY;
+    }
+    // Minutes older than the buffer's span are dropped; moving past the newest minute clears the
+    // slots of the skipped minutes, so gaps read as zero
+    public synchronized void add(long minute, double wattHoursUsed) {
+        if (!advanceTo(minute)) {
+            return;
+        }
+        wattHours[slot(minute)] += (float) wattHoursUsed;
+    }
+    // Records the same energy for each of `minutes` consecutive minutes, e.g. a session at constant power
+    public synchronized void addConstant(long fromMinute, long minutes, double wattHoursPerMinute) {
+        if (minutes <= 0) {
+            return;
+        }
+        long first = Math.max(fromMinute, fromMinute + minutes - wattHours.length);
+        long last = fromMinute + minutes - 1;
+        if (!advanceTo(last)) {
+            return;
+        }
+        first = Math.max(first, newestMinute - wattHours.length + 1);
+        for (long minute = first; minute <= last; minute++) {
+            wattHours[slot(minute)] += (float) wattHoursPerMinute;
+        }
+    }
+    public synchronized double get(long minute) {
+        return covers(minute) ? wattHours[slot(minute)] : 0.0;
+    }
+    // Sum over [fromMinute, toMinute)
+    public synchronized double sum(long fromMinute, long toMinute) {
+        if (newestMinute == EMPTY) {
+            return 0.0;
+        }
+        long from = Math.max(fromMinute, newestMinute - wattHours.length + 1);
+        long to = Math.min(toMinute, newestMinute + 1);
+        double total = 0.0;
+        for (long minute = from; minute < to; minute++) {
+            total += wattHours[slot(minute)];
+        }
+        return total;
+    }
+    // Consecutive sums of `bucketMinutes` minutes starting at fromMinute, e.g. an hourly curve;
+    // the result is added into `into` so several devices can share one array
+    public synchronized void addBucketSums(long fromMinute, int bucketMinutes, double[] into) {
+        if (newestMinute == EMPTY) {
+            return;
+        }
+        long oldest = newestMinute - wattHours.length + 1;
+        long from = Math.max(fromMinute, oldest);
+        long to = Math.min(fromMinute + (long) bucketMinutes * into.length, newestMinute + 1);
+        for (long minute = from; minute < to; minute++) {
+            into[(int) ((minute - fromMinute) / bucketMinutes)] += wattHours[slot(minute)];
+        }
+    }
+    private boolean advanceTo(long minute) {
+        if (newestMinute == EMPTY) {
+            newestMinute = minute;
+            return true;
+        }
+        if (minute <= newestMinute) {
+            return minute > newestMinute - wattHours.length;
+        }
+        long skipped = Math.min(minute - newestMinute, wattHours.length);
+        for (long i = 1; i <= skipped; i++) {
+            wattHours[slot(newestMinute + i)] = 0f;
+        }
+        newestMinute = minute;
+        return true;
+    }
+    private boolean covers(long minute) {
+        return newestMinute != EMPTY && minute <= newestMinute && minute > newestMinute - wattHours.length;
+    }
+    private int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) wattHours.length);
+    }
+    // Compact block: version, capacity, newest minute, then the buffer from oldest to newest minute
+    // as runs of (length, float bits). Idle stretches and constant-power sessions each collapse into
+    // a single run, so a mostly idle device encodes to a few bytes.
+    public synchronized String encode() {
+        return encodeNewest(wattHours.length);
+    }
+    // The newest minutes whose block fits in maxChars, oldest dropped first
+    public synchronized String encode(int maxChars) {
+        String full = encodeNewest(wattHours.length);
+        return full.length() <= maxChars ? full : encodeNewest(largestFitting(wattHours.length, maxChars, this::encodeNewest));
+    }
+    // A block of only the newest `count` minutes, read back like a buffer of that capacity
+    private String encodeNewest(int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BLOCK_VERSION);
+        writeVarLong(out, count);
+        if (newestMinute == EMPTY) {
+            out.write(0);
+            return Base64.getEncoder().encodeToString(out.toByteArray());
+        }
+        out.write(1);
+        writeVarLong(out, newestMinute);
+        long oldest = newestMinute - count + 1;
+        long minute = oldest;
+        while (minute <= newestMinute) {
+            float value = wattHours[slot(minute)];
+            long run = 1;
+            while (minute + run <= newestMinute && Float.floatToIntBits(wattHours[slot(minute + run)]) == Float.floatToIntBits(value)) {
+                run++;
+            }
+            writeVarLong(out, run);
+            writeFloat(out, value);
+            minute += run;
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+    // Restores a block into a buffer of the given capacity; if it differs from the block's, the newest minutes are kept
+    public static EnergyRingBuffer decode(String block, int capacityMinutes) {
+        EnergyRingBuffer buffer = new EnergyRingBuffer(capacityMinutes);
+        if (block == null || block.isEmpty()) {
+            return buffer;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Base64.getDecoder().decode(block));
+        if (in.get() != BLOCK_VERSION) {
+            throw new IllegalArgumentException("Unsupported energy block version");
+        }
+        long blockCapacity = readVarLong(in);
+        if (in.get() == 0) {
+            return buffer;
+        }
+        long newest = readVarLong(in);
+        long minute = newest - blockCapacity + 1;
+        while (minute <= newest) {
+            long run = readVarLong(in);
+            float value = in.getFloat();
+            if (run < 1 || minute + run - 1 > newest) {
+                throw new IllegalArgumentException("Corrupt energy block");
+            }
+            if (value != 0f) {
+                buffer.addConstant(minute, run, value);
+            }
+            minute += run;
+        }
+        buffer.advanceTo(newest);
+        return buffer;
+    }
+    // Largest count in [1, max] whose block is at most maxChars long, or 1 if none is. A block only grows as
+    // older data is added to it, so the count is found by bisection.
+    static int largestFitting(int max, int maxChars, IntFunction<String> encoder) {
+        int low = 1;
+        int high = Math.max(1, max);
+        while (low < high) {
+            int middle = (int) (((long) low + high + 1) >>> 1);
+            if (encoder.apply(middle).length() <= maxChars) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+    static void writeFloat(ByteArrayOutputStream out, float value) {
+        int bits = Float.floatToIntBits(value);
+        out.write(bits >>> 24);
+        out.write(bits >>> 16);
+        out.write(bits >>> 8);
+        out.write(bits);
+    }
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.write((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.write((int) zigZag);
+    }
+    static long readVarLong(ByteBuffer in) {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Corrupt energy block");
+    }
+}
@@ -0,0 +1,128 @@
+package com.smarthome.util;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+public class EnergyRollupRing {
+    // Aggregates of consecutive buckets (hours, days or months) for the most recent `capacity` buckets:
+    // energy in Wh, the largest single-minute energy in Wh and the minutes with any usage. Like
+    // EnergyRingBuffer, bucket b lives in slot b % capacity and older buckets fall off the end.
+    private static final long EMPTY = Long.MIN_VALUE;
+    private final float[] sums;
+    private final float[] maxMinutes;
+    private final int[] onMinutes;
+    private long newestBucket = EMPTY;
+    public EnergyRollupRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least one bucket");
+        }
+        this.sums = new float[capacity];
+        this.maxMinutes = new float[capacity];
+        this.onMinutes = new int[capacity];
+    }
+    public int getCapacity() {
+        return sums.length;
+    }
+    public long getNewestBucket() {
+        return newestBucket;
+    }
+    public boolean isEmpty() {
+        return newestBucket == EMPTY;
+    }
+    public void add(long bucket, double wattHours, double minuteWattHours, int minutesOn) {
+        if (!advanceTo(bucket)) {
+            return;
+        }
+        int slot = slot(bucket);
+        sums[slot] += (float) wattHours;
+        maxMinutes[slot] = Math.max(maxMinutes[slot], (float) minuteWattHours);
+        onMinutes[slot] += minutesOn;
+    }
+    public boolean covers(long bucket) {
+        return newestBucket != EMPTY && bucket <= newestBucket && bucket > newestBucket - sums.length;
+    }
+    public double getSum(long bucket) {
+        return covers(bucket) ? sums[slot(bucket)] : 0.0;
+    }
+    public double getMaxMinute(long bucket) {
+        return covers(bucket) ? maxMinutes[slot(bucket)] : 0.0;
+    }
+    public int getOnMinutes(long bucket) {
+        return covers(bucket) ? onMinutes[slot(bucket)] : 0;
+    }
+    private boolean advanceTo(long bucket) {
+        if (newestBucket == EMPTY) {
+            newestBucket = bucket;
+            return true;
+        }
+        if (bucket <= newestBucket) {
+            return bucket > newestBucket - sums.length;
+        }
+        long skipped = Math.min(bucket - newestBucket, sums.length);
+        for (long i = 1; i <= skipped; i++) {
+            int slot = slot(newestBucket + i);
+            sums[slot] = 0f;
+            maxMinutes[slot] = 0f;
+            onMinutes[slot] = 0;
+        }
+        newestBucket = bucket;
+        return true;
+    }
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) sums.length);
+    }
+    // Same layout as EnergyRingBuffer blocks: newest bucket, then runs of identical (sum, max, on-minutes)
+    void writeTo(ByteArrayOutputStream out) {
+        writeTo(out, sums.length);
+    }
+    // Only the newest `count` buckets, read back like a ring of that capacity
+    void writeTo(ByteArrayOutputStream out, int count) {
+        EnergyRingBuffer.writeVarLong(out, count);
+        if (newestBucket == EMPTY) {
+            out.write(0);
+            return;
+        }
+        out.write(1);
+        EnergyRingBuffer.writeVarLong(out, newestBucket);
+        long bucket = newestBucket - count + 1;
+        while (bucket <= newestBucket) {
+            int slot = slot(bucket);
+            long run = 1;
+            while (bucket + run <= newestBucket && sameAs(slot, slot(bucket + run))) {
+                run++;
+            }
+            EnergyRingBuffer.writeVarLong(out, run);
+            EnergyRingBuffer.writeFloat(out, sums[slot]);
+            EnergyRingBuffer.writeFloat(out, maxMinutes[slot]);
+            EnergyRingBuffer.writeVarLong(out, onMinutes[slot]);
+            bucket += run;
+        }
+    }
+    void readFrom(ByteBuffer in) {
+        long blockCapacity = EnergyRingBuffer.readVarLong(in);
+        if (in.get() == 0) {
+            return;
+        }
+        long newest = EnergyRingBuffer.readVarLong(in);
+        long bucket = newest - blockCapacity + 1;
+        while (bucket <= newest) {
+            long run = EnergyRingBuffer.readVarLong(in);
+            float sum = in.getFloat();
+            float max = in.getFloat();
+            int on = (int) EnergyRingBuffer.readVarLong(in);
+            if (run < 1 || bucket + run - 1 > newest) {
+                throw new IllegalArgumentException("Corrupt energy block");
+            }
+            if (sum != 0f || max != 0f || on != 0) {
+                for (long i = Math.max(0, run - sums.length); i < run; i++) {
+                    add(bucket + i, sum, max, on);
+                }
+            }
+            bucket += run;
+        }
+        advanceTo(newest);
+    }
+    private boolean sameAs(int a, int b) {
+        return Float.floatToIntBits(sums[a]) == Float.floatToIntBits(sums[b])
+            && Float.floatToIntBits(maxMinutes[a]) == Float.floatToIntBits(maxMinutes[b])
+            && onMinutes[a] == onMinutes[b];
+    }
+}
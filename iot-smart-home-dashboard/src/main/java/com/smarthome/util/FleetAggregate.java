@@ -0,0 +1,174 @@
+package com.smarthome.util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+public class FleetAggregate {
+    // Energy and bill totals of a set of customers that can be merged with another set's: sums, a histogram
+    // of bills over fixed bands, the top consumers (a min-heap bounded to topN) and kWh by device type.
+    // Each segment of a fleet fills its own and the partials are merged, so the size depends on topN and
+    // the number of device types, never on the number of customers.
+    public static final class TopConsumer {
+        private final String email;
+        private final double kWh;
+        private final double costRupees;
+        private final int devices;
+        public TopConsumer(String email, double kWh, double costRupees, int devices) {
+            this.email = email;
+            this.kWh = kWh;
+            this.costRupees = costRupees;
+            this.devices = devices;
+        }
+        public String getEmail() { return email; }
+        public double getKWh() { return kWh; }
+        public double getCostRupees() { return costRupees; }
+        public int getDevices() { return devices; }
+    }
+    // Smallest first; equal kWh keep the earlier email, so any split of the fleet ends with the same top list
+    private static final Comparator<TopConsumer> SMALLEST_FIRST = Comparator.comparingDouble(TopConsumer::getKWh)
+            .thenComparing(TopConsumer::getEmail, Comparator.reverseOrder());
+    private final double[] costBands;
+    private final long[] bandCounts;
+    private final int topN;
+    private final PriorityQueue<TopConsumer> top;
+    private final Map<String, double[]> byType = new HashMap<>();
+    private long customers;
+    private long devices;
+    private double totalKWh;
+    private double totalCost;
+    private double minCost = Double.POSITIVE_INFINITY;
+    private double maxCost = Double.NEGATIVE_INFINITY;
+    // costBands are the ascending upper edges of the bill bands; bills above the last one get a band of their own
+    public FleetAggregate(double[] costBands, int topN) {
+        for (int i = 1; i < costBands.length; i++) {
+            if (costBands[i] <= costBands[i - 1]) {
+                throw new IllegalArgumentException("Cost bands must be ascending");
+            }
+        }
+        this.costBands = costBands.clone();
+        this.bandCounts = new long[costBands.length + 1];
+        this.topN = Math.max(0, topN);
+        this.top = new PriorityQueue<>(this.topN + 1, SMALLEST_FIRST);
+    }
+    public void addCustomer(String email, double kWh, double costRupees, int deviceCount) {
+        customers++;
+        devices += deviceCount;
+        totalKWh += kWh;
+        totalCost += costRupees;
+        minCost = Math.min(minCost, costRupees);
+        maxCost = Math.max(maxCost, costRupees);
+        bandCounts[bandOf(costRupees)]++;
+        offer(new TopConsumer(email, kWh, costRupees, deviceCount));
+    }
+    public void addDevice(String type, double kWh) {
+        double[] totals = byType.computeIfAbsent(type != null ? type : "", key -> new double[2]);
+        totals[0] += kWh;
+        totals[1]++;
+    }
+    // Folds `other` into this one and returns this
+    public FleetAggregate merge(FleetAggregate other) {
+        if (!Arrays.equals(costBands, other.costBands)) {
+            throw new IllegalArgumentException("Cannot merge aggregates with different cost bands");
+        }
+        customers += other.customers;
+        devices += other.devices;
+        totalKWh += other.totalKWh;
+        totalCost += other.totalCost;
+        minCost = Math.min(minCost, other.minCost);
+        maxCost = Math.max(maxCost, other.maxCost);
+        for (int i = 0; i < bandCounts.length; i++) {
+            bandCounts[i] += other.bandCounts[i];
+        }
+        for (TopConsumer consumer : other.top) {
+            offer(consumer);
+        }
+        for (Map.Entry<String, double[]> entry : other.byType.entrySet()) {
+            double[] totals = byType.computeIfAbsent(entry.getKey(), key -> new double[2]);
+            totals[0] += entry.getValue()[0];
+            totals[1] += entry.getValue()[1];
+        }
+        return this;
+    }
+    private void offer(TopConsumer consumer) {
+        if (top.size() < topN) {
+            top.add(consumer);
+        } else if (topN > 0 && SMALLEST_FIRST.compare(consumer, top.peek()) > 0) {
+            top.poll();
+            top.add(consumer);
+        }
+    }
+    private int bandOf(double costRupees) {
+        int band = Arrays.binarySearch(costBands, costRupees);
+        return band >= 0 ? band : -band - 1;
+    }
+    public long getCustomerCount() {
+        return customers;
+    }
+    public long getDeviceCount() {
+        return devices;
+    }
+    public double getTotalKWh() {
+        return totalKWh;
+    }
+    public double getTotalCostRupees() {
+        return totalCost;
+    }
+    public double getMinCostRupees() {
+        return customers > 0 ? minCost : 0.0;
+    }
+    public double getMaxCostRupees() {
+        return customers > 0 ? maxCost : 0.0;
+    }
+    public double getAverageCostRupees() {
+        return customers > 0 ? totalCost / customers : 0.0;
+    }
+    public double[] getCostBands() {
+        return costBands.clone();
+    }
+    // Customers per band: [i] has bills up to costBands[i], the last entry those above every band
+    public long[] getBandCounts() {
+        return bandCounts.clone();
+    }
+    // Bill at the given fraction of customers (0.5 for the median), interpolated inside its band; the
+    // outer bands are bounded by the lowest and highest bill
+    public double getCostPercentile(double fraction) {
+        if (customers == 0) {
+            return 0.0;
+        }
+        double rank = Math.min(1.0, Math.max(0.0, fraction)) * customers;
+        long below = 0;
+        for (int band = 0; band < bandCounts.length; band++) {
+            if (bandCounts[band] > 0 && below + bandCounts[band] >= rank) {
+                double lower = Math.max(minCost, band > 0 ? costBands[band - 1] : minCost);
+                double upper = Math.min(maxCost, band < costBands.length ? costBands[band] : maxCost);
+                return lower + (upper - lower) * (rank - below) / bandCounts[band];
+            }
+            below += bandCounts[band];
+        }
+        return maxCost;
+    }
+    // Highest consumers first
+    public List<TopConsumer> getTopConsumers() {
+        List<TopConsumer> consumers = new ArrayList<>(top);
+        consumers.sort(SMALLEST_FIRST.reversed());
+        return consumers;
+    }
+    // kWh per device type, largest first
+    public Map<String, Double> getKWhByType() {
+        List<Map.Entry<String, double[]>> entries = new ArrayList<>(byType.entrySet());
+        entries.sort((a, b) -> Double.compare(b.getValue()[0], a.getValue()[0]));
+        Map<String, Double> kWhByType = new LinkedHashMap<>();
+        for (Map.Entry<String, double[]> entry : entries) {
+            kWhByType.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return kWhByType;
+    }
+    public long getDeviceCount(String type) {
+        double[] totals = byType.get(type);
+        return totals != null ? (long) totals[1] : 0L;
+    }
+}
@@ -0,0 +1,233 @@
+package com.smarthome.util;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+public class ICalendarReader {
+    // Streams VEVENTs out of an RFC 5545 file one at a time; only the current event is held in memory.
+    // Logical lines longer than this are truncated so a malformed file cannot exhaust the heap.
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private final BufferedReader reader;
+    private String pendingLine;
+    private int lineNumber;
+    public ICalendarReader(Reader source) {
+        this.reader = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source, 1 << 16);
+    }
+    public static class Property {
+        private final String name;
+        private final Map<String, String> parameters;
+        private final String value;
+        private Property(String name, Map<String, String> parameters, String value) {
+            this.name = name;
+            this.parameters = parameters;
+            this.value = value;
+        }
+        public String getName() { return name; }
+        public String getParameter(String parameter) { return parameters.get(parameter.toUpperCase(Locale.ROOT)); }
+        public String getValue() { return value; }
+        public String getText() { return unescapeText(value); }
+    }
+    public static class VEvent {
+        private final Map<String, Property> properties = new HashMap<>();
+        private final int startLine;
+        private VEvent(int startLine) {
+            this.startLine = startLine;
+        }
+        // Repeated properties keep their first value, which is all the calendar model can hold
+        private void add(Property property) {
+            properties.putIfAbsent(property.getName(), property);
+        }
+        public Property getProperty(String name) { return properties.get(name.toUpperCase(Locale.ROOT)); }
+        public String getText(String name) {
+            Property property = getProperty(name);
+            return property != null ? property.getText() : null;
+        }
+        public int getStartLine() { return startLine; }
+    }
+    // Returns the next VEVENT, or null at end of input. Other components (VTODO, VTIMEZONE, VALARM
+    // nested in an event, ...) are skipped.
+    public VEvent nextEvent() throws IOException {
+        VEvent current = null;
+        int nestedDepth = 0;
+        String line;
+        while ((line = nextLogicalLine()) != null) {
+            int colon = findValueSeparator(line);
+            if (colon < 0) {
+                continue;
+            }
+            String head = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            int semicolon = head.indexOf(';');
+            String name = (semicolon < 0 ? head : head.substring(0, semicolon)).trim().toUpperCase(Locale.ROOT);
+            if (name.equals("BEGIN")) {
+                if (current == null && value.trim().equalsIgnoreCase("VEVENT")) {
+                    current = new VEvent(lineNumber);
+                } else if (current != null) {
+                    nestedDepth++;
+                }
+                continue;
+            }
+            if (current == null) {
+                continue;
+            }
+            if (name.equals("END")) {
+                if (nestedDepth > 0) {
+                    nestedDepth--;
+                } else if (value.trim().equalsIgnoreCase("VEVENT")) {
+                    return current;
+                }
+                continue;
+            }
+            if (nestedDepth == 0) {
+                current.add(new Property(name, parseParameters(head, semicolon), value));
+            }
+        }
+        return null;
+    }
+    // Joins folded continuation lines (those starting with a space or tab) onto the previous line
+    private String nextLogicalLine() throws IOException {
+        String line = pendingLine != null ? pendingLine : readPhysicalLine();
+        pendingLine = null;
+        if (line == null) {
+            return null;
+        }
+        if (line.length() > MAX_LINE_LENGTH) {
+            line = line.substring(0, MAX_LINE_LENGTH);
+        }
+        StringBuilder logical = null;
+        String next;
+        while ((next = readPhysicalLine()) != null) {
+            if (next.isEmpty() || (next.charAt(0) != ' ' && next.charAt(0) != '\t')) {
+                pendingLine = next;
+                break;
+            }
+            if (logical == null) {
+                logical = new StringBuilder(line);
+            }
+            if (logical.length() < MAX_LINE_LENGTH) {
+                logical.append(next, 1, Math.min(next.length(), 1 + MAX_LINE_LENGTH - logical.length()));
+            }
+        }
+        return logical != null ? logical.toString() : line;
+    }
+    private String readPhysicalLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+    // The first colon outside a quoted parameter value separates the property head from its value
+    private static int findValueSeparator(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    private static Map<String, String> parseParameters(String head, int semicolon) {
+        Map<String, String> parameters = new HashMap<>();
+        if (semicolon < 0) {
+            return parameters;
+        }
+        int index = semicolon + 1;
+        while (index < head.length()) {
+            int equals = head.indexOf('=', index);
+            if (equals < 0) {
+                break;
+            }
+            String key = head.substring(index, equals).trim().toUpperCase(Locale.ROOT);
+            int end = equals + 1;
+            boolean quoted = false;
+            while (end < head.length() && (quoted || head.charAt(end) != ';')) {
+                if (head.charAt(end) == '"') {
+                    quoted = !quoted;
+                }
+                end++;
+            }
+            String value = head.substring(equals + 1, end).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            parameters.put(key, value);
+            index = end + 1;
+        }
+        return parameters;
+    }
+    public static String unescapeText(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                text.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+    public static boolean isDateValue(Property property) {
+        return "DATE".equalsIgnoreCase(property.getParameter("VALUE")) || property.getValue().trim().length() == 8;
+    }
+    // UTC ("Z") and TZID times are converted to the local zone; floating times are taken as local
+    public static LocalDateTime parseDateTime(Property property) {
+        String value = property.getValue().trim();
+        try {
+            if (isDateValue(property)) {
+                return LocalDate.parse(value, DATE).atStartOfDay();
+            }
+            if (value.endsWith("Z")) {
+                LocalDateTime utc = LocalDateTime.parse(value.substring(0, value.length() - 1), DATE_TIME);
+                return utc.atOffset(ZoneOffset.UTC).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+            }
+            LocalDateTime time = LocalDateTime.parse(value, DATE_TIME);
+            String zone = property.getParameter("TZID");
+            if (zone != null) {
+                try {
+                    return time.atZone(ZoneId.of(zone)).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+                } catch (Exception e) {
+                    // Unknown zone names (e.g. Outlook's "Eastern Standard Time") fall back to floating time
+                }
+            }
+            return time;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + property.getName() + ": " + value);
+        }
+    }
+    // Accepts the RFC 5545 forms P1W, P1D, PT1H30M and P1DT2H
+    public static Duration parseDuration(String value) {
+        String text = value.trim().toUpperCase(Locale.ROOT);
+        boolean negative = text.startsWith("-");
+        if (negative || text.startsWith("+")) {
+            text = text.substring(1);
+        }
+        try {
+            Duration duration = text.endsWith("W")
+                ? Duration.ofDays(7L * Long.parseLong(text.substring(1, text.length() - 1)))
+                : Duration.parse(text);
+            return negative ? duration.negated() : duration;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid DURATION: " + value);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.smarthome.util;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+public class ICalendarWriter {
+    // RFC 5545 limits content lines to 75 octets; longer lines are folded with CRLF + space
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final String CRLF = "\r\n";
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private final Writer writer;
+    public ICalendarWriter(Writer target) {
+        this.writer = target instanceof BufferedWriter ? target : new BufferedWriter(target, 1 << 16);
+    }
+    public void begin(String component) throws IOException {
+        writeLine("BEGIN:" + component);
+    }
+    public void end(String component) throws IOException {
+        writeLine("END:" + component);
+    }
+    public void property(String name, String value) throws IOException {
+        writeLine(name + ":" + value);
+    }
+    public void text(String name, String value) throws IOException {
+        writeLine(name + ":" + escapeText(value));
+    }
+    // Written as floating local time, which is how the calendar stores events
+    public void dateTime(String name, LocalDateTime time) throws IOException {
+        writeLine(name + ":" + time.format(DATE_TIME));
+    }
+    public void flush() throws IOException {
+        writer.flush();
+    }
+    public static String escapeText(String value) {
+        StringBuilder text = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': text.append("\\\\"); break;
+                case ';': text.append("\\;"); break;
+                case ',': text.append("\\,"); break;
+                case '\n': text.append("\\n"); break;
+                case '\r': break;
+                default: text.append(c);
+            }
+        }
+        return text.toString();
+    }
+    private void writeLine(String line) throws IOException {
+        int octets = 0;
+        int index = 0;
+        while (index < line.length()) {
+            int codePoint = line.codePointAt(index);
+            int width = utf8Length(codePoint);
+            // Fold before a character that would cross the limit so multi-byte characters are never split
+            if (octets + width > MAX_LINE_OCTETS) {
+                writer.write(CRLF);
+                writer.write(' ');
+                octets = 1;
+            }
+            writer.write(line, index, Character.charCount(codePoint));
+            octets += width;
+            index += Character.charCount(codePoint);
+        }
+        writer.write(CRLF);
+    }
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) return 1;
+        if (codePoint < 0x800) return 2;
+        if (codePoint < 0x10000) return 3;
+        return 4;
+    }
+}
@@ -0,0 +1,136 @@
+package com.smarthome.util;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+public class IdGenerator {
+    // 64-bit ids: 1 unused sign bit, 41 bits of milliseconds since EPOCH_MILLIS (~69 years),
+    // 10 bits of node id and a 12-bit per-millisecond sequence. Ids from one node are strictly
+    // increasing, so they sort by creation time both as longs and as fixed-width strings.
+    public static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << 41) - 1;
+    // Crockford base-32: no I, L, O or U, so ids survive being read aloud or retyped
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    private static final int[] DECODE = new int[128];
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = i;
+            DECODE[Character.toLowerCase(ALPHABET[i])] = i;
+        }
+        DECODE['O'] = DECODE['o'] = 0;
+        DECODE['I'] = DECODE['i'] = DECODE['L'] = DECODE['l'] = 1;
+    }
+    private static volatile IdGenerator instance;
+    private final long nodeId;
+    private final LongSupplier clock;
+    // Packed (timestamp << SEQUENCE_BITS | sequence) of the last id handed out
+    private final AtomicLong lastState = new AtomicLong();
+    public IdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+    public static IdGenerator getInstance() {
+        if (instance == null) {
+            synchronized (IdGenerator.class) {
+                if (instance == null) {
+                    instance = new IdGenerator(configuredNodeId(), System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+    // ids.node.id should be set per instance when several share a table; otherwise it is derived
+    // from the host and process so two local processes are unlikely to share a node id
+    private static long configuredNodeId() {
+        long configured = AppConfig.getLong("ids.node.id", -1);
+        if (configured >= 0) {
+            return configured & MAX_NODE_ID;
+        }
+        return ManagementFactory.getRuntimeMXBean().getName().hashCode() & MAX_NODE_ID;
+    }
+    public long nextId() {
+        while (true) {
+            long last = lastState.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long now = Math.max(0, clock.getAsLong() - EPOCH_MILLIS);
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                // Same millisecond or the clock stepped back: keep counting from the last state.
+                // A full sequence rolls into the next millisecond instead of spinning on the clock.
+                next = last + 1;
+            }
+            if ((next >>> SEQUENCE_BITS) > MAX_TIMESTAMP) {
+                throw new IllegalStateException("Id timestamp range exhausted");
+            }
+            if (lastState.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+    public String nextIdString() {
+        return encode(nextId());
+    }
+    public String nextIdString(String prefix) {
+        return prefix + encode(nextId());
+    }
+    // Fixed-width so that string order matches numeric order
+    public static String encode(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Ids are non-negative");
+        }
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+    public static long decode(String encoded) {
+        if (encoded == null || encoded.length() != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Not an encoded id: " + encoded);
+        }
+        long id = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            char c = encoded.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0 || (i == 0 && value > 7)) {
+                throw new IllegalArgumentException("Not an encoded id: " + encoded);
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+    // Decodes the id part of a prefixed string id (e.g. "ALERT_..."), or returns -1 if it has none
+    public static long parse(String prefixedId) {
+        if (prefixedId == null || prefixedId.length() < ENCODED_LENGTH) {
+            return -1;
+        }
+        try {
+            return decode(prefixedId.substring(prefixedId.length() - ENCODED_LENGTH));
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS);
+    }
+    public static long nodeIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+    public long getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,187 @@
+package com.smarthome.util;
+import java.util.Arrays;
+public class LoadCurve {
+    // Household load as a step function over [from, to), built by a sweep over the ON/OFF edges of every
+    // session. Each edge is packed into one long (offset from `from`, then OFF before ON, then session
+    // number), so a single primitive sort orders them and the sweep keeps the load in integer milliwatts.
+    private static final int SESSION_BITS = 22;
+    private static final long SESSION_MASK = (1L << SESSION_BITS) - 1;
+    private static final long MAX_SPAN_MILLIS = 1L << (62 - SESSION_BITS);
+    public static final class Builder {
+        private final long from;
+        private final long to;
+        private final int owners;
+        private long[] starts = new long[64];
+        private long[] ends = new long[64];
+        private long[] milliwatts = new long[64];
+        private int[] ownerOf = new int[64];
+        private int count;
+        public Builder(long from, long to, int owners) {
+            if (to <= from || to - from >= MAX_SPAN_MILLIS) {
+                throw new IllegalArgumentException("Load curve window must be non-empty and under 34 years");
+            }
+            this.from = from;
+            this.to = to;
+            this.owners = owners;
+        }
+        // A session of `owner` (e.g. a device index) at `watts`, clipped to the window
+        public Builder add(int owner, long start, long end, double watts) {
+            start = Math.max(start, from);
+            end = Math.min(end, to);
+            long load = Math.round(watts * 1000);
+            if (end <= start || load <= 0) {
+                return this;
+            }
+            if (count == SESSION_MASK + 1) {
+                throw new IllegalStateException("Too many sessions for one load curve");
+            }
+            if (count == starts.length) {
+                int capacity = (int) Math.min(SESSION_MASK + 1, count * 2L);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                milliwatts = Arrays.copyOf(milliwatts, capacity);
+                ownerOf = Arrays.copyOf(ownerOf, capacity);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            milliwatts[count] = load;
+            ownerOf[count] = owner;
+            count++;
+            return this;
+        }
+        public LoadCurve build() {
+            long[] edges = new long[count * 2];
+            for (int i = 0; i < count; i++) {
+                edges[2 * i] = ((starts[i] - from) << 1 | 1) << SESSION_BITS | i;
+                edges[2 * i + 1] = ((ends[i] - from) << 1) << SESSION_BITS | i;
+            }
+            Arrays.sort(edges);
+            return new LoadCurve(this, edges);
+        }
+    }
+    private final long from;
+    private final long to;
+    private final long[] times;
+    private final long[] loads;
+    private final int steps;
+    private final long peakMilliwatts;
+    private final long peakStart;
+    private final long peakEnd;
+    private final double[] peakWattsByOwner;
+    private LoadCurve(Builder builder, long[] edges) {
+        this.from = builder.from;
+        this.to = builder.to;
+        long[] stepTimes = new long[edges.length + 1];
+        long[] stepLoads = new long[edges.length + 1];
+        stepTimes[0] = from;
+        int count = 1;
+        long load = 0;
+        long peak = 0;
+        int peakStep = 0;
+        for (int k = 0; k < edges.length; ) {
+            long offset = edges[k] >>> (SESSION_BITS + 1);
+            if (offset == to - from) {
+                break;  // only sessions clipped at the end of the window are left
+            }
+            // Every edge at the same instant is applied before the load is read, so a device turning
+            // off as another turns on never counts as overlap
+            while (k < edges.length && edges[k] >>> (SESSION_BITS + 1) == offset) {
+                long session = builder.milliwatts[(int) (edges[k] & SESSION_MASK)];
+                load += (edges[k] >>> SESSION_BITS & 1) == 1 ? session : -session;
+                k++;
+            }
+            if (load == stepLoads[count - 1]) {
+                continue;
+            }
+            long time = from + offset;
+            if (stepTimes[count - 1] != time) {
+                count++;
+            }
+            stepTimes[count - 1] = time;
+            stepLoads[count - 1] = load;
+            if (load > peak) {
+                peak = load;
+                peakStep = count - 1;
+            }
+        }
+        this.times = stepTimes;
+        this.loads = stepLoads;
+        this.steps = count;
+        this.peakMilliwatts = peak;
+        this.peakStart = stepTimes[peakStep];
+        this.peakEnd = peakStep + 1 < count ? stepTimes[peakStep + 1] : to;
+        this.peakWattsByOwner = new double[builder.owners];
+        if (peak > 0) {
+            for (int i = 0; i < builder.count; i++) {
+                if (builder.starts[i] <= peakStart && peakStart < builder.ends[i]) {
+                    peakWattsByOwner[builder.ownerOf[i]] += builder.milliwatts[i] / 1000.0;
+                }
+            }
+        }
+    }
+    public long getFrom() {
+        return from;
+    }
+    public long getTo() {
+        return to;
+    }
+    // Step i holds its load from getTime(i) until getTime(i + 1), the last one until getTo()
+    public int getStepCount() {
+        return steps;
+    }
+    public long getTime(int step) {
+        return times[step];
+    }
+    public double getLoadKW(int step) {
+        return loads[step] / 1_000_000.0;
+    }
+    public double getPeakKW() {
+        return peakMilliwatts / 1_000_000.0;
+    }
+    // The first time the peak was reached and when it first dropped again
+    public long getPeakStart() {
+        return peakStart;
+    }
+    public long getPeakEnd() {
+        return peakEnd;
+    }
+    // What each owner was drawing at the start of the peak
+    public double getPeakWatts(int owner) {
+        return peakWattsByOwner[owner];
+    }
+    public double loadKWAt(long time) {
+        if (time < from || time >= to) {
+            return 0.0;
+        }
+        int step = Arrays.binarySearch(times, 0, steps, time);
+        return getLoadKW(step >= 0 ? step : -step - 2);
+    }
+    public double getEnergyKWh() {
+        double milliwattMillis = 0.0;
+        for (int i = 0; i < steps; i++) {
+            milliwattMillis += (double) loads[i] * ((i + 1 < steps ? times[i + 1] : to) - times[i]);
+        }
+        return milliwattMillis / 3.6e12;
+    }
+    // Highest load in each of `buckets` buckets of `bucketMillis` starting at `start`
+    public double[] maxLoadKW(long start, long bucketMillis, int buckets) {
+        double[] max = new double[buckets];
+        int found = Arrays.binarySearch(times, 0, steps, start);
+        // -1 while the buckets are still before the curve
+        int step = found >= 0 ? found : -found - 2;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long bucketStart = start + bucket * bucketMillis;
+            long bucketEnd = bucketStart + bucketMillis;
+            while (step + 1 < steps && times[step + 1] <= bucketStart) {
+                step++;
+            }
+            double highest = step >= 0 && bucketStart < to ? getLoadKW(step) : 0.0;
+            while (step + 1 < steps && times[step + 1] < bucketEnd) {
+                step++;
+                highest = Math.max(highest, getLoadKW(step));
+            }
+            max[bucket] = bucketStart >= to ? 0.0 : highest;
+        }
+        return max;
+    }
+}
@@ -0,0 +1,127 @@
+package com.smarthome.util;
+import java.util.Arrays;
+public class LoadShiftOptimizer {
+    // Places deferrable runs (a constant kW for some consecutive slots inside [earliest, deadline)) on a
+    // slot grid so that their time-of-use cost is lowest while base load plus runs stays under a cap.
+    // Runs are placed greedily, largest energy first, at their cheapest feasible start (earliest on ties).
+    // A run that fits nowhere displaces a placed run that can move elsewhere, and then each run is
+    // re-placed against the others until no move lowers the cost.
+    private static final double EPSILON = 1e-9;
+    private final double[] ratePrefix;
+    private final double[] baseKW;
+    private final double capKW;
+    private final double slotHours;
+    private final double[] load;
+    // ratePerKWh and baseKW hold one value per slot
+    public LoadShiftOptimizer(double[] ratePerKWh, double[] baseKW, double capKW, double slotHours) {
+        if (ratePerKWh.length != baseKW.length) {
+            throw new IllegalArgumentException("Rates and base load must cover the same slots");
+        }
+        this.ratePrefix = new double[ratePerKWh.length + 1];
+        for (int slot = 0; slot < ratePerKWh.length; slot++) {
+            ratePrefix[slot + 1] = ratePrefix[slot] + ratePerKWh[slot];
+        }
+        this.baseKW = baseKW.clone();
+        this.capKW = capKW;
+        this.slotHours = slotHours;
+        this.load = new double[baseKW.length];
+    }
+    public int getSlotCount() {
+        return load.length;
+    }
+    public double runCost(double kW, int start, int slots) {
+        return kW * slotHours * (ratePrefix[start + slots] - ratePrefix[start]);
+    }
+    // Start slot of each run, or -1 for a run that cannot be placed by its deadline under the cap
+    public int[] optimize(double[] kW, int[] slots, int[] earliest, int[] deadline) {
+        int runs = kW.length;
+        System.arraycopy(baseKW, 0, load, 0, load.length);
+        int[] start = new int[runs];
+        Arrays.fill(start, -1);
+        Integer[] order = new Integer[runs];
+        for (int i = 0; i < runs; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(kW[b] * slots[b], kW[a] * slots[a]));
+        for (int run : order) {
+            start[run] = bestStart(kW[run], slots[run], earliest[run], deadline[run]);
+            if (start[run] >= 0) {
+                place(kW[run], start[run], slots[run]);
+            } else {
+                repair(run, start, kW, slots, earliest, deadline);
+            }
+        }
+        boolean improved = true;
+        for (int round = 0; improved && round < runs; round++) {
+            improved = false;
+            for (int run = 0; run < runs; run++) {
+                if (start[run] < 0) {
+                    continue;
+                }
+                place(-kW[run], start[run], slots[run]);
+                int best = bestStart(kW[run], slots[run], earliest[run], deadline[run]);
+                if (runCost(kW[run], best, slots[run]) < runCost(kW[run], start[run], slots[run]) - EPSILON) {
+                    start[run] = best;
+                    improved = true;
+                }
+                place(kW[run], start[run], slots[run]);
+            }
+        }
+        return start;
+    }
+    // Tries each placed run in turn: take it out, place `run`, then put the other one back anywhere it fits
+    private void repair(int run, int[] start, double[] kW, int[] slots, int[] earliest, int[] deadline) {
+        for (int other = 0; other < start.length; other++) {
+            if (other == run || start[other] < 0) {
+                continue;
+            }
+            place(-kW[other], start[other], slots[other]);
+            int runStart = bestStart(kW[run], slots[run], earliest[run], deadline[run]);
+            if (runStart >= 0) {
+                place(kW[run], runStart, slots[run]);
+                int otherStart = bestStart(kW[other], slots[other], earliest[other], deadline[other]);
+                if (otherStart >= 0) {
+                    place(kW[other], otherStart, slots[other]);
+                    start[run] = runStart;
+                    start[other] = otherStart;
+                    return;
+                }
+                place(-kW[run], runStart, slots[run]);
+            }
+            place(kW[other], start[other], slots[other]);
+        }
+    }
+    private int bestStart(double kW, int slots, int earliest, int deadline) {
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int first = Math.max(0, earliest);
+        int last = Math.min(deadline, load.length) - slots;
+        for (int start = first; start <= last; start++) {
+            if (fits(kW, start, slots)) {
+                double cost = runCost(kW, start, slots);
+                if (cost < bestCost - EPSILON) {
+                    best = start;
+                    bestCost = cost;
+                }
+            }
+        }
+        return best;
+    }
+    private boolean fits(double kW, int start, int slots) {
+        for (int slot = start; slot < start + slots; slot++) {
+            if (load[slot] + kW > capKW + EPSILON) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private void place(double kW, int start, int slots) {
+        for (int slot = start; slot < start + slots; slot++) {
+            load[slot] += kW;
+        }
+    }
+    // Base load plus the placed runs after the last optimize
+    public double[] getLoadKW() {
+        return load.clone();
+    }
+}
@@ -0,0 +1,112 @@
+package com.smarthome.util;
+import java.util.Arrays;
+public class LongLongHashMap {
+    // Open addressing with linear probing over two parallel primitive arrays: no boxing and no
+    // per-entry objects. Key 0 marks a free slot, so callers must not use 0 as a key.
+    private static final int MIN_CAPACITY = 16;
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+    public LongLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+    public LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    private int slot(long key) {
+        int index = mix(key) & mask;
+        while (keys[index] != 0 && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+    public long get(long key, long defaultValue) {
+        checkKey(key);
+        int index = slot(key);
+        return keys[index] == key ? values[index] : defaultValue;
+    }
+    public boolean containsKey(long key) {
+        checkKey(key);
+        return keys[slot(key)] == key;
+    }
+    public void put(long key, long value) {
+        checkKey(key);
+        int index = slot(key);
+        if (keys[index] != key) {
+            keys[index] = key;
+            size++;
+            values[index] = value;
+            // Keep the table at most half full so probe sequences stay short
+            if (size * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            return;
+        }
+        values[index] = value;
+    }
+    public long addTo(long key, long delta) {
+        long updated = get(key, 0) + delta;
+        put(key, updated);
+        return updated;
+    }
+    public boolean remove(long key) {
+        checkKey(key);
+        int index = slot(key);
+        if (keys[index] != key) {
+            return false;
+        }
+        // Backward-shift deletion: move later entries of the probe run into the hole instead of
+        // leaving tombstones behind
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != 0) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+        size--;
+        return true;
+    }
+    public int size() {
+        return size;
+    }
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = slot(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+    private static void checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("0 is reserved for free slots");
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.smarthome.util;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+public class RecurrenceRule {
+    // Supported subset of RFC 5545: FREQ=DAILY|WEEKLY|MONTHLY, INTERVAL, BYDAY (ordinals such as
+    // 2TU or -1FR only with MONTHLY), COUNT and UNTIL.
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+    private static final DateTimeFormatter UNTIL_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter UNTIL_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+    // Stops runaway iteration when no period can ever match (e.g. BYDAY filters out every day)
+    private static final int MAX_EMPTY_PERIODS = 1000;
+    private final Frequency frequency;
+    private final int interval;
+    private final List<WeekdayNum> byDay;
+    private final int count;
+    private final LocalDateTime until;
+    private RecurrenceRule(Frequency frequency, int interval, List<WeekdayNum> byDay, int count, LocalDateTime until) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.count = count;
+        this.until = until;
+    }
+    private static class WeekdayNum {
+        private final int ordinal;
+        private final DayOfWeek day;
+        private WeekdayNum(int ordinal, DayOfWeek day) {
+            this.ordinal = ordinal;
+            this.day = day;
+        }
+        @Override
+        public String toString() {
+            return (ordinal != 0 ? String.valueOf(ordinal) : "") + DAY_CODES[day.getValue() - 1];
+        }
+    }
+    public static RecurrenceRule parse(String rule) {
+        if (rule == null || rule.trim().isEmpty()) {
+            throw new IllegalArgumentException("Recurrence rule is empty");
+        }
+        String text = rule.trim();
+        if (text.toUpperCase(Locale.ROOT).startsWith("RRULE:")) {
+            text = text.substring(6);
+        }
+        Frequency frequency = null;
+        int interval = 1;
+        List<WeekdayNum> byDay = new ArrayList<>();
+        int count = 0;
+        LocalDateTime until = null;
+        for (String part : text.split(";")) {
+            if (part.trim().isEmpty()) continue;
+            String[] keyValue = part.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Malformed rule part: " + part);
+            }
+            String key = keyValue[0].trim().toUpperCase(Locale.ROOT);
+            String value = keyValue[1].trim().toUpperCase(Locale.ROOT);
+            switch (key) {
+                case "FREQ":
+                    try {
+                        frequency = Frequency.valueOf(value);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unsupported FREQ: " + value + " (use DAILY, WEEKLY or MONTHLY)");
+                    }
+                    break;
+                case "INTERVAL":
+                    interval = parsePositive(key, value);
+                    break;
+                case "COUNT":
+                    count = parsePositive(key, value);
+                    break;
+                case "UNTIL":
+                    until = parseUntil(value);
+                    break;
+                case "BYDAY":
+                    for (String day : value.split(",")) {
+                        byDay.add(parseWeekdayNum(day.trim()));
+                    }
+                    break;
+                case "WKST":
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported rule part: " + key);
+            }
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence rule needs a FREQ");
+        }
+        if (count > 0 && until != null) {
+            throw new IllegalArgumentException("COUNT and UNTIL cannot be combined");
+        }
+        if (frequency != Frequency.MONTHLY && byDay.stream().anyMatch(d -> d.ordinal != 0)) {
+            throw new IllegalArgumentException("Numbered BYDAY values are only supported with FREQ=MONTHLY");
+        }
+        return new RecurrenceRule(frequency, interval, Collections.unmodifiableList(byDay), count, until);
+    }
+    private static int parsePositive(String key, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed <= 0) {
+                throw new IllegalArgumentException(key + " must be positive");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+    private static LocalDateTime parseUntil(String value) {
+        String text = value.endsWith("Z") ? value.substring(0, value.length() - 1) : value;
+        try {
+            if (text.contains("T")) {
+                return LocalDateTime.parse(text, UNTIL_DATE_TIME);
+            }
+            return LocalDate.parse(text, UNTIL_DATE).atTime(23, 59, 59);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid UNTIL: " + value);
+        }
+    }
+    private static WeekdayNum parseWeekdayNum(String value) {
+        if (value.length() < 2) {
+            throw new IllegalArgumentException("Invalid BYDAY: " + value);
+        }
+        String code = value.substring(value.length() - 2);
+        int ordinal = 0;
+        if (value.length() > 2) {
+            try {
+                ordinal = Integer.parseInt(value.substring(0, value.length() - 2));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid BYDAY: " + value);
+            }
+            if (ordinal == 0 || Math.abs(ordinal) > 5) {
+                throw new IllegalArgumentException("Invalid BYDAY ordinal: " + value);
+            }
+        }
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equals(code)) {
+                return new WeekdayNum(ordinal, DayOfWeek.of(i + 1));
+            }
+        }
+        throw new IllegalArgumentException("Invalid BYDAY: " + value);
+    }
+    public Frequency getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public int getCount() { return count; }
+    public LocalDateTime getUntil() { return until; }
+    public boolean isUnbounded() {
+        return count == 0 && until == null;
+    }
+    // Occurrence starts from dtstart onwards, generated one period at a time
+    public Iterator<LocalDateTime> iterator(LocalDateTime dtstart) {
+        return new OccurrenceIterator(dtstart, 0L);
+    }
+    // Occurrence starts in [from, to]. Without COUNT the iterator jumps straight to the period
+    // containing 'from', so the cost depends on the window and not on how old the series is.
+    public Iterable<LocalDateTime> between(LocalDateTime dtstart, LocalDateTime from, LocalDateTime to) {
+        return () -> new Iterator<LocalDateTime>() {
+            private final Iterator<LocalDateTime> source = new OccurrenceIterator(dtstart, count == 0 ? firstPeriodNear(dtstart, from) : 0L);
+            private LocalDateTime next = advance();
+            private LocalDateTime advance() {
+                while (source.hasNext()) {
+                    LocalDateTime candidate = source.next();
+                    if (candidate.isAfter(to)) {
+                        return null;
+                    }
+                    if (!candidate.isBefore(from)) {
+                        return candidate;
+                    }
+                }
+                return null;
+            }
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            @Override
+            public LocalDateTime next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                LocalDateTime current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+    public LocalDateTime nextAfter(LocalDateTime dtstart, LocalDateTime after) {
+        Iterator<LocalDateTime> occurrences = new OccurrenceIterator(dtstart, count == 0 ? firstPeriodNear(dtstart, after) : 0L);
+        while (occurrences.hasNext()) {
+            LocalDateTime candidate = occurrences.next();
+            if (candidate.isAfter(after)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    private long firstPeriodNear(LocalDateTime dtstart, LocalDateTime from) {
+        if (!from.isAfter(dtstart)) {
+            return 0L;
+        }
+        long elapsed;
+        switch (frequency) {
+            case DAILY:
+                elapsed = ChronoUnit.DAYS.between(dtstart.toLocalDate(), from.toLocalDate());
+                break;
+            case WEEKLY:
+                elapsed = ChronoUnit.WEEKS.between(weekStart(dtstart.toLocalDate()), weekStart(from.toLocalDate()));
+                break;
+            default:
+                elapsed = ChronoUnit.MONTHS.between(YearMonth.from(dtstart), YearMonth.from(from));
+        }
+        return Math.max(0L, elapsed / interval - 1);
+    }
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+    private List<LocalDateTime> candidatesInPeriod(LocalDateTime dtstart, long period) {
+        List<LocalDateTime> candidates = new ArrayList<>();
+        LocalDate startDate = dtstart.toLocalDate();
+        switch (frequency) {
+            case DAILY: {
+                LocalDate date = startDate.plusDays(period * interval);
+                if (byDay.isEmpty() || byDay.stream().anyMatch(d -> d.day == date.getDayOfWeek())) {
+                    candidates.add(date.atTime(dtstart.toLocalTime()));
+                }
+                break;
+            }
+            case WEEKLY: {
+                LocalDate monday = weekStart(startDate).plusWeeks(period * interval);
+                if (byDay.isEmpty()) {
+                    candidates.add(monday.with(TemporalAdjusters.nextOrSame(startDate.getDayOfWeek())).atTime(dtstart.toLocalTime()));
+                } else {
+                    for (DayOfWeek day : DayOfWeek.values()) {
+                        if (byDay.stream().anyMatch(d -> d.day == day)) {
+                            candidates.add(monday.with(TemporalAdjusters.nextOrSame(day)).atTime(dtstart.toLocalTime()));
+                        }
+                    }
+                }
+                break;
+            }
+            case MONTHLY: {
+                YearMonth month = YearMonth.from(startDate).plusMonths(period * interval);
+                if (byDay.isEmpty()) {
+                    if (startDate.getDayOfMonth() <= month.lengthOfMonth()) {
+                        candidates.add(month.atDay(startDate.getDayOfMonth()).atTime(dtstart.toLocalTime()));
+                    }
+                } else {
+                    List<LocalDate> dates = new ArrayList<>();
+                    for (WeekdayNum weekday : byDay) {
+                        dates.addAll(datesInMonth(month, weekday));
+                    }
+                    Collections.sort(dates);
+                    LocalDate previous = null;
+                    for (LocalDate date : dates) {
+                        if (!date.equals(previous)) {
+                            candidates.add(date.atTime(dtstart.toLocalTime()));
+                        }
+                        previous = date;
+                    }
+                }
+                break;
+            }
+        }
+        return candidates;
+    }
+    private static List<LocalDate> datesInMonth(YearMonth month, WeekdayNum weekday) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate first = month.atDay(1).with(TemporalAdjusters.nextOrSame(weekday.day));
+        for (LocalDate date = first; !date.isAfter(month.atEndOfMonth()); date = date.plusWeeks(1)) {
+            dates.add(date);
+        }
+        if (weekday.ordinal == 0) {
+            return dates;
+        }
+        int index = weekday.ordinal > 0 ? weekday.ordinal - 1 : dates.size() + weekday.ordinal;
+        return index >= 0 && index < dates.size() ? List.of(dates.get(index)) : List.of();
+    }
+    private class OccurrenceIterator implements Iterator<LocalDateTime> {
+        private final LocalDateTime dtstart;
+        private long period;
+        private int emitted;
+        private final List<LocalDateTime> buffer = new ArrayList<>();
+        private int bufferIndex;
+        private LocalDateTime next;
+        private boolean finished;
+        private OccurrenceIterator(LocalDateTime dtstart, long firstPeriod) {
+            this.dtstart = dtstart;
+            this.period = firstPeriod;
+            this.next = computeNext();
+        }
+        private LocalDateTime computeNext() {
+            if (finished || (count > 0 && emitted >= count)) {
+                return null;
+            }
+            int emptyPeriods = 0;
+            while (true) {
+                while (bufferIndex < buffer.size()) {
+                    LocalDateTime candidate = buffer.get(bufferIndex++);
+                    if (candidate.isBefore(dtstart)) {
+                        continue;
+                    }
+                    if (until != null && candidate.isAfter(until)) {
+                        finished = true;
+                        return null;
+                    }
+                    emitted++;
+                    return candidate;
+                }
+                if (emptyPeriods++ > MAX_EMPTY_PERIODS) {
+                    finished = true;
+                    return null;
+                }
+                buffer.clear();
+                buffer.addAll(candidatesInPeriod(dtstart, period++));
+                bufferIndex = 0;
+                if (!buffer.isEmpty()) {
+                    emptyPeriods = 0;
+                }
+            }
+        }
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        @Override
+        public LocalDateTime next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            LocalDateTime current = next;
+            next = computeNext();
+            return current;
+        }
+    }
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        String unit = frequency == Frequency.DAILY ? "day" : frequency == Frequency.WEEKLY ? "week" : "month";
+        text.append(interval == 1 ? "Every " + unit : "Every " + interval + " " + unit + "s");
+        if (!byDay.isEmpty()) {
+            List<String> days = new ArrayList<>();
+            for (WeekdayNum weekday : byDay) {
+                days.add(weekday.toString());
+            }
+            text.append(" on ").append(String.join(",", days));
+        }
+        if (count > 0) {
+            text.append(", ").append(count).append(" times");
+        }
+        if (until != null) {
+            text.append(", until ").append(until.format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")));
+        }
+        return text.toString();
+    }
+    @Override
+    public String toString() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency.name());
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (!byDay.isEmpty()) {
+            List<String> days = new ArrayList<>();
+            for (WeekdayNum weekday : byDay) {
+                days.add(weekday.toString());
+            }
+            rule.append(";BYDAY=").append(String.join(",", days));
+        }
+        if (count > 0) {
+            rule.append(";COUNT=").append(count);
+        }
+        if (until != null) {
+            rule.append(";UNTIL=").append(until.format(UNTIL_DATE_TIME));
+        }
+        return rule.toString();
+    }
+}
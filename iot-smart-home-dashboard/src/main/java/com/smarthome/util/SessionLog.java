@@ -0,0 +1,96 @@
+package com.smarthome.util;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+public class SessionLog {
+    // The most recent `capacity` finished ON/OFF sessions of one device as (start, end, watts), times in
+    // epoch milliseconds. Sessions arrive in time order, so the oldest is overwritten when the log is full.
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final byte BLOCK_VERSION = 1;
+    private final long[] starts;
+    private final long[] ends;
+    private final float[] watts;
+    private int next;
+    private int size;
+    public SessionLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least one session");
+        }
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.watts = new float[capacity];
+    }
+    public static int configuredCapacity() {
+        return Math.max(16, AppConfig.getInt("energy.sessions.capacity", DEFAULT_CAPACITY));
+    }
+    public int getCapacity() {
+        return starts.length;
+    }
+    public synchronized int size() {
+        return size;
+    }
+    public synchronized void add(long startMillis, long endMillis, double powerWatts) {
+        if (endMillis <= startMillis) {
+            return;
+        }
+        starts[next] = startMillis;
+        ends[next] = endMillis;
+        watts[next] = (float) powerWatts;
+        next = (next + 1) % starts.length;
+        size = Math.min(size + 1, starts.length);
+    }
+    // Adds every session overlapping the builder's window, oldest first
+    public synchronized void addTo(LoadCurve.Builder builder, int owner) {
+        for (int i = 0; i < size; i++) {
+            int slot = Math.floorMod(next - size + i, starts.length);
+            builder.add(owner, starts[slot], ends[slot], watts[slot]);
+        }
+    }
+    // Compact block: version, count, then per session the gap since the previous end, the duration
+    // and the float watts
+    public synchronized String encode() {
+        return encodeNewest(size);
+    }
+    // The newest sessions whose block fits in maxChars, oldest dropped first
+    public synchronized String encode(int maxChars) {
+        String full = encodeNewest(size);
+        return full.length() <= maxChars || size == 0 ? full : encodeNewest(EnergyRingBuffer.largestFitting(size, maxChars, this::encodeNewest));
+    }
+    private String encodeNewest(int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BLOCK_VERSION);
+        EnergyRingBuffer.writeVarLong(out, count);
+        long previousEnd = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = Math.floorMod(next - count + i, starts.length);
+            EnergyRingBuffer.writeVarLong(out, starts[slot] - previousEnd);
+            EnergyRingBuffer.writeVarLong(out, ends[slot] - starts[slot]);
+            EnergyRingBuffer.writeFloat(out, watts[slot]);
+            previousEnd = ends[slot];
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+    // Restores a block into a log of the given capacity, keeping the newest sessions if it is smaller
+    public static SessionLog decode(String block, int capacity) {
+        SessionLog log = new SessionLog(capacity);
+        if (block == null || block.isEmpty()) {
+            return log;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Base64.getDecoder().decode(block));
+        if (in.get() != BLOCK_VERSION) {
+            throw new IllegalArgumentException("Unsupported session block version");
+        }
+        long count = EnergyRingBuffer.readVarLong(in);
+        long previousEnd = 0;
+        for (long i = 0; i < count; i++) {
+            long start = previousEnd + EnergyRingBuffer.readVarLong(in);
+            long duration = EnergyRingBuffer.readVarLong(in);
+            if (duration <= 0) {
+                throw new IllegalArgumentException("Corrupt session block");
+            }
+            previousEnd = start + duration;
+            log.add(start, previousEnd, in.getFloat());
+        }
+        return log;
+    }
+}
@@ -0,0 +1,166 @@
+package com.smarthome.util;
+import java.util.ArrayList;
+import java.util.List;
+public class Tariff {
+    // A slab tariff compiled into arrays: slab i covers (upper[i-1], upper[i]] kWh at rates[i], and
+    // cumulativeCost[i] is the cost of every unit below the slab, so pricing is a binary search and one
+    // multiply. Time-of-use windows add a per-kWh surcharge (or rebate) by hour of day on top of the
+    // slab cost, and the fixed charge is added once per bill.
+    public static final String STANDARD_SLABS = "30:1.90,75:3.00,125:4.50,225:6.00,400:8.75,*:9.75";
+    public static final Tariff STANDARD = parse("standard", STANDARD_SLABS, 0.0, null);
+    private final String name;
+    private final double[] upper;
+    private final double[] rates;
+    private final double[] cumulativeCost;
+    private final double fixedCharge;
+    private final double[] hourlyAdjustment;
+    private final boolean timeOfUse;
+    private Tariff(String name, double[] upper, double[] rates, double fixedCharge, double[] hourlyAdjustment) {
+        this.name = name;
+        this.upper = upper;
+        this.rates = rates;
+        this.fixedCharge = fixedCharge;
+        this.hourlyAdjustment = hourlyAdjustment;
+        this.cumulativeCost = new double[rates.length];
+        for (int i = 1; i < rates.length; i++) {
+            cumulativeCost[i] = cumulativeCost[i - 1] + (upper[i - 1] - lowerBound(i - 1)) * rates[i - 1];
+        }
+        boolean anyAdjustment = false;
+        for (double adjustment : hourlyAdjustment) {
+            anyAdjustment |= adjustment != 0;
+        }
+        this.timeOfUse = anyAdjustment;
+    }
+    // slabs: "upper:rate,...,*:rate" in kWh and Rs. per kWh; tou: "fromHour-toHour:adjustment,..." with
+    // the window end exclusive and wrapping past midnight, e.g. "22-6:-1.00"
+    public static Tariff parse(String name, String slabs, double fixedCharge, String tou) {
+        List<Double> bounds = new ArrayList<>();
+        List<Double> slabRates = new ArrayList<>();
+        boolean open = false;
+        for (String part : slabs.split(",")) {
+            String[] fields = part.trim().split(":");
+            if (fields.length != 2 || open) {
+                throw new IllegalArgumentException("Invalid slab '" + part.trim() + "' in tariff " + name);
+            }
+            if (fields[0].trim().equals("*")) {
+                open = true;
+            } else {
+                double bound = Double.parseDouble(fields[0].trim());
+                if (bound <= 0 || (!bounds.isEmpty() && bound <= bounds.get(bounds.size() - 1))) {
+                    throw new IllegalArgumentException("Slab bounds must be positive and increasing in tariff " + name);
+                }
+                bounds.add(bound);
+            }
+            slabRates.add(Double.parseDouble(fields[1].trim()));
+        }
+        if (!open) {
+            throw new IllegalArgumentException("Tariff " + name + " needs an open-ended '*' slab");
+        }
+        double[] hourly = new double[24];
+        if (tou != null && !tou.trim().isEmpty()) {
+            for (String part : tou.split(",")) {
+                String[] fields = part.trim().split(":");
+                String[] hours = fields[0].split("-");
+                if (fields.length != 2 || hours.length != 2) {
+                    throw new IllegalArgumentException("Invalid time-of-use window '" + part.trim() + "' in tariff " + name);
+                }
+                int from = Integer.parseInt(hours[0].trim());
+                int to = Integer.parseInt(hours[1].trim());
+                if (from < 0 || from > 23 || to < 0 || to > 24) {
+                    throw new IllegalArgumentException("Time-of-use hours must be 0-24 in tariff " + name);
+                }
+                double adjustment = Double.parseDouble(fields[1].trim());
+                int length = Math.floorMod(to - from, 24);
+                for (int i = 0; i < (length == 0 ? 24 : length); i++) {
+                    hourly[(from + i) % 24] = adjustment;
+                }
+            }
+        }
+        return new Tariff(name, bounds.stream().mapToDouble(Double::doubleValue).toArray(),
+                          slabRates.stream().mapToDouble(Double::doubleValue).toArray(), fixedCharge, hourly);
+    }
+    public String getName() {
+        return name;
+    }
+    public double getFixedCharge() {
+        return fixedCharge;
+    }
+    public boolean isTimeOfUse() {
+        return timeOfUse;
+    }
+    public int getSlabCount() {
+        return rates.length;
+    }
+    public double lowerBound(int slab) {
+        return slab == 0 ? 0.0 : upper[slab - 1];
+    }
+    // Infinity for the open-ended last slab
+    public double upperBound(int slab) {
+        return slab < upper.length ? upper[slab] : Double.POSITIVE_INFINITY;
+    }
+    public double getRate(int slab) {
+        return rates[slab];
+    }
+    public double getHourlyAdjustment(int hour) {
+        return hourlyAdjustment[hour];
+    }
+    // The slab that prices the last of `kWh` units
+    public int slabOf(double kWh) {
+        int low = 0;
+        int high = upper.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (kWh <= upper[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+    public double unitsInSlab(double kWh, int slab) {
+        return Math.max(0.0, Math.min(kWh, upperBound(slab)) - lowerBound(slab));
+    }
+    // Slab cost of the units, unrounded and without the fixed charge
+    public double energyCost(double kWh) {
+        int slab = slabOf(kWh);
+        return cumulativeCost[slab] + (kWh - lowerBound(slab)) * rates[slab];
+    }
+    public double timeOfUseAdjustment(double[] kWhByHourOfDay) {
+        if (!timeOfUse || kWhByHourOfDay == null) {
+            return 0.0;
+        }
+        double total = 0.0;
+        for (int hour = 0; hour < 24 && hour < kWhByHourOfDay.length; hour++) {
+            total += kWhByHourOfDay[hour] * hourlyAdjustment[hour];
+        }
+        return total;
+    }
+    // The bill for `kWh` units whose split across the hours of the day is kWhByHourOfDay (may be null
+    // when unknown), rounded to paise
+    public double bill(double kWh, double[] kWhByHourOfDay) {
+        return round(fixedCharge + energyCost(kWh) + timeOfUseAdjustment(kWhByHourOfDay));
+    }
+    // Prices every consumption in one pass, e.g. all customers or a set of what-if scenarios
+    public void billAll(double[] kWh, double[] into) {
+        double[] bounds = upper;
+        for (int i = 0; i < kWh.length; i++) {
+            double units = kWh[i];
+            int low = 0;
+            int high = bounds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (units <= bounds[mid]) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            double lower = low == 0 ? 0.0 : bounds[low - 1];
+            into[i] = round(fixedCharge + cumulativeCost[low] + (units - lower) * rates[low]);
+        }
+    }
+    public static double round(double rupees) {
+        return Math.round(rupees * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.smarthome.util;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+public class TariffRegistry {
+    // Tariffs compiled once from the tariff.* settings: tariff.utilities lists the variants,
+    // tariff.<name>.slabs / .fixed.charge / .tou describe each one and tariff.active picks the one
+    // used for bills. A variant that does not parse is skipped; the built-in standard slabs are the fallback.
+    private static TariffRegistry instance;
+    private final Map<String, Tariff> tariffs;
+    private final Tariff active;
+    private TariffRegistry() {
+        Map<String, Tariff> loaded = new LinkedHashMap<>();
+        for (String name : AppConfig.getString("tariff.utilities", Tariff.STANDARD.getName()).split(",")) {
+            String key = name.trim().toLowerCase();
+            if (key.isEmpty() || loaded.containsKey(key)) {
+                continue;
+            }
+            try {
+                loaded.put(key, Tariff.parse(key,
+                                             AppConfig.getString("tariff." + key + ".slabs", Tariff.STANDARD_SLABS),
+                                             AppConfig.getDouble("tariff." + key + ".fixed.charge", 0.0),
+                                             AppConfig.getString("tariff." + key + ".tou", null)));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping tariff " + key + ": " + e.getMessage());
+            }
+        }
+        loaded.putIfAbsent(Tariff.STANDARD.getName(), Tariff.STANDARD);
+        this.tariffs = Collections.unmodifiableMap(loaded);
+        String activeName = AppConfig.getString("tariff.active", Tariff.STANDARD.getName()).toLowerCase();
+        this.active = tariffs.getOrDefault(activeName, Tariff.STANDARD);
+    }
+    public static synchronized TariffRegistry getInstance() {
+        if (instance == null) {
+            instance = new TariffRegistry();
+        }
+        return instance;
+    }
+    public Tariff getActive() {
+        return active;
+    }
+    public Tariff get(String name) {
+        return name != null ? tariffs.get(name.trim().toLowerCase()) : null;
+    }
+    public List<Tariff> getAll() {
+        return new ArrayList<>(tariffs.values());
+    }
+}
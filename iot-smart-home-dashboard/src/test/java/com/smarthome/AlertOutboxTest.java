@@ -0,0 +1,213 @@
+package com.smarthome;
+
+import com.smarthome.model.AlertNotificationRecord;
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.AlertNotificationDispatcher;
+import com.smarthome.service.AlertService;
+import com.smarthome.service.AlertStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Durable alert store and notification outbox tests
+ * Tests: alert reload, outbox delivery, retries without duplicates, file sink, non-blocking fan-out
+ */
+public class AlertOutboxTest {
+
+    private AlertService alertService;
+    private String userEmail;
+    private final List<AlertNotificationDispatcher.NotificationSink> addedSinks = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        alertService = AlertService.getInstance();
+        userEmail = "outbox_" + UUID.randomUUID() + "@smarthome.com";
+    }
+
+    @AfterEach
+    void tearDown() {
+        addedSinks.forEach(alertService.getNotificationDispatcher()::removeSink);
+    }
+
+    private <T extends AlertNotificationDispatcher.NotificationSink> T addSink(T sink) {
+        alertService.getNotificationDispatcher().addSink(sink);
+        addedSinks.add(sink);
+        return sink;
+    }
+
+    private static AlertNotificationRecord notification(String userEmail, String alertId, int triggerCount) {
+        AlertNotificationRecord record = new AlertNotificationRecord();
+        record.setUserEmail(userEmail);
+        record.setNotificationId(AlertNotificationRecord.buildNotificationId(alertId, triggerCount));
+        record.setAlertId(alertId);
+        record.setAlertName("Alert " + alertId);
+        record.setAlertType("ENERGY_USAGE");
+        record.setDeviceType("TV");
+        record.setRoomName("Living Room");
+        record.setCondition("Energy greater than 1.0 kWh");
+        record.setMessage("Check the TV");
+        record.setReason("Energy usage alert: \"TV\"\tover threshold");
+        record.setTriggeredAt(LocalDateTime.of(2025, 6, 1, 20, 0));
+        return record;
+    }
+
+    @Test
+    @DisplayName("Test 1: Alerts and their trigger state survive a reload from the store")
+    void testAlertsReloadFromStore() {
+        LocalDateTime reminderTime = LocalDateTime.now().withSecond(0).withNano(0).plusDays(1);
+        assertTrue(alertService.createTimeBasedAlert(userEmail, "Plants", "LIGHT", "Garden", reminderTime, "Water", "DAILY"));
+        assertTrue(alertService.createEnergyUsageAlert(userEmail, "TV watch", "TV", "Living Room", 1.0, "GREATER_THAN", "Check"));
+        assertTrue(alertService.createRuleAlert(userEmail, "Late TV", "TV in Living Room ON AND time between 23:00 and 05:00", "Bed"));
+        AlertService.Alert energyAlert = alertService.getUserAlerts(userEmail).get(1);
+        energyAlert.setAutoDeleteAfterTrigger(false);
+        alertService.toggleAlert(userEmail, alertService.getUserAlerts(userEmail).get(2).getAlertId());
+
+        Customer customer = new Customer(userEmail, "Outbox User", "Password123!");
+        Gadget tv = new Gadget("TV", "Sony", "Living Room");
+        customer.addGadget(tv);
+        tv.setTotalEnergyConsumedKWh(2.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, energyAlert.getTriggerCount());
+
+        alertService.reloadAlerts(userEmail);
+        List<AlertService.Alert> reloaded = alertService.getUserAlerts(userEmail);
+        assertEquals(3, reloaded.size());
+        assertNotSame(energyAlert, reloaded.get(1), "Alerts are rebuilt from their records");
+        AlertService.TimeBasedAlert plants = (AlertService.TimeBasedAlert) reloaded.get(0);
+        assertEquals("FREQ=DAILY", plants.getRecurrencePattern());
+        assertEquals(reminderTime, plants.getNextTriggerTime());
+        AlertService.EnergyUsageAlert tvWatch = (AlertService.EnergyUsageAlert) reloaded.get(1);
+        assertEquals(1, tvWatch.getTriggerCount());
+        assertFalse(tvWatch.isAutoDeleteAfterTrigger());
+        assertEquals(AlertService.AlertType.COMPOUND_RULE, reloaded.get(2).getAlertType());
+        assertFalse(reloaded.get(2).isActive());
+
+        alertService.checkTimeBasedAlerts(userEmail, reminderTime);
+        assertEquals(1, plants.getTriggerCount(), "Reloaded alerts are scheduled again");
+        tv.setTotalEnergyConsumedKWh(0.5);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        tv.setTotalEnergyConsumedKWh(3.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(2, tvWatch.getTriggerCount(), "Reloaded alerts are watched again");
+
+        alertService.reloadAlerts(userEmail);
+        assertEquals(2, alertService.getUserAlerts(userEmail).get(1).getTriggerCount());
+        assertEquals(reminderTime.plusDays(1),
+                     ((AlertService.TimeBasedAlert) alertService.getUserAlerts(userEmail).get(0)).getNextTriggerTime());
+        assertTrue(alertService.deleteAlert(userEmail, alertService.getUserAlerts(userEmail).get(0).getAlertId()));
+        alertService.reloadAlerts(userEmail);
+        assertEquals(2, alertService.getUserAlerts(userEmail).size(), "Deleted alerts stay deleted");
+        System.out.println("✅ Alert reload test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Triggered alerts reach every sink through the outbox")
+    void testTriggersAreDelivered() throws InterruptedException {
+        AlertNotificationDispatcher.WebhookStubSink webhook = addSink(new AlertNotificationDispatcher.WebhookStubSink());
+        LocalDateTime base = LocalDateTime.now().withSecond(0).withNano(0).plusDays(2);
+        for (int i = 0; i < 25; i++) {
+            alertService.createTimeBasedAlert(userEmail, "Reminder " + i, "LIGHT", "Hall", base.plusMinutes(i), "x");
+        }
+        alertService.checkTimeBasedAlerts(userEmail, base.plusHours(3));
+        assertTrue(alertService.getUserAlerts(userEmail).isEmpty(), "One-off alerts are auto-deleted");
+
+        assertTrue(alertService.getNotificationDispatcher().awaitIdle(10_000));
+        long delivered = webhook.getPayloads().stream().filter(payload -> payload.contains(userEmail)).count();
+        assertEquals(25, delivered);
+        assertTrue(webhook.getPayloads().get(0).contains("\"type\":\"TIME_BASED\""));
+        System.out.println("✅ Outbox delivery test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Failed sinks are retried from the outbox without re-sending to the others")
+    void testRetriesWithoutDuplicates() {
+        AlertStore store = new AlertStore();
+        AlertNotificationDispatcher dispatcher = new AlertNotificationDispatcher(store, 1);
+        AlertNotificationDispatcher.WebhookStubSink healthy = new AlertNotificationDispatcher.WebhookStubSink();
+        AlertNotificationDispatcher.WebhookStubSink flaky = new AlertNotificationDispatcher.WebhookStubSink() {
+            @Override
+            public String getName() { return "flaky-webhook"; }
+        };
+        dispatcher.addSink(healthy);
+        dispatcher.addSink(flaky);
+        flaky.setAvailable(false);
+
+        AlertNotificationRecord first = notification(userEmail, "A1", 1);
+        store.saveNotification(first);
+        dispatcher.submit(first);
+        dispatcher.submit(first);
+        assertEquals(0, dispatcher.dispatchPending());
+        assertEquals(1, healthy.getPayloads().size());
+        assertEquals(1, store.findPendingNotifications(10).size(), "Undelivered notifications stay in the outbox");
+        assertEquals(1, first.getAttempts());
+
+        // A restarted dispatcher recovers the pending notification from the outbox
+        AlertNotificationDispatcher restarted = new AlertNotificationDispatcher(store, 1);
+        restarted.addSink(healthy);
+        restarted.addSink(flaky);
+        flaky.setAvailable(true);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (restarted.getDeliveredCount() == 0 && System.currentTimeMillis() < deadline) {
+            restarted.dispatchPending();
+        }
+        assertEquals(1, restarted.getDeliveredCount());
+        assertEquals(1, flaky.getPayloads().size());
+        assertEquals(1, healthy.getPayloads().size(), "Sinks that already accepted it are skipped");
+        assertTrue(store.findPendingNotifications(10).isEmpty());
+
+        restarted.submit(first);
+        assertEquals(0, restarted.dispatchPending(), "Delivered notifications are not sent again");
+        assertTrue(healthy.getPayloads().get(0).contains("\\\"TV\\\"\\tover threshold"), "Payloads are JSON-escaped");
+        System.out.println("✅ Retry without duplicates test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: The file sink appends one line per notification")
+    void testFileSink() throws Exception {
+        Path file = Files.createTempDirectory("alerts").resolve("notifications.log");
+        AlertNotificationDispatcher.FileSink sink = new AlertNotificationDispatcher.FileSink(file);
+        sink.deliver(List.of(notification(userEmail, "F1", 1), notification(userEmail, "F1", 2)));
+        sink.deliver(List.of(notification(userEmail, "F2", 1)));
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).contains("F1#2"));
+        assertEquals(7, lines.get(0).split("\t").length, "Tabs inside fields are replaced");
+        System.out.println("✅ File sink test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: A slow sink never blocks alert evaluation")
+    void testSlowSinkDoesNotBlockEvaluation() throws InterruptedException {
+        addSink(new AlertNotificationDispatcher.NotificationSink() {
+            @Override
+            public String getName() { return "slow"; }
+
+            @Override
+            public void deliver(List<AlertNotificationRecord> batch) throws InterruptedException {
+                Thread.sleep(200);
+            }
+        });
+        LocalDateTime base = LocalDateTime.now().withSecond(0).withNano(0).plusDays(3);
+        for (int i = 0; i < 20; i++) {
+            alertService.createTimeBasedAlert(userEmail, "Slow " + i, "FAN", "Hall", base.plusMinutes(i), "x");
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            alertService.checkTimeBasedAlerts(userEmail, base.plusMinutes(i));
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMillis < 150, "Evaluation waited for the sink: " + elapsedMillis + " ms");
+        assertTrue(alertService.getNotificationDispatcher().awaitIdle(10_000));
+        System.out.println("✅ Non-blocking fan-out test passed (" + elapsedMillis + " ms for 20 triggers)");
+    }
+}
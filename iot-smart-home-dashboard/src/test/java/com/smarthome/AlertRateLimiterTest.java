@@ -0,0 +1,201 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.AlertNotificationDispatcher;
+import com.smarthome.service.AlertRateLimiter;
+import com.smarthome.service.AlertService;
+import com.smarthome.util.LongLongHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Alert rate limiting tests
+ * Tests: edge-triggered suppression window, per-user and per-alert token buckets,
+ * primitive map behaviour, alert storm cost, notifications from a flapping alert,
+ * one-shot time alerts beyond the user's burst
+ */
+public class AlertRateLimiterTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    private AlertRateLimiter newLimiter() {
+        // 5 per user, 2 per alert, each refilling 1 per minute; 10 minute suppression window
+        return new AlertRateLimiter(5, 1, 2, 1, 10 * MINUTE, clock::get);
+    }
+
+    @Test
+    @DisplayName("Test 1: Conditions fire on the rising edge and repeat only after the suppression window")
+    void testEdgeTriggeredSuppression() {
+        AlertRateLimiter limiter = newLimiter();
+        assertFalse(limiter.admitCondition("u", "a1", false));
+        assertTrue(limiter.admitCondition("u", "a1", true), "Rising edge");
+        assertFalse(limiter.admitCondition("u", "a1", true), "Level stays true");
+        clock.addAndGet(9 * MINUTE);
+        assertFalse(limiter.admitCondition("u", "a1", true));
+        clock.addAndGet(MINUTE);
+        assertTrue(limiter.admitCondition("u", "a1", true), "Reminder once the window has passed");
+
+        assertFalse(limiter.admitCondition("u", "a1", false));
+        assertTrue(limiter.admitCondition("u", "a1", true), "Clearing re-arms the alert immediately");
+        assertTrue(limiter.admitCondition("u", "a2", true), "Alerts are tracked separately");
+        assertTrue(limiter.admitCondition("other", "a1", true), "Users are tracked separately");
+
+        limiter.resetCondition("u", "a1");
+        assertTrue(limiter.admitCondition("u", "a1", true), "Reset alerts fire again if already true");
+        assertEquals(2, limiter.getSuppressedTotal());
+        System.out.println("✅ Edge-triggered suppression test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Token buckets limit notifications per alert and per user and refill over time")
+    void testTokenBuckets() {
+        AlertRateLimiter limiter = newLimiter();
+        assertTrue(limiter.tryAcquire("u", "a1"));
+        assertTrue(limiter.tryAcquire("u", "a1"));
+        assertFalse(limiter.tryAcquire("u", "a1"), "Alert burst is 2");
+        assertTrue(limiter.tryAcquire("u", "a2"));
+        assertTrue(limiter.tryAcquire("u", "a2"));
+        assertTrue(limiter.tryAcquire("u", "a3"));
+        assertFalse(limiter.tryAcquire("u", "a4"), "User burst of 5 is used up");
+        assertTrue(limiter.tryAcquire("v", "a4"), "Other users have their own bucket");
+        assertEquals(2, limiter.takeSuppressedCount("u"));
+        assertEquals(0, limiter.takeSuppressedCount("u"), "Taking the count resets it");
+
+        clock.addAndGet(30_000);
+        assertFalse(limiter.tryAcquire("u", "a4"), "Half a token is not enough");
+        clock.addAndGet(30_000);
+        assertTrue(limiter.tryAcquire("u", "a4"), "Partial refills accumulate to a full token");
+        assertFalse(limiter.tryAcquire("u", "a5"));
+
+        clock.addAndGet(60 * MINUTE);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("u", "b" + i));
+        }
+        assertFalse(limiter.tryAcquire("u", "b5"), "Refills are capped at the burst size");
+
+        limiter.forget("u", "a1");
+        limiter.forget("u", "a2");
+        assertEquals(10, limiter.getTrackedAlertCount(), "a3-a5, b0-b5 and the other user's a4 remain");
+        assertThrows(IllegalArgumentException.class, () -> new AlertRateLimiter(0, 1, 1, 1, 0, clock::get));
+        System.out.println("✅ Token bucket test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: The primitive map matches a HashMap under random puts and removes")
+    void testLongLongHashMap() {
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key) != null, map.remove(key));
+            } else {
+                long value = random.nextLong();
+                map.put(key, value);
+                reference.put(key, value);
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            assertEquals(reference.getOrDefault(key, -1L).longValue(), map.get(key, -1L));
+            assertEquals(reference.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(7, map.addTo(-9, 7));
+        assertEquals(10, map.addTo(-9, 3));
+        map.clear();
+        assertEquals(0, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, 1));
+        System.out.println("✅ Primitive map test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: An alert storm is absorbed cheaply")
+    void testStormCost() {
+        AlertRateLimiter limiter = newLimiter();
+        int alerts = 1_000;
+        int ticks = 500;
+        int fired = 0;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < alerts; i++) {
+                if (limiter.admitCondition("storm", "alert-" + i, true) && limiter.tryAcquire("storm", "alert-" + i)) {
+                    fired++;
+                }
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(5, fired, "Only the user's burst gets through");
+        assertEquals((long) alerts * ticks - 5, limiter.getSuppressedTotal());
+        assertTrue(limiter.getTrackedAlertCount() <= alerts);
+        assertTrue(elapsedMillis < 5_000, "Absorbing the storm took " + elapsedMillis + " ms");
+        System.out.println("✅ Storm cost test passed (" + (alerts * ticks) + " evaluations in " + elapsedMillis + " ms)");
+    }
+
+    @Test
+    @DisplayName("Test 5: A flapping energy alert keeps counting triggers but its notifications are limited")
+    void testFlappingAlertNotifications() throws InterruptedException {
+        AlertService alertService = AlertService.getInstance();
+        String userEmail = "ratelimit_" + UUID.randomUUID() + "@smarthome.com";
+        AlertNotificationDispatcher.WebhookStubSink webhook = new AlertNotificationDispatcher.WebhookStubSink();
+        alertService.getNotificationDispatcher().addSink(webhook);
+        try {
+            Customer customer = new Customer(userEmail, "Flapping User", "Password123!");
+            Gadget heater = new Gadget("GEYSER", "AO Smith", "Bathroom");
+            customer.addGadget(heater);
+            alertService.createEnergyUsageAlert(userEmail, "Geyser", "GEYSER", "Bathroom", 1.0, "GREATER_THAN", "Check");
+            AlertService.Alert alert = alertService.getUserAlerts(userEmail).get(0);
+            alert.setAutoDeleteAfterTrigger(false);
+
+            for (int i = 0; i < 10; i++) {
+                heater.setTotalEnergyConsumedKWh(2.0);
+                alertService.checkEnergyUsageAlerts(userEmail, customer);
+                alertService.checkEnergyUsageAlerts(userEmail, customer);
+                heater.setTotalEnergyConsumedKWh(0.5);
+                alertService.checkEnergyUsageAlerts(userEmail, customer);
+            }
+            assertEquals(10, alert.getTriggerCount(), "Every rising edge is a trigger");
+            assertTrue(alertService.getNotificationDispatcher().awaitIdle(10_000));
+            long notifications = webhook.getPayloads().stream().filter(payload -> payload.contains(userEmail)).count();
+            assertEquals(3, notifications, "The per-alert bucket lets a burst of 3 through");
+        } finally {
+            alertService.getNotificationDispatcher().removeSink(webhook);
+        }
+        System.out.println("✅ Flapping alert notification test passed");
+    }
+
+    @Test
+    @DisplayName("Test 6: One-shot time alerts always notify before they are deleted")
+    void testOneShotAlertsBypassLimiter() throws InterruptedException {
+        AlertService alertService = AlertService.getInstance();
+        String userEmail = "oneshot_" + UUID.randomUUID() + "@smarthome.com";
+        AlertNotificationDispatcher.WebhookStubSink webhook = new AlertNotificationDispatcher.WebhookStubSink();
+        alertService.getNotificationDispatcher().addSink(webhook);
+        try {
+            LocalDateTime due = LocalDateTime.now().withSecond(0).withNano(0).plusDays(1);
+            // More than the user's burst of 30, all due at once
+            int reminders = 40;
+            for (int i = 0; i < reminders; i++) {
+                alertService.createTimeBasedAlert(userEmail, "Reminder " + i, "LIGHT", "Hall", due, "Due");
+            }
+            alertService.checkTimeBasedAlerts(userEmail, due);
+            assertTrue(alertService.getUserAlerts(userEmail).isEmpty(), "Every reminder fired and was removed");
+            assertTrue(alertService.getNotificationDispatcher().awaitIdle(10_000));
+            long notifications = webhook.getPayloads().stream().filter(payload -> payload.contains(userEmail)).count();
+            assertEquals(reminders, notifications, "No reminder is deleted without its notification");
+        } finally {
+            alertService.getNotificationDispatcher().removeSink(webhook);
+        }
+        System.out.println("✅ One-shot alert test passed");
+    }
+}
@@ -0,0 +1,141 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.DailyUsageForecast;
+import com.smarthome.util.EnergyHistory;
+import com.smarthome.util.EnergyRingBuffer;
+import com.smarthome.util.Tariff;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * History-based bill projection tests
+ * Tests: weekday/weekend smoothing, incremental folding of completed days,
+ * refitting after a reload, month-end projections with confidence bands
+ */
+public class BillProjectionTest {
+
+    // Monday 16 June 2025; 1-15 June hold two full weeks plus Sunday the 1st
+    private static final LocalDateTime MID_JUNE = LocalDateTime.of(2025, 6, 16, 0, 0);
+
+    private static long dayOf(LocalDate date) {
+        return EnergyHistory.Resolution.DAY.bucketOf(EnergyRingBuffer.minuteOf(date.atStartOfDay()));
+    }
+
+    // Records whWeekday / whWeekend on each day of June before the 16th, as one hour of usage at 08:00
+    private static void recordFirstHalfOfJune(EnergyHistory history, double whWeekday, double whWeekend) {
+        for (int dayOfMonth = 1; dayOfMonth < 16; dayOfMonth++) {
+            LocalDate date = LocalDate.of(2025, 6, dayOfMonth);
+            double wh = DailyUsageForecast.isWeekend(dayOf(date)) ? whWeekend : whWeekday;
+            if (wh > 0) {
+                history.record(EnergyRingBuffer.minuteOf(date.atTime(8, 0)), 60, wh / 60);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test 1: Weekdays and weekends are smoothed separately")
+    void testSmoothing() {
+        DailyUsageForecast forecast = new DailyUsageForecast(0.5);
+        long monday = dayOf(LocalDate.of(2025, 6, 2));
+        assertFalse(DailyUsageForecast.isWeekend(monday));
+        assertTrue(DailyUsageForecast.isWeekend(monday + 5));
+        assertTrue(DailyUsageForecast.isWeekend(monday + 6));
+        assertFalse(forecast.hasObservations());
+
+        forecast.observe(monday, 1000);
+        assertEquals(1000, forecast.expectedWh(monday + 5), 1e-9, "Weekdays stand in until a weekend is seen");
+        assertEquals(250_000, forecast.varianceWh(monday), 1e-6, "One day gives a wide band");
+        forecast.observe(monday + 1, 3000);
+        assertEquals(2000, forecast.expectedWh(monday + 7), 1e-9);
+        assertEquals(0.5 * (0 + 2000 * 1000), forecast.varianceWh(monday), 1e-6);
+        forecast.observe(monday + 5, 100);
+        assertEquals(100, forecast.expectedWh(monday + 6), 1e-9);
+        assertEquals(2000, forecast.expectedWh(monday + 2), 1e-9, "A weekend leaves the weekday fit alone");
+        assertThrows(IllegalArgumentException.class, () -> new DailyUsageForecast(0));
+        System.out.println("✅ Smoothing test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Completed days are folded in as samples arrive, idle days as zero")
+    void testIncrementalFolding() {
+        EnergyHistory history = new EnergyHistory(120, 24 * 90, 365, 24);
+        long monday = dayOf(LocalDate.of(2025, 6, 2));
+        history.record(EnergyRingBuffer.minuteOf(LocalDate.of(2025, 6, 2).atTime(9, 0)), 60, 10.0);
+        assertFalse(history.getForecast(monday).hasObservations(), "The day in progress is not folded");
+        assertEquals(600, history.getForecast(monday + 1).expectedWh(monday + 1), 1e-3);
+
+        history.record(EnergyRingBuffer.minuteOf(LocalDate.of(2025, 6, 4).atTime(9, 0)), 60, 10.0);
+        // Folded so far: Mon 600, Tue 0 (idle); Wed is still in progress
+        DailyUsageForecast forecast = history.getForecast(monday + 2);
+        double smoothing = DailyUsageForecast.configuredSmoothing();
+        assertEquals(600 * (1 - smoothing), forecast.expectedWh(monday + 2), 1e-3);
+        assertEquals(600 * (1 - smoothing) + smoothing * (600 - 600 * (1 - smoothing)),
+                     history.getForecast(monday + 3).expectedWh(monday + 3), 1e-3, "Catching up folds the finished day");
+        System.out.println("✅ Incremental folding test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: A reloaded device refits to the same forecast")
+    void testRefitAfterReload() {
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        recordFirstHalfOfJune(ac.getUsageHistory(), 4000, 9000);
+        long today = dayOf(MID_JUNE.toLocalDate());
+        DailyUsageForecast live = ac.getUsageHistory().getForecast(today);
+
+        Gadget reloaded = new Gadget();
+        reloaded.setType("AC");
+        reloaded.setUsageRollups(ac.getUsageRollups());
+        DailyUsageForecast refit = reloaded.getUsageHistory().getForecast(today);
+        assertEquals(live.expectedWh(today), refit.expectedWh(today), 1e-3);
+        assertEquals(live.expectedWh(today + 5), refit.expectedWh(today + 5), 1e-3);
+        assertEquals(live.varianceWh(today + 5), refit.varianceWh(today + 5), 1e-3);
+        System.out.println("✅ Refit after reload test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: The month-end projection follows weekday and weekend usage")
+    void testMonthEndProjection() {
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        Customer customer = new Customer("projection@smarthome.com", "Projection User", "Password123!");
+        Gadget tv = new Gadget("TV", "Sony", "Living Room");
+        customer.addGadget(tv);
+        assertFalse(energyService.projectMonthlyBill(customer, MID_JUNE).isBasedOnHistory());
+
+        recordFirstHalfOfJune(tv.getUsageHistory(), 2000, 0);
+        EnergyManagementService.BillProjection projection = energyService.projectMonthlyBill(customer, MID_JUNE);
+        assertTrue(projection.isBasedOnHistory());
+        assertEquals(14, projection.getDaysRemaining());
+        // 2-6 and 9-13 June so far; 11 weekdays and 4 weekend days remain
+        assertEquals(20.0, projection.getMonthToDateKWh(), 1e-3);
+        assertEquals(42.0, projection.getProjectedKWh(), 1e-3);
+        assertEquals(Tariff.STANDARD.bill(projection.getProjectedKWh(), null), projection.getProjectedBill());
+        assertEquals(projection.getProjectedKWh(), projection.getHighKWh(), 1e-3, "Identical days leave no spread");
+        assertEquals(Tariff.round(12 * Tariff.STANDARD.bill(10.0 * 365 / 7 / 12, null)), projection.getYearlyBill(), 0.05);
+        System.out.println("✅ Month-end projection test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: Varying usage widens the band and the bills stay ordered")
+    void testConfidenceBand() {
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        Customer customer = new Customer("band@smarthome.com", "Band User", "Password123!");
+        Gadget geyser = new Gadget("GEYSER", "AO Smith", "Bathroom");
+        customer.addGadget(geyser);
+        for (int dayOfMonth = 1; dayOfMonth < 16; dayOfMonth++) {
+            double wh = dayOfMonth % 2 == 0 ? 1000 : 5000;
+            geyser.getUsageHistory().record(EnergyRingBuffer.minuteOf(LocalDate.of(2025, 6, dayOfMonth).atTime(6, 0)), 60, wh / 60);
+        }
+        EnergyManagementService.BillProjection projection = energyService.projectMonthlyBill(customer, MID_JUNE.plusHours(12));
+        assertTrue(projection.getLowKWh() < projection.getProjectedKWh());
+        assertTrue(projection.getProjectedKWh() < projection.getHighKWh());
+        assertTrue(projection.getLowKWh() >= projection.getMonthToDateKWh(), "The band never drops below what is already used");
+        assertTrue(projection.getLowBill() < projection.getProjectedBill() && projection.getProjectedBill() < projection.getHighBill());
+        System.out.println("✅ Confidence band test passed (Rs." + projection.getLowBill() + " - Rs." + projection.getHighBill() + ")");
+    }
+}
@@ -0,0 +1,128 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.model.GadgetIndex;
+import com.smarthome.service.CustomerService;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.service.TimerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk timer scheduling tests
+ * Tests: gadget index lookups, room-wide and type-wide timer selection, single write per owner,
+ * rolling back timers whose save failed
+ */
+public class BulkTimerSchedulingTest {
+
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer("bulk@smarthome.com", "Bulk Timer User", "TestPass123!@#");
+        customer.addGadget(new Gadget("FAN", "Havells", "Bedroom 2"));
+        customer.addGadget(new Gadget("LIGHT", "Philips", "Bedroom 2"));
+        customer.addGadget(new Gadget("FAN", "Orient", "Hall"));
+        customer.addGadget(new Gadget("TV", "Samsung", "Hall"));
+    }
+
+    @Test
+    @DisplayName("Test 1: Gadget index resolves room, type and exact lookups")
+    void testGadgetIndexSelection() {
+        GadgetIndex index = customer.getGadgetIndex();
+        assertEquals(2, index.select(null, "bedroom 2").size());
+        assertEquals(2, index.select("fan", "").size());
+        assertEquals(1, index.select("Fan", " Hall ").size());
+        assertEquals(4, index.select(null, null).size());
+        assertTrue(index.select("AC", "Hall").isEmpty());
+        assertSame(customer.findGadget("TV", "Hall"), index.find("tv", "hall"));
+        System.out.println("✅ Gadget index selection test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Gadget index is rebuilt after devices change")
+    void testGadgetIndexInvalidation() {
+        GadgetIndex before = customer.getGadgetIndex();
+        assertSame(before, customer.getGadgetIndex(), "Index should be reused while devices are unchanged");
+        customer.addGadget(new Gadget("AC", "Voltas", "Bedroom 2"));
+        assertEquals(3, customer.getGadgetIndex().select(null, "Bedroom 2").size());
+        customer.getGadgets().get(0).setRoomName("Study");
+        customer.invalidateGadgetIndex();
+        assertEquals(2, customer.getGadgetIndex().select(null, "Bedroom 2").size());
+        System.out.println("✅ Gadget index invalidation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Bulk timer schedules every matched device")
+    void testBulkTimerSchedulesAllTargets() {
+        TimerService timerService = TimerService.getInstance(new CustomerService());
+        LocalDateTime scheduledTime = LocalDateTime.now().plusHours(2).withSecond(0).withNano(0);
+        Map<Customer, List<Gadget>> targets = new LinkedHashMap<>();
+        targets.put(customer, customer.getGadgetIndex().select(null, "Bedroom 2"));
+
+        int scheduled = timerService.scheduleBulkTimer(targets, "OFF", scheduledTime);
+
+        assertEquals(2, scheduled);
+        for (Gadget gadget : customer.getGadgetIndex().findByRoom("Bedroom 2")) {
+            assertTrue(gadget.isTimerEnabled());
+            assertEquals(scheduledTime, gadget.getScheduledOffTime());
+        }
+        assertNull(customer.findGadget("FAN", "Hall").getScheduledOffTime(), "Devices outside the room should be untouched");
+        System.out.println("✅ Bulk timer scheduling test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Bulk timer rejects invalid requests")
+    void testBulkTimerValidation() {
+        TimerService timerService = TimerService.getInstance(new CustomerService());
+        Map<Customer, List<Gadget>> targets = new LinkedHashMap<>();
+        targets.put(customer, customer.getGadgetIndex().select("FAN", null));
+
+        assertEquals(0, timerService.scheduleBulkTimer(targets, "ON", LocalDateTime.now().minusMinutes(5)));
+        assertEquals(0, timerService.scheduleBulkTimer(targets, "DIM", LocalDateTime.now().plusHours(1)));
+        assertEquals(0, timerService.scheduleBulkTimer(new LinkedHashMap<>(), "ON", LocalDateTime.now().plusHours(1)));
+        assertFalse(customer.findGadget("FAN", "Hall").isTimerEnabled());
+        System.out.println("✅ Bulk timer validation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: A timer whose save fails is rolled back and a load-shift run gets no timers")
+    void testFailedSaveRollsBack() {
+        TimerService timerService = TimerService.getInstance(new CustomerService());
+        // No email, so the owner's save fails
+        Customer unsaved = new Customer();
+        unsaved.setFullName("Unsaved User");
+        Gadget fan = new Gadget("FAN", "Havells", "Bedroom");
+        Gadget washer = new Gadget("WASHING_MACHINE", "LG", "Utility");
+        unsaved.addGadget(fan);
+        unsaved.addGadget(washer);
+        LocalDateTime earlier = LocalDateTime.now().plusHours(1).withSecond(0).withNano(0);
+        fan.setScheduledOnTime(earlier);
+        fan.setTimerEnabled(true);
+
+        Map<Customer, List<Gadget>> targets = new LinkedHashMap<>();
+        targets.put(unsaved, List.of(fan, washer));
+        assertEquals(0, timerService.scheduleBulkTimer(targets, "ON", earlier.plusHours(1)));
+        assertEquals(earlier, fan.getScheduledOnTime(), "The earlier timer is kept");
+        assertTrue(fan.isTimerEnabled());
+        assertNull(washer.getScheduledOnTime());
+        assertFalse(washer.isTimerEnabled(), "A timer that was never saved cannot fire");
+
+        LocalDateTime start = LocalDateTime.now().plusHours(3).truncatedTo(ChronoUnit.MINUTES);
+        EnergyManagementService.LoadShiftPlan plan = new EnergyManagementService.LoadShiftPlan(
+                List.of(new EnergyManagementService.PlannedRun(washer, start, start.plusMinutes(90), 0.0, 0.0)), List.of(), 5.0, 0.5);
+        assertEquals(0, timerService.scheduleLoadShiftPlan(unsaved, plan));
+        assertNull(washer.getScheduledOnTime());
+        assertNull(washer.getScheduledOffTime());
+        assertFalse(washer.isTimerEnabled(), "Neither half of the run is left behind");
+        System.out.println("✅ Failed save rollback test passed");
+    }
+}
@@ -0,0 +1,135 @@
+package com.smarthome;
+
+import com.smarthome.service.CalendarEventService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Calendar automation scheduling tests
+ * Tests: exact-time jobs, exactly-once firing, cancellation on delete and edit, grace period,
+ * rejected edits keeping the original
+ */
+public class CalendarAutomationSchedulingTest {
+
+    private CalendarEventService calendarService;
+    private CalendarEventService.AutomationHandler previousHandler;
+    private final List<String> executions = new CopyOnWriteArrayList<>();
+    private String userEmail;
+
+    @BeforeEach
+    void setUp() {
+        calendarService = CalendarEventService.getInstance();
+        previousHandler = calendarService.getAutomationHandler();
+        userEmail = "jobs_" + UUID.randomUUID() + "@smarthome.com";
+        calendarService.setAutomationHandler((email, event, action, executionTime) -> {
+            if (email.equals(userEmail)) {
+                executions.add(event.getTitle() + ":" + action.getDeviceType() + ":" + action.getAction());
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        calendarService.setAutomationHandler(previousHandler);
+    }
+
+    private void waitForExecutions(int expected, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (executions.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    @DisplayName("Test 1: Due action fires exactly once at its scheduled time")
+    void testExactlyOnceFiring() throws InterruptedException {
+        // Meeting adds AC ON 10 minutes before start, so this action is due in ~1 second
+        LocalDateTime start = LocalDateTime.now().plusMinutes(10).plusSeconds(1);
+        assertTrue(calendarService.createEvent(userEmail, "Standup", "", start, start.plusMinutes(30), "Meeting"));
+
+        waitForExecutions(1, 5000);
+        for (int i = 0; i < 3; i++) {
+            calendarService.scheduleUpcomingAutomations(userEmail, LocalDateTime.now());
+        }
+        Thread.sleep(300);
+
+        assertEquals(List.of("Standup:AC:ON"), executions);
+        System.out.println("✅ Exactly-once firing test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Deleting an event cancels its pending jobs")
+    void testDeleteCancelsJobs() throws InterruptedException {
+        int pendingBefore = calendarService.getPendingAutomationCount();
+        LocalDateTime start = LocalDateTime.now().plusMinutes(10).plusSeconds(1);
+        calendarService.createEvent(userEmail, "Cancelled Meeting", "", start, start.plusMinutes(30), "Meeting");
+        assertEquals(pendingBefore + 3, calendarService.getPendingAutomationCount());
+
+        assertTrue(calendarService.deleteEvent(userEmail, "Cancelled Meeting"));
+        assertEquals(pendingBefore, calendarService.getPendingAutomationCount());
+        Thread.sleep(1500);
+        assertTrue(executions.isEmpty(), "Cancelled jobs must not fire");
+        System.out.println("✅ Delete cancellation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Editing an event reschedules its jobs")
+    void testEditReschedulesJobs() throws InterruptedException {
+        LocalDateTime start = LocalDateTime.now().plusHours(3);
+        calendarService.createEvent(userEmail, "Movie", "", start, start.plusHours(2), "Movie");
+        int pendingAfterCreate = calendarService.getPendingAutomationCount();
+
+        // Movie adds AC ON 15 minutes before start
+        LocalDateTime newStart = LocalDateTime.now().plusMinutes(15).plusSeconds(1);
+        assertTrue(calendarService.editEvent(userEmail, "Movie", "Movie", "", newStart, newStart.plusHours(2), "Movie"));
+        assertEquals(pendingAfterCreate, calendarService.getPendingAutomationCount());
+
+        waitForExecutions(1, 5000);
+        assertEquals(List.of("Movie:AC:ON"), executions);
+        System.out.println("✅ Edit reschedule test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Actions past the grace period are skipped, recent ones fire immediately")
+    void testGracePeriod() throws InterruptedException {
+        // Departure actions all run at start time
+        LocalDateTime recent = LocalDateTime.now().minusSeconds(20);
+        LocalDateTime stale = LocalDateTime.now().minusMinutes(5);
+        calendarService.createEvent(userEmail, "Recent Departure", "", recent, recent.plusMinutes(10), "Departure");
+        calendarService.createEvent(userEmail, "Stale Departure", "", stale, stale.plusMinutes(10), "Departure");
+
+        waitForExecutions(3, 3000);
+        Thread.sleep(200);
+        assertEquals(3, executions.size());
+        assertTrue(executions.stream().allMatch(e -> e.startsWith("Recent Departure")));
+        System.out.println("✅ Grace period test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: A rejected edit keeps the original event and its jobs")
+    void testRejectedEditKeepsOriginal() {
+        LocalDateTime start = LocalDateTime.now().plusHours(3);
+        assertTrue(calendarService.createEvent(userEmail, "Dinner", "", start, start.plusHours(1), "Meal"));
+        String eventId = calendarService.getEventByTitle(userEmail, "Dinner").getEventId();
+        int pending = calendarService.getPendingAutomationCount();
+
+        assertFalse(calendarService.editEvent(userEmail, "Dinner", "Dinner", "", start, start.minusHours(1), "Meal"));
+        CalendarEventService.CalendarEvent original = calendarService.getEventByTitle(userEmail, "Dinner");
+        assertNotNull(original, "The original survives a rejected edit");
+        assertEquals(start, original.getStartTime());
+        assertEquals(pending, calendarService.getPendingAutomationCount());
+
+        assertTrue(calendarService.editEvent(userEmail, "Dinner", "Late Dinner", "", start.plusHours(1), start.plusHours(2), "Meal"));
+        assertNull(calendarService.getEventByTitle(userEmail, "Dinner"));
+        assertEquals(eventId, calendarService.getEventByTitle(userEmail, "Late Dinner").getEventId(), "Edited in place under the same id");
+        assertEquals(pending, calendarService.getPendingAutomationCount());
+        System.out.println("✅ Rejected edit test passed");
+    }
+}
@@ -0,0 +1,108 @@
+package com.smarthome;
+
+import com.smarthome.service.CalendarEventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Calendar event index tests
+ * Tests: upcoming ordering, overlap and conflict queries, automation window lookups
+ */
+public class CalendarEventIndexTest {
+
+    private CalendarEventService calendarService;
+    private String userEmail;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        calendarService = CalendarEventService.getInstance();
+        userEmail = "index_" + UUID.randomUUID() + "@smarthome.com";
+        base = LocalDateTime.now().plusDays(1).withHour(9).withMinute(0).withSecond(0).withNano(0);
+    }
+
+    @Test
+    @DisplayName("Test 1: Upcoming events are returned in start order and capped at 10")
+    void testUpcomingEventsOrdered() {
+        for (int i = 14; i >= 0; i--) {
+            calendarService.createEvent(userEmail, "Event " + i, "", base.plusHours(i), base.plusHours(i).plusMinutes(30), "Custom");
+        }
+        calendarService.createEvent(userEmail, "Past", "", base.minusDays(3), base.minusDays(3).plusHours(1), "Custom");
+
+        List<CalendarEventService.CalendarEvent> upcoming = calendarService.getUpcomingEvents(userEmail);
+        assertEquals(10, upcoming.size());
+        for (int i = 0; i < upcoming.size(); i++) {
+            assertEquals("Event " + i, upcoming.get(i).getTitle());
+        }
+        System.out.println("✅ Upcoming events ordering test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Overlap, active and starting-soon queries")
+    void testOverlapQueries() {
+        calendarService.createEvent(userEmail, "Long Meeting", "", base, base.plusHours(3), "Meeting");
+        calendarService.createEvent(userEmail, "Lunch", "", base.plusHours(3), base.plusHours(4), "Meal");
+        calendarService.createEvent(userEmail, "Workout", "", base.plusHours(5), base.plusHours(6), "Workout");
+
+        assertEquals(1, calendarService.findConflictingEvents(userEmail, base.plusHours(1), base.plusHours(2)).size());
+        assertEquals(2, calendarService.findConflictingEvents(userEmail, base.plusHours(2), base.plusHours(3).plusMinutes(1)).size());
+        assertTrue(calendarService.findConflictingEvents(userEmail, base.plusHours(4), base.plusHours(5)).isEmpty(),
+                   "Back-to-back events should not conflict");
+        assertEquals("Lunch", calendarService.getActiveEvents(userEmail, base.plusHours(3)).get(0).getTitle());
+        assertEquals(1, calendarService.getEventsStartingWithin(userEmail, base.plusHours(4).plusMinutes(30), 30).size());
+        System.out.println("✅ Overlap query test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Automation lookup finds actions before and after event start")
+    void testAutomationWindow() {
+        calendarService.createEvent(userEmail, "Standup", "", base, base.plusMinutes(30), "Meeting");
+
+        assertEquals(1, calendarService.getEventsForAutomation(userEmail, base.minusMinutes(10)).size(), "AC ON 10 min before");
+        assertEquals(1, calendarService.getEventsForAutomation(userEmail, base.plusMinutes(15)).size(), "LIGHT OFF 15 min after");
+        assertTrue(calendarService.getEventsForAutomation(userEmail, base.plusMinutes(8)).isEmpty());
+        assertTrue(calendarService.getEventsForAutomation(userEmail, base.minusHours(2)).isEmpty());
+        System.out.println("✅ Automation window test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Edited and deleted events leave the index")
+    void testEditAndDeleteMaintainIndex() {
+        calendarService.createEvent(userEmail, "Movie Night", "", base.plusHours(10), base.plusHours(12), "Movie");
+        calendarService.editEvent(userEmail, "Movie Night", "Late Movie", "", base.plusHours(13), base.plusHours(15), "Movie");
+
+        assertTrue(calendarService.findConflictingEvents(userEmail, base.plusHours(10), base.plusHours(12)).isEmpty());
+        assertEquals(1, calendarService.findConflictingEvents(userEmail, base.plusHours(14), base.plusHours(16)).size());
+
+        assertTrue(calendarService.deleteEvent(userEmail, "Late Movie"));
+        assertTrue(calendarService.getUpcomingEvents(userEmail).isEmpty());
+        System.out.println("✅ Edit and delete index test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: Overlap queries match a brute-force scan")
+    void testOverlapMatchesBruteForce() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = base.plusMinutes(random.nextInt(60 * 24 * 7));
+            calendarService.createEvent(userEmail, "Random " + i, "", start, start.plusMinutes(15 + random.nextInt(240)), "Custom");
+        }
+        List<CalendarEventService.CalendarEvent> all = calendarService.findConflictingEvents(userEmail, base.minusYears(1), base.plusYears(1));
+        assertEquals(500, all.size());
+        for (int q = 0; q < 50; q++) {
+            LocalDateTime from = base.plusMinutes(random.nextInt(60 * 24 * 7));
+            LocalDateTime to = from.plusMinutes(1 + random.nextInt(180));
+            long expected = all.stream()
+                .filter(e -> e.getStartTime().isBefore(to) && e.getEndTime().isAfter(from))
+                .count();
+            assertEquals(expected, calendarService.findConflictingEvents(userEmail, from, to).size());
+        }
+        System.out.println("✅ Brute-force overlap comparison test passed");
+    }
+}
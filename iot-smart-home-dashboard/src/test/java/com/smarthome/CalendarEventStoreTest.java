@@ -0,0 +1,132 @@
+package com.smarthome;
+
+import com.smarthome.model.CalendarAutomationRecord;
+import com.smarthome.model.CalendarEventRecord;
+import com.smarthome.service.CalendarEventService;
+import com.smarthome.service.CalendarEventStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Calendar event store tests
+ * Tests: sort-key ordering, range queries, history paging, service round-trip
+ */
+public class CalendarEventStoreTest {
+
+    private CalendarEventStore eventStore;
+    private String userEmail;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        eventStore = new CalendarEventStore();
+        userEmail = "store_" + UUID.randomUUID() + "@smarthome.com";
+        base = LocalDateTime.now().withSecond(0).withNano(0);
+    }
+
+    private CalendarEventRecord record(String title, LocalDateTime start) {
+        CalendarEventRecord record = new CalendarEventRecord();
+        String eventId = title.replace(' ', '_');
+        record.setUserEmail(userEmail);
+        record.setEventKey(CalendarEventRecord.buildEventKey(start, eventId));
+        record.setEventId(eventId);
+        record.setTitle(title);
+        record.setDescription("");
+        record.setStartTime(start);
+        record.setEndTime(start.plusHours(1));
+        record.setEventType("Custom");
+        return record;
+    }
+
+    @Test
+    @DisplayName("Test 1: Upcoming query uses the sort key and respects the limit")
+    void testUpcomingQuery() {
+        for (int i = 20; i >= -5; i--) {
+            eventStore.save(record("Event " + i, base.plusHours(i)));
+        }
+        List<CalendarEventRecord> upcoming = eventStore.findUpcoming(userEmail, base, 10);
+        assertEquals(10, upcoming.size());
+        assertEquals("Event 1", upcoming.get(0).getTitle(), "Events starting exactly now are not upcoming");
+        assertEquals("Event 10", upcoming.get(9).getTitle());
+        assertTrue(eventStore.findUpcoming("nobody@smarthome.com", base, 10).isEmpty());
+        System.out.println("✅ Upcoming query test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Range query is inclusive and ordered")
+    void testRangeQuery() {
+        for (int i = 0; i < 48; i++) {
+            eventStore.save(record("Slot " + i, base.plusMinutes(30L * i)));
+        }
+        List<CalendarEventRecord> range = eventStore.findStartingBetween(userEmail, base.plusHours(2), base.plusHours(4));
+        assertEquals(5, range.size());
+        for (int i = 1; i < range.size(); i++) {
+            assertTrue(range.get(i - 1).getStartTime().isBefore(range.get(i).getStartTime()));
+        }
+        System.out.println("✅ Range query test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: History pages walk backwards without gaps or duplicates")
+    void testHistoryPaging() {
+        for (int i = 1; i <= 25; i++) {
+            eventStore.save(record("Past " + i, base.minusDays(i)));
+        }
+        Set<String> seen = new HashSet<>();
+        String token = null;
+        int pages = 0;
+        LocalDateTime previous = LocalDateTime.MAX;
+        do {
+            CalendarEventStore.RecordPage page = eventStore.findHistoryPage(userEmail, base, token, 10);
+            for (CalendarEventRecord record : page.getRecords()) {
+                assertTrue(record.getStartTime().isBefore(previous), "History should be newest first");
+                previous = record.getStartTime();
+                assertTrue(seen.add(record.getEventKey()), "Pages should not overlap");
+            }
+            token = page.getNextPageToken();
+            pages++;
+        } while (token != null);
+        assertEquals(25, seen.size());
+        assertEquals(3, pages);
+        System.out.println("✅ History paging test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Events round-trip through the service with automation actions")
+    void testServiceRoundTrip() {
+        CalendarEventService calendarService = CalendarEventService.getInstance();
+        LocalDateTime start = base.plusDays(2);
+        assertTrue(calendarService.createEvent(userEmail, "Team Sync", "weekly", start, start.plusHours(1), "Meeting"));
+        assertTrue(calendarService.createEvent(userEmail, "Team Sync 2", "", start, start.plusMinutes(30), "Meeting"));
+
+        List<CalendarEventService.CalendarEvent> upcoming = calendarService.getUpcomingEvents(userEmail);
+        assertEquals(2, upcoming.size(), "Events at the same start time must not overwrite each other");
+        CalendarEventService.CalendarEvent event = calendarService.getEventByTitle(userEmail, "Team Sync");
+        assertEquals("weekly", event.getDescription());
+        assertEquals(3, event.getAutomationActions().size());
+        assertEquals(-10, event.getAutomationActions().get(1).getMinutesOffset());
+
+        assertEquals(2, calendarService.getEventsStartingWithin(userEmail, start.minusMinutes(5), 10).size());
+        assertTrue(calendarService.deleteEvent(userEmail, "Team Sync"));
+        assertEquals(1, calendarService.getUpcomingEvents(userEmail).size());
+        System.out.println("✅ Service round-trip test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: Sort keys order by start time")
+    void testSortKeyOrdering() {
+        String earlier = CalendarEventRecord.buildEventKey(LocalDateTime.of(2025, 1, 9, 23, 59), "zzz");
+        String later = CalendarEventRecord.buildEventKey(LocalDateTime.of(2025, 1, 10, 0, 0), "aaa");
+        assertTrue(earlier.compareTo(later) < 0);
+        CalendarAutomationRecord action = new CalendarAutomationRecord("AC", "Hall", "ON", -15);
+        assertEquals(-15, action.getMinutesOffset());
+        System.out.println("✅ Sort key ordering test passed");
+    }
+}
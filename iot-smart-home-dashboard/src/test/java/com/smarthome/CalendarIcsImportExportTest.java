@@ -0,0 +1,194 @@
+package com.smarthome;
+
+import com.smarthome.service.CalendarEventService;
+import com.smarthome.util.ICalendarReader;
+import com.smarthome.util.ICalendarWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Calendar .ics import/export tests
+ * Tests: line unfolding and escapes, category mapping, round trip, line folding, bulk import speed
+ */
+public class CalendarIcsImportExportTest {
+
+    private static final String CRLF = "\r\n";
+
+    private static String newUser() {
+        return "ics_" + UUID.randomUUID() + "@smarthome.com";
+    }
+
+    private static String icsTime(LocalDateTime time) {
+        return String.format("%04d%02d%02dT%02d%02d00", time.getYear(), time.getMonthValue(), time.getDayOfMonth(),
+                             time.getHour(), time.getMinute());
+    }
+
+    @Test
+    @DisplayName("Test 1: Reader unfolds lines, unescapes text and skips nested components")
+    void testReaderParsing() throws IOException {
+        String ics = "BEGIN:VCALENDAR" + CRLF +
+                     "BEGIN:VTIMEZONE" + CRLF + "TZID:Europe/Berlin" + CRLF + "END:VTIMEZONE" + CRLF +
+                     "BEGIN:VEVENT" + CRLF +
+                     "UID:one@example.com" + CRLF +
+                     "SUMMARY:Planning\\, budget" + CRLF +
+                     "DESCRIPTION:Line one\\nLine" + CRLF +
+                     "  two" + CRLF +
+                     "DTSTART;TZID=\"Europe/Berlin\":20250601T100000" + CRLF +
+                     "DURATION:PT1H30M" + CRLF +
+                     "BEGIN:VALARM" + CRLF + "DESCRIPTION:Reminder" + CRLF + "END:VALARM" + CRLF +
+                     "END:VEVENT" + CRLF +
+                     "BEGIN:VEVENT" + CRLF + "DTSTART;VALUE=DATE:20250602" + CRLF + "END:VEVENT" + CRLF +
+                     "END:VCALENDAR" + CRLF;
+        ICalendarReader reader = new ICalendarReader(new StringReader(ics));
+        ICalendarReader.VEvent first = reader.nextEvent();
+        assertEquals("Planning, budget", first.getText("SUMMARY"));
+        assertEquals("Line one\nLine two", first.getText("DESCRIPTION"), "VALARM description must not override the event's");
+        assertEquals("Europe/Berlin", first.getProperty("DTSTART").getParameter("tzid"));
+        LocalDateTime expected = LocalDateTime.of(2025, 6, 1, 10, 0).atZone(ZoneId.of("Europe/Berlin"))
+            .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        assertEquals(expected, ICalendarReader.parseDateTime(first.getProperty("DTSTART")));
+        assertEquals(90, ICalendarReader.parseDuration(first.getProperty("DURATION").getValue()).toMinutes());
+
+        ICalendarReader.VEvent second = reader.nextEvent();
+        assertTrue(ICalendarReader.isDateValue(second.getProperty("DTSTART")));
+        assertEquals(LocalDateTime.of(2025, 6, 2, 0, 0), ICalendarReader.parseDateTime(second.getProperty("DTSTART")));
+        assertNull(reader.nextEvent());
+        assertEquals(14, ICalendarReader.parseDuration("P2W").toDays());
+        System.out.println("✅ Reader parsing test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Import maps categories onto event types and skips unusable events")
+    void testImportMapping() throws IOException {
+        CalendarEventService calendarService = CalendarEventService.getInstance();
+        String userEmail = newUser();
+        LocalDateTime start = LocalDateTime.now().withSecond(0).withNano(0).plusDays(3);
+        String ics = "BEGIN:VCALENDAR" + CRLF +
+                     "BEGIN:VEVENT" + CRLF + "UID:a1" + CRLF + "SUMMARY:Board review" + CRLF +
+                     "CATEGORIES:Work,MEETING" + CRLF + "DTSTART:" + icsTime(start) + CRLF +
+                     "DTEND:" + icsTime(start.plusHours(1)) + CRLF + "END:VEVENT" + CRLF +
+                     "BEGIN:VEVENT" + CRLF + "UID:a2" + CRLF + "SUMMARY:Gym" + CRLF +
+                     "CATEGORIES:Workout" + CRLF + "DTSTART:" + icsTime(start.plusHours(3)) + CRLF +
+                     "RRULE:FREQ=WEEKLY;COUNT=4" + CRLF + "DURATION:PT45M" + CRLF + "END:VEVENT" + CRLF +
+                     "BEGIN:VEVENT" + CRLF + "UID:a3" + CRLF + "SUMMARY:Errand" + CRLF +
+                     "DTSTART:" + icsTime(start.plusHours(5)) + CRLF + "END:VEVENT" + CRLF +
+                     "BEGIN:VEVENT" + CRLF + "UID:a4" + CRLF + "SUMMARY:Dropped" + CRLF + "STATUS:CANCELLED" + CRLF +
+                     "DTSTART:" + icsTime(start) + CRLF + "END:VEVENT" + CRLF +
+                     "BEGIN:VEVENT" + CRLF + "UID:a5" + CRLF + "SUMMARY:Broken" + CRLF +
+                     "DTSTART:not-a-date" + CRLF + "END:VEVENT" + CRLF +
+                     "END:VCALENDAR" + CRLF;
+        CalendarEventService.ImportResult result = calendarService.importEvents(userEmail, new StringReader(ics));
+        assertEquals(3, result.getImported());
+        assertEquals(2, result.getSkipped());
+
+        CalendarEventService.CalendarEvent meeting = calendarService.getEventByTitle(userEmail, "Board review");
+        assertEquals("Meeting", meeting.getEventType());
+        assertEquals(3, meeting.getAutomationActions().size(), "Imported meetings get the default automations");
+        CalendarEventService.CalendarEvent gym = calendarService.getEventByTitle(userEmail, "Gym");
+        assertEquals("Workout", gym.getEventType());
+        assertTrue(gym.isRecurring());
+        assertEquals(start.plusHours(3).plusMinutes(45), gym.getEndTime());
+        assertEquals("Custom", calendarService.getEventByTitle(userEmail, "Errand").getEventType());
+        assertEquals(6, calendarService.getUpcomingEvents(userEmail).size(), "Two one-off events plus four occurrences");
+
+        assertEquals(3, calendarService.importEvents(userEmail, new StringReader(ics)).getImported());
+        assertEquals(6, calendarService.getUpcomingEvents(userEmail).size(), "Re-importing the same UIDs must not duplicate");
+        System.out.println("✅ Import mapping test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Exported calendars import back unchanged")
+    void testRoundTrip() throws IOException {
+        CalendarEventService calendarService = CalendarEventService.getInstance();
+        String sourceUser = newUser();
+        LocalDateTime start = LocalDateTime.now().withSecond(0).withNano(0).plusDays(2);
+        String description = "Bring notes; slides, and the \\ backslash\nsecond line";
+        assertTrue(calendarService.createEvent(sourceUser, "Strategy", description, start, start.plusHours(2), "Conference"));
+        assertTrue(calendarService.createEvent(sourceUser, "Dinner", "", start.plusHours(6), start.plusHours(7), "Meal",
+                                               "FREQ=DAILY;COUNT=3"));
+
+        StringWriter exported = new StringWriter();
+        assertEquals(2, calendarService.exportEvents(sourceUser, exported));
+        assertTrue(exported.toString().startsWith("BEGIN:VCALENDAR\r\n"));
+
+        String targetUser = newUser();
+        CalendarEventService.ImportResult result = calendarService.importEvents(targetUser, new StringReader(exported.toString()));
+        assertEquals(2, result.getImported());
+        CalendarEventService.CalendarEvent strategy = calendarService.getEventByTitle(targetUser, "Strategy");
+        assertEquals(description, strategy.getDescription());
+        assertEquals(start, strategy.getStartTime());
+        assertEquals("Conference", strategy.getEventType());
+        CalendarEventService.CalendarEvent dinner = calendarService.getEventByTitle(targetUser, "Dinner");
+        assertEquals("FREQ=DAILY;COUNT=3", dinner.getRecurrencePattern());
+        assertEquals(4, calendarService.getUpcomingEvents(targetUser).size());
+        System.out.println("✅ Round trip test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Writer folds long lines at 75 octets without splitting characters")
+    void testLineFolding() throws IOException {
+        StringWriter output = new StringWriter();
+        ICalendarWriter writer = new ICalendarWriter(output);
+        String summary = "Familientreffen über Weihnachten – Küche, Wohnzimmer und Garten ".repeat(4).trim();
+        writer.text("SUMMARY", summary);
+        writer.dateTime("DTSTART", LocalDateTime.of(2025, 12, 24, 18, 0));
+        writer.flush();
+
+        String[] lines = output.toString().split("\r\n");
+        assertTrue(lines.length > 3);
+        for (String line : lines) {
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, "Line too long: " + line);
+        }
+        assertEquals("DTSTART:20251224T180000", lines[lines.length - 1]);
+
+        String wrapped = "BEGIN:VEVENT\r\n" + output + "END:VEVENT\r\n";
+        ICalendarReader.VEvent event = new ICalendarReader(new StringReader(wrapped)).nextEvent();
+        assertEquals(summary, event.getText("SUMMARY"));
+        System.out.println("✅ Line folding test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: A 50k-event file imports in seconds")
+    void testBulkImport() throws IOException {
+        CalendarEventService calendarService = CalendarEventService.getInstance();
+        String userEmail = newUser();
+        int eventCount = 50_000;
+        LocalDateTime base = LocalDateTime.of(2015, 1, 1, 8, 0);
+        StringBuilder ics = new StringBuilder(eventCount * 200).append("BEGIN:VCALENDAR").append(CRLF);
+        for (int i = 0; i < eventCount; i++) {
+            LocalDateTime start = base.plusHours(2L * i);
+            ics.append("BEGIN:VEVENT").append(CRLF)
+               .append("UID:bulk-").append(i).append(CRLF)
+               .append("DTSTAMP:20250101T000000Z").append(CRLF)
+               .append("SUMMARY:Bulk event ").append(i).append(CRLF)
+               .append("CATEGORIES:").append(i % 2 == 0 ? "Meeting" : "Sleep").append(CRLF)
+               .append("DTSTART:").append(icsTime(start)).append(CRLF)
+               .append("DTEND:").append(icsTime(start.plusHours(1))).append(CRLF)
+               .append("END:VEVENT").append(CRLF);
+        }
+        ics.append("END:VCALENDAR").append(CRLF);
+
+        long startNanos = System.nanoTime();
+        CalendarEventService.ImportResult result = calendarService.importEvents(userEmail, new StringReader(ics.toString()));
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        assertEquals(eventCount, result.getImported());
+        assertEquals(0, result.getSkipped());
+        assertTrue(elapsedMillis < 15_000, "Import took " + elapsedMillis + " ms");
+
+        StringWriter exported = new StringWriter();
+        assertEquals(eventCount, calendarService.exportEvents(userEmail, exported));
+        List<CalendarEventService.CalendarEvent> page = calendarService.getPastEvents(userEmail, null, 5).getEvents();
+        assertEquals(5, page.size());
+        assertEquals("Bulk event " + (eventCount - 1), page.get(0).getTitle());
+        System.out.println("✅ Bulk import test passed (" + eventCount + " events in " + elapsedMillis + " ms)");
+    }
+}
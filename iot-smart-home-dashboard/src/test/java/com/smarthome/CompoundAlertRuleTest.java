@@ -0,0 +1,173 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.AlertRuleEngine;
+import com.smarthome.service.AlertService;
+import com.smarthome.service.WeatherService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compound alert rule tests
+ * Tests: parsing and canonical forms, shared sub-expressions, device/weather/time conditions,
+ * rising-edge triggering, bulk evaluation speed
+ */
+public class CompoundAlertRuleTest {
+
+    private Customer customer;
+    private Gadget ac;
+    private Gadget tv;
+    private LocalDateTime now;
+    private WeatherService.WeatherData coolWeather;
+
+    @BeforeEach
+    void setUp() {
+        customer = new Customer("rules_" + UUID.randomUUID() + "@smarthome.com", "Rule User", "Password123!");
+        ac = new Gadget("AC", "Daikin", "Master Bedroom");
+        customer.addGadget(ac);
+        tv = new Gadget("TV", "Sony", "Living Room");
+        customer.addGadget(tv);
+        now = LocalDateTime.of(2025, 7, 1, 23, 30);
+        coolWeather = new WeatherService.WeatherData("Rainy", 18.0, 80, 5.0, "Light rain", 40);
+    }
+
+    private void turnOnAcHoursAgo(int hours) {
+        ac.turnOn();
+        ac.setLastOnTime(now.minusHours(hours));
+    }
+
+    @Test
+    @DisplayName("Test 1: Rules parse into canonical, shared predicate trees")
+    void testCompileAndShare() {
+        AlertRuleEngine engine = new AlertRuleEngine();
+        AlertRuleEngine.CompiledRule first = engine.compile("AC in Master Bedroom ON for > 3h AND outside temp < 20");
+        AlertRuleEngine.CompiledRule second = engine.compile("temperature < 20 and ac IN master bedroom on FOR > 180 min");
+        assertEquals(first.getCanonicalForm(), second.getCanonicalForm(), "Operand order, case and units do not matter");
+        assertEquals(3, engine.getNodeCount(), "Two conditions plus one AND node");
+
+        engine.compile("(AC in Master Bedroom ON for > 3h) OR weather is Rainy");
+        assertEquals(5, engine.getNodeCount(), "The device condition is reused");
+        assertEquals(first.getCanonicalForm(),
+                     engine.compile("NOT NOT (AC in Master Bedroom ON for > 3h AND temp < 20 AND temp < 20)").getCanonicalForm());
+
+        String[] invalid = {"", "AC in ON", "temp <", "AC in Bedroom ON for > 3 weeks", "time between 25:00 and 06:00",
+                            "(temp < 20", "temp < 20 humidity > 50", "temp ~ 20"};
+        for (String rule : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> engine.compile(rule), "Should reject: " + rule);
+        }
+        System.out.println("✅ Compile and share test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Device, energy, weather and time conditions evaluate against one snapshot")
+    void testEvaluation() {
+        AlertRuleEngine engine = new AlertRuleEngine();
+        AlertRuleEngine.CompiledRule longRun = engine.compile("AC in Master Bedroom ON for > 3h AND outside temp < 20");
+        AlertRuleEngine.CompiledRule tvOff = engine.compile("TV in Living Room OFF");
+        AlertRuleEngine.CompiledRule night = engine.compile("time between 22:00 and 06:00");
+        AlertRuleEngine.CompiledRule energy = engine.compile("TV in Living Room energy >= 2 kWh OR aqi > 150");
+        AlertRuleEngine.CompiledRule missing = engine.compile("Heater in Garage ON OR NOT weather is Rainy");
+
+        turnOnAcHoursAgo(2);
+        engine.beginTick(new AlertRuleEngine.Snapshot(customer.getGadgetIndex(), coolWeather, now));
+        assertFalse(engine.evaluate(longRun), "Only on for two hours");
+        assertTrue(engine.evaluate(tvOff));
+        assertTrue(engine.evaluate(night), "Windows wrap past midnight");
+        assertFalse(engine.evaluate(energy));
+        assertFalse(engine.evaluate(missing), "Unknown devices are never on");
+
+        turnOnAcHoursAgo(4);
+        tv.setTotalEnergyConsumedKWh(2.5);
+        engine.beginTick(new AlertRuleEngine.Snapshot(customer.getGadgetIndex(), null, now.withHour(12)));
+        assertFalse(engine.evaluate(longRun), "Weather conditions are false without a weather snapshot");
+        assertFalse(engine.evaluate(night));
+        assertTrue(engine.evaluate(energy));
+        assertTrue(engine.evaluate(missing));
+
+        engine.beginTick(new AlertRuleEngine.Snapshot(customer.getGadgetIndex(), coolWeather, now));
+        assertTrue(engine.evaluate(longRun));
+        assertTrue(AlertRuleEngine.Comparison.EQUALS.test(5.005, 5.0));
+        assertEquals(AlertRuleEngine.Comparison.LESS_THAN, AlertRuleEngine.Comparison.fromType("LESS_THAN"));
+        assertNull(AlertRuleEngine.Comparison.fromType("BETWEEN"));
+        System.out.println("✅ Evaluation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Rule alerts fire when their rule becomes true and re-arm after it clears")
+    void testRuleAlertTriggering() {
+        AlertService alertService = AlertService.getInstance();
+        String userEmail = customer.getEmail();
+        assertFalse(alertService.createRuleAlert(userEmail, "Broken", "AC in", "x"));
+        assertTrue(alertService.createRuleAlert(userEmail, "Cold AC", "AC in Master Bedroom ON for > 3h AND temp < 20", "Turn off the AC"));
+        AlertService.Alert alert = alertService.getUserAlerts(userEmail).get(0);
+        assertEquals(AlertService.AlertType.COMPOUND_RULE, alert.getAlertType());
+
+        alertService.checkRuleAlerts(userEmail, customer, now, coolWeather);
+        assertEquals(0, alert.getTriggerCount());
+
+        turnOnAcHoursAgo(4);
+        alertService.checkRuleAlerts(userEmail, customer, now, coolWeather);
+        alertService.checkRuleAlerts(userEmail, customer, now.plusMinutes(1), coolWeather);
+        assertEquals(1, alert.getTriggerCount(), "A rule that stays true fires once");
+
+        ac.turnOff();
+        alertService.checkRuleAlerts(userEmail, customer, now.plusMinutes(2), coolWeather);
+        turnOnAcHoursAgo(5);
+        alertService.checkRuleAlerts(userEmail, customer, now.plusMinutes(3), coolWeather);
+        assertEquals(2, alert.getTriggerCount(), "Fires again after clearing");
+
+        alertService.toggleAlert(userEmail, alert.getAlertId());
+        alertService.toggleAlert(userEmail, alert.getAlertId());
+        alertService.checkRuleAlerts(userEmail, customer, now.plusMinutes(4), coolWeather);
+        assertEquals(3, alert.getTriggerCount(), "Re-activated rules fire if already true");
+
+        assertTrue(alertService.deleteAlert(userEmail, alert.getAlertId()));
+        assertTrue(alertService.getUserAlerts(userEmail).isEmpty());
+        System.out.println("✅ Rule alert triggering test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Thousands of rules over shared conditions evaluate quickly")
+    void testBulkEvaluation() {
+        AlertRuleEngine engine = new AlertRuleEngine();
+        String[] rooms = {"Master Bedroom", "Living Room", "Kitchen", "Study"};
+        List<AlertRuleEngine.CompiledRule> rules = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String room = rooms[i % rooms.length];
+            rules.add(engine.compile("(AC in " + room + " ON for > " + (i % 6) + "h OR TV in " + room + " ON) AND temp < "
+                                     + (15 + i % 10) + " AND NOT time between 08:00 and 18:00"));
+        }
+        assertTrue(engine.getNodeCount() < 500, "Conditions are shared across rules: " + engine.getNodeCount());
+
+        turnOnAcHoursAgo(4);
+        int matched = 0;
+        int ticks = 20;
+        long start = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            engine.beginTick(new AlertRuleEngine.Snapshot(customer.getGadgetIndex(), coolWeather, now));
+            for (AlertRuleEngine.CompiledRule rule : rules) {
+                if (engine.evaluate(rule)) {
+                    matched++;
+                }
+            }
+        }
+        long microsPerTick = (System.nanoTime() - start) / 1000 / ticks;
+        // Master Bedroom rules with a duration under 4h (i % 6 < 4) and temp threshold above 18 (i % 10 > 3)
+        int expected = 0;
+        for (int i = 0; i < 5000; i += rooms.length) {
+            if (i % 6 < 4 && 15 + i % 10 > 18) {
+                expected++;
+            }
+        }
+        assertEquals(expected * ticks, matched);
+        assertTrue(microsPerTick < 50_000, "Evaluation took " + microsPerTick + " µs per tick");
+        System.out.println("✅ Bulk evaluation test passed (5000 rules in " + microsPerTick + " µs per tick)");
+    }
+}
@@ -0,0 +1,177 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.AlertService;
+import com.smarthome.service.CalendarEventService;
+import com.smarthome.service.SmartScenesService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Concurrent service state tests
+ * Tests: alert checks racing alert edits, scene edits from several threads,
+ * calendar reads racing event creation, device change versions bumped from several threads
+ */
+public class ConcurrentServiceStateTest {
+
+    // Runs the tasks together and returns the first exception any of them threw
+    private static Throwable runTogether(Runnable... tasks) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        for (Runnable task : tasks) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        return errors.peek();
+    }
+
+    @Test
+    @DisplayName("Test 1: Alert checks run alongside alert edits without errors or lost alerts")
+    void testAlertChecksDuringEdits() throws InterruptedException {
+        AlertService alertService = AlertService.getInstance();
+        String userEmail = "concurrent_" + UUID.randomUUID() + "@smarthome.com";
+        Customer customer = new Customer(userEmail, "Concurrent User", "Password123!");
+        Gadget tv = new Gadget("TV", "Sony", "Living Room");
+        customer.addGadget(tv);
+        LocalDateTime base = LocalDateTime.now().withSecond(0).withNano(0).plusDays(5);
+        AtomicBoolean editing = new AtomicBoolean(true);
+        int kept = 200;
+
+        Throwable error = runTogether(
+            () -> {
+                for (int i = 0; i < kept; i++) {
+                    alertService.createEnergyUsageAlert(userEmail, "Keep " + i, "TV", "Living Room", 1_000_000.0, "GREATER_THAN", "x");
+                    alertService.createTimeBasedAlert(userEmail, "Due " + i, "LIGHT", "Hall", base, "x");
+                }
+                editing.set(false);
+            },
+            () -> {
+                while (editing.get()) {
+                    for (AlertService.Alert alert : alertService.getUserAlerts(userEmail)) {
+                        if (alert.getAlertName().startsWith("Keep") && alert.getAlertName().endsWith("7")) {
+                            alertService.toggleAlert(userEmail, alert.getAlertId());
+                        }
+                    }
+                }
+            },
+            () -> {
+                while (editing.get()) {
+                    tv.setTotalEnergyConsumedKWh(tv.getTotalEnergyConsumedKWh() + 1);
+                    alertService.checkEnergyUsageAlerts(userEmail, customer);
+                    alertService.checkTimeBasedAlerts(userEmail, base);
+                    alertService.checkRuleAlerts(userEmail, customer, base, null);
+                }
+            });
+        assertNull(error, () -> "Concurrent access failed: " + error);
+
+        alertService.checkTimeBasedAlerts(userEmail, base);
+        List<AlertService.Alert> alerts = alertService.getUserAlerts(userEmail);
+        assertEquals(kept, alerts.size(), "Every due alert fired and was removed, every other alert is kept");
+        assertTrue(alerts.stream().allMatch(alert -> alert.getAlertName().startsWith("Keep")));
+        alertService.reloadAlerts(userEmail);
+        assertEquals(kept, alertService.getUserAlerts(userEmail).size(), "The store agrees with memory");
+        System.out.println("✅ Concurrent alert state test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Scene edits from several threads are all applied")
+    void testConcurrentSceneEdits() throws InterruptedException {
+        SmartScenesService scenesService = SmartScenesService.getInstance();
+        String userEmail = "scenes_" + UUID.randomUUID() + "@smarthome.com";
+        int perThread = 100;
+        Runnable[] editors = new Runnable[4];
+        for (int t = 0; t < editors.length; t++) {
+            String room = "Room " + t;
+            editors[t] = () -> {
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(scenesService.addDeviceToScene(userEmail, "MOVIE",
+                               new SmartScenesService.SceneAction("LIGHT", room + "/" + i, "ON", "Light " + i)));
+                }
+            };
+        }
+        int original = scenesService.getSceneActions(userEmail, "MOVIE").size();
+        Throwable error = runTogether(editors);
+        assertNull(error, () -> "Concurrent scene edit failed: " + error);
+        assertEquals(original + editors.length * perThread, scenesService.getSceneActions(userEmail, "MOVIE").size());
+
+        String firstDevice = scenesService.getSceneActions(userEmail, "MOVIE").get(0).getDeviceType();
+        String firstRoom = scenesService.getSceneActions(userEmail, "MOVIE").get(0).getRoomName();
+        String originalAction = scenesService.getSceneActions("other@smarthome.com", "MOVIE").get(0).getAction();
+        String flipped = originalAction.equalsIgnoreCase("ON") ? "OFF" : "ON";
+        assertTrue(scenesService.changeDeviceAction(userEmail, "MOVIE", firstDevice, firstRoom, flipped));
+        assertEquals(originalAction, scenesService.getSceneActions("other@smarthome.com", "MOVIE").get(0).getAction(),
+                     "Editing a user's copy leaves the predefined scene untouched");
+        assertTrue(scenesService.resetSceneToOriginal(userEmail, "MOVIE"));
+        assertEquals(original, scenesService.getSceneActions(userEmail, "MOVIE").size());
+        System.out.println("✅ Concurrent scene edit test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Calendar reads never cache a window that misses a concurrently created event")
+    void testCalendarReadsDuringCreation() throws InterruptedException {
+        CalendarEventService calendar = CalendarEventService.getInstance();
+        String userEmail = "calendar_" + UUID.randomUUID() + "@smarthome.com";
+        LocalDateTime start = LocalDateTime.now().plusMinutes(30).withSecond(0).withNano(0);
+        int events = 60;
+        AtomicBoolean creating = new AtomicBoolean(true);
+
+        Throwable error = runTogether(
+            () -> {
+                for (int i = 0; i < events; i++) {
+                    calendar.createEvent(userEmail, "Event " + i, "", start, start.plusHours(1), "MOVIE");
+                }
+                creating.set(false);
+            },
+            () -> {
+                while (creating.get()) {
+                    for (CalendarEventService.CalendarEvent event : calendar.getActiveEvents(userEmail, start.plusMinutes(1))) {
+                        assertFalse(event.getAutomationActions().isEmpty());
+                    }
+                }
+            });
+        assertNull(error, () -> "Concurrent calendar access failed: " + error);
+        assertEquals(events, calendar.getActiveEvents(userEmail, start.plusMinutes(1)).size());
+        System.out.println("✅ Concurrent calendar test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Device changes from several threads each bump the change version")
+    void testConcurrentDeviceChanges() throws InterruptedException {
+        Gadget fan = new Gadget("FAN", "Havells", "Bedroom");
+        long before = fan.getChangeVersion();
+        int perThread = 20_000;
+        Runnable[] updaters = new Runnable[4];
+        for (int t = 0; t < updaters.length; t++) {
+            updaters[t] = () -> {
+                for (int i = 0; i < perThread; i++) {
+                    fan.setTotalUsageMinutes(i);
+                }
+            };
+        }
+        Throwable error = runTogether(updaters);
+        assertNull(error, () -> "Concurrent device update failed: " + error);
+        assertEquals(before + (long) updaters.length * perThread, fan.getChangeVersion(), "No change is lost");
+        System.out.println("✅ Concurrent device change test passed");
+    }
+}
@@ -0,0 +1,130 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.AlertService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.UUID;
+
+/**
+ * Energy alert index tests
+ * Tests: device-keyed lookup, change-driven edge-triggered evaluation, re-activation, deletion, gadget change versions
+ */
+public class EnergyAlertIndexTest {
+
+    private AlertService alertService;
+    private String userEmail;
+    private Customer customer;
+    private Gadget tv;
+
+    @BeforeEach
+    void setUp() {
+        alertService = AlertService.getInstance();
+        userEmail = "alerts_" + UUID.randomUUID() + "@smarthome.com";
+        customer = new Customer(userEmail, "Alert Index User", "Password123!");
+        tv = new Gadget("TV", "Sony", "Living Room");
+        customer.addGadget(tv);
+        customer.addGadget(new Gadget("AC", "Daikin", "Bedroom"));
+    }
+
+    private AlertService.Alert createPersistentAlert(String deviceType, String roomName, double threshold, String comparison) {
+        alertService.createEnergyUsageAlert(userEmail, "Watch " + deviceType, deviceType, roomName, threshold, comparison, "check");
+        AlertService.Alert alert = alertService.getUserAlerts(userEmail).get(alertService.getUserAlerts(userEmail).size() - 1);
+        alert.setAutoDeleteAfterTrigger(false);
+        return alert;
+    }
+
+    @Test
+    @DisplayName("Test 1: Alerts are only re-evaluated after their device changes")
+    void testChangeDrivenEvaluation() {
+        AlertService.Alert alert = createPersistentAlert("tv", "living room", 100.0, "LESS_THAN");
+
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, alert.getTriggerCount(), "New alerts are evaluated once, matched case-insensitively");
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, alert.getTriggerCount(), "Unchanged devices are skipped");
+
+        tv.turnOn();
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, alert.getTriggerCount(), "Still below the threshold, so the repeat is suppressed");
+
+        tv.setTotalEnergyConsumedKWh(150.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        tv.setTotalEnergyConsumedKWh(50.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(2, alert.getTriggerCount(), "Dropping below the threshold again is a new edge");
+
+        long suppressedBefore = alertService.getRateLimiter().getSuppressedTotal();
+        alertService.checkAllEnergyUsageAlerts(userEmail, customer);
+        assertTrue(alertService.getRateLimiter().getSuppressedTotal() > suppressedBefore,
+                   "A forced check evaluates every watched device");
+        assertEquals(2, alert.getTriggerCount());
+        System.out.println("✅ Change-driven evaluation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Only the changed device's alerts are evaluated")
+    void testOnlyChangedDevicesEvaluated() {
+        AlertService.Alert tvAlert = createPersistentAlert("TV", "Living Room", 100.0, "LESS_THAN");
+        AlertService.Alert acAlert = createPersistentAlert("AC", "Bedroom", 100.0, "LESS_THAN");
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, tvAlert.getTriggerCount());
+        assertEquals(1, acAlert.getTriggerCount());
+
+        tv.setTotalEnergyConsumedKWh(150.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        tv.setTotalEnergyConsumedKWh(5.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(2, tvAlert.getTriggerCount());
+        assertEquals(1, acAlert.getTriggerCount(), "The AC did not change");
+        System.out.println("✅ Changed device isolation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Re-activated alerts are evaluated and deleted alerts are not")
+    void testToggleAndDelete() {
+        AlertService.Alert alert = createPersistentAlert("TV", "Living Room", 1.0, "GREATER_THAN");
+        alertService.toggleAlert(userEmail, alert.getAlertId());
+        tv.setTotalEnergyConsumedKWh(2.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(0, alert.getTriggerCount(), "Inactive alerts never trigger");
+
+        alertService.toggleAlert(userEmail, alert.getAlertId());
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, alert.getTriggerCount());
+
+        assertTrue(alertService.deleteAlert(userEmail, alert.getAlertId()));
+        tv.setTotalEnergyConsumedKWh(3.0);
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertEquals(1, alert.getTriggerCount());
+
+        alertService.createEnergyUsageAlert(userEmail, "One shot", "TV", "Living Room", 1.0, "GREATER_THAN", "once");
+        alertService.checkEnergyUsageAlerts(userEmail, customer);
+        assertTrue(alertService.getUserAlerts(userEmail).isEmpty(), "Auto-delete alerts are removed after triggering");
+        System.out.println("✅ Toggle and delete test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Gadget versions track changes and lookups use the gadget index")
+    void testGadgetVersionsAndLookup() {
+        long version = tv.getChangeVersion();
+        tv.turnOn();
+        tv.turnOff();
+        assertEquals(version + 2, tv.getChangeVersion());
+        tv.setModel("Bravia");
+        assertEquals(version + 2, tv.getChangeVersion(), "Model changes do not affect alerts");
+
+        assertSame(tv, customer.findGadget("tv", "LIVING ROOM"));
+        assertNull(customer.findGadget("TV", "Kitchen"));
+        assertNull(customer.findGadget(null, "Kitchen"));
+        tv.setRoomName("Den");
+        assertNull(customer.findGadget("TV", "Living Room"), "Stale index entries are detected");
+        customer.invalidateGadgetIndex();
+        assertSame(tv, customer.findGadget("TV", "Den"));
+        System.out.println("✅ Gadget version and lookup test passed");
+    }
+}
@@ -0,0 +1,177 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.EnergyCube;
+import com.smarthome.model.EnergyCube.Dimension;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.EnergyHistory.Resolution;
+import com.smarthome.util.Tariff;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Energy cube tests
+ * Tests: roll-ups against per-device history, drill-down consistency,
+ * running sessions and rebuilds, cost allocation, query speed
+ */
+public class EnergyCubeTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 0, 0);
+
+    private static void at(LocalDateTime time) {
+        Gadget.setClock(Clock.fixed(time.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void restoreClock() {
+        Gadget.setClock(null);
+    }
+
+    // Ten days of random sessions across the devices, with the cube following along
+    private static Customer simulate(long seed) {
+        at(START);
+        Customer customer = new Customer("cube@smarthome.com", "Cube User", "Password123!");
+        customer.addGadget(new Gadget("AC", "Daikin", "Bedroom"));
+        customer.addGadget(new Gadget("FAN", "Havells", "Bedroom"));
+        customer.addGadget(new Gadget("TV", "Sony", "Hall"));
+        customer.addGadget(new Gadget("FAN", "Orient", "Hall"));
+        customer.addGadget(new Gadget("GEYSER", "AO Smith", "Bathroom"));
+        customer.getEnergyCube();
+        Random random = new Random(seed);
+        LocalDateTime time = START;
+        while (time.isBefore(START.plusDays(10))) {
+            Gadget device = customer.getGadgets().get(random.nextInt(customer.getGadgets().size()));
+            at(time);
+            device.toggleStatus();
+            time = time.plusSeconds(60 + random.nextInt(3 * 3600));
+        }
+        at(time);
+        return customer;
+    }
+
+    private static double historyKWh(List<Gadget> devices, LocalDateTime from, LocalDateTime to) {
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        return energyService.getUsageSeries(devices, from, to, Resolution.HOUR).getPoints().stream()
+                .mapToDouble(EnergyManagementService.UsagePoint::getEnergyKWh).sum();
+    }
+
+    @Test
+    @DisplayName("Test 1: Roll-ups match the devices' own history")
+    void testRollUpsMatchHistory() {
+        Customer customer = simulate(49);
+        EnergyCube cube = customer.getEnergyCube();
+        LocalDateTime from = START.plusDays(2);
+        LocalDateTime to = START.plusDays(9);
+        Map<String, EnergyCube.Slice> byRoom = cube.rollUp(Dimension.ROOM, from, to, null, null, null);
+        assertEquals(3, byRoom.size());
+        Map<String, List<Gadget>> devicesByRoom = customer.getGadgets().stream().collect(Collectors.groupingBy(Gadget::getRoomName));
+        for (Map.Entry<String, List<Gadget>> room : devicesByRoom.entrySet()) {
+            assertEquals(historyKWh(room.getValue(), from, to), byRoom.get(room.getKey()).getKWh(), 1e-3, room.getKey());
+        }
+        double[] ordered = byRoom.values().stream().mapToDouble(EnergyCube.Slice::getKWh).toArray();
+        for (int i = 1; i < ordered.length; i++) {
+            assertTrue(ordered[i - 1] >= ordered[i], "Rooms come back largest first");
+        }
+        Map<String, EnergyCube.Slice> byDay = cube.rollUp(Dimension.DAY, from, to, null, null, null);
+        assertEquals("2025-06-03", byDay.keySet().iterator().next());
+        for (Map.Entry<String, EnergyCube.Slice> day : byDay.entrySet()) {
+            LocalDateTime dayStart = LocalDateTime.parse(day.getKey() + "T00:00");
+            assertEquals(historyKWh(customer.getGadgets(), dayStart, dayStart.plusDays(1)), day.getValue().getKWh(), 1e-3, day.getKey());
+        }
+        Map<String, EnergyCube.Slice> byHour = cube.rollUp(Dimension.HOUR_OF_DAY, from, to, null, null, null);
+        assertEquals(24, byHour.size());
+        assertEquals(historyKWh(customer.getGadgets(), from, to),
+                     byHour.values().stream().mapToDouble(EnergyCube.Slice::getKWh).sum(), 1e-3);
+        System.out.println("✅ Roll-up test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Drilling down adds back up to the parent, and a rebuilt cube agrees")
+    void testDrillDownAndRebuild() {
+        Customer customer = simulate(7);
+        EnergyCube cube = customer.getEnergyCube();
+        LocalDateTime from = START;
+        LocalDateTime to = START.plusDays(11);
+        Map<String, EnergyCube.Slice> byRoom = cube.rollUp(Dimension.ROOM, from, to, null, null, null);
+        for (Map.Entry<String, EnergyCube.Slice> room : byRoom.entrySet()) {
+            Map<String, EnergyCube.Slice> byType = cube.rollUp(Dimension.TYPE, from, to, room.getKey(), null, null);
+            assertEquals(room.getValue().getKWh(), byType.values().stream().mapToDouble(EnergyCube.Slice::getKWh).sum(), 1e-9);
+            assertEquals(room.getValue().getOnMinutes(), byType.values().stream().mapToLong(EnergyCube.Slice::getOnMinutes).sum());
+        }
+        double fans = cube.rollUp(Dimension.TYPE, from, to, null, "fan", null).get("FAN").getKWh();
+        assertEquals(fans, cube.rollUp(Dimension.ROOM, from, to, "Bedroom", "FAN", null).get("Bedroom").getKWh()
+                           + cube.rollUp(Dimension.ROOM, from, to, "Hall", "FAN", null).get("Hall").getKWh(), 1e-9);
+
+        customer.invalidateGadgetIndex();
+        EnergyCube rebuilt = customer.getEnergyCube();
+        assertNotSame(cube, rebuilt);
+        Map<String, EnergyCube.Slice> again = rebuilt.rollUp(Dimension.ROOM, from, to, null, null, null);
+        for (String room : byRoom.keySet()) {
+            assertEquals(byRoom.get(room).getKWh(), again.get(room).getKWh(), 1e-3, room);
+        }
+        System.out.println("✅ Drill-down test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Running sessions count, costs add up to the bill share and ToU charges")
+    void testRunningSessionAndCost() {
+        at(START.plusHours(17));
+        Customer customer = new Customer("cost@smarthome.com", "Cost User", "Password123!");
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        Gadget tv = new Gadget("TV", "Sony", "Hall");
+        customer.addGadget(ac);
+        customer.addGadget(tv);
+        EnergyCube cube = customer.getEnergyCube();
+        ac.turnOn();
+        tv.turnOn();
+        at(START.plusHours(19));
+        tv.turnOff();
+        at(START.plusHours(20).plusMinutes(30));
+
+        Tariff tariff = Tariff.parse("tou", "50:2,*:4", 10.0, "18-22:1.5");
+        Map<String, EnergyCube.Slice> byRoom = cube.rollUp(Dimension.ROOM, START, START.plusDays(1), null, null, tariff);
+        assertEquals(1.5 * 3.5, byRoom.get("Bedroom").getKWh(), 1e-9, "The running AC counts up to now");
+        assertEquals(210, byRoom.get("Bedroom").getOnMinutes());
+        assertEquals(0.15 * 2, byRoom.get("Hall").getKWh(), 1e-9);
+        // 5.55 kWh at Rs.2 plus Rs.1.5 per kWh used from 18:00
+        double expectedCost = 5.55 * 2 + (1.5 * 2.5 + 0.15) * 1.5;
+        assertEquals(expectedCost, byRoom.values().stream().mapToDouble(EnergyCube.Slice::getCostRupees).sum(), 1e-9);
+        assertEquals(0.3 * 2 + 0.15 * 1.5, byRoom.get("Hall").getCostRupees(), 1e-9);
+
+        Map<String, EnergyCube.Slice> byHour = cube.rollUp(Dimension.HOUR_OF_DAY, START, START.plusDays(1), "Bedroom", null, tariff);
+        assertEquals(1.5, byHour.get("18").getKWh(), 1e-9);
+        assertEquals(0.75, byHour.get("20").getKWh(), 1e-9);
+        assertEquals(0.0, byHour.get("21").getKWh());
+        ac.turnOff();
+        assertEquals(1.5 * 3.5, cube.rollUp(Dimension.ROOM, START, START.plusDays(1), null, null, null).get("Bedroom").getKWh(), 1e-9,
+                     "Turning off moves the session into the cells");
+        System.out.println("✅ Running session and cost test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Ninety-day queries are answered from the cells in milliseconds")
+    void testQuerySpeed() {
+        Customer customer = simulate(3);
+        EnergyCube cube = customer.getEnergyCube();
+        LocalDateTime to = START.plusDays(11);
+        long elapsedMicros = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            cube.rollUp(Dimension.ROOM, to.minusDays(90), to, null, null, Tariff.STANDARD);
+            cube.rollUp(Dimension.HOUR_OF_DAY, to.minusDays(90), to, null, null, Tariff.STANDARD);
+            elapsedMicros = Math.min(elapsedMicros, (System.nanoTime() - start) / 1_000);
+        }
+        assertTrue(elapsedMicros < 50_000, "Took " + elapsedMicros + " µs");
+        System.out.println("✅ Query speed test passed (" + elapsedMicros + " µs for two 90-day roll-ups)");
+    }
+}
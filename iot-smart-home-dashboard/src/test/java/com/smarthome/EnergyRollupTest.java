@@ -0,0 +1,154 @@
+package com.smarthome;
+
+import com.smarthome.model.Gadget;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.EnergyHistory;
+import com.smarthome.util.EnergyHistory.Resolution;
+import com.smarthome.util.EnergyRingBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Multi-resolution energy rollup tests
+ * Tests: hourly/daily/monthly aggregates, retention per resolution,
+ * persisted rollup blocks, automatic resolution choice for long ranges
+ */
+public class EnergyRollupTest {
+
+    private static final LocalDateTime JUNE = LocalDateTime.of(2025, 6, 1, 0, 0);
+    private static final long BASE = EnergyRingBuffer.minuteOf(JUNE);
+
+    @Test
+    @DisplayName("Test 1: Minutes roll up into hour, day and month sums, busiest minutes and on-minutes")
+    void testRollups() {
+        EnergyHistory history = new EnergyHistory(120, 24 * 40, 31, 12);
+        history.record(BASE + 30, 60, 2.0);       // 00:30-01:30
+        history.record(BASE + 45, 10, 3.0);       // overlapping load 00:45-00:55
+        history.record(BASE + 1440 + 600, 5, 1.0); // next day 10:00
+        history.record(BASE + 43200, 1, 4.0);      // 1 July
+
+        double[] sums = new double[3];
+        double[] max = new double[3];
+        long[] on = new long[3];
+        history.addInto(Resolution.HOUR, Resolution.HOUR.bucketOf(BASE), sums, max, on);
+        assertArrayEquals(new double[] {90.0, 60.0, 0.0}, sums, 1e-6);
+        assertArrayEquals(new double[] {5.0, 2.0, 0.0}, max, 1e-6);
+        assertArrayEquals(new long[] {30, 30, 0}, on, "Overlapping loads count each minute once");
+
+        double[] days = new double[2];
+        history.addInto(Resolution.DAY, Resolution.DAY.bucketOf(BASE), days, new double[2], new long[2]);
+        assertArrayEquals(new double[] {150.0, 5.0}, days, 1e-6);
+
+        double[] months = new double[2];
+        long[] monthOn = new long[2];
+        history.addInto(Resolution.MONTH, Resolution.MONTH.bucketOf(BASE), months, new double[2], monthOn);
+        assertArrayEquals(new double[] {155.0, 4.0}, months, 1e-6);
+        assertArrayEquals(new long[] {65, 1}, monthOn);
+        assertEquals(JUNE.plusMonths(1), EnergyRingBuffer.timeOf(Resolution.MONTH.startMinuteOf(Resolution.MONTH.bucketOf(BASE) + 1)));
+        System.out.println("✅ Rollup aggregation test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Each resolution keeps its own retention")
+    void testRetention() {
+        EnergyHistory history = new EnergyHistory(60, 24, 31, 12);
+        history.record(BASE, 10, 1.0);
+        history.record(BASE + 3 * 1440, 10, 1.0);
+
+        assertEquals(0.0, history.getMinutes().sum(BASE, BASE + 10), "Minutes are gone after an hour");
+        double[] hour = new double[1];
+        history.addInto(Resolution.HOUR, Resolution.HOUR.bucketOf(BASE), hour, new double[1], new long[1]);
+        assertEquals(0.0, hour[0], "Hours are gone after a day");
+        double[] day = new double[1];
+        history.addInto(Resolution.DAY, Resolution.DAY.bucketOf(BASE), day, new double[1], new long[1]);
+        assertEquals(10.0, day[0], 1e-6, "Days are still retained");
+        assertEquals(24, history.getRetention(Resolution.HOUR));
+        assertEquals(2160, EnergyHistory.configuredRetention(Resolution.HOUR), "90 days of hours by default");
+        System.out.println("✅ Retention test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Rollups persist alongside the minute samples")
+    void testPersistence() {
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        assertNull(ac.getUsageRollups(), "Devices that never ran store nothing");
+        for (int day = 0; day < 60; day++) {
+            ac.getUsageHistory().record(BASE + day * 1440L + 600, 120, 25.0);
+        }
+        String rollups = ac.getUsageRollups();
+        assertTrue(rollups.length() < 2000, "Idle hours and repeating days collapse into runs: " + rollups.length());
+
+        Gadget reloaded = new Gadget();
+        reloaded.setType("AC");
+        reloaded.setUsageSamples(ac.getUsageSamples());
+        reloaded.setUsageRollups(rollups);
+        assertEquals(rollups, reloaded.getUsageRollups());
+        double[] days = new double[60];
+        reloaded.getUsageHistory().addInto(Resolution.DAY, Resolution.DAY.bucketOf(BASE), days, new double[60], new long[60]);
+        for (double wh : days) {
+            assertEquals(3000.0, wh, 1e-3);
+        }
+        Gadget corrupt = new Gadget();
+        corrupt.setUsageRollups("AQI=");
+        assertTrue(corrupt.getUsageHistory().isEmpty(), "An unreadable block is discarded");
+        System.out.println("✅ Rollup persistence test passed (" + rollups.length() + " characters)");
+    }
+
+    @Test
+    @DisplayName("Test 4: Queries pick the finest resolution that fits the range")
+    void testResolutionChoice() {
+        EnergyManagementService energyService = new EnergyManagementService();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        assertEquals(Resolution.MINUTE, energyService.chooseResolution(now.minusHours(6), now, 400, now));
+        assertEquals(Resolution.HOUR, energyService.chooseResolution(now.minusDays(7), now, 400, now));
+        assertEquals(Resolution.HOUR, energyService.chooseResolution(now.minusHours(6), now, 400, now.plusDays(3)),
+                     "Minutes older than the minute buffer are read from hours");
+        assertEquals(Resolution.DAY, energyService.chooseResolution(now.minusDays(364), now, 400, now));
+        assertEquals(Resolution.MONTH, energyService.chooseResolution(now.minusYears(5), now, 400, now));
+
+        Gadget fridge = new Gadget("REFRIGERATOR", "LG", "Kitchen");
+        LocalDateTime yearStart = now.truncatedTo(ChronoUnit.DAYS).minusDays(364);
+        for (int day = 0; day < 365; day += 7) {
+            fridge.getUsageHistory().record(EnergyRingBuffer.minuteOf(yearStart.plusDays(day)), 60, 1.0);
+        }
+        EnergyManagementService.UsageSeries year = energyService.getUsageSeries(List.of(fridge), yearStart, yearStart.plusDays(365), 400);
+        assertEquals(Resolution.DAY, year.getResolution());
+        assertEquals(365, year.getPoints().size());
+        assertEquals(0.06, year.getPoints().get(0).getEnergyKWh(), 1e-6);
+        assertEquals(0.06, year.getPoints().get(0).getPeakKW(), 1e-6, "1 Wh in a minute is 60 W");
+        assertEquals(60, year.getPoints().get(7).getOnMinutes());
+        assertEquals(0.0, year.getPoints().get(1).getEnergyKWh());
+        assertEquals(yearStart.plusDays(7), year.getPoints().get(7).getStart());
+        System.out.println("✅ Resolution choice test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: The running session is included at every resolution")
+    void testRunningSession() {
+        EnergyManagementService energyService = new EnergyManagementService();
+        LocalDateTime now = JUNE.plusDays(19).plusHours(12);
+        Gadget.setClock(Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        try {
+            Gadget tv = new Gadget("TV", "Sony", "Living Room");
+            tv.turnOn();
+            tv.setLastOnTime(now.minusMinutes(90));
+            for (Resolution resolution : Resolution.values()) {
+                LocalDateTime from = now.minusDays(40);
+                EnergyManagementService.UsageSeries series = energyService.getUsageSeries(List.of(tv), from, now.plusMinutes(1), resolution);
+                double total = series.getPoints().stream().mapToDouble(EnergyManagementService.UsagePoint::getEnergyKWh).sum();
+                long onMinutes = series.getPoints().stream().mapToLong(EnergyManagementService.UsagePoint::getOnMinutes).sum();
+                assertEquals(0.225, total, 1e-6, resolution + " total");
+                assertEquals(90, onMinutes, resolution + " on-minutes");
+            }
+        } finally {
+            Gadget.setClock(null);
+        }
+        System.out.println("✅ Running session test passed");
+    }
+}
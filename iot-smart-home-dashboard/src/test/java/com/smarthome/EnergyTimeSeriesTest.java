@@ -0,0 +1,152 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.EnergyRingBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Per-device energy time series tests
+ * Tests: ring buffer wrap-around, compact blocks, allocation-free recording,
+ * device sessions as minute samples, hourly curves and peak hours
+ */
+public class EnergyTimeSeriesTest {
+
+    private static final long BASE = EnergyRingBuffer.minuteOf(LocalDateTime.of(2025, 6, 1, 0, 0));
+
+    @Test
+    @DisplayName("Test 1: The ring buffer keeps the newest minutes and clears skipped ones")
+    void testRingBuffer() {
+        EnergyRingBuffer buffer = new EnergyRingBuffer(60);
+        buffer.add(BASE, 2.5);
+        buffer.add(BASE, 0.5);
+        buffer.add(BASE + 59, 1.0);
+        assertEquals(3.0, buffer.get(BASE), 1e-6);
+        assertEquals(4.0, buffer.sum(BASE, BASE + 60), 1e-6);
+
+        buffer.add(BASE + 60, 7.0);
+        assertEquals(0.0, buffer.get(BASE), "The oldest minute is overwritten");
+        assertEquals(8.0, buffer.sum(BASE - 100, BASE + 100), 1e-6);
+        buffer.add(BASE, 9.0);
+        assertEquals(8.0, buffer.sum(BASE - 100, BASE + 100), 1e-6, "Minutes older than the span are dropped");
+
+        buffer.add(BASE + 500, 1.0);
+        assertEquals(1.0, buffer.sum(BASE - 1000, BASE + 1000), 1e-6, "A long gap clears every slot");
+        buffer.addConstant(BASE + 400, 200, 0.25);
+        assertEquals(60, buffer.sum(BASE + 400, BASE + 600) / 0.25, 1e-3, "Only the newest 60 minutes of a long session fit");
+        assertEquals(BASE + 599, buffer.getNewestMinute());
+
+        double[] quarters = new double[4];
+        buffer.addBucketSums(BASE + 540, 15, quarters);
+        assertArrayEquals(new double[] {3.75, 3.75, 3.75, 3.75}, quarters, 1e-6);
+        System.out.println("✅ Ring buffer test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Blocks are compact and round-trip, also into a smaller buffer")
+    void testCompactBlocks() {
+        EnergyRingBuffer buffer = new EnergyRingBuffer(2880);
+        buffer.addConstant(BASE + 60, 180, 25.0);
+        buffer.addConstant(BASE + 1200, 45, 2.5);
+        buffer.add(BASE + 1300, 0.75);
+        String block = buffer.encode();
+        assertTrue(block.length() < 100, "Idle stretches and constant sessions collapse into runs: " + block.length());
+
+        EnergyRingBuffer restored = EnergyRingBuffer.decode(block, 2880);
+        assertEquals(buffer.getNewestMinute(), restored.getNewestMinute());
+        for (long minute = BASE; minute <= BASE + 1300; minute++) {
+            assertEquals(buffer.get(minute), restored.get(minute), "Minute " + (minute - BASE));
+        }
+        assertEquals(block, restored.encode());
+
+        EnergyRingBuffer smaller = EnergyRingBuffer.decode(block, 120);
+        assertEquals(BASE + 1300, smaller.getNewestMinute());
+        assertEquals(45 * 2.5 + 0.75, smaller.sum(BASE, BASE + 2000), 1e-6);
+        assertTrue(EnergyRingBuffer.decode(new EnergyRingBuffer(10).encode(), 10).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> EnergyRingBuffer.decode("AAAA", 10));
+        System.out.println("✅ Compact block test passed (" + block.length() + " characters)");
+    }
+
+    @Test
+    @DisplayName("Test 3: Recording samples does not allocate")
+    void testNoAllocationPerSample() {
+        EnergyRingBuffer buffer = new EnergyRingBuffer(10_080);
+        double[] curve = new double[168];
+        for (int i = 0; i < 20_000; i++) {
+            buffer.add(BASE + i, 1.0);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 1_000_000; i++) {
+            buffer.add(BASE + 20_000 + i, 0.5);
+        }
+        buffer.addBucketSums(buffer.getNewestMinute() - 10_079, 60, curve);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(allocated < 64 * 1024, "A million samples allocated " + allocated + " bytes");
+        assertEquals(30.0, curve[0], 1e-6);
+        System.out.println("✅ Allocation-free recording test passed (" + allocated + " bytes for 1M samples)");
+    }
+
+    @Test
+    @DisplayName("Test 4: A finished device session becomes per-minute samples that survive persistence")
+    void testDeviceSessionSamples() {
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        ac.turnOn();
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).minusMinutes(150);
+        ac.setLastOnTime(start);
+        ac.turnOff();
+        double sessionWh = ac.getTotalEnergyConsumedKWh() * 1000;
+        assertTrue(sessionWh > 0);
+
+        double[] hourly = ac.getEnergyCurveWh(start.truncatedTo(ChronoUnit.HOURS), 60, 4);
+        assertEquals(sessionWh, hourly[0] + hourly[1] + hourly[2] + hourly[3], 0.01, "Samples add up to the session energy");
+        assertEquals(ac.getPowerRatingWatts(), hourly[1], 0.01, "A full hour at rated power");
+
+        Gadget reloaded = new Gadget();
+        reloaded.setType("AC");
+        reloaded.setUsageSamples(ac.getUsageSamples());
+        assertArrayEquals(hourly, reloaded.getEnergyCurveWh(start.truncatedTo(ChronoUnit.HOURS), 60, 4), 1e-6);
+        assertNull(new Gadget("TV", "Sony", "Hall").getUsageSamples(), "Devices that never ran store nothing");
+        System.out.println("✅ Device session sample test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: Hourly curves and peak hours come from the recorded samples")
+    void testCurvesAndPeakHours() {
+        EnergyManagementService energyService = new EnergyManagementService();
+        Customer customer = new Customer("series@smarthome.com", "Series User", "Password123!");
+        Gadget tv = new Gadget("TV", "Sony", "Living Room");
+        Gadget geyser = new Gadget("GEYSER", "AO Smith", "Bathroom");
+        customer.addGadget(tv);
+        customer.addGadget(geyser);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime today = now.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime yesterday = today.minusDays(1);
+        // Yesterday: TV 20:00-22:00, geyser 07:00-07:30
+        tv.getUsageHistory().record(EnergyRingBuffer.minuteOf(yesterday.plusHours(20)), 120, 150.0 / 60);
+        geyser.getUsageHistory().record(EnergyRingBuffer.minuteOf(yesterday.plusHours(7)), 30, 2000.0 / 60);
+
+        double[] profile = energyService.getHourOfDayProfile(List.of(tv, geyser), now, 2);
+        assertEquals(0.5, profile[7], 1e-6, "1 kWh over two days is 0.5 kWh per day");
+        assertEquals(0.075, profile[20], 1e-6);
+        assertArrayEquals(new int[] {7, 20, 21}, energyService.getPeakHours(profile, 3));
+
+        double[] last48 = energyService.getHourlyEnergyCurve(customer, now, 48);
+        double total = 0;
+        for (double kWh : last48) {
+            total += kWh;
+        }
+        assertEquals(1.3, total, 1e-6);
+        assertEquals(0.15, last48[48 - 1 - (int) ChronoUnit.HOURS.between(yesterday.plusHours(20), now.truncatedTo(ChronoUnit.HOURS))], 1e-6);
+        assertEquals(0, energyService.getPeakHours(new double[24], 3).length);
+        System.out.println("✅ Curve and peak hour test passed");
+    }
+}
@@ -0,0 +1,218 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.DeletedDeviceEnergyRecord;
+import com.smarthome.model.EnergyTotals;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.EnergyManagementService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental energy totals tests
+ * Tests: totals following ON/OFF transitions and direct edits, rebuilding after
+ * the device list changes, the monthly deleted-device aggregate, month rollover,
+ * devices saved before months were tracked
+ */
+public class EnergyTotalsTest {
+
+    private static double bruteForceKWh(Customer customer) {
+        double total = 0.0;
+        for (Gadget device : customer.getGadgets()) {
+            total += device.getCurrentTotalEnergyConsumedKWh();
+        }
+        return total;
+    }
+
+    @Test
+    @DisplayName("Test 1: Totals follow ON/OFF transitions and direct edits")
+    void testTotalsFollowChanges() {
+        Gadget.setClock(Clock.fixed(Instant.parse("2025-06-10T09:30:15.250Z"), ZoneId.of("Asia/Kolkata")));
+        try {
+            checkTotalsFollowChanges();
+        } finally {
+            Gadget.setClock(null);
+        }
+        System.out.println("✅ Totals follow changes test passed");
+    }
+
+    private void checkTotalsFollowChanges() {
+        Customer customer = new Customer("totals@smarthome.com", "Totals User", "Password123!");
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        Gadget tv = new Gadget("TV", "Sony", "Hall");
+        Gadget fan = new Gadget("FAN", "Havells", "Hall");
+        customer.addGadget(ac);
+        customer.addGadget(tv);
+        customer.addGadget(fan);
+        EnergyTotals totals = customer.getEnergyTotals();
+        assertEquals(0, totals.getRunningCount());
+
+        ac.turnOn();
+        LocalDateTime clockNow = LocalDateTime.now(Gadget.getClock());
+        ac.setLastOnTime(clockNow.minusHours(2));
+        tv.turnOn();
+        tv.setLastOnTime(clockNow.minusMinutes(30).minusSeconds(20));
+        fan.setTotalEnergyConsumedKWh(1.25);
+        assertSame(totals, customer.getEnergyTotals(), "Changes are applied in place");
+        assertEquals(2, totals.getRunningCount());
+        long now = Gadget.getClock().millis();
+        assertEquals(bruteForceKWh(customer), totals.getTotalKWh(now), 1e-12);
+        assertEquals(3.0 + 0.15 * 1820 / 3600 + 1.25, totals.getTotalKWh(now), 1e-12, "Sessions count to the millisecond");
+        assertEquals(1.25, totals.getFinishedKWh(), 1e-9);
+
+        ac.turnOff();
+        assertEquals(1, totals.getRunningCount());
+        assertEquals(1.25 + ac.getTotalEnergyConsumedKWh(), totals.getFinishedKWh(), 1e-9);
+        tv.setPowerRatingWatts(300.0);
+        assertEquals(bruteForceKWh(customer), totals.getTotalKWh(now), 1e-12, "A new power rating reprices the running session");
+        tv.setStatus("OFF");
+        assertEquals(0, totals.getRunningCount());
+
+        EnergyManagementService energyService = new EnergyManagementService();
+        assertEquals(bruteForceKWh(customer), energyService.generateEnergyReport(customer).getTotalEnergyKWh(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Test 2: Totals are rebuilt when the device list changes")
+    void testRebuildOnListChange() {
+        Customer customer = new Customer("rebuild@smarthome.com", "Rebuild User", "Password123!");
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        Gadget light = new Gadget("LIGHT", "Philips", "Hall");
+        customer.addGadget(ac);
+        ac.setTotalEnergyConsumedKWh(3.0);
+        assertEquals(3.0, customer.getEnergyTotals().getFinishedKWh(), 1e-9);
+
+        customer.getGadgets().add(light);
+        light.setTotalEnergyConsumedKWh(0.5);
+        assertEquals(3.5, customer.getEnergyTotals().getFinishedKWh(), 1e-9, "A directly added device is picked up");
+
+        customer.getGadgets().remove(ac);
+        customer.invalidateGadgetIndex();
+        EnergyTotals totals = customer.getEnergyTotals();
+        assertEquals(0.5, totals.getFinishedKWh(), 1e-9);
+        ac.setTotalEnergyConsumedKWh(100.0);
+        assertEquals(0.5, customer.getEnergyTotals().getFinishedKWh(), 1e-9, "A removed device no longer counts");
+        System.out.println("✅ Rebuild on list change test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Deleted-device energy is kept per month")
+    void testDeletedDeviceAggregate() {
+        Customer customer = new Customer("deleted@smarthome.com", "Deleted User", "Password123!");
+        assertEquals(0.0, customer.getTotalDeletedDeviceEnergyForCurrentMonth());
+        Gadget geyser = new Gadget("GEYSER", "AO Smith", "Bathroom");
+        geyser.setTotalEnergyConsumedKWh(4.0);
+        customer.addDeletedDeviceRecord(new DeletedDeviceEnergyRecord(geyser));
+        assertEquals(4.0, customer.getTotalDeletedDeviceEnergyForCurrentMonth(), 1e-9);
+
+        DeletedDeviceEnergyRecord lastMonth = new DeletedDeviceEnergyRecord(geyser);
+        lastMonth.setDeletionMonth("2000-01");
+        customer.addDeletedDeviceRecord(lastMonth);
+        geyser.setTotalEnergyConsumedKWh(1.5);
+        customer.addDeletedDeviceRecord(new DeletedDeviceEnergyRecord(geyser));
+        assertEquals(5.5, customer.getTotalDeletedDeviceEnergyForCurrentMonth(), 1e-9, "Only this month's records count");
+
+        customer.getDeletedDeviceEnergyRecords().add(new DeletedDeviceEnergyRecord(geyser));
+        assertEquals(7.0, customer.getTotalDeletedDeviceEnergyForCurrentMonth(), 1e-9, "Records added directly are picked up");
+        customer.getDeletedDeviceEnergyRecords().forEach(record -> record.setDeletionMonth("2000-02"));
+        customer.setDeletedDeviceEnergyRecords(customer.getDeletedDeviceEnergyRecords());
+        assertEquals(0.0, customer.getTotalDeletedDeviceEnergyForCurrentMonth(), "Replacing the records takes a fresh snapshot");
+        System.out.println("✅ Deleted-device aggregate test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: The monthly report starts again when the month rolls over")
+    void testMonthRollover() {
+        try {
+            checkMonthRollover();
+        } finally {
+            Gadget.setClock(null);
+        }
+        System.out.println("✅ Month rollover test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: A device saved before months were tracked starts its month from the load")
+    void testLegacyDeviceStartsFromLoad() {
+        try {
+            setTime(LocalDateTime.of(2025, 6, 10, 12, 0));
+            // Loaded the way the bean mapper does it, with no energyMonth or month-start attribute
+            Gadget legacy = new Gadget();
+            legacy.setType("AC");
+            legacy.setModel("Daikin");
+            legacy.setRoomName("Bedroom");
+            legacy.setTotalEnergyConsumedKWh(900.0);
+            Gadget running = new Gadget();
+            running.setType("GEYSER");
+            running.setModel("AO Smith");
+            running.setRoomName("Bathroom");
+            running.setTotalEnergyConsumedKWh(50.0);
+            running.setStatus("ON");
+            running.setLastOnTime(LocalDateTime.of(2025, 6, 10, 11, 0));
+            Customer customer = new Customer("legacy@smarthome.com", "Legacy User", "Password123!");
+            customer.setGadgets(new ArrayList<>(List.of(legacy, running)));
+
+            assertEquals(0.0, legacy.getCurrentMonthEnergyKWh(), 1e-9, "Lifetime energy is not billed to this month");
+            assertEquals(0.0, new EnergyManagementService().generateEnergyReport(customer).getTotalEnergyKWh(), 1e-9);
+            assertEquals("2025-06", legacy.getEnergyMonth());
+            assertEquals(900.0, legacy.getMonthStartEnergyKWh(), 1e-9);
+
+            setTime(LocalDateTime.of(2025, 6, 10, 13, 0));
+            assertEquals(2.0, running.getCurrentMonthEnergyKWh(), 1e-9, "Only the hour since the load counts");
+            assertEquals(2.0, new EnergyManagementService().generateEnergyReport(customer).getTotalEnergyKWh(), 1e-9);
+            assertEquals(900.0 + 50.0 + 4.0, customer.getEnergyTotals().getTotalKWh(Gadget.getClock().millis()), 1e-9);
+        } finally {
+            Gadget.setClock(null);
+        }
+        System.out.println("✅ Legacy device month test passed");
+    }
+
+    private static void setTime(LocalDateTime time) {
+        Gadget.setClock(Clock.fixed(time.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    private void checkMonthRollover() {
+        setTime(LocalDateTime.of(2025, 5, 31, 20, 0));
+        Customer customer = new Customer("rollover@smarthome.com", "Rollover User", "Password123!");
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        Gadget fan = new Gadget("FAN", "Havells", "Hall");
+        customer.addGadget(ac);
+        customer.addGadget(fan);
+        fan.setTotalEnergyConsumedKWh(10.0);
+        ac.turnOn();
+        EnergyManagementService energyService = new EnergyManagementService();
+        setTime(LocalDateTime.of(2025, 5, 31, 22, 0));
+        assertEquals(13.0, energyService.generateEnergyReport(customer).getTotalEnergyKWh(), 1e-9);
+
+        setTime(LocalDateTime.of(2025, 6, 1, 2, 0));
+        assertEquals(3.0, energyService.generateEnergyReport(customer).getTotalEnergyKWh(), 1e-9,
+                     "Only the part of the running session after midnight counts");
+        assertEquals(10.0 + 9.0, customer.getEnergyTotals().getTotalKWh(Gadget.getClock().millis()), 1e-9, "Lifetime totals are unchanged");
+        ac.turnOff();
+        assertEquals(9.0, ac.getTotalEnergyConsumedKWh(), 1e-9);
+        assertEquals(3.0, ac.getCurrentMonthEnergyKWh(), 1e-9);
+        assertEquals("2025-06", ac.getEnergyMonth());
+        assertEquals(0.0, fan.getCurrentMonthEnergyKWh(), 1e-9);
+        assertEquals(3.0, energyService.generateEnergyReport(customer).getTotalEnergyKWh(), 1e-9);
+
+        Gadget loaded = new Gadget();
+        loaded.setType(ac.getType());
+        loaded.setTotalEnergyConsumedKWh(ac.getTotalEnergyConsumedKWh());
+        loaded.setEnergyMonth(ac.getEnergyMonth());
+        loaded.setMonthStartEnergyKWh(ac.getMonthStartEnergyKWh());
+        assertEquals(3.0, loaded.getCurrentMonthEnergyKWh(), 1e-9, "The snapshot survives a save and load");
+
+        DeletedDeviceEnergyRecord record = new DeletedDeviceEnergyRecord(ac);
+        assertEquals(3.0, record.getDeletionMonthEnergyKWh(), 1e-9);
+        record.setMonthEnergyConsumedKWh(null);
+        assertEquals(9.0, record.getDeletionMonthEnergyKWh(), 1e-9, "Older records fall back to the lifetime total");
+    }
+}
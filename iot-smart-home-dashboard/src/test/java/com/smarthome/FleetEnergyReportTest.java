@@ -0,0 +1,236 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.CustomerService;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.FleetAggregate;
+import com.smarthome.util.Tariff;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fleet energy report tests
+ * Tests: merged partials against one pass, segmented parallel reports against per-customer reports,
+ * bill bands and percentiles, a large fleet on every core, segments that fail part way
+ */
+public class FleetEnergyReportTest {
+
+    private static final String[] TYPES = {"AC", "FAN", "TV", "GEYSER", "LIGHT", "WASHING_MACHINE"};
+    private static final double[] BANDS = {500, 1000, 2000, 5000, 10000};
+
+    @AfterEach
+    void restoreClock() {
+        Gadget.setClock(null);
+    }
+
+    private static CustomerService fleet(int customers, long seed) {
+        Gadget.setClock(Clock.fixed(LocalDateTime.of(2025, 6, 15, 12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        CustomerService customerService = new CustomerService();
+        Random random = new Random(seed);
+        for (int i = 0; i < customers; i++) {
+            Customer customer = new Customer("home" + i + "@fleet.com", "Home " + i, "Password123!");
+            int devices = 1 + random.nextInt(8);
+            for (int d = 0; d < devices; d++) {
+                Gadget gadget = new Gadget(TYPES[random.nextInt(TYPES.length)], "Model" + d, "Room" + d);
+                gadget.setTotalEnergyConsumedKWh(random.nextInt(400_000) / 1000.0);
+                customer.addGadget(gadget);
+            }
+            if (random.nextInt(4) == 0) {
+                customer.getGadgets().get(0).turnOn();
+            }
+            customerService.updateCustomer(customer);
+        }
+        return customerService;
+    }
+
+    @Test
+    @DisplayName("Test 1: Partials merged in any order equal a single pass")
+    void testMergeEqualsSinglePass() {
+        Random random = new Random(50);
+        FleetAggregate single = new FleetAggregate(BANDS, 5);
+        List<FleetAggregate> parts = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            parts.add(new FleetAggregate(BANDS, 5));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            // Few distinct values, so ties have to be broken the same way whatever the split
+            double kWh = random.nextInt(50) * 20.0;
+            String type = TYPES[random.nextInt(TYPES.length)];
+            FleetAggregate part = parts.get(random.nextInt(parts.size()));
+            for (FleetAggregate aggregate : List.of(single, part)) {
+                aggregate.addCustomer("c" + i + "@fleet.com", kWh, kWh * 6, 1);
+                aggregate.addDevice(type, kWh);
+            }
+        }
+        Collections.shuffle(parts, random);
+        FleetAggregate merged = new FleetAggregate(BANDS, 5);
+        for (FleetAggregate part : parts) {
+            merged.merge(part);
+        }
+        assertEquals(single.getCustomerCount(), merged.getCustomerCount());
+        assertEquals(single.getTotalKWh(), merged.getTotalKWh(), 1e-6);
+        assertEquals(single.getTotalCostRupees(), merged.getTotalCostRupees(), 1e-6);
+        assertArrayEquals(single.getBandCounts(), merged.getBandCounts());
+        assertEquals(single.getMaxCostRupees(), merged.getMaxCostRupees());
+        assertEquals(single.getTopConsumers().stream().map(FleetAggregate.TopConsumer::getEmail).collect(Collectors.toList()),
+                     merged.getTopConsumers().stream().map(FleetAggregate.TopConsumer::getEmail).collect(Collectors.toList()));
+        assertEquals(single.getKWhByType().keySet().stream().collect(Collectors.toList()),
+                     merged.getKWhByType().keySet().stream().collect(Collectors.toList()));
+        for (String type : TYPES) {
+            assertEquals(single.getKWhByType().get(type), merged.getKWhByType().get(type), 1e-6, type);
+            assertEquals(single.getDeviceCount(type), merged.getDeviceCount(type));
+        }
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new FleetAggregate(new double[] {100}, 5)));
+        System.out.println("✅ Merge test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: A segmented parallel report matches the customers' own reports")
+    void testParallelReportMatchesCustomers() {
+        CustomerService customerService = fleet(300, 7);
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        double expectedKWh = 0.0;
+        double expectedCost = 0.0;
+        Map<String, Double> expectedByType = new HashMap<>();
+        List<EnergyManagementService.EnergyReport> reports = new ArrayList<>();
+        Map<EnergyManagementService.EnergyReport, String> emails = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            Customer customer = customerService.findCustomerByEmail("home" + i + "@fleet.com");
+            EnergyManagementService.EnergyReport report = energyService.generateEnergyReport(customer);
+            expectedKWh += report.getTotalEnergyKWh();
+            expectedCost += report.getTotalCostRupees();
+            reports.add(report);
+            emails.put(report, customer.getEmail());
+            for (Gadget device : customer.getGadgets()) {
+                expectedByType.merge(device.getType(), device.getCurrentMonthEnergyKWh(), Double::sum);
+            }
+        }
+        reports.sort((a, b) -> Double.compare(b.getTotalEnergyKWh(), a.getTotalEnergyKWh()));
+
+        EnergyManagementService.FleetReport sequential = energyService.generateFleetReport(customerService, 1, 1);
+        EnergyManagementService.FleetReport parallel = energyService.generateFleetReport(customerService, 16, 4);
+        for (EnergyManagementService.FleetReport report : List.of(sequential, parallel)) {
+            assertEquals(300, report.getCustomerCount());
+            assertEquals(0, report.getFailedSegments());
+            assertEquals(expectedKWh, report.getTotalEnergyKWh(), 1e-6);
+            assertEquals(expectedCost, report.getTotalCostRupees(), 1e-6);
+            assertEquals(10, report.getTopConsumers().size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(reports.get(i).getTotalEnergyKWh(), report.getTopConsumers().get(i).getKWh(), 1e-9);
+                assertEquals(emails.get(reports.get(i)), report.getTopConsumers().get(i).getEmail());
+            }
+            assertEquals(expectedByType.keySet(), report.getKWhByType().keySet());
+            for (Map.Entry<String, Double> type : expectedByType.entrySet()) {
+                assertEquals(type.getValue(), report.getKWhByType().get(type.getKey()), 1e-6, type.getKey());
+            }
+        }
+        assertArrayEquals(sequential.getAggregate().getBandCounts(), parallel.getAggregate().getBandCounts());
+
+        Set<String> seen = new HashSet<>();
+        for (int segment = 0; segment < 5; segment++) {
+            assertTrue(customerService.scanSegment(segment, 5, customer -> assertTrue(seen.add(customer.getEmail()))));
+        }
+        assertEquals(300, seen.size(), "Segments cover every customer exactly once");
+        assertThrows(IllegalArgumentException.class, () -> customerService.scanSegment(5, 5, customer -> { }));
+        System.out.println("✅ Parallel report test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Bills fall into bands and percentiles stay inside them")
+    void testBandsAndPercentiles() {
+        FleetAggregate aggregate = new FleetAggregate(BANDS, 3);
+        double[] bills = {100, 400, 500, 700, 900, 1500, 3000, 12000, 20000, 250};
+        for (int i = 0; i < bills.length; i++) {
+            aggregate.addCustomer("b" + i + "@fleet.com", bills[i] / 6, bills[i], 2);
+        }
+        assertArrayEquals(new long[] {4, 2, 1, 1, 0, 2}, aggregate.getBandCounts(), "A bill on an edge belongs to the lower band");
+        assertEquals(100, aggregate.getMinCostRupees());
+        assertEquals(20000, aggregate.getMaxCostRupees());
+        assertEquals(100, aggregate.getCostPercentile(0.0), 1e-9);
+        assertEquals(20000, aggregate.getCostPercentile(1.0), 1e-9);
+        double median = aggregate.getCostPercentile(0.5);
+        assertTrue(median > 500 && median <= 1000, "Median " + median);
+        assertTrue(aggregate.getCostPercentile(0.9) > 10000);
+        assertEquals(20, aggregate.getDeviceCount());
+        assertEquals(List.of("b8@fleet.com", "b7@fleet.com", "b6@fleet.com"),
+                     aggregate.getTopConsumers().stream().map(FleetAggregate.TopConsumer::getEmail).collect(Collectors.toList()));
+        FleetAggregate empty = new FleetAggregate(BANDS, 3);
+        assertEquals(0.0, empty.getCostPercentile(0.5));
+        assertEquals(0.0, empty.getMinCostRupees());
+        assertTrue(empty.merge(new FleetAggregate(BANDS, 3)).getTopConsumers().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new FleetAggregate(new double[] {10, 5}, 3));
+        System.out.println("✅ Bands and percentiles test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: A large fleet is reported on every core")
+    void testLargeFleet() {
+        int customers = 3_000;
+        CustomerService customerService = fleet(customers, 11);
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.parse("tou", Tariff.STANDARD_SLABS, 0.0, "18-22:1.5"));
+        int cores = Runtime.getRuntime().availableProcessors();
+        long sequentialMs = Long.MAX_VALUE;
+        long parallelMs = Long.MAX_VALUE;
+        EnergyManagementService.FleetReport sequential = null;
+        EnergyManagementService.FleetReport parallel = null;
+        for (int round = 0; round < 3; round++) {
+            sequential = energyService.generateFleetReport(customerService, 1, 1);
+            sequentialMs = Math.min(sequentialMs, sequential.getElapsedMillis());
+            parallel = energyService.generateFleetReport(customerService, 4 * cores, cores);
+            parallelMs = Math.min(parallelMs, parallel.getElapsedMillis());
+        }
+        assertEquals(customers, parallel.getCustomerCount());
+        assertEquals(sequential.getTotalEnergyKWh(), parallel.getTotalEnergyKWh(), 1e-6 * sequential.getTotalEnergyKWh());
+        assertEquals(sequential.getTotalCostRupees(), parallel.getTotalCostRupees(), 1e-6 * sequential.getTotalCostRupees());
+        assertTrue(parallelMs < 10_000, "Took " + parallelMs + " ms");
+        energyService.displayFleetReport(parallel);
+        System.out.println("✅ Large fleet test passed (" + customers + " customers: " + sequentialMs + " ms on one worker, "
+                           + parallelMs + " ms on " + cores + ")");
+    }
+
+    @Test
+    @DisplayName("Test 5: A segment that fails part way is left out whole")
+    void testFailedSegmentIsDropped() {
+        CustomerService customerService = fleet(200, 13);
+        Customer broken = new Customer("broken@fleet.com", "Broken Home", "Password123!");
+        broken.getGadgets().add(null);
+        customerService.updateCustomer(broken);
+        int brokenSegment = Math.floorMod(broken.getEmail().hashCode(), 5);
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        double expectedKWh = 0.0;
+        long expectedCustomers = 0;
+        for (int i = 0; i < 200; i++) {
+            Customer customer = customerService.findCustomerByEmail("home" + i + "@fleet.com");
+            if (Math.floorMod(customer.getEmail().hashCode(), 5) != brokenSegment) {
+                expectedKWh += energyService.generateEnergyReport(customer).getTotalEnergyKWh();
+                expectedCustomers++;
+            }
+        }
+        assertTrue(expectedCustomers < 200, "The broken home shares its segment with others");
+
+        EnergyManagementService.FleetReport report = energyService.generateFleetReport(customerService, 5, 2);
+        assertEquals(1, report.getFailedSegments());
+        assertEquals(expectedCustomers, report.getCustomerCount(), "Customers read before the failure are not counted");
+        assertEquals(expectedKWh, report.getTotalEnergyKWh(), 1e-6);
+        EnergyManagementService.FleetReport single = energyService.generateFleetReport(customerService, 1, 1);
+        assertEquals(1, single.getFailedSegments());
+        assertEquals(0, single.getCustomerCount());
+        assertTrue(single.getTopConsumers().isEmpty());
+        System.out.println("✅ Failed segment test passed");
+    }
+}
@@ -0,0 +1,167 @@
+package com.smarthome;
+
+import com.smarthome.model.Gadget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Integer energy accounting tests
+ * Tests: sub-minute sessions, exact totals over many toggles,
+ * persisted values round-tripping, allocation-free running-session reads
+ */
+public class GadgetEnergyAccountingTest {
+
+    // A clock the test moves by hand
+    private static final class ManualClock extends Clock {
+        private final ZoneId zone;
+        private long millis;
+        ManualClock(long millis, ZoneId zone) {
+            this.millis = millis;
+            this.zone = zone;
+        }
+        void advance(long delta) {
+            millis += delta;
+        }
+        @Override
+        public long millis() {
+            return millis;
+        }
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+        @Override
+        public Clock withZone(ZoneId newZone) {
+            return new ManualClock(millis, newZone);
+        }
+    }
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 10, 0);
+
+    private ManualClock installClock() {
+        ManualClock clock = new ManualClock(START.toInstant(ZoneOffset.UTC).toEpochMilli(), ZoneOffset.UTC);
+        Gadget.setClock(clock);
+        return clock;
+    }
+
+    @AfterEach
+    void restoreClock() {
+        Gadget.setClock(null);
+    }
+
+    @Test
+    @DisplayName("Test 1: Sessions shorter than a minute are counted")
+    void testSubMinuteSessions() {
+        ManualClock clock = installClock();
+        Gadget heater = new Gadget("HEATER", "Bajaj", "Bedroom");
+        heater.setPowerRatingWatts(1000.0);
+        clock.advance(10_000);
+        for (int i = 0; i < 10; i++) {
+            heater.turnOn();
+            clock.advance(20_000);
+            heater.turnOff();
+            clock.advance(5_000);
+        }
+        // 10 x 20 s at 1000 W
+        assertEquals(200_000_000L, heater.getTotalEnergyMilliwattSeconds());
+        assertEquals(200.0 / 3600, heater.getTotalEnergyConsumedKWh(), 1e-15);
+        assertEquals(200_000L, heater.getTotalUsageMillis());
+        assertEquals(3, heater.getTotalUsageMinutes());
+
+        double[] minutes = heater.getEnergyCurveWh(START, 1, 5);
+        double recorded = 0.0;
+        for (double wattHours : minutes) {
+            recorded += wattHours;
+        }
+        assertEquals(200.0 * 1000 / 3600, recorded, 1e-3, "Partial minutes are recorded in the history");
+        assertEquals(1000.0 * 40 / 3600, minutes[0], 1e-3, "Minute 0 holds two whole 20 s sessions");
+
+        heater.turnOn();
+        clock.advance(1_500);
+        assertEquals(1_500L, heater.getCurrentSessionMillis());
+        assertEquals(1_500_000L, heater.getCurrentSessionMilliwattSeconds());
+        assertEquals((200_000_000L + 1_500_000L) / 3.6e9, heater.getCurrentTotalEnergyConsumedKWh(), 1e-15);
+        System.out.println("✅ Sub-minute sessions test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Totals stay exact over many toggles and survive persistence")
+    void testNoDrift() {
+        ManualClock clock = installClock();
+        Gadget lamp = new Gadget("LIGHT", "Philips", "Hall");
+        lamp.setPowerRatingWatts(60.0);
+        double naiveKWh = 0.0;
+        for (int i = 0; i < 100_000; i++) {
+            lamp.turnOn();
+            clock.advance(1_500);
+            lamp.turnOff();
+            clock.advance(500);
+            naiveKWh += 60.0 / 1000.0 * (1_500 / 3_600_000.0);
+        }
+        assertEquals(9_000_000_000L, lamp.getTotalEnergyMilliwattSeconds());
+        assertEquals(2.5, lamp.getTotalEnergyConsumedKWh(), 0.0);
+        assertEquals(2_500, lamp.getTotalUsageMinutes());
+        System.out.println("   Summing kWh per session drifts by " + Math.abs(naiveKWh - 2.5) + " kWh");
+
+        // Persisted attributes are the derived kWh and minutes
+        Gadget reloaded = new Gadget("LIGHT", "Philips", "Hall");
+        reloaded.setTotalEnergyConsumedKWh(lamp.getTotalEnergyConsumedKWh());
+        reloaded.setTotalUsageMinutes(lamp.getTotalUsageMinutes());
+        assertEquals(lamp.getTotalEnergyMilliwattSeconds(), reloaded.getTotalEnergyMilliwattSeconds());
+        Gadget odd = new Gadget("FAN", "Havells", "Hall");
+        odd.setTotalEnergyConsumedKWh(1234.567891);
+        long stored = odd.getTotalEnergyMilliwattSeconds();
+        odd.setTotalEnergyConsumedKWh(odd.getTotalEnergyConsumedKWh());
+        assertEquals(stored, odd.getTotalEnergyMilliwattSeconds());
+
+        lamp.turnOn();
+        LocalDateTime onAt = LocalDateTime.ofInstant(clock.instant(), ZoneOffset.UTC);
+        assertEquals(onAt, lamp.getLastOnTime());
+        assertEquals(clock.millis(), lamp.getLastOnEpochMillis());
+        lamp.setLastOnTime(onAt.minusHours(1));
+        assertEquals(3_600_000L, lamp.getCurrentSessionMillis());
+        System.out.println("✅ No drift test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Reading a running session allocates nothing")
+    void testAllocationFreeReads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        ManualClock clock = installClock();
+        Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+        ac.turnOn();
+        long threadId = Thread.currentThread().getId();
+        double sink = 0.0;
+        long allocated = 0;
+        for (int round = 0; round < 3; round++) {
+            long before = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                clock.advance(1);
+                sink += ac.getCurrentTotalEnergyConsumedKWh() + ac.getCurrentSessionUsageHours()
+                        + ac.getCurrentTotalUsageMinutes() + (ac.hasRunningSession() ? 1 : 0)
+                        + ac.getCurrentMonthEnergyKWh();
+            }
+            allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+        }
+        assertTrue(sink > 0);
+        assertTrue(allocated < 64 * 1024, "Allocated " + allocated + " bytes for 100,000 reads");
+        System.out.println("✅ Allocation-free reads test passed (" + allocated + " bytes)");
+    }
+}
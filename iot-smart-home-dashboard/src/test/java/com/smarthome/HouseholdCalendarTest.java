@@ -0,0 +1,139 @@
+package com.smarthome;
+
+import com.smarthome.service.CalendarEventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Household calendar tests
+ * Tests: k-way merge order, limits, conflicting device automations across members,
+ * overlapping events whose actions run at different times, members with more than ten early events
+ */
+public class HouseholdCalendarTest {
+
+    private CalendarEventService calendarService;
+    private String alice;
+    private String bob;
+    private String carol;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        calendarService = CalendarEventService.getInstance();
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        alice = "alice_" + suffix + "@smarthome.com";
+        bob = "bob_" + suffix + "@smarthome.com";
+        carol = "carol_" + suffix + "@smarthome.com";
+        base = LocalDateTime.now().withSecond(0).withNano(0).plusDays(5).withHour(8).withMinute(0);
+    }
+
+    @Test
+    @DisplayName("Test 1: Member streams are merged in start order with ties kept in member order")
+    void testMergeOrder() {
+        calendarService.createEvent(alice, "A1", "", base, base.plusMinutes(30), "Custom");
+        calendarService.createEvent(alice, "A2", "", base.plusHours(3), base.plusHours(4), "Custom");
+        calendarService.createEvent(bob, "B1", "", base.plusHours(1), base.plusHours(2), "Custom");
+        calendarService.createEvent(bob, "B2", "", base.plusHours(3), base.plusHours(4), "Custom");
+        calendarService.createEvent(carol, "C1", "", base.plusMinutes(30), base.plusHours(1), "Custom");
+
+        CalendarEventService.HouseholdCalendar calendar = calendarService.getHouseholdCalendar(List.of(alice, bob, carol), 20);
+        List<CalendarEventService.HouseholdEvent> events = calendar.getEvents();
+        assertEquals(5, events.size());
+        String[] expected = {"A1", "C1", "B1", "A2", "B2"};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], events.get(i).getEvent().getTitle());
+        }
+        assertEquals(carol, events.get(1).getOwnerEmail());
+        assertTrue(calendar.getConflicts().isEmpty(), "Custom events have no automations to conflict");
+
+        assertEquals(2, calendarService.getHouseholdCalendar(List.of(alice, bob, carol), 2).getEvents().size());
+        assertTrue(calendarService.getHouseholdCalendar(List.of("nobody_" + UUID.randomUUID() + "@smarthome.com"), 20)
+                                  .getEvents().isEmpty());
+        System.out.println("✅ Merge order test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Opposite ON/OFF actions on the same device in the same minute are conflicts")
+    void testConflictDetection() {
+        LocalDateTime evening = base.withHour(20);
+        calendarService.createEvent(alice, "Movie night", "", evening, evening.plusHours(2), "Movie");
+        calendarService.createEvent(bob, "Back home", "", evening, evening.plusMinutes(30), "Arrival");
+        calendarService.createEvent(carol, "Also home", "", evening, evening.plusMinutes(30), "Arrival");
+
+        CalendarEventService.HouseholdCalendar calendar = calendarService.getHouseholdCalendar(List.of(alice, bob, carol), 20);
+        assertEquals(2, calendar.getConflicts().size(), "Only the living room light is switched both ways, once per arrival");
+        assertEquals(carol, calendar.getConflicts().get(1).getSecond().getOwnerEmail());
+        CalendarEventService.AutomationConflict conflict = calendar.getConflicts().get(0);
+        assertEquals("LIGHT", conflict.getDeviceType());
+        assertEquals("Living Room", conflict.getRoomName());
+        assertEquals("Movie night", conflict.getFirst().getEvent().getTitle());
+        assertEquals("OFF", conflict.getFirstAction().getAction());
+        assertEquals(bob, conflict.getSecond().getOwnerEmail());
+        assertEquals("ON", conflict.getSecondAction().getAction());
+        System.out.println("✅ Conflict detection test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Events that do not overlap never conflict")
+    void testNoConflictAfterEventEnds() {
+        LocalDateTime evening = base.withHour(20);
+        calendarService.createEvent(alice, "Early movie", "", evening, evening.plusHours(2), "Movie");
+        calendarService.createEvent(bob, "Late arrival", "", evening.plusHours(3), evening.plusHours(3).plusMinutes(10), "Arrival");
+        calendarService.createEvent(carol, "Work call", "", evening.plusHours(1), evening.plusHours(2), "Meeting");
+
+        CalendarEventService.HouseholdCalendar calendar = calendarService.getHouseholdCalendar(List.of(alice, bob, carol), 20);
+        assertEquals(3, calendar.getEvents().size());
+        assertTrue(calendar.getConflicts().isEmpty(), "Different rooms or non-overlapping times must not conflict");
+        System.out.println("✅ Non-overlapping events test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Overlapping events whose actions run at different times do not conflict")
+    void testOverlapWithoutSharedActionTime() {
+        LocalDateTime evening = base.withHour(20);
+        // The movie switches the light off at 20:00 and the arrival switches it on at 21:00
+        calendarService.createEvent(alice, "Movie night", "", evening, evening.plusHours(2), "Movie");
+        calendarService.createEvent(bob, "Back home", "", evening.plusHours(1), evening.plusHours(1).plusMinutes(30), "Arrival");
+
+        CalendarEventService.HouseholdCalendar calendar = calendarService.getHouseholdCalendar(List.of(alice, bob), 20);
+        assertEquals(2, calendar.getEvents().size());
+        assertTrue(calendar.getConflicts().isEmpty(), "Actions a minute or more apart run one after the other");
+
+        calendarService.createEvent(carol, "Heading out", "", evening.plusHours(1), evening.plusHours(1).plusMinutes(5), "Departure");
+        calendar = calendarService.getHouseholdCalendar(List.of(alice, bob, carol), 20);
+        assertEquals(1, calendar.getConflicts().size(), "Arrival and departure switch the light both ways at 21:00");
+        assertEquals("LIGHT", calendar.getConflicts().get(0).getDeviceType());
+        System.out.println("✅ Action time test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: A member with more than ten early events keeps all of them in the merge")
+    void testBusyMemberIsNotCutAtTen() {
+        calendarService.createEvent(alice, "Gym", "", base.minusHours(1), base.minusMinutes(30), "Custom", "FREQ=DAILY;COUNT=3");
+        for (int hour = 0; hour < 12; hour++) {
+            calendarService.createEvent(alice, "Task " + hour, "", base.plusHours(hour), base.plusHours(hour).plusMinutes(30), "Custom");
+        }
+        LocalDateTime evening = base.withHour(20);
+        calendarService.createEvent(alice, "Movie night", "", evening, evening.plusHours(2), "Movie");
+        calendarService.createEvent(bob, "Back home", "", evening, evening.plusMinutes(30), "Arrival");
+
+        CalendarEventService.HouseholdCalendar calendar = calendarService.getHouseholdCalendar(List.of(alice, bob), 20);
+        List<CalendarEventService.HouseholdEvent> events = calendar.getEvents();
+        assertEquals(17, events.size(), "Three gym sessions, twelve tasks, the movie and the arrival");
+        assertEquals("Gym", events.get(0).getEvent().getTitle());
+        assertEquals("Movie night", events.get(13).getEvent().getTitle());
+        assertEquals(bob, events.get(14).getOwnerEmail());
+        for (int i = 1; i < events.size(); i++) {
+            assertFalse(events.get(i).getEvent().getStartTime().isBefore(events.get(i - 1).getEvent().getStartTime()));
+        }
+        assertEquals(1, calendar.getConflicts().size(), "The movie's 13th event still meets the arrival");
+        assertEquals(10, calendarService.getUpcomingEvents(alice).size(), "A member's own list keeps its limit");
+        assertEquals(5, calendarService.getHouseholdCalendar(List.of(alice, bob), 5).getEvents().size());
+        System.out.println("✅ Busy member test passed");
+    }
+}
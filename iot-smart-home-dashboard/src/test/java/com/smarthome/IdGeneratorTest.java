@@ -0,0 +1,140 @@
+package com.smarthome;
+
+import com.smarthome.service.AlertService;
+import com.smarthome.service.CalendarEventService;
+import com.smarthome.util.IdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered id generator tests
+ * Tests: parallel uniqueness, time ordering and clock steps, base-32 round trip,
+ * service ids for alerts and events
+ */
+public class IdGeneratorTest {
+
+    @Test
+    @DisplayName("Test 1: Ids stay unique when created from many threads at once")
+    void testParallelUniqueness() throws InterruptedException {
+        IdGenerator generator = new IdGenerator(7, System::currentTimeMillis);
+        int threads = 8;
+        int perThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long previous = -1;
+                for (int i = 0; i < perThread; i++) {
+                    long id = generator.nextId();
+                    assertTrue(id > previous, "Ids from one thread are increasing");
+                    previous = id;
+                    ids.add(id);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * perThread, ids.size());
+        assertTrue(ids.stream().allMatch(id -> IdGenerator.nodeIdOf(id) == 7));
+        System.out.println("✅ Parallel uniqueness test passed (" + ids.size() + " ids)");
+    }
+
+    @Test
+    @DisplayName("Test 2: Ids follow the clock, survive it stepping back and roll over a full millisecond")
+    void testTimeOrdering() {
+        AtomicLong clock = new AtomicLong(IdGenerator.EPOCH_MILLIS + 5_000);
+        IdGenerator generator = new IdGenerator(1, clock::get);
+        long first = generator.nextId();
+        assertEquals(Instant.ofEpochMilli(IdGenerator.EPOCH_MILLIS + 5_000), IdGenerator.timestampOf(first));
+
+        long previous = first;
+        for (int i = 0; i < 5_000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertTrue(IdGenerator.timestampOf(previous).toEpochMilli() > IdGenerator.EPOCH_MILLIS + 5_000,
+                   "More than 4096 ids in one millisecond borrow the next one");
+
+        clock.addAndGet(-60_000);
+        long afterStepBack = generator.nextId();
+        assertTrue(afterStepBack > previous, "A clock stepping back never produces an older id");
+        clock.addAndGet(120_000);
+        long later = generator.nextId();
+        assertEquals(Instant.ofEpochMilli(IdGenerator.EPOCH_MILLIS + 65_000), IdGenerator.timestampOf(later));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024, clock::get));
+        System.out.println("✅ Time ordering test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: The base-32 form is fixed width, sorts like the number and round-trips")
+    void testBase32Encoding() {
+        IdGenerator generator = new IdGenerator(3, System::currentTimeMillis);
+        String previous = "";
+        for (int i = 0; i < 1_000; i++) {
+            long id = generator.nextId();
+            String encoded = IdGenerator.encode(id);
+            assertEquals(13, encoded.length());
+            assertTrue(encoded.compareTo(previous) > 0, "String order matches creation order");
+            assertEquals(id, IdGenerator.decode(encoded));
+            assertEquals(id, IdGenerator.decode(encoded.toLowerCase()));
+            assertEquals(id, IdGenerator.parse("ALERT_" + encoded));
+            previous = encoded;
+        }
+        assertEquals("0000000000000", IdGenerator.encode(0));
+        assertEquals("7ZZZZZZZZZZZZ", IdGenerator.encode(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, IdGenerator.decode("7ZZZZZZZZZZZZ"));
+        assertEquals(IdGenerator.decode("0000000000001"), IdGenerator.decode("O00000000000I"));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decode("8000000000000"));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.decode("000000000000U"));
+        assertEquals(-1, IdGenerator.parse("ALERT_1700000000000_5"));
+        System.out.println("✅ Base-32 encoding test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Alerts and events created together get distinct, ordered ids")
+    void testServiceIds() {
+        String userEmail = "ids_" + UUID.randomUUID() + "@smarthome.com";
+        AlertService alertService = AlertService.getInstance();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(alertService.createEnergyUsageAlert(userEmail, "Watch " + i, "TV", "Hall", 100.0 + i, "GREATER_THAN", "x"));
+        }
+        List<String> alertIds = alertService.getUserAlerts(userEmail).stream().map(AlertService.Alert::getAlertId).toList();
+        assertEquals(50, new HashSet<>(alertIds).size());
+        for (int i = 1; i < alertIds.size(); i++) {
+            assertTrue(IdGenerator.parse(alertIds.get(i)) > IdGenerator.parse(alertIds.get(i - 1)));
+        }
+
+        CalendarEventService calendar = CalendarEventService.getInstance();
+        LocalDateTime start = LocalDateTime.now().plusDays(30).withSecond(0).withNano(0);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(calendar.createEvent(userEmail, "Same minute " + i, "", start, start.plusMinutes(30), "CUSTOM"));
+        }
+        Set<String> eventIds = new HashSet<>();
+        calendar.getActiveEvents(userEmail, start.plusMinutes(5)).forEach(event -> eventIds.add(event.getEventId()));
+        assertEquals(20, eventIds.size(), "Events by one user in the same minute no longer collide");
+        assertTrue(eventIds.stream().allMatch(id -> id.startsWith("EVT_") && IdGenerator.parse(id) > 0));
+        System.out.println("✅ Service id test passed");
+    }
+}
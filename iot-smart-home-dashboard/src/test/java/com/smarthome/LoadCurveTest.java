@@ -0,0 +1,219 @@
+package com.smarthome;
+
+import com.smarthome.model.Gadget;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.EnergyHistory;
+import com.smarthome.util.LoadCurve;
+import com.smarthome.util.SessionLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load curve and peak demand tests
+ * Tests: sweep against a brute-force load, touching sessions, peak contributors,
+ * persisted session logs, months of history for a household, bounded persisted history
+ */
+public class LoadCurveTest {
+
+    private static final long DAY = 86_400_000L;
+
+    @Test
+    @DisplayName("Test 1: The sweep matches a brute-force load at every instant")
+    void testSweepMatchesBruteForce() {
+        Random random = new Random(47);
+        int sessions = 2_000;
+        long[] starts = new long[sessions];
+        long[] ends = new long[sessions];
+        double[] watts = new double[sessions];
+        LoadCurve.Builder builder = new LoadCurve.Builder(0, 10 * DAY, 8);
+        double expectedKWh = 0.0;
+        for (int i = 0; i < sessions; i++) {
+            starts[i] = random.nextInt((int) (10 * DAY / 60_000)) * 60_000L;
+            ends[i] = starts[i] + 60_000L * (1 + random.nextInt(240));
+            watts[i] = 10 + random.nextInt(2000);
+            builder.add(i % 8, starts[i], ends[i], watts[i]);
+            expectedKWh += watts[i] * (Math.min(ends[i], 10 * DAY) - starts[i]) / 3.6e9;
+        }
+        LoadCurve curve = builder.build();
+        double bruteForcePeak = 0.0;
+        for (int step = 0; step < curve.getStepCount(); step++) {
+            long time = curve.getTime(step);
+            double load = 0.0;
+            for (int i = 0; i < sessions; i++) {
+                if (starts[i] <= time && time < ends[i]) {
+                    load += watts[i];
+                }
+            }
+            assertEquals(load / 1000, curve.getLoadKW(step), 1e-9, "Load at " + time);
+            bruteForcePeak = Math.max(bruteForcePeak, load / 1000);
+        }
+        assertEquals(bruteForcePeak, curve.getPeakKW(), 1e-9);
+        assertEquals(curve.getPeakKW(), curve.loadKWAt(curve.getPeakStart()), 1e-9);
+        assertTrue(curve.loadKWAt(curve.getPeakEnd()) < curve.getPeakKW());
+        double contributed = 0.0;
+        for (int owner = 0; owner < 8; owner++) {
+            contributed += curve.getPeakWatts(owner);
+        }
+        assertEquals(curve.getPeakKW() * 1000, contributed, 1e-6, "Contributions add up to the peak");
+        assertEquals(expectedKWh, curve.getEnergyKWh(), 1e-6);
+        System.out.println("✅ Sweep test passed (" + curve.getStepCount() + " steps)");
+    }
+
+    @Test
+    @DisplayName("Test 2: Back-to-back sessions do not overlap and windows clip sessions")
+    void testTouchingAndClipping() {
+        LoadCurve curve = new LoadCurve.Builder(0, 10_000, 3)
+                .add(0, 1_000, 3_000, 1000)
+                .add(1, 3_000, 5_000, 1500)   // starts as the first stops
+                .add(2, 4_000, 20_000, 200)   // runs past the window
+                .add(0, -5_000, 500, 800)     // started before it
+                .build();
+        assertEquals(1.7, curve.getPeakKW(), 1e-12);
+        assertEquals(4_000, curve.getPeakStart());
+        assertEquals(5_000, curve.getPeakEnd());
+        assertEquals(0.0, curve.getPeakWatts(0));
+        assertEquals(1500.0, curve.getPeakWatts(1), 1e-12);
+        assertEquals(200.0, curve.getPeakWatts(2), 1e-12);
+        assertEquals(0.8, curve.loadKWAt(0), 1e-12);
+        assertEquals(0.0, curve.loadKWAt(700), 1e-12);
+        assertEquals(0.2, curve.loadKWAt(9_999), 1e-12);
+        double[] highest = curve.maxLoadKW(0, 2_500, 4);
+        assertArrayEquals(new double[] {1.0, 1.7, 0.2, 0.2}, highest, 1e-12);
+        assertEquals(0.0, new LoadCurve.Builder(0, 1_000, 1).build().getPeakKW());
+        System.out.println("✅ Touching sessions test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Peak demand is found from device sessions, including running ones")
+    void testPeakDemandFromDevices() {
+        LocalDateTime now = LocalDateTime.of(2025, 7, 1, 20, 0);
+        Gadget.setClock(Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        try {
+            Gadget ac = new Gadget("AC", "Daikin", "Bedroom");
+            Gadget geyser = new Gadget("GEYSER", "AO Smith", "Bathroom");
+            Gadget tv = new Gadget("TV", "Sony", "Hall");
+            ac.turnOn();
+            ac.setLastOnTime(now.minusHours(3));
+            ac.turnOff();
+            geyser.turnOn();
+            geyser.setLastOnTime(now.minusHours(2).minusMinutes(30));
+            geyser.turnOff();
+            tv.turnOn();
+            tv.setLastOnTime(now.minusHours(2));
+
+            EnergyManagementService energyService = new EnergyManagementService();
+            EnergyManagementService.PeakDemand peak = energyService.analyzePeakDemand(List.of(ac, geyser, tv), now.minusDays(1), now);
+            double expected = (ac.getPowerRatingWatts() + geyser.getPowerRatingWatts() + tv.getPowerRatingWatts()) / 1000;
+            assertEquals(expected, peak.getPeakKW(), 1e-9);
+            assertEquals(now.minusHours(2), peak.getPeakStart());
+            assertEquals(now, peak.getPeakEnd());
+            assertEquals(3, peak.getContributors().size());
+            assertSame(geyser.getPowerRatingWatts() >= ac.getPowerRatingWatts() ? geyser : ac, peak.getContributors().get(0).getDevice());
+            assertEquals(100.0, peak.getContributors().stream().mapToDouble(c -> c.getSharePercent()).sum(), 1e-9);
+
+            Gadget reloaded = new Gadget("AC", "Daikin", "Bedroom");
+            reloaded.setUsageSessions(ac.getUsageSessions());
+            assertEquals(ac.getUsageSessions(), reloaded.getUsageSessions());
+            assertEquals(ac.getPowerRatingWatts() / 1000,
+                         energyService.analyzePeakDemand(List.of(reloaded), now.minusDays(1), now).getPeakKW(), 1e-9);
+        } finally {
+            Gadget.setClock(null);
+        }
+        SessionLog small = new SessionLog(2);
+        small.add(0, 10, 100);
+        small.add(20, 30, 200);
+        small.add(40, 50, 300);
+        assertEquals(2, small.size(), "The oldest session is dropped");
+        LoadCurve curve = new LoadCurve.Builder(0, 100, 1).add(0, 0, 0, 0).build();
+        assertEquals(0.0, curve.getPeakKW());
+        LoadCurve.Builder builder = new LoadCurve.Builder(0, 100, 1);
+        SessionLog.decode(small.encode(), 4).addTo(builder, 0);
+        assertEquals(0.3, builder.build().getPeakKW(), 1e-12);
+        System.out.println("✅ Peak demand test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Six months of household history is analysed in well under a second")
+    void testMonthsOfHistory() {
+        Random random = new Random(7);
+        int devices = 20;
+        long from = LocalDateTime.of(2025, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long to = from + 180 * DAY;
+        SessionLog[] logs = new SessionLog[devices];
+        int total = 0;
+        for (int device = 0; device < devices; device++) {
+            logs[device] = new SessionLog(SessionLog.configuredCapacity());
+            long time = from;
+            while (time < to && logs[device].size() < logs[device].getCapacity()) {
+                time += 60_000L * random.nextInt(60);
+                long end = time + 60_000L + random.nextInt(3_600_000);
+                logs[device].add(time, end, 50 + random.nextInt(2000));
+                time = end;
+                total++;
+            }
+        }
+        long elapsedMs = Long.MAX_VALUE;
+        LoadCurve curve = null;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            LoadCurve.Builder builder = new LoadCurve.Builder(from, to, devices);
+            for (int device = 0; device < devices; device++) {
+                logs[device].addTo(builder, device);
+            }
+            curve = builder.build();
+            elapsedMs = Math.min(elapsedMs, (System.nanoTime() - start) / 1_000_000);
+        }
+        assertTrue(curve.getPeakKW() > 0);
+        assertTrue(elapsedMs < 1_000, "Took " + elapsedMs + " ms");
+        System.out.println("✅ Months of history test passed (" + total + " sessions in " + elapsedMs + " ms)");
+    }
+
+    @Test
+    @DisplayName("Test 5: Half a year of compressor cycling persists within the per-device budget")
+    void testPersistedHistoryIsBounded() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime end = start.plusDays(180);
+        Gadget fridge = new Gadget("REFRIGERATOR", "LG", "Kitchen");
+        try {
+            for (LocalDateTime time = start; time.isBefore(end); time = time.plusMinutes(45)) {
+                Gadget.setClock(Clock.fixed(time.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+                fridge.turnOn();
+                Gadget.setClock(Clock.fixed(time.plusMinutes(20).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+                fridge.turnOff();
+            }
+            String samples = fridge.getUsageSamples();
+            String rollups = fridge.getUsageRollups();
+            String sessions = fridge.getUsageSessions();
+            assertTrue(samples.length() <= 4096, "Samples: " + samples.length());
+            assertTrue(rollups.length() <= 8192, "Rollups: " + rollups.length());
+            assertTrue(sessions.length() <= 4096, "Sessions: " + sessions.length());
+            int persisted = samples.length() + rollups.length() + sessions.length();
+            assertTrue(persisted * 24 < 400 * 1024, "Two dozen such devices fit in one customer item: " + persisted);
+
+            Gadget reloaded = new Gadget();
+            reloaded.setType("REFRIGERATOR");
+            reloaded.setUsageSamples(samples);
+            reloaded.setUsageRollups(rollups);
+            reloaded.setUsageSessions(sessions);
+            assertEquals(sessions, reloaded.getUsageSessions(), "A trimmed log re-encodes unchanged");
+            assertTrue(reloaded.getSessionLog().size() > 0);
+
+            long lastDay = EnergyHistory.Resolution.DAY.bucketOf(end.minusMinutes(1).toEpochSecond(ZoneOffset.UTC) / 60);
+            double[] expected = new double[7];
+            double[] actual = new double[7];
+            fridge.getUsageHistory().addInto(EnergyHistory.Resolution.DAY, lastDay - 6, expected, new double[7], new long[7]);
+            reloaded.getUsageHistory().addInto(EnergyHistory.Resolution.DAY, lastDay - 6, actual, new double[7], new long[7]);
+            assertTrue(expected[6] > 0);
+            assertArrayEquals(expected, actual, 1e-6, "The newest week survives the trim");
+        } finally {
+            Gadget.setClock(null);
+        }
+        System.out.println("✅ Bounded persisted history test passed");
+    }
+}
@@ -0,0 +1,209 @@
+package com.smarthome;
+
+import com.smarthome.model.Customer;
+import com.smarthome.model.Gadget;
+import com.smarthome.service.CustomerService;
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.service.TimerService;
+import com.smarthome.util.LoadShiftOptimizer;
+import com.smarthome.util.Tariff;
+import com.smarthome.util.TariffRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Off-peak load-shifting tests
+ * Tests: cheapest windows against exhaustive search, the household cap and repair,
+ * plans from time-of-use tariffs emitted as timers, a full day of slots,
+ * plans made mid-minute under a flat tariff
+ */
+public class LoadShiftOptimizerTest {
+
+    private static double[] rates(int slots, double slotHours, double peakRate, double nightRate) {
+        double[] rates = new double[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            int hour = (int) (slot * slotHours) % 24;
+            rates[slot] = hour >= 18 && hour < 22 ? peakRate : (hour >= 22 || hour < 6 ? nightRate : 0.0);
+        }
+        return rates;
+    }
+
+    private static double bestByExhaustiveSearch(LoadShiftOptimizer optimizer, double cap,
+                                                 double[] kW, int[] slots, int[] deadline, int run, double[] load) {
+        if (run == kW.length) {
+            return 0.0;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int start = 0; start + slots[run] <= deadline[run]; start++) {
+            boolean fits = true;
+            for (int slot = start; slot < start + slots[run]; slot++) {
+                fits &= load[slot] + kW[run] <= cap + 1e-9;
+            }
+            if (!fits) {
+                continue;
+            }
+            for (int slot = start; slot < start + slots[run]; slot++) {
+                load[slot] += kW[run];
+            }
+            double rest = bestByExhaustiveSearch(optimizer, cap, kW, slots, deadline, run + 1, load);
+            best = Math.min(best, optimizer.runCost(kW[run], start, slots[run]) + rest);
+            for (int slot = start; slot < start + slots[run]; slot++) {
+                load[slot] -= kW[run];
+            }
+        }
+        return best;
+    }
+
+    @Test
+    @DisplayName("Test 1: Runs land in the cheapest windows and match an exhaustive search")
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(48);
+        for (int trial = 0; trial < 40; trial++) {
+            int slots = 24;
+            double[] rates = rates(slots, 1.0, 1.5, -1.0);
+            double[] base = new double[slots];
+            for (int slot = 0; slot < slots; slot++) {
+                base[slot] = random.nextDouble();
+            }
+            double cap = 3.5;
+            double[] kW = {2.0, 0.5, 1.4};
+            int[] length = {1 + random.nextInt(3), 1 + random.nextInt(3), 1 + random.nextInt(3)};
+            int[] earliest = new int[3];
+            int[] deadline = {slots, 12 + random.nextInt(12), slots};
+            LoadShiftOptimizer optimizer = new LoadShiftOptimizer(rates, base, cap, 1.0);
+            int[] starts = optimizer.optimize(kW, length, earliest, deadline);
+            double cost = 0.0;
+            for (int run = 0; run < 3; run++) {
+                assertTrue(starts[run] >= 0, "Trial " + trial + " run " + run);
+                assertTrue(starts[run] + length[run] <= deadline[run]);
+                cost += optimizer.runCost(kW[run], starts[run], length[run]);
+            }
+            for (double load : optimizer.getLoadKW()) {
+                assertTrue(load <= cap + 1e-9);
+            }
+            assertEquals(bestByExhaustiveSearch(optimizer, cap, kW, length, deadline, 0, base.clone()), cost, 1e-9, "Trial " + trial);
+        }
+        System.out.println("✅ Exhaustive search comparison test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: The cap staggers runs and a blocked run displaces one that can move")
+    void testCapAndRepair() {
+        LoadShiftOptimizer optimizer = new LoadShiftOptimizer(new double[4], new double[4], 3.0, 1.0);
+        // Equal energy, so the first run is placed first at slot 0 and blocks the second one's only window
+        int[] starts = optimizer.optimize(new double[] {2.0, 2.0}, new int[] {2, 2}, new int[] {0, 0}, new int[] {4, 2});
+        assertArrayEquals(new int[] {2, 0}, starts);
+
+        int[] impossible = optimizer.optimize(new double[] {2.0, 2.0, 2.0}, new int[] {2, 2, 2}, new int[3], new int[] {4, 4, 4});
+        assertEquals(1, Arrays.stream(impossible).filter(start -> start < 0).count(), "Only two runs fit under the cap");
+        assertEquals(-1, optimizer.optimize(new double[] {4.0}, new int[] {1}, new int[1], new int[] {4})[0], "Above the cap on its own");
+        System.out.println("✅ Cap and repair test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: A time-of-use tariff shifts deferrable devices to the night and emits timers")
+    void testPlanFromTariff() {
+        Customer customer = new Customer("loadshift@smarthome.com", "Load Shift User", "TestPass123!@#");
+        Gadget washer = new Gadget("WASHING_MACHINE", "LG", "Utility");
+        Gadget geyser = new Gadget("GEYSER", "AO Smith", "Bathroom");
+        Gadget tv = new Gadget("TV", "Sony", "Hall");
+        customer.addGadget(washer);
+        customer.addGadget(geyser);
+        customer.addGadget(tv);
+        EnergyManagementService energyService = new EnergyManagementService(TariffRegistry.getInstance().get("time-of-day"));
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).plusDays(1).plusHours(17).plusMinutes(7);
+        List<EnergyManagementService.DeferrableRun> runs = energyService.getDeferrableRuns(customer.getGadgets(), now);
+        assertEquals(2, runs.size(), "Only configured deferrable types are planned");
+
+        EnergyManagementService.LoadShiftPlan plan = energyService.planLoadShift(customer.getGadgets(), runs, now, 2.2);
+        assertEquals(2, plan.getRuns().size());
+        assertTrue(plan.getUnscheduled().isEmpty());
+        for (EnergyManagementService.PlannedRun run : plan.getRuns()) {
+            int hour = run.getStart().getHour();
+            assertTrue(hour >= 22 || hour < 6, run.getDevice().getType() + " starts at " + run.getStart());
+            assertTrue(run.getEnd().getHour() >= 22 || run.getEnd().getHour() < 6 || run.getEnd().getHour() == 6 && run.getEnd().getMinute() == 0);
+            assertTrue(run.getStart().isAfter(now));
+            assertEquals(0, run.getStart().getMinute() % 15);
+            assertTrue(run.getCost() < 0, "Night runs earn the rebate");
+        }
+        EnergyManagementService.PlannedRun first = plan.getRuns().get(0);
+        EnergyManagementService.PlannedRun second = plan.getRuns().get(1);
+        assertFalse(second.getStart().isBefore(first.getEnd()), "2 kW + 0.5 kW would exceed the 2.2 kW cap");
+        assertTrue(plan.getSavings() > 0);
+        assertTrue(plan.getPeakKW() <= 2.2 + 1e-9);
+
+        TimerService timerService = TimerService.getInstance(new CustomerService());
+        assertEquals(2, timerService.scheduleLoadShiftPlan(customer, plan));
+        for (EnergyManagementService.PlannedRun run : plan.getRuns()) {
+            assertTrue(run.getDevice().isTimerEnabled());
+            assertEquals(run.getStart(), run.getDevice().getScheduledOnTime());
+            assertEquals(run.getEnd(), run.getDevice().getScheduledOffTime());
+        }
+        assertNull(tv.getScheduledOnTime());
+        System.out.println("✅ Tariff plan test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: A full day of 15-minute slots is planned within milliseconds")
+    void testFullDayIsFast() {
+        int slots = 96;
+        double[] rates = rates(slots, 0.25, 1.5, -1.0);
+        double[] base = new double[slots];
+        Random random = new Random(9);
+        for (int slot = 0; slot < slots; slot++) {
+            base[slot] = 0.3 + random.nextDouble();
+        }
+        int runs = 12;
+        double[] kW = new double[runs];
+        int[] length = new int[runs];
+        int[] deadline = new int[runs];
+        for (int run = 0; run < runs; run++) {
+            kW[run] = 0.3 + random.nextDouble() * 2;
+            length[run] = 2 + random.nextInt(8);
+            deadline[run] = slots;
+        }
+        long elapsedMicros = Long.MAX_VALUE;
+        int[] starts = null;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            starts = new LoadShiftOptimizer(rates, base, 5.0, 0.25).optimize(kW, length, new int[runs], deadline);
+            elapsedMicros = Math.min(elapsedMicros, (System.nanoTime() - start) / 1_000);
+        }
+        assertTrue(Arrays.stream(starts).allMatch(start -> start >= 0));
+        assertTrue(elapsedMicros < 50_000, "Took " + elapsedMicros + " µs");
+        System.out.println("✅ Full day test passed (" + runs + " runs in " + elapsedMicros + " µs)");
+    }
+
+    @Test
+    @DisplayName("Test 5: A plan made half way through a minute under a flat tariff still becomes timers")
+    void testPlanMidMinuteUnderFlatTariff() {
+        Customer customer = new Customer("midminute@smarthome.com", "Mid Minute User", "TestPass123!@#");
+        Gadget washer = new Gadget("WASHING_MACHINE", "Bosch", "Utility");
+        customer.addGadget(washer);
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        LocalDateTime planned = LocalDateTime.of(2025, 6, 10, 10, 14, 30);
+        EnergyManagementService.LoadShiftPlan plan =
+                energyService.planLoadShift(customer.getGadgets(), energyService.getDeferrableRuns(customer.getGadgets(), planned), planned, 5.0);
+        assertEquals(LocalDateTime.of(2025, 6, 10, 10, 30), plan.getRuns().get(0).getStart(),
+                     "A flat tariff takes the first slot, which is rounded up past the margin rather than down to 10:15");
+
+        // The same kind of plan, left unconfirmed until its first slot has passed
+        LocalDateTime stale = LocalDateTime.now().minusMinutes(30).withSecond(30).withNano(0);
+        plan = energyService.planLoadShift(customer.getGadgets(), energyService.getDeferrableRuns(customer.getGadgets(), stale), stale, 5.0);
+        EnergyManagementService.PlannedRun run = plan.getRuns().get(0);
+        LocalDateTime before = LocalDateTime.now();
+        assertTrue(run.getStart().isBefore(before.plusMinutes(1)));
+        TimerService timerService = TimerService.getInstance(new CustomerService());
+        assertEquals(1, timerService.scheduleLoadShiftPlan(customer, plan), "The run is moved forward instead of rejected");
+        assertTrue(washer.isTimerEnabled());
+        assertTrue(washer.getScheduledOnTime().isAfter(before.plusMinutes(1)));
+        assertEquals(90, ChronoUnit.MINUTES.between(washer.getScheduledOnTime(), washer.getScheduledOffTime()), "The run keeps its length");
+        System.out.println("✅ Mid-minute flat tariff test passed");
+    }
+}
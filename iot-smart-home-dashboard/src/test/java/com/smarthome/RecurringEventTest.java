@@ -0,0 +1,137 @@
+package com.smarthome;
+
+import com.smarthome.service.CalendarEventService;
+import com.smarthome.util.RecurrenceRule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Recurring calendar event tests
+ * Tests: rule parsing, BYDAY/COUNT/UNTIL expansion, monthly ordinals, window fast-forward, service integration
+ */
+public class RecurringEventTest {
+
+    private static List<LocalDateTime> collect(Iterable<LocalDateTime> occurrences) {
+        List<LocalDateTime> result = new ArrayList<>();
+        for (LocalDateTime occurrence : occurrences) {
+            result.add(occurrence);
+        }
+        return result;
+    }
+
+    @Test
+    @DisplayName("Test 1: Rules parse and invalid rules are rejected")
+    void testParse() {
+        RecurrenceRule rule = RecurrenceRule.parse("RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,FR;COUNT=6;WKST=MO");
+        assertEquals(RecurrenceRule.Frequency.WEEKLY, rule.getFrequency());
+        assertEquals(2, rule.getInterval());
+        assertEquals(6, rule.getCount());
+        assertFalse(rule.isUnbounded());
+        assertEquals("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,FR;COUNT=6", rule.toString());
+        assertTrue(RecurrenceRule.parse("FREQ=DAILY").isUnbounded());
+
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=YEARLY"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("INTERVAL=2"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;COUNT=3;UNTIL=20250101"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=1MO"));
+        assertThrows(IllegalArgumentException.class, () -> RecurrenceRule.parse("FREQ=DAILY;INTERVAL=0"));
+        System.out.println("✅ Rule parsing test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Weekly BYDAY honours COUNT and UNTIL")
+    void testWeeklyExpansion() {
+        LocalDateTime dtstart = LocalDateTime.of(2025, 1, 6, 9, 0); // Monday
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=5");
+        List<LocalDateTime> occurrences = new ArrayList<>();
+        Iterator<LocalDateTime> iterator = rule.iterator(dtstart);
+        while (iterator.hasNext()) {
+            occurrences.add(iterator.next());
+        }
+        assertEquals(5, occurrences.size());
+        assertEquals(dtstart, occurrences.get(0));
+        assertEquals(LocalDateTime.of(2025, 1, 8, 9, 0), occurrences.get(1));
+        assertEquals(LocalDateTime.of(2025, 1, 20, 9, 0), occurrences.get(4));
+
+        RecurrenceRule untilRule = RecurrenceRule.parse("FREQ=DAILY;INTERVAL=3;UNTIL=20250115T090000");
+        List<LocalDateTime> daily = collect(untilRule.between(dtstart, dtstart, dtstart.plusYears(1)));
+        assertEquals(4, daily.size(), "UNTIL is inclusive");
+        assertEquals(LocalDateTime.of(2025, 1, 15, 9, 0), daily.get(3));
+        System.out.println("✅ Weekly expansion test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Monthly ordinals pick the right weekday and skip short months")
+    void testMonthlyOrdinals() {
+        LocalDateTime dtstart = LocalDateTime.of(2025, 1, 1, 18, 30);
+        List<LocalDateTime> lastFridays = collect(RecurrenceRule.parse("FREQ=MONTHLY;BYDAY=-1FR;COUNT=3")
+                                                      .between(dtstart, dtstart, dtstart.plusYears(1)));
+        assertEquals(LocalDateTime.of(2025, 1, 31, 18, 30), lastFridays.get(0));
+        assertEquals(LocalDateTime.of(2025, 2, 28, 18, 30), lastFridays.get(1));
+        assertEquals(LocalDateTime.of(2025, 3, 28, 18, 30), lastFridays.get(2));
+
+        LocalDateTime thirtyFirst = LocalDateTime.of(2025, 1, 31, 8, 0);
+        List<LocalDateTime> monthly = collect(RecurrenceRule.parse("FREQ=MONTHLY;COUNT=3")
+                                                  .between(thirtyFirst, thirtyFirst, thirtyFirst.plusYears(1)));
+        assertEquals(LocalDateTime.of(2025, 3, 31, 8, 0), monthly.get(1), "Months without day 31 are skipped");
+        assertEquals(LocalDateTime.of(2025, 5, 31, 8, 0), monthly.get(2));
+        System.out.println("✅ Monthly ordinal test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Windows far from the series start are expanded without walking from the start")
+    void testWindowFastForward() {
+        LocalDateTime dtstart = LocalDateTime.of(2000, 1, 3, 7, 0); // Monday
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,TH");
+        LocalDateTime from = LocalDateTime.of(2090, 6, 1, 0, 0);
+        List<LocalDateTime> window = collect(rule.between(dtstart, from, from.plusWeeks(2)));
+        assertEquals(4, window.size());
+        for (LocalDateTime occurrence : window) {
+            assertFalse(occurrence.isBefore(from));
+            DayOfWeek day = occurrence.getDayOfWeek();
+            assertTrue(day == DayOfWeek.MONDAY || day == DayOfWeek.THURSDAY);
+        }
+        LocalDateTime next = rule.nextAfter(dtstart, from);
+        assertEquals(window.get(0), next);
+        assertNull(RecurrenceRule.parse("FREQ=DAILY;COUNT=2").nextAfter(dtstart, from));
+        System.out.println("✅ Window fast-forward test passed");
+    }
+
+    @Test
+    @DisplayName("Test 5: Series are stored once and expanded in upcoming and conflict queries")
+    void testServiceIntegration() {
+        CalendarEventService calendarService = CalendarEventService.getInstance();
+        String userEmail = "recurring_" + UUID.randomUUID() + "@smarthome.com";
+        LocalDateTime start = LocalDateTime.now().withSecond(0).withNano(0).plusDays(1);
+
+        assertFalse(calendarService.createEvent(userEmail, "Bad", "", start, start.plusHours(1), "Custom", "FREQ=HOURLY"));
+        assertTrue(calendarService.createEvent(userEmail, "Standup", "daily", start, start.plusMinutes(15), "Meeting",
+                                               "FREQ=DAILY;COUNT=30"));
+        assertTrue(calendarService.createEvent(userEmail, "Dentist", "", start.plusHours(3), start.plusHours(4), "Custom"));
+
+        List<CalendarEventService.CalendarEvent> upcoming = calendarService.getUpcomingEvents(userEmail);
+        assertEquals(10, upcoming.size());
+        assertEquals("Standup", upcoming.get(0).getTitle());
+        assertEquals("Dentist", upcoming.get(1).getTitle());
+        assertTrue(upcoming.get(0).isOccurrence());
+        assertEquals(start.plusDays(1), upcoming.get(2).getStartTime());
+        assertEquals(3, upcoming.get(2).getAutomationActions().size(), "Occurrences inherit the series automations");
+
+        LocalDateTime fifthDay = start.plusDays(5);
+        assertEquals(1, calendarService.findConflictingEvents(userEmail, fifthDay.plusMinutes(5), fifthDay.plusMinutes(10)).size());
+        assertTrue(calendarService.findConflictingEvents(userEmail, start.plusDays(40), start.plusDays(41)).isEmpty());
+
+        assertTrue(calendarService.deleteEvent(userEmail, "Standup"));
+        upcoming = calendarService.getUpcomingEvents(userEmail);
+        assertEquals(1, upcoming.size());
+        assertEquals("Dentist", upcoming.get(0).getTitle());
+        System.out.println("✅ Recurring service integration test passed");
+    }
+}
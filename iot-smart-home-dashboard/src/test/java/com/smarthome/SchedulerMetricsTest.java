@@ -0,0 +1,96 @@
+package com.smarthome;
+
+import com.smarthome.service.SchedulerMetricsService;
+import com.smarthome.util.LatencyHistogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler metrics tests
+ * Tests: log-linear latency histogram percentiles, concurrent recording, JSON dump
+ */
+public class SchedulerMetricsTest {
+
+    private SchedulerMetricsService metricsService;
+
+    @BeforeEach
+    void setUp() {
+        metricsService = SchedulerMetricsService.getInstance();
+        metricsService.reset();
+    }
+
+    @Test
+    @DisplayName("Test 1: Histogram percentiles stay within bucket precision")
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000, snapshot.getMax());
+        assertEquals(50_000, snapshot.getValueAtPercentile(50.0), 50_000 * 0.04);
+        assertEquals(99_000, snapshot.getValueAtPercentile(99.0), 99_000 * 0.04);
+        assertEquals(99_900, snapshot.getValueAtPercentile(99.9), 99_900 * 0.04);
+        System.out.println("✅ Histogram percentile test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Small values are recorded exactly")
+    void testSmallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(3, snapshot.getValueAtPercentile(50.0));
+        assertEquals(7, snapshot.getValueAtPercentile(100.0));
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtPercentile(99.0));
+        System.out.println("✅ Small value histogram test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Concurrent recording loses no samples")
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80_000, histogram.snapshot().getCount());
+        assertEquals(80_000, histogram.getTotalCount());
+        System.out.println("✅ Concurrent histogram recording test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Firings are counted and exported as JSON")
+    void testFiringMetricsJson() {
+        metricsService.recordFiring(SchedulerMetricsService.FiringType.DEVICE_TIMER, 2_500, 1_000_000);
+        metricsService.recordFiring(SchedulerMetricsService.FiringType.DEVICE_TIMER, 4_000, 2_000_000);
+        metricsService.recordFiring(SchedulerMetricsService.FiringType.ALERT_CHECK, 5, 50_000);
+
+        assertEquals(2, metricsService.getFiringCount(SchedulerMetricsService.FiringType.DEVICE_TIMER));
+        assertEquals(0, metricsService.getFiringCount(SchedulerMetricsService.FiringType.CALENDAR_AUTOMATION));
+        assertEquals(4_000_000, metricsService.getLagSnapshot(SchedulerMetricsService.FiringType.DEVICE_TIMER).getMax());
+
+        String json = metricsService.toJson();
+        assertTrue(json.contains("\"DEVICE_TIMER\""), "JSON should contain device timer section");
+        assertTrue(json.contains("\"p999\""), "JSON should contain p999 percentile");
+        assertTrue(json.contains("\"count\": 2"), "JSON should contain device timer count");
+        System.out.println("✅ Scheduler metrics JSON test passed");
+    }
+}
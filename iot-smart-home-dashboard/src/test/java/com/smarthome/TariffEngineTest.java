@@ -0,0 +1,135 @@
+package com.smarthome;
+
+import com.smarthome.service.EnergyManagementService;
+import com.smarthome.util.Tariff;
+import com.smarthome.util.TariffRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Tariff engine tests
+ * Tests: standard slabs matching the original slab formula, breakdown rows,
+ * fixed charges and time-of-use windows, batch pricing, configured variants
+ */
+public class TariffEngineTest {
+
+    // The slab formula the tariff engine replaced
+    private static double legacySlabCost(double totalKWh) {
+        double totalCost;
+        if (totalKWh <= 30) {
+            totalCost = totalKWh * 1.90;
+        } else if (totalKWh <= 75) {
+            totalCost = 30 * 1.90 + (totalKWh - 30) * 3.0;
+        } else if (totalKWh <= 125) {
+            totalCost = 30 * 1.90 + 45 * 3.0 + (totalKWh - 75) * 4.50;
+        } else if (totalKWh <= 225) {
+            totalCost = 30 * 1.90 + 45 * 3.0 + 50 * 4.50 + (totalKWh - 125) * 6.0;
+        } else if (totalKWh <= 400) {
+            totalCost = 30 * 1.90 + 45 * 3.0 + 50 * 4.50 + 100 * 6.0 + (totalKWh - 225) * 8.75;
+        } else {
+            totalCost = 30 * 1.90 + 45 * 3.0 + 50 * 4.50 + 100 * 6.0 + 175 * 8.75 + (totalKWh - 400) * 9.75;
+        }
+        return Math.round(totalCost * 100.0) / 100.0;
+    }
+
+    @Test
+    @DisplayName("Test 1: The standard tariff prices exactly like the original slab formula")
+    void testStandardMatchesLegacy() {
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        double[] edges = {0, 0.001, 29.999, 30, 30.001, 75, 75.5, 125, 225, 225.01, 400, 400.01, 1234.567};
+        for (double kWh : edges) {
+            assertEquals(legacySlabCost(kWh), energyService.calculateSlabBasedCost(kWh), 0.0, kWh + " kWh");
+        }
+        Random random = new Random(44);
+        for (int i = 0; i < 100_000; i++) {
+            double kWh = random.nextDouble() * 800;
+            assertEquals(legacySlabCost(kWh), Tariff.STANDARD.bill(kWh, null), 0.0, kWh + " kWh");
+        }
+        assertEquals(0, Tariff.STANDARD.slabOf(30));
+        assertEquals(1, Tariff.STANDARD.slabOf(30.0001));
+        assertEquals(5, Tariff.STANDARD.slabOf(10_000));
+        System.out.println("✅ Standard tariff test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: The breakdown lists the slabs used with their original labels")
+    void testBreakdown() {
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        String breakdown = energyService.getSlabBreakdown(450.0);
+        for (String label : new String[] {"0-30 kWh", "31-75 kWh", "76-125 kWh", "126-225 kWh", "226-400 kWh", "400+ kWh"}) {
+            assertTrue(breakdown.contains(label), "Missing " + label);
+        }
+        assertTrue(breakdown.contains(String.format("%8.2f", legacySlabCost(450.0))));
+        String small = energyService.getSlabBreakdown(50.0);
+        assertTrue(small.contains("31-75 kWh"));
+        assertFalse(small.contains("76-125 kWh"), "Unused slabs are left out");
+
+        Tariff withFixed = Tariff.parse("fixed", "100:2.5,*:5", 40.0, null);
+        String fixed = new EnergyManagementService(withFixed).getSlabBreakdown(120.0);
+        assertTrue(fixed.contains("0-100 kWh") && fixed.contains("100+ kWh") && fixed.contains("Fixed charge"));
+        assertTrue(fixed.contains(String.format("%8.2f", 40.0 + 250.0 + 100.0)));
+        System.out.println("✅ Slab breakdown test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Fixed charges and time-of-use windows, including ones that wrap past midnight")
+    void testTimeOfUse() {
+        Tariff tariff = Tariff.parse("tou", "50:2,*:4", 10.0, "18-22:1.5,22-6:-1");
+        assertTrue(tariff.isTimeOfUse());
+        assertEquals(1.5, tariff.getHourlyAdjustment(18));
+        assertEquals(0.0, tariff.getHourlyAdjustment(17));
+        assertEquals(-1.0, tariff.getHourlyAdjustment(22));
+        assertEquals(-1.0, tariff.getHourlyAdjustment(0));
+        assertEquals(-1.0, tariff.getHourlyAdjustment(5));
+        assertEquals(0.0, tariff.getHourlyAdjustment(6));
+
+        double[] byHour = new double[24];
+        byHour[19] = 10;  // peak
+        byHour[2] = 20;   // night
+        byHour[12] = 30;  // no adjustment
+        // 60 kWh: 50 * 2 + 10 * 4 = 140, + 15 peak - 20 night + 10 fixed
+        assertEquals(145.0, tariff.bill(60, byHour), 1e-9);
+        assertEquals(150.0, tariff.bill(60, null), 1e-9, "Without an hourly split only the fixed charge is added");
+        assertFalse(Tariff.STANDARD.isTimeOfUse());
+        assertEquals(24, IntStream.range(0, 24)
+                .filter(hour -> Tariff.parse("all", "*:1", 0, "6-6:0.5").getHourlyAdjustment(hour) == 0.5).count());
+
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse("bad", "30:1.9,75:3", 0, null), "No open-ended slab");
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse("bad", "75:1.9,30:3,*:4", 0, null), "Bounds out of order");
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse("bad", "*:1", 0, "25-3:1"));
+        assertThrows(IllegalArgumentException.class, () -> Tariff.parse("bad", "x:1,*:2", 0, null));
+        System.out.println("✅ Time-of-use test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Batch pricing and configured tariff variants")
+    void testBatchAndRegistry() {
+        Random random = new Random(7);
+        double[] consumption = new double[200_000];
+        for (int i = 0; i < consumption.length; i++) {
+            consumption[i] = random.nextDouble() * 1000;
+        }
+        EnergyManagementService energyService = new EnergyManagementService(Tariff.STANDARD);
+        long start = System.nanoTime();
+        double[] bills = energyService.calculateBills(consumption);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        for (int i = 0; i < consumption.length; i += 997) {
+            assertEquals(legacySlabCost(consumption[i]), bills[i], 0.0);
+        }
+
+        TariffRegistry registry = TariffRegistry.getInstance();
+        assertEquals("standard", registry.getActive().getName());
+        Tariff timeOfDay = registry.get("Time-Of-Day");
+        assertNotNull(timeOfDay, "Variants are loaded from configuration");
+        assertEquals(25.0, timeOfDay.getFixedCharge());
+        assertEquals(1.5, timeOfDay.getHourlyAdjustment(20));
+        Map<String, Double> compared = new EnergyManagementService().compareTariffs(100.0, null);
+        assertEquals(legacySlabCost(100.0), compared.get("standard"));
+        assertEquals(legacySlabCost(100.0) + 25.0, compared.get("time-of-day"), 1e-9);
+        System.out.println("✅ Batch pricing test passed (" + consumption.length + " bills in " + elapsedMs + " ms)");
+    }
+}
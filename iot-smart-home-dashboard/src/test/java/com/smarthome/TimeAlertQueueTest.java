@@ -0,0 +1,113 @@
+package com.smarthome;
+
+import com.smarthome.service.AlertService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Time-based alert queue tests
+ * Tests: due-only firing, recurring re-queue, toggling and deletion, many pending reminders
+ */
+public class TimeAlertQueueTest {
+
+    private AlertService alertService;
+    private String userEmail;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        alertService = AlertService.getInstance();
+        userEmail = "reminders_" + UUID.randomUUID() + "@smarthome.com";
+        base = LocalDateTime.now().withSecond(0).withNano(0).plusDays(1);
+    }
+
+    private AlertService.TimeBasedAlert lastAlert() {
+        List<AlertService.Alert> alerts = alertService.getUserAlerts(userEmail);
+        return (AlertService.TimeBasedAlert) alerts.get(alerts.size() - 1);
+    }
+
+    @Test
+    @DisplayName("Test 1: One-off alerts fire once when due")
+    void testOneOffAlert() {
+        assertTrue(alertService.createTimeBasedAlert(userEmail, "AC off", "AC", "Bedroom", base, "Turn off the AC"));
+        AlertService.TimeBasedAlert alert = lastAlert();
+        alert.setAutoDeleteAfterTrigger(false);
+
+        alertService.checkTimeBasedAlerts(userEmail, base.minusMinutes(1));
+        assertEquals(0, alert.getTriggerCount());
+        alertService.checkTimeBasedAlerts(userEmail, base);
+        assertEquals(1, alert.getTriggerCount());
+        assertFalse(alert.isActive());
+        alertService.checkTimeBasedAlerts(userEmail, base.plusHours(1));
+        assertEquals(1, alert.getTriggerCount(), "Fired alerts leave the queue");
+        System.out.println("✅ One-off alert test passed");
+    }
+
+    @Test
+    @DisplayName("Test 2: Recurring alerts are re-queued from their repeat rule and skip missed occurrences")
+    void testRecurringAlert() {
+        assertFalse(alertService.createTimeBasedAlert(userEmail, "Bad", "TV", "Hall", base, "x", "HOURLY"));
+        assertTrue(alertService.createTimeBasedAlert(userEmail, "Water plants", "LIGHT", "Garden", base, "Water", "DAILY"));
+        AlertService.TimeBasedAlert alert = lastAlert();
+        assertTrue(alert.isRecurring());
+        assertEquals("FREQ=DAILY", alert.getRecurrencePattern());
+
+        alertService.checkTimeBasedAlerts(userEmail, base.plusMinutes(1));
+        assertEquals(1, alert.getTriggerCount());
+        assertTrue(alert.isActive());
+        assertEquals(base.plusDays(1), alert.getNextTriggerTime());
+
+        alertService.checkTimeBasedAlerts(userEmail, base.plusDays(4).plusMinutes(5));
+        assertEquals(2, alert.getTriggerCount(), "Missed occurrences fire once, not in a burst");
+        assertEquals(base.plusDays(5), alert.getNextTriggerTime());
+
+        assertTrue(alertService.createTimeBasedAlert(userEmail, "Twice", "FAN", "Hall", base, "x", "FREQ=DAILY;COUNT=2"));
+        AlertService.TimeBasedAlert limited = lastAlert();
+        alertService.checkTimeBasedAlerts(userEmail, base);
+        alertService.checkTimeBasedAlerts(userEmail, base.plusDays(1));
+        assertEquals(2, limited.getTriggerCount());
+        assertFalse(limited.isActive(), "The series ends after COUNT occurrences");
+        System.out.println("✅ Recurring alert test passed");
+    }
+
+    @Test
+    @DisplayName("Test 3: Toggled and deleted alerts leave the queue")
+    void testToggleAndDelete() {
+        alertService.createTimeBasedAlert(userEmail, "Paused", "TV", "Living Room", base, "x");
+        AlertService.TimeBasedAlert paused = lastAlert();
+        paused.setAutoDeleteAfterTrigger(false);
+        alertService.createTimeBasedAlert(userEmail, "Deleted", "TV", "Living Room", base, "x");
+        AlertService.TimeBasedAlert deleted = lastAlert();
+
+        alertService.toggleAlert(userEmail, paused.getAlertId());
+        assertTrue(alertService.deleteAlert(userEmail, deleted.getAlertId()));
+        alertService.checkTimeBasedAlerts(userEmail, base.plusMinutes(1));
+        assertEquals(0, paused.getTriggerCount());
+        assertEquals(0, deleted.getTriggerCount());
+
+        alertService.toggleAlert(userEmail, paused.getAlertId());
+        alertService.checkTimeBasedAlerts(userEmail, base.plusMinutes(2));
+        assertEquals(1, paused.getTriggerCount());
+        System.out.println("✅ Toggle and delete test passed");
+    }
+
+    @Test
+    @DisplayName("Test 4: Only due reminders fire among many pending ones")
+    void testManyPendingReminders() {
+        for (int i = 0; i < 2000; i++) {
+            alertService.createTimeBasedAlert(userEmail, "Reminder " + i, "LIGHT", "Hall", base.plusMinutes(i), "x");
+            lastAlert().setAutoDeleteAfterTrigger(false);
+        }
+        alertService.checkTimeBasedAlerts(userEmail, base.minusSeconds(1));
+        alertService.checkTimeBasedAlerts(userEmail, base.plusMinutes(2));
+        long fired = alertService.getUserAlerts(userEmail).stream().filter(alert -> alert.getTriggerCount() > 0).count();
+        assertEquals(3, fired);
+        assertEquals(1997, alertService.getActiveAlerts(userEmail).size());
+        System.out.println("✅ Many pending reminders test passed");
+    }
+}